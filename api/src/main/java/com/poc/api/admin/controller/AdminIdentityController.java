@@ -2,41 +2,73 @@ package com.poc.api.admin.controller;
 
 import com.poc.api.telemetry.persistence.DeviceProfileRepository;
 import com.poc.api.identity.persistence.IdentityNodeType;
+import com.poc.api.identity.service.IdentityGraphProjection;
 import com.poc.api.identity.service.IdentityGraphService;
+import com.poc.api.identity.service.IdentityGraphWriter;
+import com.poc.api.identity.service.IdentityRebuildService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.OffsetDateTime;
+
 @RestController
 @RequestMapping({"/api/admin/identity","/api/v1/admin/identity"})
 public class AdminIdentityController {
 
   private final IdentityGraphService identityGraph;
   private final DeviceProfileRepository deviceProfiles;
+  private final IdentityGraphProjection projection;
+  private final IdentityGraphWriter writer;
+  private final IdentityRebuildService rebuilds;
   private final String adminToken;
 
   public AdminIdentityController(
       IdentityGraphService identityGraph,
       DeviceProfileRepository deviceProfiles,
+      IdentityGraphProjection projection,
+      IdentityGraphWriter writer,
+      IdentityRebuildService rebuilds,
       @Value("${poc.admin.token:dev-admin}") String adminToken
   ) {
     this.identityGraph = identityGraph;
     this.deviceProfiles = deviceProfiles;
+    this.projection = projection;
+    this.writer = writer;
+    this.rebuilds = rebuilds;
     this.adminToken = adminToken;
   }
 
+  /**
+   * {@code parallel=true} starts (or resumes, unless {@code restart=true}) the partitioned rebuild
+   * and returns its progress; otherwise rebuilds {@code maxBatches} pages after {@code after_id}
+   * synchronously.
+   */
   @PostMapping("/rebuild")
-  public ResponseEntity<RebuildResponse> rebuild(
+  public ResponseEntity<?> rebuild(
       @RequestHeader(name = "X-Admin-Token", required = false) String adminTokenHeader,
       @RequestParam(name = "after_id", defaultValue = "0") long afterId,
       @RequestParam(name = "batchSize", defaultValue = "500") int batchSize,
-      @RequestParam(name = "maxBatches", defaultValue = "20") int maxBatches
+      @RequestParam(name = "maxBatches", defaultValue = "20") int maxBatches,
+      @RequestParam(name = "parallel", defaultValue = "false") boolean parallel,
+      @RequestParam(name = "restart", defaultValue = "false") boolean restart
   ) {
     requireAdmin(adminTokenHeader);
+    if (parallel) return ResponseEntity.accepted().body(rebuilds.start(restart));
     var r = identityGraph.rebuildFromDeviceProfiles(deviceProfiles, afterId, batchSize, maxBatches);
     return ResponseEntity.ok(new RebuildResponse(r.processed(), r.batches(), r.complete(), r.lastId()));
   }
 
+  /** Progress of the latest partitioned rebuild. */
+  @GetMapping("/rebuild")
+  public ResponseEntity<IdentityRebuildService.Progress> rebuildProgress(
+      @RequestHeader(name = "X-Admin-Token", required = false) String adminTokenHeader
+  ) {
+    requireAdmin(adminTokenHeader);
+    return ResponseEntity.ok(rebuilds.progress());
+  }
+
   @GetMapping("/cluster")
   public ResponseEntity<?> cluster(
       @RequestHeader(name = "X-Admin-Token", required = false) String adminTokenHeader,
@@ -51,6 +83,38 @@ public class AdminIdentityController {
     return ResponseEntity.ok(c);
   }
 
+  /** Size and freshness of the in-memory cluster projection (latency is the identity.projection.cluster timer). */
+  @GetMapping("/projection")
+  public ResponseEntity<IdentityGraphProjection.Stats> projection(
+      @RequestHeader(name = "X-Admin-Token", required = false) String adminTokenHeader
+  ) {
+    requireAdmin(adminTokenHeader);
+    return ResponseEntity.ok(projection.stats());
+  }
+
+  /** Queue depth, lag and catch-up progress of the asynchronous graph writer. */
+  @GetMapping("/writer")
+  public ResponseEntity<IdentityGraphWriter.Stats> writer(
+      @RequestHeader(name = "X-Admin-Token", required = false) String adminTokenHeader
+  ) {
+    requireAdmin(adminTokenHeader);
+    return ResponseEntity.ok(writer.stats());
+  }
+
+  /** Replays device_profile rows seen since {@code since} (default: the writer watermark). */
+  @PostMapping("/catch-up")
+  public ResponseEntity<IdentityGraphWriter.Stats> catchUp(
+      @RequestHeader(name = "X-Admin-Token", required = false) String adminTokenHeader,
+      @RequestParam(name = "since", required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+      OffsetDateTime since
+  ) {
+    requireAdmin(adminTokenHeader);
+    OffsetDateTime from = since != null ? since : writer.stats().appliedThrough();
+    writer.requestCatchUp(from != null ? from : OffsetDateTime.now());
+    return ResponseEntity.accepted().body(writer.stats());
+  }
+
   private void requireAdmin(String headerToken) {
     String expected = (adminToken == null) ? "" : adminToken.trim();
     if (expected.isBlank()) return;
@@ -5,12 +5,14 @@ import com.poc.api.ml.persistence.ModelCanaryPolicyRepository;
 import com.poc.api.ml.persistence.ModelChangeEventRepository;
 import com.poc.api.ml.persistence.ModelRegistryRepository;
 import com.poc.api.ml.persistence.ModelScorecardRepository;
+import com.poc.api.ml.persistence.ModelShadowRepository;
 import com.poc.api.ml.persistence.RetrainJobRepository;
 import com.poc.api.ml.service.MlTrainingService;
 import com.poc.api.ml.service.ModelRolloutService;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +27,7 @@ public class AdminModelController {
     private final ModelScorecardRepository scorecards;
     private final ModelCanaryPolicyRepository canary;
     private final ModelChangeEventRepository changes;
+    private final ModelShadowRepository shadow;
     private final MlTrainingService training;
     private final ModelRolloutService rollout;
 
@@ -34,6 +37,7 @@ public class AdminModelController {
                                 ModelScorecardRepository scorecards,
                                 ModelCanaryPolicyRepository canary,
                                 ModelChangeEventRepository changes,
+                                ModelShadowRepository shadow,
                                 MlTrainingService training,
                                 ModelRolloutService rollout) {
         this.modelProvider = modelProvider;
@@ -42,6 +46,7 @@ public class AdminModelController {
         this.scorecards = scorecards;
         this.canary = canary;
         this.changes = changes;
+        this.shadow = shadow;
         this.training = training;
         this.rollout = rollout;
     }
@@ -54,7 +59,7 @@ public class AdminModelController {
         Map<String, Object> out = new LinkedHashMap<>();
         out.put("now", Instant.now().toString());
 
-        registry.findActive().ifPresentOrElse(rec -> {
+        registry.findActiveMeta().ifPresentOrElse(rec -> {
             out.put("registryId", rec.id());
             out.put("registryName", rec.name());
             out.put("registryFormat", rec.format());
@@ -92,7 +97,7 @@ public class AdminModelController {
     }
 
     @GetMapping("/registry")
-    public List<ModelRegistryRepository.ModelRecord> listRegistry(
+    public List<ModelRegistryRepository.ModelMeta> listRegistry(
             @RequestParam(name = "kind", defaultValue = "risk-model") String kind,
             @RequestParam(name = "scopeType", defaultValue = "GLOBAL") String scopeType,
             @RequestParam(name = "scopeKey", defaultValue = "*") String scopeKey,
@@ -133,7 +138,7 @@ public class AdminModelController {
             @RequestParam(name = "reason", defaultValue = "manual") String reason,
             @RequestParam(name = "scopeType", defaultValue = "GLOBAL") String scopeType,
             @RequestParam(name = "scopeKey", defaultValue = "*") String scopeKey) {
-        Long fromId = registry.findActive().map(ModelRegistryRepository.ModelRecord::id).orElse(null);
+        Long fromId = registry.findActiveId().orElse(null);
         long jobId = retrainJobs.enqueue("risk-model", scopeType, scopeKey, reason, fromId);
         return Map.of("jobId", jobId);
     }
@@ -198,6 +203,32 @@ public class AdminModelController {
         return Map.of("ok", true);
     }
 
+    /** Shadow candidates plus their agreement with the live model over the last {@code hours}. */
+    @GetMapping("/shadow")
+    public Map<String, Object> getShadow(@RequestParam(name = "hours", defaultValue = "24") int hours) {
+        return Map.of(
+                "candidates", shadow.listCandidates(),
+                "summary", shadow.summarize(OffsetDateTime.now().minusHours(Math.max(1, hours)))
+        );
+    }
+
+    @PostMapping("/shadow/start")
+    public Map<String, Object> startShadow(@RequestParam(name = "modelId") long modelId,
+                                           @RequestParam(name = "percent", defaultValue = "100") int percent,
+                                           @RequestParam(name = "actor", defaultValue = "ui") String actor,
+                                           @RequestParam(name = "reason", defaultValue = "manual") String reason) {
+        rollout.startShadow(actor, modelId, percent, reason);
+        return Map.of("ok", true);
+    }
+
+    @PostMapping("/shadow/stop")
+    public Map<String, Object> stopShadow(@RequestParam(name = "modelId") long modelId,
+                                          @RequestParam(name = "actor", defaultValue = "ui") String actor,
+                                          @RequestParam(name = "reason", defaultValue = "manual") String reason) {
+        rollout.stopShadow(actor, modelId, reason);
+        return Map.of("ok", true);
+    }
+
     private static String safe(String v, String fallback) {
         return (v == null || v.isBlank()) ? fallback : v;
     }
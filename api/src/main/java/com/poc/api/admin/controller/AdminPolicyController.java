@@ -137,14 +137,8 @@ public class AdminPolicyController {
             }
             var row = rowOpt.get();
 
-            // Build a context from stored feature_vector JSON, falling back to an empty map.
-            Map<String, Object> values = new LinkedHashMap<>();
-            if (row.featureVector != null && !row.featureVector.isBlank()) {
-                try {
-                    //noinspection unchecked
-                    values = objectMapper.readValue(row.featureVector, Map.class);
-                } catch (Exception ignored) { }
-            }
+            // Build a context from the stored feature breakdown, falling back to an empty map.
+            Map<String, Object> values = new LinkedHashMap<>(row.featureMap(objectMapper));
             PolicyContext ctx = PolicyEngine.context(values);
 
             // Determine baseline outcome: evaluate current stored policies to get a "would be today" outcome
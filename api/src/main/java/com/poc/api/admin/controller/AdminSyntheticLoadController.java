@@ -0,0 +1,125 @@
+package com.poc.api.admin.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.ml.synthetic.SyntheticLoadDriver;
+import com.poc.api.ml.synthetic.SyntheticSessionGenerator;
+import com.poc.api.risk.service.RiskService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Synthetic load runs against this instance ({@code target=direct}, straight into RiskService) or
+ * another one over HTTP ({@code target=http}). The call blocks for the duration of the run and
+ * returns the throughput/latency report.
+ *
+ * Every session is scored and persisted like real traffic, so this is off unless
+ * {@code poc.synthetic.enabled=true}; only one run at a time.
+ */
+@RestController
+@RequestMapping({"/api/admin/synthetic","/api/v1/admin/synthetic"})
+public class AdminSyntheticLoadController {
+
+  private final RiskService riskService;
+  private final ObjectMapper objectMapper;
+  private final String adminToken;
+  private final boolean enabled;
+  private final int maxThreads;
+  private final long maxDurationSeconds;
+  private final Semaphore running = new Semaphore(1);
+
+  public AdminSyntheticLoadController(
+      RiskService riskService,
+      ObjectMapper objectMapper,
+      @Value("${poc.admin.token:dev-admin}") String adminToken,
+      @Value("${poc.synthetic.enabled:false}") boolean enabled,
+      @Value("${poc.synthetic.max-threads:64}") int maxThreads,
+      @Value("${poc.synthetic.max-duration-seconds:600}") long maxDurationSeconds
+  ) {
+    this.riskService = riskService;
+    this.objectMapper = objectMapper;
+    this.adminToken = adminToken;
+    this.enabled = enabled;
+    this.maxThreads = Math.max(1, maxThreads);
+    this.maxDurationSeconds = Math.max(1, maxDurationSeconds);
+  }
+
+  @PostMapping("/run")
+  public ResponseEntity<SyntheticLoadDriver.Report> run(
+      @RequestHeader(name = "X-Admin-Token", required = false) String adminTokenHeader,
+      @RequestParam(name = "target", defaultValue = "direct") String target,
+      @RequestParam(name = "baseUrl", required = false) String baseUrl,
+      @RequestParam(name = "users", defaultValue = "1000") int users,
+      @RequestParam(name = "rate", defaultValue = "100") double rate,
+      @RequestParam(name = "seconds", defaultValue = "30") long seconds,
+      @RequestParam(name = "threads", defaultValue = "8") int threads,
+      @RequestParam(name = "maxSessions", defaultValue = "0") long maxSessions,
+      @RequestParam(name = "accountSharingRate", defaultValue = "0.02") double accountSharingRate,
+      @RequestParam(name = "deviceFarmRate", defaultValue = "0.01") double deviceFarmRate,
+      @RequestParam(name = "tlsChangeRate", defaultValue = "0.02") double tlsChangeRate,
+      @RequestParam(name = "seed", defaultValue = "24301") long seed
+  ) throws InterruptedException {
+    requireAdmin(adminTokenHeader);
+    if (!enabled) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Synthetic load is disabled (poc.synthetic.enabled)");
+    }
+    if (seconds < 1 || seconds > maxDurationSeconds) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "seconds must be between 1 and " + maxDurationSeconds);
+    }
+    if (threads < 1 || threads > maxThreads) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "threads must be between 1 and " + maxThreads);
+    }
+
+    SyntheticSessionGenerator.Config config;
+    try {
+      config = new SyntheticSessionGenerator.Config(users, 3, 20,
+          accountSharingRate, deviceFarmRate, tlsChangeRate, seed, null);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    if (!running.tryAcquire()) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "A synthetic load run is already in progress");
+    }
+    try {
+      SyntheticLoadDriver.Options options =
+          new SyntheticLoadDriver.Options(threads, rate, Duration.ofSeconds(seconds), maxSessions);
+      if ("http".equalsIgnoreCase(target)) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+          throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "baseUrl is required for target=http");
+        }
+        try (HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build()) {
+          var http = SyntheticLoadDriver.http(client, objectMapper, URI.create(baseUrl), Duration.ofSeconds(10));
+          return ResponseEntity.ok(new SyntheticLoadDriver(new SyntheticSessionGenerator(config), http).run(options));
+        }
+      }
+      if (!"direct".equalsIgnoreCase(target)) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "target must be direct or http");
+      }
+      var direct = SyntheticLoadDriver.direct(riskService);
+      return ResponseEntity.ok(new SyntheticLoadDriver(new SyntheticSessionGenerator(config), direct).run(options));
+    } finally {
+      running.release();
+    }
+  }
+
+  private void requireAdmin(String headerToken) {
+    String expected = (adminToken == null) ? "" : adminToken.trim();
+    if (expected.isBlank()) return;
+    String got = (headerToken == null) ? "" : headerToken.trim();
+    if (!expected.equals(got)) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin token required");
+    }
+  }
+}
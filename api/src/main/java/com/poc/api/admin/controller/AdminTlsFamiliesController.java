@@ -147,7 +147,10 @@ public class AdminTlsFamiliesController {
         result.classified(),
         result.batches(),
         result.complete(),
-        result.lastFp()
+        result.lastFp(),
+        result.queued(),
+        result.elapsedMs(),
+        result.fpsPerSecond()
     ));
   }
 
@@ -0,0 +1,173 @@
+package com.poc.api.admin.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the analytics rollups (V123) up to date from session_feature / decision_log.
+ *
+ * Each table has a high-water-mark id in rollup_state. A run folds the next {@code batch-size} rows
+ * above the mark into the rollups and advances the mark, all in one statement, so a failed run
+ * changes nothing and the next one retries the same rows. The state row is locked for the
+ * statement, so several instances can run the job without double counting.
+ *
+ * Ids are handed out at insert time but become visible at commit, so a visible id does not mean
+ * every lower id is visible too. Each run therefore records the highest visible id together with
+ * the xmax of its snapshot, and the mark may only move up to that id once the oldest running
+ * transaction is past that xmax (every transaction that could still hold a lower id has ended).
+ * The fold thus trails the tables by about one interval. Labels are only counted as inserted
+ * (nothing in the app updates them later).
+ */
+@Service
+public class AnalyticsRollupService {
+
+  private static final Logger log = LoggerFactory.getLogger(AnalyticsRollupService.class);
+
+  private static final String SESSION_FEATURE_SQL = """
+      WITH state AS (
+        SELECT last_id FROM rollup_state WHERE name = 'session_feature' FOR UPDATE
+      ), batch AS (
+        SELECT id, occurred_at, decision, confidence, label
+          FROM session_feature
+         WHERE id > (SELECT last_id FROM state)
+           AND id <= ?
+         ORDER BY id
+         LIMIT ?
+      ), hourly AS (
+        INSERT INTO rollup_session_hourly(bucket, decision, sessions, confidence_sum)
+        SELECT date_trunc('hour', occurred_at), decision, COUNT(*), SUM(confidence)
+          FROM batch
+         GROUP BY 1, 2
+        ON CONFLICT (bucket, decision) DO UPDATE
+          SET sessions = rollup_session_hourly.sessions + EXCLUDED.sessions,
+              confidence_sum = rollup_session_hourly.confidence_sum + EXCLUDED.confidence_sum
+      ), confusion AS (
+        INSERT INTO rollup_model_confusion(decision, label, sessions)
+        SELECT decision, label, COUNT(*)
+          FROM batch
+         WHERE label IS NOT NULL
+         GROUP BY 1, 2
+        ON CONFLICT (decision, label) DO UPDATE
+          SET sessions = rollup_model_confusion.sessions + EXCLUDED.sessions
+      ), advanced AS (
+        UPDATE rollup_state
+           SET last_id = (SELECT MAX(id) FROM batch), updated_at = now()
+         WHERE name = 'session_feature' AND EXISTS (SELECT 1 FROM batch)
+      )
+      SELECT COUNT(*) FROM batch
+      """;
+
+  private static final String DECISION_LOG_SQL = """
+      WITH state AS (
+        SELECT last_id FROM rollup_state WHERE name = 'decision_log' FOR UPDATE
+      ), batch AS (
+        SELECT id, COALESCE(user_id, 'anonymous') AS user_id, tls_fp, confidence, created_at
+          FROM decision_log
+         WHERE id > (SELECT last_id FROM state)
+           AND id <= ?
+         ORDER BY id
+         LIMIT ?
+      ), new_devices AS (
+        INSERT INTO rollup_user_device(user_id, tls_fp)
+        SELECT DISTINCT user_id, tls_fp FROM batch
+        ON CONFLICT DO NOTHING
+        RETURNING user_id
+      ), users AS (
+        INSERT INTO rollup_user_summary(user_id, sessions, devices, confidence_sum, last_seen)
+        SELECT b.user_id, COUNT(*), COALESCE(MAX(d.devices), 0), SUM(b.confidence), MAX(b.created_at)
+          FROM batch b
+          LEFT JOIN (SELECT user_id, COUNT(*) AS devices FROM new_devices GROUP BY user_id) d
+            ON d.user_id = b.user_id
+         GROUP BY b.user_id
+        ON CONFLICT (user_id) DO UPDATE
+          SET sessions = rollup_user_summary.sessions + EXCLUDED.sessions,
+              devices = rollup_user_summary.devices + EXCLUDED.devices,
+              confidence_sum = rollup_user_summary.confidence_sum + EXCLUDED.confidence_sum,
+              last_seen = GREATEST(rollup_user_summary.last_seen, EXCLUDED.last_seen)
+      ), advanced AS (
+        UPDATE rollup_state
+           SET last_id = (SELECT MAX(id) FROM batch), updated_at = now()
+         WHERE name = 'decision_log' AND EXISTS (SELECT 1 FROM batch)
+      )
+      SELECT COUNT(*) FROM batch
+      """;
+
+  private static final String HORIZON_SQL = """
+      SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint AS xmin,
+             pg_snapshot_xmax(pg_current_snapshot())::text::bigint AS xmax,
+             (SELECT COALESCE(MAX(id), 0) FROM %s) AS max_id
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final boolean enabled;
+  private final int batchSize;
+  private final int maxBatchesPerRun;
+
+  // Per table: the horizon waiting for its transactions to end, and the id it settled.
+  private final Map<String, Horizon> pending = new ConcurrentHashMap<>();
+  private final Map<String, Long> settled = new ConcurrentHashMap<>();
+
+  public AnalyticsRollupService(JdbcTemplate jdbcTemplate,
+                                @Value("${poc.analytics.rollup.enabled:true}") boolean enabled,
+                                @Value("${poc.analytics.rollup.batch-size:50000}") int batchSize,
+                                @Value("${poc.analytics.rollup.max-batches-per-run:20}") int maxBatchesPerRun) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.enabled = enabled;
+    this.batchSize = Math.max(1, batchSize);
+    this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+  }
+
+  @Scheduled(fixedDelayString = "${poc.analytics.rollup.interval-ms:10000}")
+  public void rollUp() {
+    if (!enabled) return;
+    roll("session_feature", SESSION_FEATURE_SQL);
+    roll("decision_log", DECISION_LOG_SQL);
+  }
+
+  /** Folds batches up to the settled id until a partial batch shows the mark has caught up. */
+  private void roll(String table, String sql) {
+    long total = 0;
+    try {
+      Long upTo = settle(table);
+      if (upTo == null) return;
+      for (int i = 0; i < maxBatchesPerRun; i++) {
+        Long n = jdbcTemplate.queryForObject(sql, Long.class, upTo, batchSize);
+        long rows = n != null ? n : 0L;
+        total += rows;
+        if (rows < batchSize) break;
+      }
+    } catch (Exception e) {
+      log.warn("[rollup] {} rollup failed after {} rows: {}", table, total, e.getMessage());
+      return;
+    }
+    if (total >= batchSize) log.info("[rollup] folded {} {} rows into the analytics rollups", total, table);
+  }
+
+  /**
+   * Returns the highest id below which every row of {@code table} is committed or aborted, or null
+   * before the first horizon has settled. A pending horizon is kept until it settles rather than
+   * replaced, so a steady stream of short transactions cannot starve it.
+   */
+  private Long settle(String table) {
+    Horizon now = jdbcTemplate.queryForObject(HORIZON_SQL.formatted(table),
+        (rs, rowNum) -> new Horizon(rs.getLong("xmin"), rs.getLong("xmax"), rs.getLong("max_id")));
+    if (now == null) return settled.get(table);
+    Horizon h = pending.get(table);
+    if (h != null && now.xmin() >= h.xmax()) {
+      settled.put(table, h.maxId());
+      h = null;
+    }
+    if (h == null) pending.put(table, now);
+    return settled.get(table);
+  }
+
+  /** Highest visible id and the xid range of the snapshot that saw it. */
+  private record Horizon(long xmin, long xmax, long maxId) {}
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.poc.api.admin.dto.PolicyRule;
 import com.poc.api.admin.dto.PolicyScope;
 import com.poc.api.admin.persistence.PolicyRuleRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Comparator;
@@ -17,10 +18,12 @@ public class PolicyRuleService {
 
   private final PolicyRuleRepository repo;
   private final ObjectMapper mapper;
+  private final ApplicationEventPublisher events;
 
-  public PolicyRuleService(PolicyRuleRepository repo, ObjectMapper mapper) {
+  public PolicyRuleService(PolicyRuleRepository repo, ObjectMapper mapper, ApplicationEventPublisher events) {
     this.repo = repo;
     this.mapper = mapper;
+    this.events = events;
   }
 
   public List<PolicyRule> listAll() {
@@ -34,21 +37,25 @@ public class PolicyRuleService {
   public PolicyRule create(PolicyRule rule) {
     validatePolicy(rule);
     long id = repo.insert(rule);
+    events.publishEvent(new PolicyRulesChangedEvent(id, "created"));
     return repo.findById(id).orElse(rule);
   }
 
   public PolicyRule update(long id, PolicyRule rule) {
     validatePolicy(rule);
     repo.update(id, rule);
+    events.publishEvent(new PolicyRulesChangedEvent(id, "updated"));
     return repo.findById(id).orElse(rule);
   }
 
   public void setEnabled(long id, boolean enabled) {
     repo.setEnabled(id, enabled);
+    events.publishEvent(new PolicyRulesChangedEvent(id, enabled ? "enabled" : "disabled"));
   }
 
   public void delete(long id) {
     repo.delete(id);
+    events.publishEvent(new PolicyRulesChangedEvent(id, "deleted"));
   }
 
   /**
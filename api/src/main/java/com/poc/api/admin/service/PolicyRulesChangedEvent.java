@@ -0,0 +1,7 @@
+package com.poc.api.admin.service;
+
+/**
+ * Published by {@link PolicyRuleService} after any policy create/update/enable/delete,
+ * so runtime consumers can rebuild their compiled view of the rules.
+ */
+public record PolicyRulesChangedEvent(long policyId, String change) {}
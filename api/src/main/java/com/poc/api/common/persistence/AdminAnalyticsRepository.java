@@ -10,7 +10,9 @@ import java.util.List;
  * EPIC 7: analytics repository backed by Postgres views.
  *
  * All queries here read from v_risk_decision_stats, v_session_daily_stats, v_model_confusion,
- * and related views created in V4__analytics_views.sql.
+ * and related views created in V4__analytics_views.sql. Since V123 the views sit on rollup tables
+ * kept current by AnalyticsRollupService, so a read touches O(hours/days) rows and trails the
+ * source tables by the rollup interval.
  */
 @Repository
 public class AdminAnalyticsRepository {
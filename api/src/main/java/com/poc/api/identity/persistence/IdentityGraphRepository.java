@@ -1,13 +1,12 @@
 package com.poc.api.identity.persistence;
 
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
-import java.sql.PreparedStatement;
-import java.sql.Statement;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,63 +47,15 @@ public class IdentityGraphRepository {
     return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
   }
 
-  /**
-   * Upserts a node by (type,naturalKey) and bumps last_seen.
-   */
-  public IdentityNodeRow upsertNode(IdentityNodeType type, String naturalKey, String displayLabel, String metaJson) {
-    Optional<IdentityNodeRow> existing = findNode(type, naturalKey);
-    OffsetDateTime now = OffsetDateTime.now();
-    if (existing.isPresent()) {
-      String sql = """
-          UPDATE identity_node
-             SET display_label = COALESCE(?, display_label),
-                 meta_json = COALESCE(?::jsonb, meta_json),
-                 last_seen = ?
-           WHERE id = ?
-          """;
-      jdbc.update(sql, displayLabel, metaJson, now, existing.get().id);
-      IdentityNodeRow r = existing.get();
-      r.displayLabel = (displayLabel != null) ? displayLabel : r.displayLabel;
-      r.metaJson = (metaJson != null) ? metaJson : r.metaJson;
-      r.lastSeen = now;
-      return r;
-    }
-
-    String sql = """
-        INSERT INTO identity_node (node_type, natural_key, display_label, meta_json, created_at, last_seen)
-        VALUES (?,?,?,?::jsonb,?,?)
-        """;
-
-    KeyHolder kh = new GeneratedKeyHolder();
-    jdbc.update(con -> {
-      PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-      ps.setString(1, type.name());
-      ps.setString(2, naturalKey);
-      ps.setString(3, displayLabel);
-      ps.setString(4, metaJson);
-      ps.setObject(5, now);
-      ps.setObject(6, now);
-      return ps;
-    }, kh);
-
-    IdentityNodeRow r = new IdentityNodeRow();
-    r.id = extractId(kh);
-    r.nodeType = type;
-    r.naturalKey = naturalKey;
-    r.displayLabel = displayLabel;
-    r.metaJson = metaJson;
-    r.createdAt = now;
-    r.lastSeen = now;
-    return r;
-  }
-
-  public Optional<IdentityLinkRow> findLink(long fromNodeId, long toNodeId, IdentityLinkType linkType) {
+  public List<IdentityLinkRow> listLinksForNode(long nodeId, int limit) {
     String sql = """
         SELECT id, from_node_id, to_node_id, link_type, confidence, reason, evidence_json, first_seen, last_seen
           FROM identity_link
-         WHERE from_node_id = ? AND to_node_id = ? AND link_type = ?
+         WHERE from_node_id = ? OR to_node_id = ?
+         ORDER BY last_seen DESC
+         LIMIT ?
         """;
-    var list = jdbc.query(sql, (rs, rowNum) -> {
+    return jdbc.query(sql, (rs, rowNum) -> {
       IdentityLinkRow r = new IdentityLinkRow();
       r.id = rs.getLong("id");
       r.fromNodeId = rs.getLong("from_node_id");
@@ -116,72 +67,172 @@ public class IdentityGraphRepository {
       r.firstSeen = rs.getObject("first_seen", OffsetDateTime.class);
       r.lastSeen = rs.getObject("last_seen", OffsetDateTime.class);
       return r;
-    }, fromNodeId, toNodeId, linkType.name());
-    return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+    }, nodeId, nodeId, limit);
   }
 
+  /** Full link rows (reason, evidence, first_seen included) for the given ids, in no particular order. */
+  public List<IdentityLinkRow> listLinksByIds(List<Long> ids) {
+    if (ids == null || ids.isEmpty()) return List.of();
+    String in = String.join(",", ids.stream().map(x -> "?").toList());
+    String sql = "SELECT id, from_node_id, to_node_id, link_type, confidence, reason, evidence_json, first_seen, last_seen"
+        + " FROM identity_link WHERE id IN (" + in + ")";
+    return jdbc.query(sql, (rs, rowNum) -> {
+      IdentityLinkRow r = new IdentityLinkRow();
+      r.id = rs.getLong("id");
+      r.fromNodeId = rs.getLong("from_node_id");
+      r.toNodeId = rs.getLong("to_node_id");
+      r.linkType = IdentityLinkType.valueOf(rs.getString("link_type"));
+      r.confidence = rs.getBigDecimal("confidence").doubleValue();
+      r.reason = rs.getString("reason");
+      r.evidenceJson = rs.getString("evidence_json");
+      r.firstSeen = rs.getObject("first_seen", OffsetDateTime.class);
+      r.lastSeen = rs.getObject("last_seen", OffsetDateTime.class);
+      return r;
+    }, ids.toArray());
+  }
+
+  /** One node write for {@link #upsertNodes}. */
+  public record NodeUpsert(IdentityNodeType type, String naturalKey, String displayLabel, String metaJson) {}
+
+  /** One link write for {@link #upsertLinks}. */
+  public record LinkUpsert(long fromNodeId, long toNodeId, IdentityLinkType linkType, double confidence,
+                           String reason, String evidenceJson) {}
+
+  private static final int UPSERT_CHUNK = 1000;
+
   /**
-   * Upserts a link and bumps last_seen. Confidence is overwritten with the latest value.
+   * Upserts nodes by (type, naturalKey) and bumps last_seen: one INSERT .. ON CONFLICT .. RETURNING
+   * per chunk. Rows must be unique by (type, naturalKey); they are written in key order so
+   * concurrent writers lock rows in the same order. Returned rows carry id, type, key, label and
+   * last_seen.
    */
-  public IdentityLinkRow upsertLink(long fromNodeId, long toNodeId, IdentityLinkType linkType, double confidence, String reason, String evidenceJson) {
-    Optional<IdentityLinkRow> existing = findLink(fromNodeId, toNodeId, linkType);
-    OffsetDateTime now = OffsetDateTime.now();
-    if (existing.isPresent()) {
-      String sql = """
-          UPDATE identity_link
-             SET confidence = ?,
-                 reason = COALESCE(?, reason),
-                 evidence_json = COALESCE(?::jsonb, evidence_json),
-                 last_seen = ?
-           WHERE id = ?
+  public List<IdentityNodeRow> upsertNodes(List<NodeUpsert> rows) {
+    List<NodeUpsert> sorted = new ArrayList<>(rows);
+    sorted.sort(Comparator.comparing((NodeUpsert n) -> n.type().name()).thenComparing(NodeUpsert::naturalKey));
+    List<IdentityNodeRow> out = new ArrayList<>(sorted.size());
+    for (int from = 0; from < sorted.size(); from += UPSERT_CHUNK) {
+      List<NodeUpsert> chunk = sorted.subList(from, Math.min(sorted.size(), from + UPSERT_CHUNK));
+      String sql = "INSERT INTO identity_node (node_type, natural_key, display_label, meta_json) VALUES "
+          + String.join(",", Collections.nCopies(chunk.size(), "(?,?,?,?::jsonb)"))
+          + """
+           ON CONFLICT (node_type, natural_key) DO UPDATE
+             SET display_label = COALESCE(EXCLUDED.display_label, identity_node.display_label),
+                 meta_json = COALESCE(EXCLUDED.meta_json, identity_node.meta_json),
+                 last_seen = now()
+          RETURNING id, node_type, natural_key, display_label, last_seen
           """;
-      jdbc.update(sql, confidence, reason, evidenceJson, now, existing.get().id);
-      IdentityLinkRow r = existing.get();
-      r.confidence = confidence;
-      r.reason = (reason != null) ? reason : r.reason;
-      r.evidenceJson = (evidenceJson != null) ? evidenceJson : r.evidenceJson;
-      r.lastSeen = now;
-      return r;
+      out.addAll(jdbc.query(sql, ps -> {
+        int i = 1;
+        for (NodeUpsert n : chunk) {
+          ps.setString(i++, n.type().name());
+          ps.setString(i++, n.naturalKey());
+          ps.setString(i++, n.displayLabel());
+          ps.setString(i++, n.metaJson());
+        }
+      }, (rs, rowNum) -> {
+        IdentityNodeRow r = new IdentityNodeRow();
+        r.id = rs.getLong("id");
+        r.nodeType = IdentityNodeType.valueOf(rs.getString("node_type"));
+        r.naturalKey = rs.getString("natural_key");
+        r.displayLabel = rs.getString("display_label");
+        r.lastSeen = rs.getObject("last_seen", OffsetDateTime.class);
+        return r;
+      }));
+    }
+    return out;
+  }
+
+  /**
+   * Upserts links by (from, to, type), same contract as {@link #upsertNodes}: rows unique by
+   * (from, to, type), written in that order. Returned rows omit reason/evidence.
+   */
+  public List<IdentityLinkRow> upsertLinks(List<LinkUpsert> rows) {
+    List<LinkUpsert> sorted = new ArrayList<>(rows);
+    sorted.sort(Comparator.comparingLong(LinkUpsert::fromNodeId)
+        .thenComparingLong(LinkUpsert::toNodeId)
+        .thenComparing(l -> l.linkType().name()));
+    List<IdentityLinkRow> out = new ArrayList<>(sorted.size());
+    for (int from = 0; from < sorted.size(); from += UPSERT_CHUNK) {
+      List<LinkUpsert> chunk = sorted.subList(from, Math.min(sorted.size(), from + UPSERT_CHUNK));
+      String sql = "INSERT INTO identity_link (from_node_id, to_node_id, link_type, confidence, reason, evidence_json) VALUES "
+          + String.join(",", Collections.nCopies(chunk.size(), "(?,?,?,?,?,?::jsonb)"))
+          + """
+           ON CONFLICT (from_node_id, to_node_id, link_type) DO UPDATE
+             SET confidence = EXCLUDED.confidence,
+                 reason = COALESCE(EXCLUDED.reason, identity_link.reason),
+                 evidence_json = COALESCE(EXCLUDED.evidence_json, identity_link.evidence_json),
+                 last_seen = now()
+          RETURNING id, from_node_id, to_node_id, link_type, confidence, last_seen
+          """;
+      out.addAll(jdbc.query(sql, ps -> {
+        int i = 1;
+        for (LinkUpsert l : chunk) {
+          ps.setLong(i++, l.fromNodeId());
+          ps.setLong(i++, l.toNodeId());
+          ps.setString(i++, l.linkType().name());
+          ps.setDouble(i++, l.confidence());
+          ps.setString(i++, l.reason());
+          ps.setString(i++, l.evidenceJson());
+        }
+      }, (rs, rowNum) -> {
+        IdentityLinkRow r = new IdentityLinkRow();
+        r.id = rs.getLong("id");
+        r.fromNodeId = rs.getLong("from_node_id");
+        r.toNodeId = rs.getLong("to_node_id");
+        r.linkType = IdentityLinkType.valueOf(rs.getString("link_type"));
+        r.confidence = rs.getBigDecimal("confidence").doubleValue();
+        r.lastSeen = rs.getObject("last_seen", OffsetDateTime.class);
+        return r;
+      }));
     }
+    return out;
+  }
+
+  /** Time up to which device_profile observations are known to be in the graph (V126). */
+  public Optional<OffsetDateTime> findAppliedThrough(String source) {
+    var list = jdbc.query("SELECT applied_through FROM identity_graph_state WHERE name = ?",
+        (rs, rowNum) -> rs.getObject("applied_through", OffsetDateTime.class), source);
+    return list.isEmpty() ? Optional.empty() : Optional.ofNullable(list.get(0));
+  }
 
+  public void saveAppliedThrough(String source, OffsetDateTime appliedThrough) {
+    jdbc.update(
+        "INSERT INTO identity_graph_state(name, applied_through) VALUES (?, ?) " +
+            "ON CONFLICT (name) DO UPDATE SET applied_through = EXCLUDED.applied_through, updated_at = now()",
+        source, appliedThrough);
+  }
+
+  /**
+   * Keyset page of nodes for bulk readers (the in-memory projection); meta_json is not read.
+   */
+  public List<IdentityNodeRow> listNodesAfterId(long afterId, int limit) {
     String sql = """
-        INSERT INTO identity_link (from_node_id, to_node_id, link_type, confidence, reason, evidence_json, first_seen, last_seen)
-        VALUES (?,?,?,?,?,?::jsonb,?,?)
+        SELECT id, node_type, natural_key, display_label, last_seen
+          FROM identity_node
+         WHERE id > ?
+         ORDER BY id
+         LIMIT ?
         """;
-
-    KeyHolder kh = new GeneratedKeyHolder();
-    jdbc.update(con -> {
-      PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-      ps.setLong(1, fromNodeId);
-      ps.setLong(2, toNodeId);
-      ps.setString(3, linkType.name());
-      ps.setDouble(4, confidence);
-      ps.setString(5, reason);
-      ps.setString(6, evidenceJson);
-      ps.setObject(7, now);
-      ps.setObject(8, now);
-      return ps;
-    }, kh);
-
-    IdentityLinkRow r = new IdentityLinkRow();
-    r.id = extractId(kh);
-    r.fromNodeId = fromNodeId;
-    r.toNodeId = toNodeId;
-    r.linkType = linkType;
-    r.confidence = confidence;
-    r.reason = reason;
-    r.evidenceJson = evidenceJson;
-    r.firstSeen = now;
-    r.lastSeen = now;
-    return r;
+    return jdbc.query(sql, (rs, rowNum) -> {
+      IdentityNodeRow r = new IdentityNodeRow();
+      r.id = rs.getLong("id");
+      r.nodeType = IdentityNodeType.valueOf(rs.getString("node_type"));
+      r.naturalKey = rs.getString("natural_key");
+      r.displayLabel = rs.getString("display_label");
+      r.lastSeen = rs.getObject("last_seen", OffsetDateTime.class);
+      return r;
+    }, afterId, limit);
   }
 
-  public List<IdentityLinkRow> listLinksForNode(long nodeId, int limit) {
+  /**
+   * Keyset page of links for bulk readers; reason/evidence_json are not read.
+   */
+  public List<IdentityLinkRow> listLinksAfterId(long afterId, int limit) {
     String sql = """
-        SELECT id, from_node_id, to_node_id, link_type, confidence, reason, evidence_json, first_seen, last_seen
+        SELECT id, from_node_id, to_node_id, link_type, confidence, last_seen
           FROM identity_link
-         WHERE from_node_id = ? OR to_node_id = ?
-         ORDER BY last_seen DESC
+         WHERE id > ?
+         ORDER BY id
          LIMIT ?
         """;
     return jdbc.query(sql, (rs, rowNum) -> {
@@ -191,24 +242,11 @@ public class IdentityGraphRepository {
       r.toNodeId = rs.getLong("to_node_id");
       r.linkType = IdentityLinkType.valueOf(rs.getString("link_type"));
       r.confidence = rs.getBigDecimal("confidence").doubleValue();
-      r.reason = rs.getString("reason");
-      r.evidenceJson = rs.getString("evidence_json");
-      r.firstSeen = rs.getObject("first_seen", OffsetDateTime.class);
       r.lastSeen = rs.getObject("last_seen", OffsetDateTime.class);
       return r;
-    }, nodeId, nodeId, limit);
+    }, afterId, limit);
   }
 
-  private static long extractId(KeyHolder kh) {
-    var keys = kh.getKeys();
-    if (keys != null) {
-      Object idVal = keys.get("id");
-      if (idVal instanceof Number n) return n.longValue();
-    }
-    // Fallback for some drivers
-    Number n = kh.getKey();
-    return n != null ? n.longValue() : 0L;
-  }
 
 
 public Optional<IdentityNodeRow> findNodeById(long id) {
@@ -0,0 +1,243 @@
+package com.poc.api.identity.persistence;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * identity_rebuild_job / identity_rebuild_partition and the COPY staging tables (V127).
+ */
+@Repository
+public class IdentityRebuildRepository {
+
+  public record Job(long id, String status, long minId, long maxId, int partitions,
+                    OffsetDateTime startedAt, OffsetDateTime finishedAt) {}
+
+  /** Partition counters of one job. {@code processed} includes partitions still running. */
+  public record Totals(int done, int running, int failed, int pending,
+                       long processed, long nodes, long links) {}
+
+  public record StageNode(long seq, String nodeType, String naturalKey, String displayLabel, String metaJson) {}
+
+  public record StageLink(long seq, String fromType, String fromKey, String toType, String toKey,
+                          String linkType, double confidence, String reason, String evidenceJson) {}
+
+  public record MergeResult(long nodes, long links) {}
+
+  private final JdbcTemplate jdbc;
+
+  public IdentityRebuildRepository(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  /** Creates a job with {@code partitions} equal id ranges covering (minId - 1, maxId]. */
+  public Job createJob(long minId, long maxId, int partitions) {
+    Job job = jdbc.queryForObject(
+        "INSERT INTO identity_rebuild_job(min_id, max_id, partitions) VALUES (?,?,?) " +
+            "RETURNING id, status, min_id, max_id, partitions, started_at, finished_at",
+        (rs, rowNum) -> mapJob(rs), minId, maxId, partitions);
+    jdbc.update("""
+        INSERT INTO identity_rebuild_partition(job_id, partition_no, from_id, to_id)
+        SELECT ?, p,
+               ? - 1 + (? - ? + 1) * p / ?,
+               ? - 1 + (? - ? + 1) * (p + 1) / ?
+          FROM generate_series(0, ? - 1) AS p
+        """,
+        job.id(), minId, maxId, minId, partitions, minId, maxId, minId, partitions, partitions);
+    return job;
+  }
+
+  public Optional<Job> findLatestJob() {
+    var list = jdbc.query(
+        "SELECT id, status, min_id, max_id, partitions, started_at, finished_at " +
+            "FROM identity_rebuild_job ORDER BY id DESC LIMIT 1",
+        (rs, rowNum) -> mapJob(rs));
+    return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+  }
+
+  public void finishJob(long jobId, String status) {
+    jdbc.update("UPDATE identity_rebuild_job SET status = ?, finished_at = now() WHERE id = ?", status, jobId);
+  }
+
+  /** Puts a FAILED job back to RUNNING and gives its failed partitions a fresh set of attempts. */
+  public void reopenJob(long jobId) {
+    jdbc.update("UPDATE identity_rebuild_job SET status = 'RUNNING', finished_at = NULL WHERE id = ?", jobId);
+    jdbc.update("UPDATE identity_rebuild_partition SET attempts = 0 WHERE job_id = ? AND status = 'FAILED'", jobId);
+  }
+
+  /** Partitions a worker may still run: never started, failed below the attempt limit, or orphaned. */
+  public List<Integer> listRunnablePartitions(long jobId, int maxAttempts) {
+    return jdbc.query(
+        "SELECT partition_no FROM identity_rebuild_partition " +
+            "WHERE job_id = ? AND (status IN ('PENDING', 'RUNNING') OR (status = 'FAILED' AND attempts < ?)) " +
+            "ORDER BY partition_no",
+        (rs, rowNum) -> rs.getInt(1), jobId, maxAttempts);
+  }
+
+  /**
+   * Marks the partition RUNNING and returns its (from_id, to_id], or empty if it is DONE or out of
+   * attempts. Leftover staging rows from an earlier attempt are removed.
+   */
+  public Optional<long[]> claimPartition(long jobId, int partitionNo, int maxAttempts) {
+    var list = jdbc.query(
+        "UPDATE identity_rebuild_partition " +
+            "SET status = 'RUNNING', attempts = attempts + 1, cursor_id = NULL, processed = 0, error = NULL, started_at = now() " +
+            "WHERE job_id = ? AND partition_no = ? AND status <> 'DONE' AND attempts < ? " +
+            "RETURNING from_id, to_id",
+        (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)}, jobId, partitionNo, maxAttempts);
+    if (list.isEmpty()) return Optional.empty();
+    jdbc.update("DELETE FROM identity_node_stage WHERE job_id = ? AND partition_no = ?", jobId, partitionNo);
+    jdbc.update("DELETE FROM identity_link_stage WHERE job_id = ? AND partition_no = ?", jobId, partitionNo);
+    return Optional.of(list.get(0));
+  }
+
+  public void updateProgress(long jobId, int partitionNo, long cursorId, long processed) {
+    jdbc.update("UPDATE identity_rebuild_partition SET cursor_id = ?, processed = ? WHERE job_id = ? AND partition_no = ?",
+        cursorId, processed, jobId, partitionNo);
+  }
+
+  public void failPartition(long jobId, int partitionNo, String error) {
+    jdbc.update("UPDATE identity_rebuild_partition SET status = 'FAILED', error = ?, finished_at = now() " +
+        "WHERE job_id = ? AND partition_no = ?", error, jobId, partitionNo);
+  }
+
+  public Totals totals(long jobId) {
+    return jdbc.queryForObject("""
+        SELECT COUNT(*) FILTER (WHERE status = 'DONE') AS done,
+               COUNT(*) FILTER (WHERE status = 'RUNNING') AS running,
+               COUNT(*) FILTER (WHERE status = 'FAILED') AS failed,
+               COUNT(*) FILTER (WHERE status = 'PENDING') AS pending,
+               COALESCE(SUM(processed), 0) AS processed,
+               COALESCE(SUM(nodes), 0) AS nodes,
+               COALESCE(SUM(links), 0) AS links
+          FROM identity_rebuild_partition
+         WHERE job_id = ?
+        """,
+        (rs, rowNum) -> new Totals(rs.getInt("done"), rs.getInt("running"), rs.getInt("failed"), rs.getInt("pending"),
+            rs.getLong("processed"), rs.getLong("nodes"), rs.getLong("links")),
+        jobId);
+  }
+
+  /** COPY one page of staged nodes and links (CSV). */
+  public void copyStage(long jobId, int partitionNo, List<StageNode> nodes, List<StageLink> links) {
+    String prefix = jobId + "," + partitionNo + ",";
+    StringBuilder n = new StringBuilder(nodes.size() * 160);
+    for (StageNode r : nodes) {
+      n.append(prefix).append(r.seq()).append(',');
+      csv(n, r.nodeType()).append(',');
+      csv(n, r.naturalKey()).append(',');
+      csv(n, r.displayLabel()).append(',');
+      csv(n, r.metaJson()).append('\n');
+    }
+    StringBuilder l = new StringBuilder(links.size() * 160);
+    for (StageLink r : links) {
+      l.append(prefix).append(r.seq()).append(',');
+      csv(l, r.fromType()).append(',');
+      csv(l, r.fromKey()).append(',');
+      csv(l, r.toType()).append(',');
+      csv(l, r.toKey()).append(',');
+      csv(l, r.linkType()).append(',');
+      l.append(r.confidence()).append(',');
+      csv(l, r.reason()).append(',');
+      csv(l, r.evidenceJson()).append('\n');
+    }
+    jdbc.execute((ConnectionCallback<Void>) con -> {
+      var copy = con.unwrap(PGConnection.class).getCopyAPI();
+      try {
+        if (!nodes.isEmpty()) {
+          copy.copyIn("COPY identity_node_stage(job_id, partition_no, seq, node_type, natural_key, display_label, meta_json) " +
+              "FROM STDIN WITH (FORMAT csv)", new StringReader(n.toString()));
+        }
+        if (!links.isEmpty()) {
+          copy.copyIn("COPY identity_link_stage(job_id, partition_no, seq, from_type, from_key, to_type, to_key, link_type, " +
+              "confidence, reason, evidence_json) FROM STDIN WITH (FORMAT csv)", new StringReader(l.toString()));
+        }
+      } catch (IOException e) {
+        throw new SQLException("COPY into identity staging failed", e);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Merges a partition's staging rows into identity_node / identity_link, clears them and marks the
+   * partition DONE, all in one statement: either everything commits or the partition stays as it
+   * was. Duplicates across pages keep the row with the highest seq (the last observation), and
+   * rows are inserted in key order so concurrent merges lock shared nodes in the same order.
+   */
+  public MergeResult mergePartition(long jobId, int partitionNo, long processed) {
+    return jdbc.queryForObject("""
+        WITH nodes AS (
+          INSERT INTO identity_node (node_type, natural_key, display_label, meta_json)
+          SELECT DISTINCT ON (node_type, natural_key) node_type, natural_key, display_label, meta_json::jsonb
+            FROM identity_node_stage
+           WHERE job_id = ? AND partition_no = ?
+           ORDER BY node_type, natural_key, seq DESC
+          ON CONFLICT (node_type, natural_key) DO UPDATE
+            SET display_label = COALESCE(EXCLUDED.display_label, identity_node.display_label),
+                meta_json = COALESCE(EXCLUDED.meta_json, identity_node.meta_json),
+                last_seen = now()
+          RETURNING id, node_type, natural_key
+        ), links AS (
+          INSERT INTO identity_link (from_node_id, to_node_id, link_type, confidence, reason, evidence_json)
+          SELECT DISTINCT ON (f.id, t.id, s.link_type) f.id, t.id, s.link_type, s.confidence, s.reason, s.evidence_json::jsonb
+            FROM identity_link_stage s
+            JOIN nodes f ON f.node_type = s.from_type AND f.natural_key = s.from_key
+            JOIN nodes t ON t.node_type = s.to_type AND t.natural_key = s.to_key
+           WHERE s.job_id = ? AND s.partition_no = ?
+           ORDER BY f.id, t.id, s.link_type, s.seq DESC
+          ON CONFLICT (from_node_id, to_node_id, link_type) DO UPDATE
+            SET confidence = EXCLUDED.confidence,
+                reason = COALESCE(EXCLUDED.reason, identity_link.reason),
+                evidence_json = COALESCE(EXCLUDED.evidence_json, identity_link.evidence_json),
+                last_seen = now()
+          RETURNING 1
+        ), clear_nodes AS (
+          DELETE FROM identity_node_stage WHERE job_id = ? AND partition_no = ?
+        ), clear_links AS (
+          DELETE FROM identity_link_stage WHERE job_id = ? AND partition_no = ?
+        ), done AS (
+          UPDATE identity_rebuild_partition
+             SET status = 'DONE', processed = ?, finished_at = now(),
+                 nodes = (SELECT COUNT(*) FROM nodes), links = (SELECT COUNT(*) FROM links)
+           WHERE job_id = ? AND partition_no = ?
+        )
+        SELECT (SELECT COUNT(*) FROM nodes) AS nodes, (SELECT COUNT(*) FROM links) AS links
+        """,
+        (rs, rowNum) -> new MergeResult(rs.getLong("nodes"), rs.getLong("links")),
+        jobId, partitionNo, jobId, partitionNo, jobId, partitionNo, jobId, partitionNo,
+        processed, jobId, partitionNo);
+  }
+
+  private static StringBuilder csv(StringBuilder sb, String v) {
+    // Unquoted empty = NULL in CSV COPY; everything else is quoted with doubled quotes.
+    if (v == null) return sb;
+    sb.append('"');
+    for (int i = 0; i < v.length(); i++) {
+      char c = v.charAt(i);
+      if (c == '"') sb.append('"');
+      sb.append(c);
+    }
+    return sb.append('"');
+  }
+
+  private static Job mapJob(ResultSet rs) throws SQLException {
+    return new Job(
+        rs.getLong("id"),
+        rs.getString("status"),
+        rs.getLong("min_id"),
+        rs.getLong("max_id"),
+        rs.getInt("partitions"),
+        rs.getObject("started_at", OffsetDateTime.class),
+        rs.getObject("finished_at", OffsetDateTime.class));
+  }
+}
@@ -0,0 +1,551 @@
+package com.poc.api.identity.service;
+
+import com.poc.api.identity.persistence.IdentityGraphRepository;
+import com.poc.api.identity.persistence.IdentityLinkRow;
+import com.poc.api.identity.persistence.IdentityLinkType;
+import com.poc.api.identity.persistence.IdentityNodeRow;
+import com.poc.api.identity.persistence.IdentityNodeType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory projection of identity_node / identity_link in compressed sparse row (CSR) form, so
+ * {@link IdentityGraphService#cluster} is a traversal over int arrays instead of one query per
+ * visited node.
+ *
+ * Nodes get dense indexes 0..n-1. Link attributes live in parallel primitive arrays; the adjacency
+ * of node i is {@code adjNode/adjLink[offsets[i] .. offsets[i+1])}, each link listed under both
+ * endpoints and ordered by last_seen desc so {@code limitPerNode} keeps the same meaning as the
+ * SQL path. That is ~41 bytes per link (25 attributes + 2 x 8 adjacency) plus per-node key/label
+ * strings; {@link #stats()} reports the actual figure.
+ *
+ * Loaded in keyset pages after startup, then kept current from {@link #observe} events (queued by
+ * writers, applied every {@code apply-interval-ms} by one thread):
+ * <ul>
+ *   <li>confidence / last_seen of a published link are updated in place. The adjacency is not
+ *   re-sorted for these: a link whose last_seen moved keeps its position until the next structural
+ *   publish, so until then {@code limitPerNode} may cut on slightly stale recency;</li>
+ *   <li>new nodes and links are appended to the attribute arrays and become visible when the
+ *   adjacency is rebuilt (O(nodes + links)) at the end of that apply pass.</li>
+ * </ul>
+ * Readers only ever see an immutable {@link Snapshot}. Only what the traversal needs is held in
+ * memory; node meta_json/created_at/last_seen and link reason/evidence/first_seen are read back by
+ * {@link IdentityGraphService#cluster} for the rows it returns. If the event queue overflows the
+ * projection reloads from the database.
+ */
+@Component
+public class IdentityGraphProjection {
+
+  private static final Logger log = LoggerFactory.getLogger(IdentityGraphProjection.class);
+
+  private static final IdentityNodeType[] NODE_TYPES = IdentityNodeType.values();
+  private static final IdentityLinkType[] LINK_TYPES = IdentityLinkType.values();
+  // last_seen is held as int seconds since 2020-01-01 UTC.
+  private static final long EPOCH_BASE = 1_577_836_800L;
+  private static final int LINK_ATTR_BYTES = 8 + 1 + 4 + 4 + 4 + 4;
+
+  public record Stats(boolean ready,
+                      int nodes,
+                      int links,
+                      long nodeBytes,
+                      long linkBytes,
+                      long bytesPerMillionLinks,
+                      long loadMillis,
+                      long lastBuildMillis,
+                      int pendingEvents) {}
+
+  record NodeKey(byte type, String key) {}
+
+  private record Batch(List<IdentityNodeRow> nodes, List<IdentityLinkRow> links) {}
+
+  private final IdentityGraphRepository repository;
+  private final boolean enabled;
+  private final int pageSize;
+  private final int maxPending;
+  private final Timer clusterTimer;
+  private final Counter droppedEvents;
+
+  private final ConcurrentLinkedQueue<Batch> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final AtomicBoolean loading = new AtomicBoolean();
+  private volatile boolean reloadRequested;
+  private volatile boolean ready;
+  private volatile long loadMillis;
+  private volatile long lastBuildMillis;
+
+  private Graph graph = new Graph();
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+  public IdentityGraphProjection(IdentityGraphRepository repository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${poc.identity.projection.enabled:true}") boolean enabled,
+                                 @Value("${poc.identity.projection.page-size:50000}") int pageSize,
+                                 @Value("${poc.identity.projection.max-pending:100000}") int maxPending) {
+    this.repository = repository;
+    this.enabled = enabled;
+    this.pageSize = Math.max(1, pageSize);
+    this.maxPending = Math.max(1, maxPending);
+    this.clusterTimer = Timer.builder("identity.projection.cluster").register(meterRegistry);
+    this.droppedEvents = Counter.builder("identity.projection.dropped").register(meterRegistry);
+    Gauge.builder("identity.projection.nodes", this, p -> p.snapshot.nodeCount).register(meterRegistry);
+    Gauge.builder("identity.projection.links", this, p -> p.snapshot.linkCount).register(meterRegistry);
+    Gauge.builder("identity.projection.bytes", this, p -> p.snapshot.nodeBytes + p.snapshot.linkBytes()).register(meterRegistry);
+    Gauge.builder("identity.projection.pending", pendingCount, AtomicInteger::get).register(meterRegistry);
+  }
+
+  /** True once the initial load has been published; until then callers use the SQL path. */
+  public boolean isReady() {
+    return enabled && ready;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onStartup() {
+    if (enabled) reloadAsync();
+  }
+
+  /** Queues the rows a writer just upserted. Never blocks; overflow schedules a full reload. */
+  public void observe(List<IdentityNodeRow> nodes, List<IdentityLinkRow> links) {
+    if (!enabled) return;
+    if (pendingCount.incrementAndGet() > maxPending) {
+      pendingCount.decrementAndGet();
+      droppedEvents.increment();
+      reloadRequested = true;
+      return;
+    }
+    pending.add(new Batch(nodes, links));
+  }
+
+  @Scheduled(fixedDelayString = "${poc.identity.projection.apply-interval-ms:1000}")
+  public void applyPending() {
+    if (!ready || loading.get()) return;
+    if (reloadRequested) {
+      reloadAsync();
+      return;
+    }
+    if (pending.isEmpty() || !writeLock.tryLock()) return;
+    try {
+      boolean structural = false;
+      Batch b;
+      while ((b = pending.poll()) != null) {
+        pendingCount.decrementAndGet();
+        structural |= apply(graph, b);
+      }
+      if (structural) publish();
+    } catch (Exception e) {
+      log.warn("[identity] projection apply failed, reloading: {}", e.getMessage());
+      reloadRequested = true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public void reloadAsync() {
+    if (!loading.compareAndSet(false, true)) return;
+    Thread.ofPlatform().name("identity-projection-load").daemon(true).start(() -> {
+      try {
+        reload();
+      } catch (Exception e) {
+        log.warn("[identity] projection load failed; cluster queries stay on SQL: {}", e.getMessage());
+      } finally {
+        loading.set(false);
+      }
+    });
+  }
+
+  /**
+   * Reads both tables in keyset pages and swaps in the result. Events queued meanwhile are applied
+   * afterwards (they are idempotent upserts).
+   */
+  public void reload() {
+    long t0 = System.nanoTime();
+    reloadRequested = false;
+    Graph g = new Graph();
+    long after = 0;
+    while (true) {
+      List<IdentityNodeRow> page = repository.listNodesAfterId(after, pageSize);
+      for (IdentityNodeRow r : page) g.appendNode(r);
+      if (page.size() < pageSize) break;
+      after = page.get(page.size() - 1).id;
+    }
+    g.loadedCount = g.nodeCount;
+    after = 0;
+    int orphans = 0;
+    while (true) {
+      List<IdentityLinkRow> page = repository.listLinksAfterId(after, pageSize);
+      for (IdentityLinkRow r : page) {
+        int f = g.denseOf(r.fromNodeId);
+        int t = g.denseOf(r.toNodeId);
+        if (f < 0 || t < 0) orphans++;
+        else g.appendLink(r, f, t);
+      }
+      if (page.size() < pageSize) break;
+      after = page.get(page.size() - 1).id;
+    }
+    writeLock.lock();
+    try {
+      graph = g;
+      publish();
+    } finally {
+      writeLock.unlock();
+    }
+    ready = true;
+    loadMillis = (System.nanoTime() - t0) / 1_000_000;
+    Snapshot s = snapshot;
+    log.info("[identity] projection loaded: nodes={} links={} orphanLinks={} bytes={} in {}ms",
+        s.nodeCount, s.linkCount, orphans, s.nodeBytes + s.linkBytes(), loadMillis);
+  }
+
+  /** Applies queued events synchronously (tests / benchmarks). */
+  void applyNow(List<IdentityNodeRow> nodes, List<IdentityLinkRow> links) {
+    writeLock.lock();
+    try {
+      if (apply(graph, new Batch(nodes, links))) publish();
+      ready = true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private boolean apply(Graph g, Batch b) {
+    boolean structural = false;
+    Map<Long, Integer> local = new HashMap<>();
+    for (IdentityNodeRow r : b.nodes()) {
+      NodeKey k = new NodeKey((byte) r.nodeType.ordinal(), r.naturalKey);
+      Integer idx = g.byKey.get(k);
+      if (idx == null) {
+        idx = g.appendNode(r);
+        g.appended.put(r.id, idx);
+        structural = true;
+      } else if (r.displayLabel != null) {
+        g.setLabel(idx, r.displayLabel);
+      }
+      local.put(r.id, idx);
+    }
+    Snapshot s = snapshot;
+    for (IdentityLinkRow r : b.links()) {
+      Integer f = local.get(r.fromNodeId);
+      Integer t = local.get(r.toNodeId);
+      int from = f != null ? f : g.denseOf(r.fromNodeId);
+      int to = t != null ? t : g.denseOf(r.toNodeId);
+      if (from < 0 || to < 0) continue;
+      int l = g.unpublished.getOrDefault(r.id, -1);
+      if (l < 0) l = s.findLink(from, to, r.id);
+      if (l >= 0) {
+        g.linkConfidence[l] = (float) r.confidence;
+        g.linkLastSeen[l] = toSeconds(r.lastSeen);
+      } else {
+        g.unpublished.put(r.id, g.appendLink(r, from, to));
+        structural = true;
+      }
+    }
+    return structural;
+  }
+
+  private void publish() {
+    long t0 = System.nanoTime();
+    snapshot = Snapshot.build(graph);
+    graph.unpublished.clear();
+    lastBuildMillis = (System.nanoTime() - t0) / 1_000_000;
+  }
+
+  public IdentityGraphService.ClusterResult cluster(IdentityNodeType type, String key, int depth, int limitPerNode) {
+    long t0 = System.nanoTime();
+    try {
+      return snapshot.cluster(type, key, depth, limitPerNode);
+    } finally {
+      clusterTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public Stats stats() {
+    Snapshot s = snapshot;
+    long linkBytes = s.linkBytes();
+    long perMillion = s.linkCount == 0 ? 0 : (long) (linkBytes * (1_000_000.0 / s.linkCount));
+    return new Stats(isReady(), s.nodeCount, s.linkCount, s.nodeBytes, linkBytes, perMillion,
+        loadMillis, lastBuildMillis, pendingCount.get());
+  }
+
+  static int toSeconds(OffsetDateTime t) {
+    long s = (t != null ? t.toEpochSecond() : Instant.now().getEpochSecond()) - EPOCH_BASE;
+    return (int) Math.max(0, Math.min(Integer.MAX_VALUE, s));
+  }
+
+  /**
+   * Writer-side state: growable attribute arrays plus the key index. Only touched under the write
+   * lock (or by the loader before it is published); arrays are replaced, never shrunk, on growth.
+   */
+  static final class Graph {
+    // Shared with readers: entries may point past the published node count until the next publish.
+    final ConcurrentHashMap<NodeKey, Integer> byKey = new ConcurrentHashMap<>();
+    // identity_node.id -> dense index for nodes appended after the load (loaded ids are sorted).
+    final Map<Long, Integer> appended = new HashMap<>();
+    // identity_link.id -> index for links not yet in a published adjacency.
+    final Map<Long, Integer> unpublished = new HashMap<>();
+
+    int nodeCount;
+    int loadedCount;
+    long[] nodeIds = new long[16];
+    byte[] nodeTypes = new byte[16];
+    String[] nodeKeys = new String[16];
+    String[] nodeLabels = new String[16];
+    long nodeStringBytes;
+
+    int linkCount;
+    long[] linkIds = new long[16];
+    byte[] linkTypes = new byte[16];
+    float[] linkConfidence = new float[16];
+    int[] linkLastSeen = new int[16];
+    int[] linkFrom = new int[16];
+    int[] linkTo = new int[16];
+
+    int appendNode(IdentityNodeRow r) {
+      if (nodeCount == nodeIds.length) {
+        int cap = nodeIds.length * 2;
+        nodeIds = Arrays.copyOf(nodeIds, cap);
+        nodeTypes = Arrays.copyOf(nodeTypes, cap);
+        nodeKeys = Arrays.copyOf(nodeKeys, cap);
+        nodeLabels = Arrays.copyOf(nodeLabels, cap);
+      }
+      int i = nodeCount;
+      nodeIds[i] = r.id;
+      nodeTypes[i] = (byte) r.nodeType.ordinal();
+      nodeKeys[i] = r.naturalKey;
+      nodeLabels[i] = r.displayLabel;
+      nodeStringBytes += stringBytes(r.naturalKey) + stringBytes(r.displayLabel);
+      byKey.put(new NodeKey(nodeTypes[i], r.naturalKey), i);
+      nodeCount = i + 1;
+      return i;
+    }
+
+    void setLabel(int i, String label) {
+      nodeStringBytes += stringBytes(label) - stringBytes(nodeLabels[i]);
+      nodeLabels[i] = label;
+    }
+
+    int appendLink(IdentityLinkRow r, int from, int to) {
+      if (linkCount == linkIds.length) {
+        int cap = linkIds.length * 2;
+        linkIds = Arrays.copyOf(linkIds, cap);
+        linkTypes = Arrays.copyOf(linkTypes, cap);
+        linkConfidence = Arrays.copyOf(linkConfidence, cap);
+        linkLastSeen = Arrays.copyOf(linkLastSeen, cap);
+        linkFrom = Arrays.copyOf(linkFrom, cap);
+        linkTo = Arrays.copyOf(linkTo, cap);
+      }
+      int l = linkCount;
+      linkIds[l] = r.id;
+      linkTypes[l] = (byte) r.linkType.ordinal();
+      linkConfidence[l] = (float) r.confidence;
+      linkLastSeen[l] = toSeconds(r.lastSeen);
+      linkFrom[l] = from;
+      linkTo[l] = to;
+      linkCount = l + 1;
+      return l;
+    }
+
+    int denseOf(long nodeId) {
+      Integer a = appended.get(nodeId);
+      if (a != null) return a;
+      int i = Arrays.binarySearch(nodeIds, 0, loadedCount, nodeId);
+      return i >= 0 ? i : -1;
+    }
+
+    private static long stringBytes(String s) {
+      // Compact Latin-1 string: header + value array header + bytes.
+      return s == null ? 0 : 40 + s.length();
+    }
+  }
+
+  /** Immutable view over a prefix of the writer arrays plus the adjacency built for it. */
+  static final class Snapshot {
+
+    static final Snapshot EMPTY = build(new Graph());
+
+    final Map<NodeKey, Integer> byKey;
+    final int nodeCount;
+    final long[] nodeIds;
+    final byte[] nodeTypes;
+    final String[] nodeKeys;
+    final String[] nodeLabels;
+    final long nodeBytes;
+
+    final int linkCount;
+    final long[] linkIds;
+    final byte[] linkTypes;
+    final float[] linkConfidence;
+    final int[] linkLastSeen;
+    final int[] linkFrom;
+    final int[] linkTo;
+
+    final int[] offsets;
+    final int[] adjNode;
+    final int[] adjLink;
+
+    private Snapshot(Graph g, int[] offsets, int[] adjNode, int[] adjLink) {
+      this.byKey = g.byKey;
+      this.nodeCount = g.nodeCount;
+      this.nodeIds = g.nodeIds;
+      this.nodeTypes = g.nodeTypes;
+      this.nodeKeys = g.nodeKeys;
+      this.nodeLabels = g.nodeLabels;
+      // ids/types/key+label refs/offsets + key index entry (CHM node, NodeKey, Integer) + strings
+      this.nodeBytes = (long) g.nodeIds.length * (8 + 1 + 4 + 4) + (long) offsets.length * 4
+          + (long) g.nodeCount * (32 + 24 + 16) + g.nodeStringBytes;
+      this.linkCount = g.linkCount;
+      this.linkIds = g.linkIds;
+      this.linkTypes = g.linkTypes;
+      this.linkConfidence = g.linkConfidence;
+      this.linkLastSeen = g.linkLastSeen;
+      this.linkFrom = g.linkFrom;
+      this.linkTo = g.linkTo;
+      this.offsets = offsets;
+      this.adjNode = adjNode;
+      this.adjLink = adjLink;
+    }
+
+    long linkBytes() {
+      return (long) linkIds.length * LINK_ATTR_BYTES + (long) adjNode.length * 8;
+    }
+
+    static Snapshot build(Graph g) {
+      int n = g.nodeCount;
+      int m = g.linkCount;
+      int[] offsets = new int[n + 1];
+      for (int l = 0; l < m; l++) {
+        offsets[g.linkFrom[l] + 1]++;
+        if (g.linkTo[l] != g.linkFrom[l]) offsets[g.linkTo[l] + 1]++;
+      }
+      int maxDegree = 0;
+      for (int i = 0; i < n; i++) {
+        maxDegree = Math.max(maxDegree, offsets[i + 1]);
+        offsets[i + 1] += offsets[i];
+      }
+      int[] adjNode = new int[offsets[n]];
+      int[] adjLink = new int[offsets[n]];
+      int[] fill = Arrays.copyOf(offsets, n);
+      for (int l = 0; l < m; l++) {
+        int f = g.linkFrom[l];
+        int t = g.linkTo[l];
+        adjNode[fill[f]] = t;
+        adjLink[fill[f]++] = l;
+        if (t != f) {
+          adjNode[fill[t]] = f;
+          adjLink[fill[t]++] = l;
+        }
+      }
+      // Most recently seen first, as ORDER BY last_seen DESC in the SQL path.
+      long[] keys = new long[maxDegree];
+      int[] tmpNode = new int[maxDegree];
+      int[] tmpLink = new int[maxDegree];
+      for (int i = 0; i < n; i++) {
+        int start = offsets[i];
+        int deg = offsets[i + 1] - start;
+        if (deg < 2) continue;
+        for (int k = 0; k < deg; k++) {
+          keys[k] = ((long) (Integer.MAX_VALUE - g.linkLastSeen[adjLink[start + k]]) << 32) | k;
+        }
+        Arrays.sort(keys, 0, deg);
+        System.arraycopy(adjNode, start, tmpNode, 0, deg);
+        System.arraycopy(adjLink, start, tmpLink, 0, deg);
+        for (int k = 0; k < deg; k++) {
+          int src = (int) keys[k];
+          adjNode[start + k] = tmpNode[src];
+          adjLink[start + k] = tmpLink[src];
+        }
+      }
+      return new Snapshot(g, offsets, adjNode, adjLink);
+    }
+
+    /** Index of the published link with this id between a and b, scanning the smaller adjacency. */
+    int findLink(int a, int b, long linkId) {
+      if (a >= nodeCount || b >= nodeCount) return -1;
+      int v = (offsets[a + 1] - offsets[a]) <= (offsets[b + 1] - offsets[b]) ? a : b;
+      for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+        int l = adjLink[k];
+        if (linkIds[l] == linkId) return l;
+      }
+      return -1;
+    }
+
+    IdentityGraphService.ClusterResult cluster(IdentityNodeType type, String key, int depth, int limitPerNode) {
+      Integer rootIdx = byKey.get(new NodeKey((byte) type.ordinal(), key));
+      if (rootIdx == null || rootIdx >= nodeCount) return IdentityGraphService.ClusterResult.notFound(type, key);
+
+      Map<Integer, Integer> dist = new HashMap<>();
+      Map<Integer, IdentityLinkRow> links = new LinkedHashMap<>();
+      List<Integer> order = new ArrayList<>();
+      ArrayDeque<Integer> q = new ArrayDeque<>();
+      dist.put(rootIdx, 0);
+      order.add(rootIdx);
+      q.add(rootIdx);
+
+      while (!q.isEmpty()) {
+        int cur = q.removeFirst();
+        int d = dist.get(cur);
+        if (d >= depth) continue;
+        int end = Math.min(offsets[cur + 1], offsets[cur] + Math.max(0, limitPerNode));
+        for (int k = offsets[cur]; k < end; k++) {
+          int l = adjLink[k];
+          links.computeIfAbsent(l, this::linkRow);
+          int other = adjNode[k];
+          if (!dist.containsKey(other)) {
+            dist.put(other, d + 1);
+            order.add(other);
+            q.addLast(other);
+          }
+        }
+      }
+
+      List<IdentityNodeRow> nodes = new ArrayList<>(order.size());
+      for (int i : order) nodes.add(nodeRow(i));
+      return new IdentityGraphService.ClusterResult(nodes.get(0), nodes, new ArrayList<>(links.values()), null);
+    }
+
+    private IdentityNodeRow nodeRow(int i) {
+      IdentityNodeRow r = new IdentityNodeRow();
+      r.id = nodeIds[i];
+      r.nodeType = NODE_TYPES[nodeTypes[i]];
+      r.naturalKey = nodeKeys[i];
+      r.displayLabel = nodeLabels[i];
+      return r;
+    }
+
+    private IdentityLinkRow linkRow(int l) {
+      IdentityLinkRow r = new IdentityLinkRow();
+      r.id = linkIds[l];
+      r.fromNodeId = nodeIds[linkFrom[l]];
+      r.toNodeId = nodeIds[linkTo[l]];
+      r.linkType = LINK_TYPES[linkTypes[l]];
+      r.confidence = linkConfidence[l];
+      r.lastSeen = OffsetDateTime.ofInstant(Instant.ofEpochSecond(EPOCH_BASE + linkLastSeen[l]), ZoneOffset.UTC);
+      return r;
+    }
+  }
+}
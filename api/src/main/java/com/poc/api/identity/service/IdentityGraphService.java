@@ -27,10 +27,14 @@ public class IdentityGraphService {
 
   private final IdentityGraphRepository graphRepo;
   private final TlsFamilyRepository tlsFamilyRepo;
+  private final IdentityGraphProjection projection;
 
-  public IdentityGraphService(IdentityGraphRepository graphRepo, TlsFamilyRepository tlsFamilyRepo) {
+  public IdentityGraphService(IdentityGraphRepository graphRepo,
+                              TlsFamilyRepository tlsFamilyRepo,
+                              IdentityGraphProjection projection) {
     this.graphRepo = graphRepo;
     this.tlsFamilyRepo = tlsFamilyRepo;
+    this.projection = projection;
   }
 
   /**
@@ -38,120 +42,130 @@ public class IdentityGraphService {
    */
   public void observeDeviceProfile(DeviceProfile dp) {
     if (dp == null) return;
+    observeDeviceProfiles(List.of(dp));
+  }
+
+  /**
+   * Graph rows for a batch of device profile observations, written with one multi-row upsert per
+   * table (plus one TLS family lookup). Nodes and links shared by several profiles, e.g. a user's
+   * node or a common TLS family, are written once with the last profile's values.
+   *
+   * @return number of profiles written (0 if the batch failed; failures are logged, not thrown)
+   */
+  public int observeDeviceProfiles(List<DeviceProfile> profiles) {
+    if (profiles == null || profiles.isEmpty()) return 0;
     try {
+      Set<String> fps = new HashSet<>();
+      for (DeviceProfile dp : profiles) {
+        if (dp.tlsFp != null && !dp.tlsFp.isBlank()) fps.add(dp.tlsFp);
+      }
+      Map<String, TlsFamilyRepository.FamilyLookup> families = tlsFamilyRepo.findFamiliesByRawFps(fps);
 
-      // USER node
-      IdentityNodeRow user = graphRepo.upsertNode(
-          IdentityNodeType.USER,
-          safe(dp.userId),
-          safe(dp.userId),
-          null
-      );
-
-      // DEVICE node (use device_profile.id as stable natural key for this PoC)
-      String deviceKey = "device_profile:" + dp.id;
-      String deviceLabel = (dp.uaFamily != null ? dp.uaFamily : "device") + " • " + dp.screenW + "x" + dp.screenH;
-      String deviceMeta = buildJsonMeta(Map.of(
-          "deviceProfileId", String.valueOf(dp.id),
-          "tlsFp", safe(dp.tlsFp),
-          "uaFamily", safe(dp.uaFamily),
-          "uaVersion", safe(dp.uaVersion),
-          "canvasHash", safe(dp.canvasHash),
-          "webglHash", safe(dp.webglHash),
-          "tzOffset", String.valueOf(dp.tzOffset)
-      ));
-      IdentityNodeRow device = graphRepo.upsertNode(
-          IdentityNodeType.DEVICE,
-          deviceKey,
-          deviceLabel,
-          deviceMeta
-      );
-
-      // USER <-> DEVICE link (hard, confidence=1 for PoC)
-      graphRepo.upsertLink(
-          user.id,
-          device.id,
-          IdentityLinkType.USER_DEVICE,
-          1.0,
-          "device_profile observation",
-          buildJsonMeta(Map.of("source", "device_profile", "deviceProfileId", String.valueOf(dp.id))));
-
-      // BEHAVIOR_CLUSTER node (placeholder per-user cluster key for now)
-      String behKey = "behavior_cluster:user:" + safe(dp.userId);
-      IdentityNodeRow beh = graphRepo.upsertNode(
-          IdentityNodeType.BEHAVIOR_CLUSTER,
-          behKey,
-          "Behavior cluster • " + safe(dp.userId),
-          buildJsonMeta(Map.of("userId", safe(dp.userId), "kind", "per-user-baseline"))
-      );
-
-      graphRepo.upsertLink(
-          user.id,
-          beh.id,
-          IdentityLinkType.USER_BEHAVIOR_CLUSTER,
-          0.85,
-          "per-user behavior baseline cluster",
-          buildJsonMeta(Map.of("source", "behavior_baseline")));
-
-      graphRepo.upsertLink(
-          device.id,
-          beh.id,
-          IdentityLinkType.DEVICE_BEHAVIOR_CLUSTER,
-          0.65,
-          "device observed under user baseline",
-          buildJsonMeta(Map.of("source", "device_profile")));
-
-      // DEVICE / USER <-> TLS_FAMILY if we can map the raw FP
-      if (dp.tlsFp != null && !dp.tlsFp.isBlank()) {
-        Optional<TlsFamilyRepository.FamilyLookup> famOpt = tlsFamilyRepo.findFamilyByRawFp(dp.tlsFp);
-        if (famOpt.isPresent()) {
-          var fam = famOpt.get();
-          IdentityNodeRow famNode = graphRepo.upsertNode(
-              IdentityNodeType.TLS_FAMILY,
-              fam.familyId,
-              "TLS Family • " + safe(fam.familyKey),
-              buildJsonMeta(Map.of(
-                  "familyId", fam.familyId,
-                  "familyKey", safe(fam.familyKey),
-                  "sampleTlsFp", safe(fam.sampleTlsFp)
-              ))
-          );
-
-          double base = (fam.stability != null) ? fam.stability : (fam.confidence != null ? fam.confidence : 0.6);
-          double deviceConf = clamp01(0.55 + 0.45 * base);
-          double userConf = clamp01(deviceConf + 0.10);
-
-          graphRepo.upsertLink(
-              device.id,
-              famNode.id,
-              IdentityLinkType.DEVICE_TLS_FAMILY,
-              deviceConf,
-              "device tls_fp maps to tls_family",
-              buildJsonMeta(Map.of("rawFp", safe(dp.tlsFp), "familyId", fam.familyId)));
-
-          graphRepo.upsertLink(
-              user.id,
-              famNode.id,
-              IdentityLinkType.USER_TLS_FAMILY,
-              userConf,
-              "user observed with tls_family",
-              buildJsonMeta(Map.of("rawFp", safe(dp.tlsFp), "familyId", fam.familyId)));
-
-          graphRepo.upsertLink(
-              famNode.id,
-              beh.id,
-              IdentityLinkType.TLS_FAMILY_BEHAVIOR_CLUSTER,
-              clamp01(0.40 + 0.40 * base),
-              "tls_family seen with user behavior cluster",
-              buildJsonMeta(Map.of("userId", safe(dp.userId))));
-        }
+      Map<NodeRef, IdentityGraphRepository.NodeUpsert> nodeWrites = new LinkedHashMap<>();
+      List<PendingLink> linkWrites = new ArrayList<>();
+      for (DeviceProfile dp : profiles) {
+        describe(dp, families.get(dp.tlsFp), nodeWrites, linkWrites);
       }
 
+      Map<NodeRef, IdentityNodeRow> nodes = new HashMap<>();
+      for (IdentityNodeRow n : graphRepo.upsertNodes(new ArrayList<>(nodeWrites.values()))) {
+        nodes.put(new NodeRef(n.nodeType, n.naturalKey), n);
+      }
+      Map<String, IdentityGraphRepository.LinkUpsert> links = new LinkedHashMap<>();
+      for (PendingLink l : linkWrites) {
+        long from = nodes.get(l.from()).id;
+        long to = nodes.get(l.to()).id;
+        links.put(from + ":" + to + ":" + l.type(),
+            new IdentityGraphRepository.LinkUpsert(from, to, l.type(), l.confidence(), l.reason(), l.evidenceJson()));
+      }
+      List<IdentityLinkRow> written = graphRepo.upsertLinks(new ArrayList<>(links.values()));
+      if (projection != null) projection.observe(new ArrayList<>(nodes.values()), written);
+      return profiles.size();
     } catch (Exception e) {
-      log.warn("[identity] best-effort observeDeviceProfile failed: {}", e.getMessage());
+      log.warn("[identity] best-effort observeDeviceProfiles failed for {} profiles: {}", profiles.size(), e.getMessage());
+      return 0;
     }
   }
 
+  record NodeRef(IdentityNodeType type, String key) {}
+
+  record PendingLink(NodeRef from, NodeRef to, IdentityLinkType type, double confidence,
+                     String reason, String evidenceJson) {}
+
+  /** The nodes and links one observation implies (EPIC 10.2 rules). */
+  static void describe(DeviceProfile dp,
+                       TlsFamilyRepository.FamilyLookup fam,
+                       Map<NodeRef, IdentityGraphRepository.NodeUpsert> nodes,
+                       List<PendingLink> links) {
+    // USER node
+    NodeRef user = node(nodes, IdentityNodeType.USER, safe(dp.userId), safe(dp.userId), null);
+
+    // DEVICE node (use device_profile.id as stable natural key for this PoC)
+    String deviceLabel = (dp.uaFamily != null ? dp.uaFamily : "device") + " • " + dp.screenW + "x" + dp.screenH;
+    String deviceMeta = buildJsonMeta(Map.of(
+        "deviceProfileId", String.valueOf(dp.id),
+        "tlsFp", safe(dp.tlsFp),
+        "uaFamily", safe(dp.uaFamily),
+        "uaVersion", safe(dp.uaVersion),
+        "canvasHash", safe(dp.canvasHash),
+        "webglHash", safe(dp.webglHash),
+        "tzOffset", String.valueOf(dp.tzOffset)
+    ));
+    NodeRef device = node(nodes, IdentityNodeType.DEVICE, "device_profile:" + dp.id, deviceLabel, deviceMeta);
+
+    // USER <-> DEVICE link (hard, confidence=1 for PoC)
+    links.add(new PendingLink(user, device, IdentityLinkType.USER_DEVICE, 1.0,
+        "device_profile observation",
+        buildJsonMeta(Map.of("source", "device_profile", "deviceProfileId", String.valueOf(dp.id)))));
+
+    // BEHAVIOR_CLUSTER node (placeholder per-user cluster key for now)
+    NodeRef beh = node(nodes, IdentityNodeType.BEHAVIOR_CLUSTER,
+        "behavior_cluster:user:" + safe(dp.userId),
+        "Behavior cluster • " + safe(dp.userId),
+        buildJsonMeta(Map.of("userId", safe(dp.userId), "kind", "per-user-baseline")));
+
+    links.add(new PendingLink(user, beh, IdentityLinkType.USER_BEHAVIOR_CLUSTER, 0.85,
+        "per-user behavior baseline cluster",
+        buildJsonMeta(Map.of("source", "behavior_baseline"))));
+
+    links.add(new PendingLink(device, beh, IdentityLinkType.DEVICE_BEHAVIOR_CLUSTER, 0.65,
+        "device observed under user baseline",
+        buildJsonMeta(Map.of("source", "device_profile"))));
+
+    // DEVICE / USER <-> TLS_FAMILY if we can map the raw FP
+    if (fam == null) return;
+    NodeRef famNode = node(nodes, IdentityNodeType.TLS_FAMILY, fam.familyId,
+        "TLS Family • " + safe(fam.familyKey),
+        buildJsonMeta(Map.of(
+            "familyId", fam.familyId,
+            "familyKey", safe(fam.familyKey),
+            "sampleTlsFp", safe(fam.sampleTlsFp)
+        )));
+
+    double base = (fam.stability != null) ? fam.stability : (fam.confidence != null ? fam.confidence : 0.6);
+    double deviceConf = clamp01(0.55 + 0.45 * base);
+    double userConf = clamp01(deviceConf + 0.10);
+
+    links.add(new PendingLink(device, famNode, IdentityLinkType.DEVICE_TLS_FAMILY, deviceConf,
+        "device tls_fp maps to tls_family",
+        buildJsonMeta(Map.of("rawFp", safe(dp.tlsFp), "familyId", fam.familyId))));
+
+    links.add(new PendingLink(user, famNode, IdentityLinkType.USER_TLS_FAMILY, userConf,
+        "user observed with tls_family",
+        buildJsonMeta(Map.of("rawFp", safe(dp.tlsFp), "familyId", fam.familyId))));
+
+    links.add(new PendingLink(famNode, beh, IdentityLinkType.TLS_FAMILY_BEHAVIOR_CLUSTER, clamp01(0.40 + 0.40 * base),
+        "tls_family seen with user behavior cluster",
+        buildJsonMeta(Map.of("userId", safe(dp.userId)))));
+  }
+
+  private static NodeRef node(Map<NodeRef, IdentityGraphRepository.NodeUpsert> nodes,
+                              IdentityNodeType type, String key, String label, String metaJson) {
+    NodeRef ref = new NodeRef(type, key);
+    nodes.put(ref, new IdentityGraphRepository.NodeUpsert(type, key, label, metaJson));
+    return ref;
+  }
+
   public RebuildResult rebuildFromDeviceProfiles(DeviceProfileRepository dpRepo, long afterId, int batchSize, int maxBatches) {
     long cursor = afterId;
     long processed = 0;
@@ -160,8 +174,8 @@ public class IdentityGraphService {
     for (int i = 0; i < maxBatches; i++) {
       List<DeviceProfile> rows = dpRepo.listAfterId(cursor, batchSize);
       if (rows.isEmpty()) break;
+      observeDeviceProfiles(rows);
       for (DeviceProfile dp : rows) {
-        observeDeviceProfile(dp);
         processed++;
         if (dp.id != null) cursor = Math.max(cursor, dp.id);
       }
@@ -172,7 +186,17 @@ public class IdentityGraphService {
     return new RebuildResult(processed, batches, complete, cursor);
   }
 
+  /**
+   * Served from {@link IdentityGraphProjection} once it is loaded; the traversal runs in memory and
+   * the visited nodes and links are then read back with one IN-query each, so the rows carry the
+   * same fields as on the SQL path. A root the projection has not seen yet, e.g. written in the
+   * last apply interval, falls back to the per-node SQL walk below.
+   */
   public ClusterResult cluster(IdentityNodeType type, String key, int depth, int limitPerNode) {
+    if (projection != null && projection.isReady()) {
+      ClusterResult r = projection.cluster(type, key, depth, limitPerNode);
+      if (r.root() != null) return withDetails(r);
+    }
     Optional<IdentityNodeRow> rootOpt = graphRepo.findNode(type, key);
     if (rootOpt.isEmpty()) {
       return ClusterResult.notFound(type, key);
@@ -211,6 +235,23 @@ public class IdentityGraphService {
     return new ClusterResult(root, new ArrayList<>(nodes.values()), new ArrayList<>(links.values()), null);
   }
 
+  /**
+   * Replaces the projection's slim rows with full ones, keeping the traversal order. A row deleted
+   * since the projection last saw it keeps its in-memory form.
+   */
+  private ClusterResult withDetails(ClusterResult r) {
+    Map<Long, IdentityNodeRow> nodes = new HashMap<>();
+    for (IdentityNodeRow n : graphRepo.listNodesByIds(r.nodes().stream().map(n -> n.id).toList())) nodes.put(n.id, n);
+    Map<Long, IdentityLinkRow> links = new HashMap<>();
+    for (IdentityLinkRow l : graphRepo.listLinksByIds(r.links().stream().map(l -> l.id).toList())) links.put(l.id, l);
+
+    List<IdentityNodeRow> fullNodes = new ArrayList<>(r.nodes().size());
+    for (IdentityNodeRow n : r.nodes()) fullNodes.add(nodes.getOrDefault(n.id, n));
+    List<IdentityLinkRow> fullLinks = new ArrayList<>(r.links().size());
+    for (IdentityLinkRow l : r.links()) fullLinks.add(links.getOrDefault(l.id, l));
+    return new ClusterResult(fullNodes.get(0), fullNodes, fullLinks, r.message());
+  }
+
   public record RebuildResult(long processed, int batches, boolean complete, long lastId) {}
 
   public record ClusterResult(IdentityNodeRow root, List<IdentityNodeRow> nodes, List<IdentityLinkRow> links, String message) {
@@ -0,0 +1,324 @@
+package com.poc.api.identity.service;
+
+import com.poc.api.identity.persistence.IdentityGraphRepository;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves identity graph maintenance off the scoring path.
+ *
+ * {@link #submit} only records the observation in a map keyed by device_profile.id, so repeat
+ * sightings of a device within one {@code flush-interval-ms} window collapse into one write. A
+ * single background writer drains the map in chunks of {@code flush-size} profiles and hands each
+ * chunk to {@link IdentityGraphService#observeDeviceProfiles} (multi-row upserts). Disabled,
+ * submissions are written through on the caller as before.
+ *
+ * Catch-up: identity_graph_state (V126) records the time up to which observations are known to be
+ * written. At startup, after a failed flush, or when observations were dropped because the map was
+ * full, the writer replays device_profile rows last seen since then (minus {@code catch-up-slack-ms}
+ * for sightings still held in the device cache), one page per writer cycle, next to live traffic.
+ * The watermark does not advance while a replay is pending.
+ */
+@Component
+public class IdentityGraphWriter {
+
+  private static final Logger log = LoggerFactory.getLogger(IdentityGraphWriter.class);
+
+  static final String STATE_NAME = "device_profile";
+
+  public record Stats(boolean enabled,
+                      int pending,
+                      long oldestPendingMs,
+                      OffsetDateTime appliedThrough,
+                      boolean catchingUp,
+                      OffsetDateTime catchUpSince,
+                      long catchUpCursor,
+                      long catchUpRows) {}
+
+  private record Pending(DeviceProfile profile, long enqueuedNanos) {}
+
+  private final IdentityGraphService identityGraph;
+  private final IdentityGraphRepository stateRepo;
+  private final DeviceProfileRepository deviceProfiles;
+  private final boolean enabled;
+  private final int capacity;
+  private final int flushSize;
+  private final long flushIntervalMs;
+  private final int catchUpPageSize;
+  private final long catchUpSlackMs;
+  private final long shutdownTimeoutMs;
+
+  private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+
+  private final Counter observations;
+  private final Counter collapsed;
+  private final Counter dropped;
+  private final Counter flushErrors;
+  private final Counter catchUpRowsCounter;
+  private final Timer flushTimer;
+  private final Timer lagTimer;
+
+  private volatile boolean running;
+  private Thread writer;
+
+  // Catch-up state; requests come from any thread, the replay itself runs on the writer.
+  private final Object catchUpLock = new Object();
+  private OffsetDateTime catchUpRequested;
+  private volatile OffsetDateTime catchUpSince;
+  private volatile long catchUpCursor;
+  private volatile long catchUpRows;
+  private volatile OffsetDateTime appliedThrough;
+  // Set once the previous watermark has been read, so the writer cannot overwrite it first.
+  private volatile boolean watermarkLoaded;
+
+  public IdentityGraphWriter(IdentityGraphService identityGraph,
+                             IdentityGraphRepository stateRepo,
+                             DeviceProfileRepository deviceProfiles,
+                             MeterRegistry meterRegistry,
+                             @Value("${poc.identity.writer.enabled:true}") boolean enabled,
+                             @Value("${poc.identity.writer.capacity:50000}") int capacity,
+                             @Value("${poc.identity.writer.flush-size:500}") int flushSize,
+                             @Value("${poc.identity.writer.flush-interval-ms:1000}") long flushIntervalMs,
+                             @Value("${poc.identity.writer.catch-up-page-size:2000}") int catchUpPageSize,
+                             @Value("${poc.identity.writer.catch-up-slack-ms:60000}") long catchUpSlackMs,
+                             @Value("${poc.identity.writer.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+    this.identityGraph = identityGraph;
+    this.stateRepo = stateRepo;
+    this.deviceProfiles = deviceProfiles;
+    this.enabled = enabled;
+    this.capacity = Math.max(1, capacity);
+    this.flushSize = Math.max(1, flushSize);
+    this.flushIntervalMs = Math.max(1, flushIntervalMs);
+    this.catchUpPageSize = Math.max(1, catchUpPageSize);
+    this.catchUpSlackMs = Math.max(0, catchUpSlackMs);
+    this.shutdownTimeoutMs = Math.max(0, shutdownTimeoutMs);
+
+    this.observations = Counter.builder("identity.writer.observations").register(meterRegistry);
+    this.collapsed = Counter.builder("identity.writer.collapsed")
+        .description("Observations merged into a pending one for the same device")
+        .register(meterRegistry);
+    this.dropped = Counter.builder("identity.writer.dropped")
+        .description("Observations not queued because the writer was full; recovered by catch-up")
+        .register(meterRegistry);
+    this.flushErrors = Counter.builder("identity.writer.flush.errors").register(meterRegistry);
+    this.catchUpRowsCounter = Counter.builder("identity.writer.catchup.rows").register(meterRegistry);
+    this.flushTimer = Timer.builder("identity.writer.flush").register(meterRegistry);
+    this.lagTimer = Timer.builder("identity.writer.lag")
+        .description("Time from first queued sighting of a device to its graph write")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    Gauge.builder("identity.writer.pending", pending, Map::size).register(meterRegistry);
+    Gauge.builder("identity.writer.oldest.ms", this, IdentityGraphWriter::oldestPendingMs).register(meterRegistry);
+    Gauge.builder("identity.writer.catchup.active", this, w -> w.catchUpSince != null ? 1 : 0).register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!enabled) return;
+    running = true;
+    writer = Thread.ofPlatform().name("identity-graph-writer").daemon(true).start(this::runWriter);
+  }
+
+  /** Replays whatever the previous process may not have written. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void onStartup() {
+    if (!enabled) return;
+    try {
+      appliedThrough = stateRepo.findAppliedThrough(STATE_NAME).orElse(null);
+      if (appliedThrough != null) requestCatchUp(appliedThrough);
+      else stateRepo.saveAppliedThrough(STATE_NAME, appliedThrough = OffsetDateTime.now());
+      watermarkLoaded = true;
+    } catch (Exception e) {
+      log.warn("[identity] could not read the graph writer watermark: {}", e.getMessage());
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Queues one device profile observation; never touches the database when enabled. */
+  public void submit(DeviceProfile dp) {
+    if (dp == null) return;
+    if (!enabled || dp.id == null) {
+      identityGraph.observeDeviceProfile(dp);
+      return;
+    }
+    observations.increment();
+    if (pending.size() >= capacity && !pending.containsKey(dp.id)) {
+      dropped.increment();
+      requestCatchUp(dp.lastSeen != null ? dp.lastSeen : OffsetDateTime.now());
+      return;
+    }
+    pending.merge(dp.id, new Pending(dp, System.nanoTime()), (old, next) -> {
+      collapsed.increment();
+      return new Pending(next.profile(), old.enqueuedNanos());
+    });
+  }
+
+  /** Replays device_profile rows last seen since {@code since} (minus the slack) through the writer. */
+  public void requestCatchUp(OffsetDateTime since) {
+    synchronized (catchUpLock) {
+      if (catchUpRequested == null || since.isBefore(catchUpRequested)) catchUpRequested = since;
+    }
+  }
+
+  public Stats stats() {
+    return new Stats(enabled, pending.size(), oldestPendingMs(), appliedThrough,
+        catchUpSince != null, catchUpSince, catchUpCursor, catchUpRows);
+  }
+
+  private long oldestPendingMs() {
+    long oldest = Long.MAX_VALUE;
+    for (Pending p : pending.values()) oldest = Math.min(oldest, p.enqueuedNanos());
+    return oldest == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+  }
+
+  private void runWriter() {
+    while (running) {
+      try {
+        Thread.sleep(flushIntervalMs);
+      } catch (InterruptedException e) {
+        // We own this thread: treat an interrupt as a stop request and drain.
+        running = false;
+      }
+      try {
+        cycle();
+      } catch (Exception e) {
+        log.warn("[identity] graph writer cycle failed: {}", e.getMessage());
+      }
+    }
+    flushPending();
+  }
+
+  /** One writer cycle: drain the window, then one catch-up page. */
+  void cycle() {
+    OffsetDateTime windowEnd = OffsetDateTime.now();
+    boolean ok = flushPending();
+    boolean replaying = catchUpStep();
+    if (ok && !replaying) advanceWatermark(windowEnd);
+  }
+
+  /** Writes everything queued so far. Returns false if a chunk failed (it is then replayed). */
+  boolean flushPending() {
+    if (pending.isEmpty()) return true;
+    boolean ok = true;
+    List<DeviceProfile> chunk = new ArrayList<>(flushSize);
+    List<Long> enqueued = new ArrayList<>(flushSize);
+    Iterator<Long> ids = pending.keySet().iterator();
+    while (ids.hasNext()) {
+      Pending p = pending.remove(ids.next());
+      if (p == null) continue;
+      chunk.add(p.profile());
+      enqueued.add(p.enqueuedNanos());
+      if (chunk.size() >= flushSize) {
+        ok &= write(chunk, enqueued);
+        chunk = new ArrayList<>(flushSize);
+        enqueued = new ArrayList<>(flushSize);
+      }
+    }
+    if (!chunk.isEmpty()) ok &= write(chunk, enqueued);
+    return ok;
+  }
+
+  private boolean write(List<DeviceProfile> chunk, List<Long> enqueued) {
+    long t0 = System.nanoTime();
+    int written = identityGraph.observeDeviceProfiles(chunk);
+    long t1 = System.nanoTime();
+    flushTimer.record(t1 - t0, TimeUnit.NANOSECONDS);
+    if (written == 0) {
+      flushErrors.increment();
+      OffsetDateTime oldest = OffsetDateTime.now();
+      for (DeviceProfile dp : chunk) {
+        if (dp.lastSeen != null && dp.lastSeen.isBefore(oldest)) oldest = dp.lastSeen;
+      }
+      requestCatchUp(oldest);
+      return false;
+    }
+    for (long e : enqueued) lagTimer.record(t1 - e, TimeUnit.NANOSECONDS);
+    return true;
+  }
+
+  /** Returns true while a replay is pending or in progress. */
+  boolean catchUpStep() {
+    if (catchUpSince == null) {
+      synchronized (catchUpLock) {
+        if (catchUpRequested == null) return false;
+        catchUpSince = catchUpRequested.minus(Duration.ofMillis(catchUpSlackMs));
+        catchUpRequested = null;
+      }
+      catchUpCursor = 0;
+      catchUpRows = 0;
+      log.info("[identity] graph writer catching up on device_profile rows seen since {}", catchUpSince);
+    }
+    List<DeviceProfile> page;
+    try {
+      page = deviceProfiles.listSeenSince(catchUpSince, catchUpCursor, catchUpPageSize);
+    } catch (Exception e) {
+      log.warn("[identity] catch-up read failed at id {}: {}", catchUpCursor, e.getMessage());
+      return true;
+    }
+    if (!page.isEmpty()) {
+      if (identityGraph.observeDeviceProfiles(page) == 0) {
+        flushErrors.increment();
+        return true;
+      }
+      catchUpCursor = page.get(page.size() - 1).id;
+      catchUpRows += page.size();
+      catchUpRowsCounter.increment(page.size());
+    }
+    if (page.size() < catchUpPageSize) {
+      log.info("[identity] graph writer caught up: {} profiles replayed since {}", catchUpRows, catchUpSince);
+      catchUpSince = null;
+      synchronized (catchUpLock) {
+        return catchUpRequested != null;
+      }
+    }
+    return true;
+  }
+
+  private void advanceWatermark(OffsetDateTime through) {
+    if (!watermarkLoaded) return;
+    try {
+      stateRepo.saveAppliedThrough(STATE_NAME, through);
+      appliedThrough = through;
+    } catch (Exception e) {
+      log.debug("[identity] could not save the graph writer watermark: {}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    if (writer == null) return;
+    running = false;
+    try {
+      writer.join(shutdownTimeoutMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writer.isAlive()) {
+      log.warn("[identity] graph writer did not drain within {} ms, {} observations left for catch-up", shutdownTimeoutMs, pending.size());
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.poc.api.identity.service;
+
+import com.poc.api.identity.persistence.IdentityGraphRepository;
+import com.poc.api.identity.persistence.IdentityRebuildRepository;
+import com.poc.api.showcase.persistence.TlsFamilyRepository;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full identity graph rebuild from device_profile, for tables too large for the paged
+ * {@link IdentityGraphService#rebuildFromDeviceProfiles} walk.
+ *
+ * The id range is split into partitions of about {@code partition-size} ids
+ * (identity_rebuild_partition, V127) that run on a pool of {@code threads} workers. A worker reads
+ * its range in keyset pages, derives nodes and links in memory with the same rules as the live
+ * path ({@link IdentityGraphService#describe}), and COPYs them into unlogged staging tables. When
+ * the range is exhausted one set-based statement merges the staged rows into identity_node /
+ * identity_link and marks the partition DONE.
+ *
+ * Resuming: a partition is either DONE (merged and committed) or starts over from its first id, so
+ * after a restart {@link #start} with {@code restart=false} picks up the latest unfinished (or
+ * failed) job and runs only the partitions that are not DONE. A failing partition is retried up to
+ * {@code max-attempts} times per start. One instance should drive a job at a time.
+ */
+@Service
+public class IdentityRebuildService {
+
+  private static final Logger log = LoggerFactory.getLogger(IdentityRebuildService.class);
+
+  public record Progress(Long jobId,
+                         String status,
+                         int partitions,
+                         int done,
+                         int running,
+                         int failed,
+                         int pending,
+                         long processed,
+                         long idSpan,
+                         long nodes,
+                         long links,
+                         double profilesPerSecond,
+                         OffsetDateTime startedAt,
+                         OffsetDateTime finishedAt,
+                         String message) {
+
+    static Progress none(String message) {
+      return new Progress(null, "NONE", 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, null, message);
+    }
+  }
+
+  private final IdentityRebuildRepository repo;
+  private final DeviceProfileRepository deviceProfiles;
+  private final TlsFamilyRepository tlsFamilyRepo;
+  private final IdentityGraphProjection projection;
+  private final long partitionSize;
+  private final int maxPartitions;
+  private final int pageSize;
+  private final int maxAttempts;
+  private final ExecutorService workers;
+  private final Counter profilesRead;
+  private final Counter partitionsMerged;
+  private final Counter partitionsFailed;
+
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private volatile IdentityRebuildRepository.Job activeJob;
+
+  public IdentityRebuildService(IdentityRebuildRepository repo,
+                                DeviceProfileRepository deviceProfiles,
+                                TlsFamilyRepository tlsFamilyRepo,
+                                IdentityGraphProjection projection,
+                                MeterRegistry meterRegistry,
+                                @Value("${poc.identity.rebuild.threads:4}") int threads,
+                                @Value("${poc.identity.rebuild.partition-size:200000}") long partitionSize,
+                                @Value("${poc.identity.rebuild.max-partitions:4096}") int maxPartitions,
+                                @Value("${poc.identity.rebuild.page-size:5000}") int pageSize,
+                                @Value("${poc.identity.rebuild.max-attempts:3}") int maxAttempts) {
+    this.repo = repo;
+    this.deviceProfiles = deviceProfiles;
+    this.tlsFamilyRepo = tlsFamilyRepo;
+    this.projection = projection;
+    this.partitionSize = Math.max(1, partitionSize);
+    this.maxPartitions = Math.max(1, maxPartitions);
+    this.pageSize = Math.max(1, pageSize);
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.workers = Executors.newFixedThreadPool(Math.max(1, threads),
+        Thread.ofPlatform().name("identity-rebuild-", 0).daemon(true).factory());
+    this.profilesRead = Counter.builder("identity.rebuild.profiles").register(meterRegistry);
+    this.partitionsMerged = Counter.builder("identity.rebuild.partitions").tag("result", "merged").register(meterRegistry);
+    this.partitionsFailed = Counter.builder("identity.rebuild.partitions").tag("result", "failed").register(meterRegistry);
+  }
+
+  /**
+   * Starts a job, or resumes the latest unfinished one unless {@code restart} is set. Returns
+   * immediately; poll {@link #progress()}.
+   */
+  public synchronized Progress start(boolean restart) {
+    if (activeJob != null) return progress();
+    Optional<IdentityRebuildRepository.Job> latest = repo.findLatestJob();
+    IdentityRebuildRepository.Job job;
+    if (!restart && latest.isPresent() && resumable(latest.get())) {
+      job = latest.get();
+      // Partitions that ran out of attempts get a fresh set.
+      if (!"RUNNING".equals(job.status())) repo.reopenJob(job.id());
+      log.info("[identity] resuming rebuild job {}", job.id());
+    } else {
+      Optional<long[]> bounds = deviceProfiles.findIdBounds();
+      if (bounds.isEmpty()) return Progress.none("device_profile is empty");
+      if (latest.isPresent() && "RUNNING".equals(latest.get().status())) repo.finishJob(latest.get().id(), "ABANDONED");
+      long lo = bounds.get()[0];
+      long hi = bounds.get()[1];
+      long span = hi - lo + 1;
+      int partitions = (int) Math.min(maxPartitions, Math.max(1, (span + partitionSize - 1) / partitionSize));
+      job = repo.createJob(lo, hi, partitions);
+      log.info("[identity] rebuild job {} started: ids {}..{} in {} partitions", job.id(), lo, hi, partitions);
+    }
+    activeJob = job;
+    // Held until every partition is queued, so an early finisher cannot complete the job.
+    outstanding.incrementAndGet();
+    for (int p : repo.listRunnablePartitions(job.id(), maxAttempts)) submit(job, p);
+    if (outstanding.decrementAndGet() == 0) complete(job);
+    return progress();
+  }
+
+  private static boolean resumable(IdentityRebuildRepository.Job job) {
+    return "RUNNING".equals(job.status()) || "FAILED".equals(job.status());
+  }
+
+  public Progress progress() {
+    Optional<IdentityRebuildRepository.Job> latest = repo.findLatestJob();
+    if (latest.isEmpty()) return Progress.none("no rebuild has been started");
+    IdentityRebuildRepository.Job job = latest.get();
+    IdentityRebuildRepository.Totals t = repo.totals(job.id());
+    OffsetDateTime end = job.finishedAt() != null ? job.finishedAt() : OffsetDateTime.now();
+    double seconds = Math.max(0.001, Duration.between(job.startedAt(), end).toMillis() / 1000.0);
+    String message = "RUNNING".equals(job.status()) && activeJob == null
+        ? "not running in this instance; POST again to resume"
+        : null;
+    return new Progress(job.id(), job.status(), job.partitions(), t.done(), t.running(), t.failed(), t.pending(),
+        t.processed(), job.maxId() - job.minId() + 1, t.nodes(), t.links(), t.processed() / seconds,
+        job.startedAt(), job.finishedAt(), message);
+  }
+
+  private void submit(IdentityRebuildRepository.Job job, int partitionNo) {
+    outstanding.incrementAndGet();
+    workers.execute(() -> {
+      try {
+        runPartition(job, partitionNo);
+      } finally {
+        if (outstanding.decrementAndGet() == 0) complete(job);
+      }
+    });
+  }
+
+  void runPartition(IdentityRebuildRepository.Job job, int partitionNo) {
+    try {
+      Optional<long[]> range = repo.claimPartition(job.id(), partitionNo, maxAttempts);
+      if (range.isEmpty()) return;
+      long cursor = range.get()[0];
+      long toId = range.get()[1];
+      long processed = 0;
+      long[] seq = {0};
+      while (true) {
+        List<DeviceProfile> page = deviceProfiles.listIdRange(cursor, toId, pageSize);
+        if (page.isEmpty()) break;
+        stage(job.id(), partitionNo, page, seq);
+        processed += page.size();
+        cursor = page.get(page.size() - 1).id;
+        repo.updateProgress(job.id(), partitionNo, cursor, processed);
+        profilesRead.increment(page.size());
+        if (page.size() < pageSize) break;
+      }
+      IdentityRebuildRepository.MergeResult m = repo.mergePartition(job.id(), partitionNo, processed);
+      partitionsMerged.increment();
+      log.debug("[identity] rebuild job {} partition {} merged: profiles={} nodes={} links={}",
+          job.id(), partitionNo, processed, m.nodes(), m.links());
+    } catch (Exception e) {
+      partitionsFailed.increment();
+      log.warn("[identity] rebuild job {} partition {} failed: {}", job.id(), partitionNo, e.getMessage());
+      try {
+        repo.failPartition(job.id(), partitionNo, String.valueOf(e.getMessage()));
+      } catch (Exception ignored) {
+        // The partition stays RUNNING and is picked up again on resume.
+        return;
+      }
+      // Claiming refuses once max-attempts is reached, so this ends the retries.
+      submit(job, partitionNo);
+    }
+  }
+
+  /** Derives one page's nodes and links (deduplicated within the page) and COPYs them into staging. */
+  private void stage(long jobId, int partitionNo, List<DeviceProfile> page, long[] seq) {
+    Set<String> fps = new HashSet<>();
+    for (DeviceProfile dp : page) {
+      if (dp.tlsFp != null && !dp.tlsFp.isBlank()) fps.add(dp.tlsFp);
+    }
+    Map<String, TlsFamilyRepository.FamilyLookup> families = tlsFamilyRepo.findFamiliesByRawFps(fps);
+    Map<IdentityGraphService.NodeRef, IdentityGraphRepository.NodeUpsert> nodes = new LinkedHashMap<>();
+    List<IdentityGraphService.PendingLink> links = new ArrayList<>();
+    for (DeviceProfile dp : page) {
+      IdentityGraphService.describe(dp, families.get(dp.tlsFp), nodes, links);
+    }
+
+    List<IdentityRebuildRepository.StageNode> stageNodes = new ArrayList<>(nodes.size());
+    for (IdentityGraphRepository.NodeUpsert n : nodes.values()) {
+      stageNodes.add(new IdentityRebuildRepository.StageNode(seq[0]++, n.type().name(), n.naturalKey(),
+          n.displayLabel(), n.metaJson()));
+    }
+    Map<List<Object>, IdentityRebuildRepository.StageLink> stageLinks = new LinkedHashMap<>();
+    for (IdentityGraphService.PendingLink l : links) {
+      stageLinks.put(List.of(l.from(), l.to(), l.type()), new IdentityRebuildRepository.StageLink(seq[0]++,
+          l.from().type().name(), l.from().key(), l.to().type().name(), l.to().key(),
+          l.type().name(), l.confidence(), l.reason(), l.evidenceJson()));
+    }
+    repo.copyStage(jobId, partitionNo, stageNodes, new ArrayList<>(stageLinks.values()));
+  }
+
+  private synchronized void complete(IdentityRebuildRepository.Job job) {
+    if (activeJob == null || activeJob.id() != job.id()) return;
+    try {
+      IdentityRebuildRepository.Totals t = repo.totals(job.id());
+      String status = t.done() == job.partitions() ? "DONE" : "FAILED";
+      repo.finishJob(job.id(), status);
+      log.info("[identity] rebuild job {} {}: partitions={} failed={} profiles={} nodes={} links={}",
+          job.id(), status, job.partitions(), t.failed(), t.processed(), t.nodes(), t.links());
+      if (projection != null && "DONE".equals(status)) projection.reloadAsync();
+    } catch (Exception e) {
+      log.warn("[identity] could not finish rebuild job {}: {}", job.id(), e.getMessage());
+    } finally {
+      activeJob = null;
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    workers.shutdownNow();
+  }
+}
@@ -0,0 +1,113 @@
+package com.poc.api.ml;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decoded model artifacts by registry id, bounded by their approximate size (the length of the
+ * stored artifact).
+ *
+ * Lookups are a plain concurrent map read plus an access timestamp, so the scoring path takes no
+ * lock. Eviction happens on insert and drops the least recently used entries until the total is
+ * within budget; pinned ids (the routed active and canary models) and the entry just inserted are
+ * never evicted, so one oversized artifact stays usable instead of being reloaded on every request.
+ */
+final class ArtifactCache<V> {
+
+  private static final class Entry<V> {
+    final V value;
+    final long bytes;
+    volatile long lastAccessNanos;
+
+    Entry(V value, long bytes) {
+      this.value = value;
+      this.bytes = bytes;
+      this.lastAccessNanos = System.nanoTime();
+    }
+  }
+
+  private record Candidate<V>(Long id, Entry<V> entry, long lastAccessNanos) {}
+
+  private final long maxBytes;
+  private final ConcurrentHashMap<Long, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final AtomicLong totalBytes = new AtomicLong();
+  private volatile Set<Long> pinned = Set.of();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+
+  ArtifactCache(MeterRegistry meterRegistry, long maxBytes) {
+    this.maxBytes = Math.max(0, maxBytes);
+    this.hits = Counter.builder("ml.artifact.cache.hits").register(meterRegistry);
+    this.misses = Counter.builder("ml.artifact.cache.misses").register(meterRegistry);
+    this.evictions = Counter.builder("ml.artifact.cache.evictions").register(meterRegistry);
+    Gauge.builder("ml.artifact.cache.bytes", totalBytes, AtomicLong::get).register(meterRegistry);
+    Gauge.builder("ml.artifact.cache.entries", entries, Map::size).register(meterRegistry);
+  }
+
+  /** Counts a hit or miss and refreshes the entry's recency. */
+  V get(long id) {
+    Entry<V> e = entries.get(id);
+    if (e == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    e.lastAccessNanos = System.nanoTime();
+    return e.value;
+  }
+
+  /** Lookup without touching metrics or recency. */
+  V peek(long id) {
+    Entry<V> e = entries.get(id);
+    return e != null ? e.value : null;
+  }
+
+  void put(long id, V value, long bytes) {
+    Entry<V> previous = entries.put(id, new Entry<>(value, bytes));
+    totalBytes.addAndGet(bytes - (previous != null ? previous.bytes : 0));
+    evict(id);
+  }
+
+  /** Replaces the pinned set. */
+  void pin(Set<Long> ids) {
+    pinned = Set.copyOf(ids);
+    evict(null);
+  }
+
+  long bytes() {
+    return totalBytes.get();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private synchronized void evict(Long keep) {
+    if (totalBytes.get() <= maxBytes) return;
+    Set<Long> pins = pinned;
+    // Access times are copied first so concurrent hits cannot reorder the list mid-sort.
+    List<Candidate<V>> candidates = new ArrayList<>();
+    entries.forEach((id, e) -> {
+      if (!pins.contains(id) && !id.equals(keep)) candidates.add(new Candidate<>(id, e, e.lastAccessNanos));
+    });
+    candidates.sort(Comparator.comparingLong(Candidate::lastAccessNanos));
+    for (Candidate<V> c : candidates) {
+      if (totalBytes.get() <= maxBytes) break;
+      if (entries.remove(c.id(), c.entry())) {
+        totalBytes.addAndGet(-c.entry().bytes);
+        evictions.increment();
+      }
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.poc.api.ml;
+
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.ImmutableOutputInfo;
+import org.tribuo.Model;
+import org.tribuo.classification.Label;
+import org.tribuo.common.sgd.AbstractLinearSGDModel;
+import org.tribuo.math.la.DenseMatrix;
+
+import java.util.List;
+
+/**
+ * Precompiled scorer for the Tribuo logistic-regression model inside a model artifact.
+ *
+ * Weights and biases are copied out of the model once and re-indexed to {@link FeatureVectorSchema}
+ * order, so scoring is a dot product per output plus the same max-shifted softmax Tribuo applies.
+ * {@link #scoreCore} additionally folds the weights of the four core scores (the only non-zero
+ * dimensions on the live path), which makes a prediction allocation-free.
+ *
+ * Scores agree with {@code model.predict(...)} to within {@link #TOLERANCE}; {@link ModelProvider}
+ * verifies this on probe vectors before using a scorer and otherwise stays on the Tribuo path.
+ */
+public final class DirectLinearScorer {
+
+  /** Maximum absolute difference in P(legit) vs Tribuo accepted at build time. */
+  public static final double TOLERANCE = 1e-9;
+
+  private final int outputs;
+  private final int legitIdx;
+  private final double[][] weights;   // [output][schema dim]
+  private final double[] bias;        // [output]
+  private final double[][] coreWeights; // [output][device, behavior, tls, context]
+
+  private DirectLinearScorer(int legitIdx, double[][] weights, double[] bias, double[][] coreWeights) {
+    this.outputs = bias.length;
+    this.legitIdx = legitIdx;
+    this.weights = weights;
+    this.bias = bias;
+    this.coreWeights = coreWeights;
+  }
+
+  /**
+   * Extracts weights from a linear SGD model, or returns null if the model is of another kind.
+   *
+   * @param coreOfDim per schema dimension, which core score feeds it (0=device, 1=behavior, 2=tls,
+   *                  3=context, -1=none); see {@code ModelProvider}
+   */
+  public static DirectLinearScorer from(Model<Label> model, Label legit, int[] coreOfDim) {
+    if (!(model instanceof AbstractLinearSGDModel<Label> linear)) return null;
+
+    ImmutableFeatureMap fmap = model.getFeatureIDMap();
+    ImmutableOutputInfo<Label> outInfo = model.getOutputIDInfo();
+    int legitIdx = outInfo.getID(legit);
+    if (legitIdx < 0) return null;
+
+    DenseMatrix w = linear.getWeightsCopy();
+    int outputs = w.getDimension1Size();
+    int cols = w.getDimension2Size();
+    int numFeatures = fmap.size();
+    boolean hasBias = cols == numFeatures + 1;
+    if (!hasBias && cols != numFeatures) return null;
+
+    List<String> names = FeatureVectorSchema.featureNames();
+    double[][] weights = new double[outputs][names.size()];
+    double[] bias = new double[outputs];
+    for (int k = 0; k < outputs; k++) {
+      for (int i = 0; i < names.size(); i++) {
+        int fid = fmap.getID(names.get(i));
+        if (fid >= 0) weights[k][i] = w.get(k, fid);
+      }
+      bias[k] = hasBias ? w.get(k, numFeatures) : 0.0;
+    }
+
+    return of(legitIdx, weights, bias, coreOfDim);
+  }
+
+  /**
+   * A scorer from schema-ordered weights, e.g. as read back from a binary artifact.
+   *
+   * @param weights [output][schema dim]
+   */
+  static DirectLinearScorer of(int legitIdx, double[][] weights, double[] bias, int[] coreOfDim) {
+    int outputs = bias.length;
+    double[][] core = new double[outputs][4];
+    for (int k = 0; k < outputs; k++) {
+      for (int i = 0; i < weights[k].length && i < coreOfDim.length; i++) {
+        if (coreOfDim[i] >= 0) core[k][coreOfDim[i]] += weights[k][i];
+      }
+    }
+    return new DirectLinearScorer(legitIdx, weights, bias, core);
+  }
+
+  int legitIndex() {
+    return legitIdx;
+  }
+
+  double[][] weights() {
+    return weights;
+  }
+
+  double[] bias() {
+    return bias;
+  }
+
+  /** P(legit) for a full schema-aligned vector. */
+  public double score(double[] x) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int k = 0; k < outputs; k++) max = Math.max(max, logit(k, x));
+    double sum = 0.0;
+    double legit = 0.0;
+    for (int k = 0; k < outputs; k++) {
+      double e = Math.exp(logit(k, x) - max);
+      sum += e;
+      if (k == legitIdx) legit = e;
+    }
+    return legit / sum;
+  }
+
+  /** P(legit) when only the four core scores are non-zero (the live scoring path). */
+  public double scoreCore(double device, double behavior, double tls, double context) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int k = 0; k < outputs; k++) max = Math.max(max, coreLogit(k, device, behavior, tls, context));
+    double sum = 0.0;
+    double legit = 0.0;
+    for (int k = 0; k < outputs; k++) {
+      double e = Math.exp(coreLogit(k, device, behavior, tls, context) - max);
+      sum += e;
+      if (k == legitIdx) legit = e;
+    }
+    return legit / sum;
+  }
+
+  private double logit(int k, double[] x) {
+    double[] wk = weights[k];
+    double s = bias[k];
+    int n = Math.min(wk.length, x.length);
+    for (int i = 0; i < n; i++) s += wk[i] * x[i];
+    return s;
+  }
+
+  private double coreLogit(int k, double device, double behavior, double tls, double context) {
+    double[] wk = coreWeights[k];
+    return bias[k] + wk[0] * device + wk[1] * behavior + wk[2] * tls + wk[3] * context;
+  }
+}
@@ -1,6 +1,9 @@
 package com.poc.api.ml;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,7 +23,12 @@ import java.util.Map;
  *  - ml_anomaly_score     (self-referential feature to help the classifier learn patterns)
  *
  * The additional dimensions are derived from the enriched breakdown map that
- * RiskService already persists into session_feature.feature_vector.
+ * RiskService persists into session_feature.features.
+ *
+ * Stored layout (session_feature.features, feature_schema_version = {@link #STORED_VERSION}):
+ * the model dimensions above followed by the remaining numeric breakdown entries, see
+ * {@link #storedNames()}. Absent entries are stored as NaN so a read-back map has the same keys as
+ * the breakdown that was written. Append-only: a new entry means a new version.
  */
 public final class FeatureVectorSchema {
 
@@ -54,6 +62,41 @@ public final class FeatureVectorSchema {
       ML_ANOMALY_SCORE
   );
 
+  /** Version of {@link #storedNames()} written to session_feature.feature_schema_version. */
+  public static final short STORED_VERSION = 1;
+
+  private static final List<String> STORED_EXTRA = Arrays.asList(
+      "model_id_used",
+      "canary_enabled",
+      "policy_matched",
+      "tls_family_drift",
+      "tls_family_meta_present",
+      "user_trust_score",
+      "user_account_sharing_risk",
+      "user_device_count",
+      "user_tls_fp_count",
+      "user_country_count",
+      "user_sessions_30d",
+      "behavior_z_avg_key_interval_ms",
+      "behavior_z_key_interval_std_ms",
+      "behavior_z_scroll_events_per_sec",
+      "behavior_z_pointer_avg_velocity",
+      "behavior_z_pointer_max_velocity",
+      "behavior_z_mouse_distance"
+  );
+
+  private static final List<String> STORED;
+  private static final Map<String, Integer> STORED_INDEX;
+
+  static {
+    List<String> names = new ArrayList<>(ORDER);
+    names.addAll(STORED_EXTRA);
+    STORED = Collections.unmodifiableList(names);
+    Map<String, Integer> index = new LinkedHashMap<>();
+    for (int i = 0; i < names.size(); i++) index.put(names.get(i), i);
+    STORED_INDEX = Collections.unmodifiableMap(index);
+  }
+
   private FeatureVectorSchema() {
   }
 
@@ -99,4 +142,44 @@ public final class FeatureVectorSchema {
     // from the enriched breakdown during training.
     return v;
   }
+
+  /** Column names of the stored layout; the first {@link #size()} entries are the model vector. */
+  public static List<String> storedNames() {
+    return STORED;
+  }
+
+  /**
+   * Packs a breakdown map into the stored layout. Keys outside the layout are dropped (they only
+   * survive in the optional JSON debug copy); missing keys become NaN.
+   */
+  public static double[] toStored(Map<String, Double> breakdown) {
+    double[] v = new double[STORED.size()];
+    Arrays.fill(v, Double.NaN);
+    if (breakdown == null) return v;
+    for (Map.Entry<String, Double> e : breakdown.entrySet()) {
+      Integer i = STORED_INDEX.get(e.getKey());
+      if (i != null && e.getValue() != null) v[i] = e.getValue();
+    }
+    return v;
+  }
+
+  /** Inverse of {@link #toStored}; NaN slots are left out of the map. */
+  public static Map<String, Double> storedToMap(double[] stored) {
+    Map<String, Double> m = new LinkedHashMap<>();
+    if (stored == null) return m;
+    int n = Math.min(stored.length, STORED.size());
+    for (int i = 0; i < n; i++) {
+      if (!Double.isNaN(stored[i])) m.put(STORED.get(i), stored[i]);
+    }
+    return m;
+  }
+
+  /** The model vector held in the first {@link #size()} slots of a stored row; NaN reads as 0.0. */
+  public static double[] fromStored(double[] stored) {
+    double[] v = new double[ORDER.size()];
+    if (stored == null) return v;
+    int n = Math.min(stored.length, v.length);
+    for (int i = 0; i < n; i++) v[i] = Double.isNaN(stored[i]) ? 0.0 : stored[i];
+    return v;
+  }
 }
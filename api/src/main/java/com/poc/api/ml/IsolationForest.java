@@ -1,10 +1,14 @@
 package com.poc.api.ml;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 /**
  * Lightweight Isolation Forest implementation for EPIC 5.
@@ -12,130 +16,310 @@ import java.util.Random;
  * We intentionally keep this simple and in-process, so that the anomaly
  * scoring does not introduce any additional runtime dependencies beyond
  * Tribuo and the JDK.
+ *
+ * Each tree is stored flat as parallel arrays indexed by node id (root = 0), so scoring is a
+ * short loop over primitive arrays instead of a pointer chase. Trees are built in parallel on
+ * the common ForkJoin pool; each tree partitions an index array in place rather than copying
+ * sub-lists, and draws from its own seed-derived generator so the result does not depend on
+ * thread scheduling.
+ *
+ * Artifacts written before the flat layout (a list of linked {@code TreeNode}s) still
+ * deserialise: {@link #readObject} converts them to flat trees on load.
  */
 public class IsolationForest implements Serializable {
 
   @Serial
   private static final long serialVersionUID = 1L;
 
-  private final List<TreeNode> trees = new ArrayList<>();
+  private FlatTree[] forest = new FlatTree[0];
   private final int subsampleSize;
   private final int numTrees;
   private final int maxDepth;
-  private final Random random;
+  private final long seed;
+
+  /** Only populated while reading a legacy artifact; converted and cleared in readObject. */
+  private List<TreeNode> trees;
 
   public IsolationForest(int numTrees, int subsampleSize, long seed) {
     this.numTrees = numTrees;
     this.subsampleSize = subsampleSize;
-    this.random = new Random(seed);
+    this.seed = seed;
     this.maxDepth = (int) Math.ceil(Math.log(subsampleSize) / Math.log(2));
   }
 
+  /** Rebuilds a fitted forest from its flat trees (see {@link ModelArtifactCodec}). */
+  static IsolationForest restore(int numTrees, int subsampleSize, long seed, FlatTree[] trees) {
+    IsolationForest f = new IsolationForest(numTrees, subsampleSize, seed);
+    f.forest = trees;
+    return f;
+  }
+
+  int numTrees() {
+    return numTrees;
+  }
+
+  int subsampleSize() {
+    return subsampleSize;
+  }
+
+  long seed() {
+    return seed;
+  }
+
+  FlatTree[] flatTrees() {
+    return forest;
+  }
+
   public void fit(List<double[]> data) {
-    trees.clear();
+    forest = new FlatTree[0];
     if (data == null || data.isEmpty()) {
       return;
     }
-    int n = data.size();
-    for (int i = 0; i < numTrees; i++) {
-      List<double[]> sample = new ArrayList<>();
-      for (int j = 0; j < Math.min(subsampleSize, n); j++) {
-        sample.add(data.get(random.nextInt(n)));
-      }
-      TreeNode root = buildTree(sample, 0);
-      trees.add(root);
+    double[][] rows = data.toArray(new double[0][]);
+    int sample = Math.min(subsampleSize, rows.length);
+    forest = IntStream.range(0, numTrees)
+        .parallel()
+        .mapToObj(t -> {
+          SplittableRandom rnd = new SplittableRandom(seed + t * 0x9E3779B97F4A7C15L);
+          int[] idx = new int[sample];
+          for (int j = 0; j < sample; j++) {
+            idx[j] = rnd.nextInt(rows.length);
+          }
+          return new Builder(rows, idx, rnd, maxDepth, sample).build();
+        })
+        .toArray(FlatTree[]::new);
+  }
+
+  public double score(double[] point) {
+    if (forest.length == 0) {
+      return 0.0;
     }
+    double totalPathLength = 0.0;
+    for (FlatTree tree : forest) {
+      totalPathLength += tree.pathLength(point);
+    }
+    double avgPathLength = totalPathLength / forest.length;
+    double c = c(subsampleSize);
+    return Math.pow(2.0, -avgPathLength / c);
   }
 
-  private TreeNode buildTree(List<double[]> data, int depth) {
-    if (data.isEmpty() || depth >= maxDepth || allSame(data)) {
-      return new TreeNode(data.size());
+  /**
+   * Average path length normalisation constant as used in Isolation Forest.
+   */
+  static double c(int n) {
+    if (n <= 1) {
+      return 0.0;
     }
+    return 2.0 * (Math.log(n - 1) + 0.5772156649) - (2.0 * (n - 1) / n);
+  }
+
+  /**
+   * One tree as a struct of arrays. For internal nodes {@code feature >= 0} and {@code split}
+   * is the threshold; for leaves {@code feature == -1}, {@code size} is the number of training
+   * rows that reached it and {@code split} holds the precomputed path-length adjustment c(size).
+   */
+  static final class FlatTree implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
-    int numFeatures = data.get(0).length;
-    int featureIndex = random.nextInt(numFeatures);
+    final int[] feature;
+    final double[] split;
+    final int[] size;
+    final int[] left;
+    final int[] right;
 
-    double min = Double.POSITIVE_INFINITY;
-    double max = Double.NEGATIVE_INFINITY;
-    for (double[] v : data) {
-      min = Math.min(min, v[featureIndex]);
-      max = Math.max(max, v[featureIndex]);
-    }
-    if (min == max) {
-      return new TreeNode(data.size());
+    FlatTree(int[] feature, double[] split, int[] size, int[] left, int[] right) {
+      this.feature = feature;
+      this.split = split;
+      this.size = size;
+      this.left = left;
+      this.right = right;
     }
 
-    double split = min + random.nextDouble() * (max - min);
-    List<double[]> left = new ArrayList<>();
-    List<double[]> right = new ArrayList<>();
-    for (double[] v : data) {
-      if (v[featureIndex] < split) {
-        left.add(v);
-      } else {
-        right.add(v);
+    double pathLength(double[] point) {
+      int node = 0;
+      int depth = 0;
+      int f;
+      while ((f = feature[node]) >= 0) {
+        node = point[f] < split[node] ? left[node] : right[node];
+        depth++;
       }
+      return depth + split[node];
     }
-
-    TreeNode node = new TreeNode(featureIndex, split);
-    node.left = buildTree(left, depth + 1);
-    node.right = buildTree(right, depth + 1);
-    return node;
   }
 
-  private boolean allSame(List<double[]> data) {
-    if (data.size() <= 1) {
-      return true;
+  /**
+   * Builds one flat tree by recursively partitioning {@code idx} in place.
+   */
+  private static final class Builder {
+    private final double[][] rows;
+    private final int[] idx;
+    private final SplittableRandom rnd;
+    private final int maxDepth;
+
+    private int[] feature;
+    private double[] split;
+    private int[] size;
+    private int[] left;
+    private int[] right;
+    private int count;
+
+    Builder(double[][] rows, int[] idx, SplittableRandom rnd, int maxDepth, int sample) {
+      this.rows = rows;
+      this.idx = idx;
+      this.rnd = rnd;
+      this.maxDepth = maxDepth;
+      int capacity = Math.max(1, 2 * sample - 1);
+      this.feature = new int[capacity];
+      this.split = new double[capacity];
+      this.size = new int[capacity];
+      this.left = new int[capacity];
+      this.right = new int[capacity];
+    }
+
+    FlatTree build() {
+      build(0, idx.length, 0);
+      return new FlatTree(
+          Arrays.copyOf(feature, count),
+          Arrays.copyOf(split, count),
+          Arrays.copyOf(size, count),
+          Arrays.copyOf(left, count),
+          Arrays.copyOf(right, count));
     }
-    double[] first = data.get(0);
-    for (int i = 1; i < data.size(); i++) {
-      double[] v = data.get(i);
-      if (v.length != first.length) return false;
-      for (int j = 0; j < v.length; j++) {
-        if (Double.compare(v[j], first[j]) != 0) {
-          return false;
+
+    private int build(int lo, int hi, int depth) {
+      int n = hi - lo;
+      if (n == 0 || depth >= maxDepth || allSame(lo, hi)) {
+        return leaf(n);
+      }
+
+      int numFeatures = rows[idx[lo]].length;
+      int featureIndex = rnd.nextInt(numFeatures);
+
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = lo; i < hi; i++) {
+        double v = rows[idx[i]][featureIndex];
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+      }
+      if (min == max) {
+        return leaf(n);
+      }
+
+      double splitValue = min + rnd.nextDouble() * (max - min);
+      // Partition: rows with v < split move to [lo, mid), the rest to [mid, hi).
+      int mid = lo;
+      for (int i = lo; i < hi; i++) {
+        if (rows[idx[i]][featureIndex] < splitValue) {
+          int tmp = idx[i];
+          idx[i] = idx[mid];
+          idx[mid++] = tmp;
         }
       }
+
+      int node = next();
+      feature[node] = featureIndex;
+      split[node] = splitValue;
+      size[node] = -1;
+      left[node] = build(lo, mid, depth + 1);
+      right[node] = build(mid, hi, depth + 1);
+      return node;
     }
-    return true;
-  }
 
-  public double score(double[] point) {
-    if (trees.isEmpty()) {
-      return 0.0;
+    private int leaf(int n) {
+      int node = next();
+      feature[node] = -1;
+      split[node] = n <= 1 ? 0.0 : c(n);
+      size[node] = n;
+      left[node] = -1;
+      right[node] = -1;
+      return node;
     }
-    double totalPathLength = 0.0;
-    for (TreeNode tree : trees) {
-      totalPathLength += pathLength(point, tree, 0);
+
+    private int next() {
+      if (count == feature.length) {
+        int grown = feature.length * 2;
+        feature = Arrays.copyOf(feature, grown);
+        split = Arrays.copyOf(split, grown);
+        size = Arrays.copyOf(size, grown);
+        left = Arrays.copyOf(left, grown);
+        right = Arrays.copyOf(right, grown);
+      }
+      return count++;
+    }
+
+    private boolean allSame(int lo, int hi) {
+      if (hi - lo <= 1) {
+        return true;
+      }
+      double[] first = rows[idx[lo]];
+      for (int i = lo + 1; i < hi; i++) {
+        double[] v = rows[idx[i]];
+        if (v.length != first.length) return false;
+        for (int j = 0; j < v.length; j++) {
+          if (Double.compare(v[j], first[j]) != 0) {
+            return false;
+          }
+        }
+      }
+      return true;
     }
-    double avgPathLength = totalPathLength / trees.size();
-    double c = c(subsampleSize);
-    return Math.pow(2.0, -avgPathLength / c);
   }
 
-  private double pathLength(double[] point, TreeNode node, int depth) {
-    if (node.isExternal()) {
-      if (node.size <= 1) {
-        return depth;
+  @Serial
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    if (trees != null) {
+      List<FlatTree> converted = new ArrayList<>(trees.size());
+      for (TreeNode root : trees) {
+        converted.add(flatten(root));
       }
-      return depth + c(node.size);
+      forest = converted.toArray(new FlatTree[0]);
+      trees = null;
+    } else if (forest == null) {
+      forest = new FlatTree[0];
     }
-    if (point[node.featureIndex] < node.splitValue) {
-      return pathLength(point, node.left, depth + 1);
+  }
+
+  private static FlatTree flatten(TreeNode root) {
+    int n = countNodes(root);
+    int[] feature = new int[n];
+    double[] split = new double[n];
+    int[] size = new int[n];
+    int[] left = new int[n];
+    int[] right = new int[n];
+    int[] pos = {0};
+    flattenInto(root, feature, split, size, left, right, pos);
+    return new FlatTree(feature, split, size, left, right);
+  }
+
+  private static int countNodes(TreeNode node) {
+    return node.isExternal() ? 1 : 1 + countNodes(node.left) + countNodes(node.right);
+  }
+
+  private static int flattenInto(TreeNode node, int[] feature, double[] split, int[] size,
+                                 int[] left, int[] right, int[] pos) {
+    int id = pos[0]++;
+    if (node.isExternal()) {
+      feature[id] = -1;
+      split[id] = node.size <= 1 ? 0.0 : c(node.size);
+      size[id] = node.size;
+      left[id] = -1;
+      right[id] = -1;
     } else {
-      return pathLength(point, node.right, depth + 1);
+      feature[id] = node.featureIndex;
+      split[id] = node.splitValue;
+      size[id] = -1;
+      left[id] = flattenInto(node.left, feature, split, size, left, right, pos);
+      right[id] = flattenInto(node.right, feature, split, size, left, right, pos);
     }
+    return id;
   }
 
   /**
-   * Average path length normalisation constant as used in Isolation Forest.
+   * Linked node from the original layout; kept only so legacy artifacts can be read.
    */
-  static double c(int n) {
-    if (n <= 1) {
-      return 0.0;
-    }
-    return 2.0 * (Math.log(n - 1) + 0.5772156649) - (2.0 * (n - 1) / n);
-  }
-
   private static class TreeNode implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
@@ -146,22 +330,9 @@ public class IsolationForest implements Serializable {
     TreeNode left;
     TreeNode right;
 
-    // Internal node
-    TreeNode(int featureIndex, double splitValue) {
-      this.featureIndex = featureIndex;
-      this.splitValue = splitValue;
-      this.size = -1;
-    }
-
-    // External node
-    TreeNode(int size) {
-      this.size = size;
-      this.featureIndex = -1;
-      this.splitValue = Double.NaN;
-    }
-
+    // Leaves were written with featureIndex -1 (including empty ones, which had size 0).
     boolean isExternal() {
-      return size > 0;
+      return featureIndex < 0;
     }
   }
 }
@@ -0,0 +1,238 @@
+package com.poc.api.ml;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary model artifact: the logistic model as dense weights plus the Isolation Forest as flat
+ * arrays, read straight from a {@link ByteBuffer} (no reflection, no Tribuo objects).
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int    magic 'PCMA'
+ *   short  format version ({@link #FORMAT_VERSION})
+ *   short  flags (1 = linear block, 2 = forest block)
+ *   long   schema hash of the feature names
+ *   int    feature count, then per feature: short length + UTF-8 name
+ *   short  length + UTF-8 model version
+ *   linear: int outputs, int legit output, double[outputs * features] weights, double[outputs] bias
+ *   forest: int trees, int subsample size, long seed,
+ *           per tree: int nodes, int[] feature, double[] split, int[] size, int[] left, int[] right
+ *   int    CRC32 of everything before it
+ * </pre>
+ *
+ * Weights and forest feature indices are in the artifact's feature order. On read they are mapped
+ * to the current {@link FeatureVectorSchema} by name; a forest that uses a feature the schema no
+ * longer has is dropped.
+ */
+public final class ModelArtifactCodec {
+
+  private static final Logger log = LoggerFactory.getLogger(ModelArtifactCodec.class);
+
+  public static final String FORMAT = "BINARY_LINEAR_IFOREST_V1";
+  static final int MAGIC = 0x50434D41;
+  static final short FORMAT_VERSION = 1;
+
+  private static final short HAS_LINEAR = 1;
+  private static final short HAS_FOREST = 2;
+
+  /** What a binary artifact holds; either part may be null. */
+  public record Decoded(String version, DirectLinearScorer scorer, IsolationForest forest) {}
+
+  /** Thrown for truncated, corrupt or unsupported artifacts. */
+  public static final class InvalidArtifactException extends IllegalArgumentException {
+    InvalidArtifactException(String message) {
+      super(message);
+    }
+  }
+
+  private ModelArtifactCodec() {
+  }
+
+  public static boolean isBinary(byte[] bytes) {
+    return bytes != null && bytes.length >= 4 && ByteBuffer.wrap(bytes).getInt(0) == MAGIC;
+  }
+
+  public static long schemaHash(List<String> names) {
+    long h = 0xcbf29ce484222325L;
+    for (String n : names) {
+      for (byte b : n.getBytes(StandardCharsets.UTF_8)) {
+        h ^= b & 0xff;
+        h *= 0x100000001b3L;
+      }
+      h ^= '\n';
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  public static byte[] encode(String version, DirectLinearScorer scorer, IsolationForest forest) {
+    List<String> names = FeatureVectorSchema.featureNames();
+    int dims = names.size();
+    byte[][] nameBytes = new byte[dims][];
+    int size = 4 + 2 + 2 + 8 + 4;
+    for (int i = 0; i < dims; i++) {
+      nameBytes[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+      size += 2 + nameBytes[i].length;
+    }
+    byte[] versionBytes = (version != null ? version : "").getBytes(StandardCharsets.UTF_8);
+    size += 2 + versionBytes.length;
+
+    short flags = 0;
+    if (scorer != null) {
+      flags |= HAS_LINEAR;
+      int outputs = scorer.bias().length;
+      size += 4 + 4 + 8 * outputs * dims + 8 * outputs;
+    }
+    IsolationForest.FlatTree[] trees = forest != null ? forest.flatTrees() : null;
+    if (trees != null) {
+      flags |= HAS_FOREST;
+      size += 4 + 4 + 8 + 4;
+      for (IsolationForest.FlatTree t : trees) size += 4 + t.feature.length * (4 + 8 + 4 + 4 + 4);
+    }
+    size += 4;
+
+    ByteBuffer buf = ByteBuffer.allocate(size);
+    buf.putInt(MAGIC).putShort(FORMAT_VERSION).putShort(flags).putLong(schemaHash(names));
+    buf.putInt(dims);
+    for (byte[] n : nameBytes) buf.putShort((short) n.length).put(n);
+    buf.putShort((short) versionBytes.length).put(versionBytes);
+
+    if (scorer != null) {
+      double[][] w = scorer.weights();
+      buf.putInt(w.length).putInt(scorer.legitIndex());
+      for (double[] row : w) {
+        for (int i = 0; i < dims; i++) buf.putDouble(i < row.length ? row[i] : 0.0);
+      }
+      for (double b : scorer.bias()) buf.putDouble(b);
+    }
+    if (trees != null) {
+      buf.putInt(forest.numTrees()).putInt(forest.subsampleSize()).putLong(forest.seed()).putInt(trees.length);
+      for (IsolationForest.FlatTree t : trees) {
+        int n = t.feature.length;
+        buf.putInt(n);
+        for (int i = 0; i < n; i++) buf.putInt(t.feature[i]);
+        for (int i = 0; i < n; i++) buf.putDouble(t.split[i]);
+        for (int i = 0; i < n; i++) buf.putInt(t.size[i]);
+        for (int i = 0; i < n; i++) buf.putInt(t.left[i]);
+        for (int i = 0; i < n; i++) buf.putInt(t.right[i]);
+      }
+    }
+    CRC32 crc = new CRC32();
+    crc.update(buf.array(), 0, buf.position());
+    buf.putInt((int) crc.getValue());
+    return buf.array();
+  }
+
+  /**
+   * Reads an artifact from {@code buf}'s position to its limit; the buffer itself is not moved.
+   *
+   * @param coreOfDim see {@link DirectLinearScorer#from}
+   */
+  public static Decoded decode(ByteBuffer buf, int[] coreOfDim) {
+    ByteBuffer in = buf.slice();
+    try {
+      if (in.remaining() < 8 || in.getInt() != MAGIC) throw new InvalidArtifactException("not a binary model artifact");
+      short formatVersion = in.getShort();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new InvalidArtifactException("unsupported artifact format version " + formatVersion);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(in.duplicate().position(0).limit(in.limit() - 4));
+      if ((int) crc.getValue() != in.getInt(in.limit() - 4)) throw new InvalidArtifactException("artifact checksum mismatch");
+
+      short flags = in.getShort();
+      in.getLong(); // schema hash; names below are authoritative
+      int dims = in.getInt();
+      List<String> names = new ArrayList<>(dims);
+      for (int i = 0; i < dims; i++) names.add(string(in));
+      String version = string(in);
+
+      // artifact feature index -> current schema index, or -1
+      List<String> schema = FeatureVectorSchema.featureNames();
+      Map<String, Integer> schemaIndex = new HashMap<>();
+      for (int i = 0; i < schema.size(); i++) schemaIndex.put(schema.get(i), i);
+      int[] toSchema = new int[dims];
+      for (int i = 0; i < dims; i++) toSchema[i] = schemaIndex.getOrDefault(names.get(i), -1);
+
+      DirectLinearScorer scorer = null;
+      if ((flags & HAS_LINEAR) != 0) {
+        int outputs = in.getInt();
+        int legitIdx = in.getInt();
+        double[] raw = new double[outputs * dims];
+        doubles(in, raw);
+        double[][] weights = new double[outputs][schema.size()];
+        for (int k = 0; k < outputs; k++) {
+          for (int i = 0; i < dims; i++) {
+            if (toSchema[i] >= 0) weights[k][toSchema[i]] = raw[k * dims + i];
+          }
+        }
+        double[] bias = new double[outputs];
+        doubles(in, bias);
+        scorer = DirectLinearScorer.of(legitIdx, weights, bias, coreOfDim);
+      }
+
+      IsolationForest forest = null;
+      if ((flags & HAS_FOREST) != 0) {
+        int numTrees = in.getInt();
+        int subsample = in.getInt();
+        long seed = in.getLong();
+        int count = in.getInt();
+        IsolationForest.FlatTree[] trees = new IsolationForest.FlatTree[count];
+        boolean mappable = true;
+        for (int t = 0; t < count; t++) {
+          int n = in.getInt();
+          int[] feature = ints(in, n);
+          double[] split = new double[n];
+          doubles(in, split);
+          int[] size = ints(in, n);
+          int[] left = ints(in, n);
+          int[] right = ints(in, n);
+          for (int i = 0; i < n; i++) {
+            if (feature[i] >= dims) throw new InvalidArtifactException("forest feature index out of range");
+            if (feature[i] >= 0) {
+              feature[i] = toSchema[feature[i]];
+              mappable &= feature[i] >= 0;
+            }
+          }
+          trees[t] = new IsolationForest.FlatTree(feature, split, size, left, right);
+        }
+        if (mappable) {
+          forest = IsolationForest.restore(numTrees, subsample, seed, trees);
+        } else {
+          log.warn("[ml] artifact {} splits on features missing from the current schema; anomaly scoring disabled", version);
+        }
+      }
+      return new Decoded(version, scorer, forest);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+      throw new InvalidArtifactException("truncated model artifact");
+    }
+  }
+
+  private static String string(ByteBuffer in) {
+    byte[] b = new byte[Short.toUnsignedInt(in.getShort())];
+    in.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private static void doubles(ByteBuffer in, double[] out) {
+    in.asDoubleBuffer().get(out);
+    in.position(in.position() + out.length * Double.BYTES);
+  }
+
+  private static int[] ints(ByteBuffer in, int n) {
+    int[] out = new int[n];
+    in.asIntBuffer().get(out);
+    in.position(in.position() + n * Integer.BYTES);
+    return out;
+  }
+}
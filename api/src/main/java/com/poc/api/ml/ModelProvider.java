@@ -1,7 +1,11 @@
 package com.poc.api.ml;
 
 import com.poc.api.ml.persistence.ModelRegistryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.tribuo.Model;
 import org.tribuo.MutableDataset;
@@ -13,29 +17,53 @@ import org.tribuo.impl.ArrayExample;
 import org.tribuo.provenance.SimpleDataSourceProvenance;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class ModelProvider {
 
+    private static final Logger log = LoggerFactory.getLogger(ModelProvider.class);
+
     private static final LabelFactory LABELS = new LabelFactory();
     private static final Label LEGIT = LABELS.generateOutput("legit");
     private static final Label FRAUD = LABELS.generateOutput("fraud");
 
+    // Schema layout resolved once instead of on every prediction.
+    private static final String[] SCHEMA_NAMES = FeatureVectorSchema.featureNames().toArray(new String[0]);
+    private static final int[] CORE_OF_DIM = coreOfDim(SCHEMA_NAMES);
+
+    // Probe vectors used to check a DirectLinearScorer against Tribuo before trusting it.
+    private static final double[][] PROBES = {
+            {0.0, 0.0, 0.0, 0.0}, {1.0, 1.0, 1.0, 1.0}, {0.9, 0.2, 0.7, 0.4}, {0.1, 0.8, 0.3, 0.95}
+    };
+
     private final ModelRegistryRepository registry;
+    private final boolean directInference;
 
     private volatile long activeId = 0L;
     private volatile Artifact activeArtifact;
 
-    private final Map<Long, Artifact> cache = new ConcurrentHashMap<>();
+    // Registry models resolved by id (canary, pinned requests); the in-memory active model is held above.
+    private final ArtifactCache<Artifact> cache;
     private volatile String modelVersion = "rules-only";
 
-    public ModelProvider(ModelRegistryRepository registry) {
+    public ModelProvider(ModelRegistryRepository registry,
+                         MeterRegistry meterRegistry,
+                         @Value("${poc.ml.direct-inference.enabled:true}") boolean directInference,
+                         @Value("${poc.ml.artifact-cache.max-bytes:67108864}") long cacheMaxBytes) {
         this.registry = registry;
+        this.directInference = directInference;
+        this.cache = new ArtifactCache<>(meterRegistry, cacheMaxBytes);
     }
 
+    /** A serialized artifact and the registry format it is written in. */
+    public record ExportedArtifact(String format, byte[] bytes) {}
+
+    /** Registry format of artifacts written with Java serialization (still readable). */
+    public static final String LEGACY_FORMAT = "JAVA_SERIALIZED_TRIBUO_LOGREG_IFOREST";
+
     public static class TrainingExample {
         public final double[] features;
         public final boolean legit;
@@ -45,6 +73,10 @@ public class ModelProvider {
         }
     }
 
+    /**
+     * Legacy artifacts carry the Tribuo model; binary ones ({@link ModelArtifactCodec}) carry only
+     * the scorer and forest, so {@code model} is null for them.
+     */
     private static class Artifact implements Serializable {
         final String version;
         final Model<Label> model;
@@ -55,6 +87,9 @@ public class ModelProvider {
             this.model = model;
             this.iforest = iforest;
         }
+
+        // Derived at load time; private transient so the serialized form (and its UID) is unchanged.
+        private transient DirectLinearScorer scorer;
     }
 
     /**
@@ -65,12 +100,11 @@ public class ModelProvider {
      */
     @PostConstruct
     public void init() {
-        registry.findActive().ifPresent(rec -> {
-            Artifact a = decode(rec.bytes());
+        registry.findActiveId().ifPresent(id -> {
+            Artifact a = load(id);
             if (a != null) {
-                activeId = rec.id();
+                activeId = id;
                 activeArtifact = a;
-                cache.put(activeId, a);
                 modelVersion = a.version;
             }
         });
@@ -144,22 +178,43 @@ public class ModelProvider {
 
         // Activate in-memory (registry persistence is handled elsewhere via Admin retrain flow)
         this.modelVersion = "trained-" + Instant.now();
-        this.activeArtifact = new Artifact(modelVersion, m, iforest);
+        this.activeArtifact = prepare(new Artifact(modelVersion, m, iforest));
         this.activeId = 0L; // "in-memory" until persisted/activated via registry
     }
 
     public byte[] exportArtifactBytes() {
-        if (activeArtifact == null) return new byte[0];
-        return encode(activeArtifact);
+        return exportArtifact().bytes();
+    }
+
+    /**
+     * The active model in the binary format when its weights can be extracted and verified
+     * (whether or not direct inference is enabled), otherwise as a serialized Tribuo model.
+     */
+    public ExportedArtifact exportArtifact() {
+        Artifact a = activeArtifact;
+        if (a == null) return new ExportedArtifact(LEGACY_FORMAT, new byte[0]);
+        DirectLinearScorer scorer = a.scorer != null ? a.scorer : verifiedScorer(a);
+        if (scorer != null) {
+            return new ExportedArtifact(ModelArtifactCodec.FORMAT, ModelArtifactCodec.encode(a.version, scorer, a.iforest));
+        }
+        return new ExportedArtifact(LEGACY_FORMAT, encode(a));
     }
 
     public void setActiveFromRegistry(long modelId, byte[] bytes) {
-        Artifact a = decode(bytes);
+        Artifact a = prepare(decode(modelId, bytes));
         if (a == null) return;
         this.activeId = modelId;
         this.activeArtifact = a;
         this.modelVersion = a.version;
-        cache.put(modelId, a);
+        cache.put(modelId, a, bytes.length);
+    }
+
+    /**
+     * Keeps these registry models resident regardless of the cache budget; replaces the previous
+     * set. Called by model routing with the active and canary ids.
+     */
+    public void pinModels(Set<Long> modelIds) {
+        cache.pin(modelIds);
     }
 
     /**
@@ -173,21 +228,51 @@ public class ModelProvider {
         Artifact a = resolve(modelId);
 
         // Rules-only fallback if no model
-        if (a == null || a.model == null) {
+        if (a == null || (a.model == null && a.scorer == null)) {
             double raw = 0.5 * deviceScore + 0.2 * behaviorScore + 0.2 * tlsScore + 0.1 * contextScore;
             return clamp01(raw);
         }
 
-        String[] names = FeatureVectorSchema.featureNames().toArray(new String[0]);
-        int expectedDim = names.length;
-
-        // Build feature vector to match schema length
-        double[] vals = buildVectorForSchema(names, deviceScore, behaviorScore, tlsScore, contextScore);
-        if (vals.length != expectedDim) {
-            // Should never happen, but keep safe.
-            double raw = 0.5 * deviceScore + 0.2 * behaviorScore + 0.2 * tlsScore + 0.1 * contextScore;
-            return clamp01(raw);
+        if (a.scorer != null) {
+            return clamp01(a.scorer.scoreCore(deviceScore, behaviorScore, tlsScore, contextScore));
         }
+        return clamp01(predictWithTribuo(a.model, vectorFor(deviceScore, behaviorScore, tlsScore, contextScore)));
+    }
+
+    /**
+     * {P(legit), anomaly score} from exactly this registry model, or null when it cannot be loaded.
+     * Unlike {@link #predictWithModelId} this never falls back to the active model or the rules,
+     * so shadow scores are always attributable to the model asked for.
+     */
+    public double[] scoreExact(long modelId, double deviceScore, double behaviorScore, double tlsScore, double contextScore) {
+        if (modelId <= 0) return null;
+        Artifact a = cache.get(modelId);
+        if (a == null) a = load(modelId);
+        if (a == null || (a.model == null && a.scorer == null)) return null;
+
+        double[] v = vectorFor(deviceScore, behaviorScore, tlsScore, contextScore);
+        double pLegit = a.scorer != null
+                ? a.scorer.scoreCore(deviceScore, behaviorScore, tlsScore, contextScore)
+                : predictWithTribuo(a.model, v);
+        double anomaly = a.iforest != null ? a.iforest.score(v) : 0.0;
+        return new double[] {clamp01(pLegit), anomaly};
+    }
+
+    /**
+     * True when {@link #predictWithModelId} for this id used the heuristic fallback (no model loaded).
+     * Only consults what is already resolved, so it never touches the registry.
+     */
+    public boolean isRulesOnly(long modelId) {
+        Artifact a = modelId > 0 ? cache.peek(modelId) : null;
+        if (a == null) a = activeArtifact;
+        return a == null || (a.model == null && a.scorer == null);
+    }
+
+    /**
+     * Reference path: one Tribuo example per call. Used when no direct scorer is available.
+     */
+    private static double predictWithTribuo(Model<Label> model, double[] vals) {
+        String[] names = SCHEMA_NAMES;
 
         // Single example dataset for prediction
         MutableDataset<Label> ds = new MutableDataset<>(
@@ -196,10 +281,10 @@ public class ModelProvider {
         );
         ds.add(new ArrayExample<>(LEGIT, names, vals));
 
-        Prediction<Label> pred = a.model.predict(ds.getExample(0));
-        var score = pred.getOutputScores().get(LEGIT);
-        double pLegit = (score == null) ? 0.5 : score.getScore();
-        return clamp01(pLegit);
+        Prediction<Label> pred = model.predict(ds.getExample(0));
+        // getOutputScores() is keyed by label name; looking it up by Label always missed (-> 0.5).
+        var score = pred.getOutputScores().get(LEGIT.getLabel());
+        return (score == null) ? 0.5 : score.getScore();
     }
 
     public double anomalyScore(double deviceScore, double behaviorScore, double tlsScore, double contextScore) {
@@ -210,9 +295,7 @@ public class ModelProvider {
         Artifact a = resolve(modelId);
         if (a == null || a.iforest == null) return 0.0;
 
-        String[] names = FeatureVectorSchema.featureNames().toArray(new String[0]);
-        double[] vals = buildVectorForSchema(names, deviceScore, behaviorScore, tlsScore, contextScore);
-        return a.iforest.score(vals);
+        return a.iforest.score(vectorFor(deviceScore, behaviorScore, tlsScore, contextScore));
     }
 
     private Artifact resolve(long modelId) {
@@ -220,15 +303,42 @@ public class ModelProvider {
         Artifact cached = cache.get(modelId);
         if (cached != null) return cached;
 
-        return registry.findById(modelId).map(r -> {
-            Artifact a = decode(r.bytes());
-            if (a != null) cache.put(modelId, a);
-            return a;
-        }).orElse(activeArtifact);
+        Artifact a = load(modelId);
+        return a != null ? a : activeArtifact;
+    }
+
+    /** Reads one artifact blob from the registry, decodes it and caches it. */
+    private Artifact load(long modelId) {
+        byte[] bytes = registry.findBytes(modelId).orElse(null);
+        Artifact a = prepare(decode(modelId, bytes));
+        if (a != null) cache.put(modelId, a, bytes.length);
+        return a;
     }
 
     /**
-     * Builds a vector aligned to FeatureVectorSchema.featureNames().
+     * Builds a vector aligned to FeatureVectorSchema.featureNames() using the precomputed
+     * {@link #CORE_OF_DIM} mapping; dimensions that are not a core score stay 0.0.
+     */
+    private static double[] vectorFor(double deviceScore,
+                                      double behaviorScore,
+                                      double tlsScore,
+                                      double contextScore) {
+        double[] v = new double[SCHEMA_NAMES.length];
+        for (int i = 0; i < v.length; i++) {
+            switch (CORE_OF_DIM[i]) {
+                case 0 -> v[i] = deviceScore;
+                case 1 -> v[i] = behaviorScore;
+                case 2 -> v[i] = tlsScore;
+                case 3 -> v[i] = contextScore;
+                default -> { }
+            }
+        }
+        return v;
+    }
+
+    /**
+     * For each schema dimension, which core score feeds it: 0=device, 1=behavior, 2=tls,
+     * 3=context, -1=none. Resolved once from the schema names.
      *
      * Supports two cases:
      * 1) If schema is exactly 4-dim: [device, behavior, tls, context]
@@ -237,41 +347,52 @@ public class ModelProvider {
      *
      * This prevents the Tribuo "names.length != values.length" crash permanently.
      */
-    private static double[] buildVectorForSchema(String[] names,
-                                                 double deviceScore,
-                                                 double behaviorScore,
-                                                 double tlsScore,
-                                                 double contextScore) {
-        if (names == null || names.length == 0) {
-            return new double[] { deviceScore, behaviorScore, tlsScore, contextScore };
-        }
+    private static int[] coreOfDim(String[] names) {
+        if (names.length == 4) return new int[] {0, 1, 2, 3};
 
-        // If schema is exactly 4, keep it simple
-        if (names.length == 4) {
-            return new double[] { deviceScore, behaviorScore, tlsScore, contextScore };
-        }
-
-        // Otherwise map by name (best-effort, robust)
-        double[] v = new double[names.length];
+        int[] core = new int[names.length];
         for (int i = 0; i < names.length; i++) {
             String n = (names[i] == null) ? "" : names[i].toLowerCase(Locale.ROOT);
 
             // Common name patterns we might have in FeatureVectorSchema
-            if (n.contains("device") && n.contains("score")) v[i] = deviceScore;
-            else if (n.equals("device_score")) v[i] = deviceScore;
-
-            else if (n.contains("behavior") && n.contains("score")) v[i] = behaviorScore;
-            else if (n.equals("behaviour_score") || n.equals("behavior_score")) v[i] = behaviorScore;
-
-            else if (n.contains("tls") && n.contains("score")) v[i] = tlsScore;
-            else if (n.equals("tls_score")) v[i] = tlsScore;
+            if ((n.contains("device") && n.contains("score")) || n.equals("device_score")) core[i] = 0;
+            else if ((n.contains("behavior") && n.contains("score")) || n.equals("behaviour_score")) core[i] = 1;
+            else if ((n.contains("tls") && n.contains("score")) || n.equals("tls_score")) core[i] = 2;
+            else if ((n.contains("context") && n.contains("score")) || n.equals("context_score")) core[i] = 3;
+            else core[i] = -1; // Unknown dims default to 0.0
+        }
+        return core;
+    }
 
-            else if (n.contains("context") && n.contains("score")) v[i] = contextScore;
-            else if (n.equals("context_score")) v[i] = contextScore;
+    /**
+     * Attaches a {@link DirectLinearScorer} when the model supports it and it reproduces Tribuo's
+     * scores on the probe vectors within {@link DirectLinearScorer#TOLERANCE}.
+     */
+    private Artifact prepare(Artifact a) {
+        if (a == null || a.model == null || !directInference) return a;
+        a.scorer = verifiedScorer(a);
+        return a;
+    }
 
-            // Unknown dims default to 0.0
+    private static DirectLinearScorer verifiedScorer(Artifact a) {
+        if (a.model == null) return null;
+        try {
+            DirectLinearScorer scorer = DirectLinearScorer.from(a.model, LEGIT, CORE_OF_DIM);
+            if (scorer == null) return null;
+            for (double[] p : PROBES) {
+                double expected = predictWithTribuo(a.model, vectorFor(p[0], p[1], p[2], p[3]));
+                double actual = scorer.scoreCore(p[0], p[1], p[2], p[3]);
+                if (Math.abs(expected - actual) > DirectLinearScorer.TOLERANCE) {
+                    log.warn("[ml] direct scorer for model {} deviates from Tribuo ({} vs {}); using Tribuo path",
+                            a.version, actual, expected);
+                    return null;
+                }
+            }
+            return scorer;
+        } catch (Exception e) {
+            log.warn("[ml] could not build direct scorer for model {}: {}", a.version, e.getMessage());
+            return null;
         }
-        return v;
     }
 
     private static byte[] encode(Artifact a) {
@@ -285,12 +406,25 @@ public class ModelProvider {
         }
     }
 
-    private static Artifact decode(byte[] bytes) {
+    /** Reads either artifact format, telling them apart by the binary magic number. */
+    private static Artifact decode(long modelId, byte[] bytes) {
         if (bytes == null || bytes.length == 0) return null;
+        if (ModelArtifactCodec.isBinary(bytes)) {
+            try {
+                ModelArtifactCodec.Decoded d = ModelArtifactCodec.decode(ByteBuffer.wrap(bytes), CORE_OF_DIM);
+                Artifact a = new Artifact(d.version(), null, d.forest());
+                a.scorer = d.scorer();
+                return a;
+            } catch (RuntimeException e) {
+                log.warn("[ml] could not read binary artifact of model {}: {}", modelId, e.getMessage());
+                return null;
+            }
+        }
         try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
             Object o = ois.readObject();
             return (Artifact) o;
         } catch (Exception e) {
+            log.warn("[ml] could not deserialize artifact of model {}: {}", modelId, e.getMessage());
             return null;
         }
     }
@@ -10,6 +10,11 @@ import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * model_registry access. Listings and lookups that only need to know about a model use the
+ * {@link ModelMeta} queries, which never read the artifact column; {@link #findBytes} loads the
+ * blob when a model actually has to be scored with.
+ */
 @Repository
 public class ModelRegistryRepository {
 
@@ -28,6 +33,22 @@ public class ModelRegistryRepository {
       String metricsJson
   ) {}
 
+  /** A registry row without its artifact; {@code sizeBytes} is the artifact length. */
+  public record ModelMeta(
+      long id,
+      String name,
+      String format,
+      String version,
+      long sizeBytes,
+      String sha256,
+      boolean active,
+      OffsetDateTime createdAt,
+      String kind,
+      String scopeType,
+      String scopeKey,
+      String metricsJson
+  ) {}
+
   private final JdbcTemplate jdbcTemplate;
 
   private final RowMapper<ModelRecord> rowMapper = new RowMapper<>() {
@@ -50,6 +71,28 @@ public class ModelRegistryRepository {
     }
   };
 
+  private final RowMapper<ModelMeta> metaMapper = (rs, rowNum) -> new ModelMeta(
+      rs.getLong("id"),
+      rs.getString("name"),
+      rs.getString("format"),
+      rs.getString("version"),
+      rs.getLong("size_bytes"),
+      rs.getString("sha256"),
+      rs.getBoolean("active"),
+      rs.getObject("created_at", OffsetDateTime.class),
+      rs.getString("kind"),
+      rs.getString("scope_type"),
+      rs.getString("scope_key"),
+      rs.getString("metrics_json")
+  );
+
+  // octet_length on bytea reads the TOAST header only, so the artifact itself is not fetched.
+  private static final String META_SELECT =
+      "SELECT id, name, format, version, COALESCE(octet_length(bytes), 0) AS size_bytes, sha256, active, created_at, " +
+          "COALESCE(kind,'risk-model') as kind, COALESCE(scope_type,'GLOBAL') as scope_type, COALESCE(scope_key,'*') as scope_key, " +
+          "COALESCE(metrics_json,'{}'::jsonb)::text as metrics_json " +
+          "FROM model_registry ";
+
   private static final String BASE_SELECT =
       "SELECT id, name, format, version, bytes, sha256, active, created_at, " +
           "COALESCE(kind,'risk-model') as kind, COALESCE(scope_type,'GLOBAL') as scope_type, COALESCE(scope_key,'*') as scope_key, " +
@@ -68,6 +111,23 @@ public class ModelRegistryRepository {
     return rows.stream().findFirst();
   }
 
+  public Optional<ModelMeta> findActiveMeta() {
+    List<ModelMeta> rows = jdbcTemplate.query(
+        META_SELECT + "WHERE active=true ORDER BY id DESC LIMIT 1",
+        metaMapper
+    );
+    return rows.stream().findFirst();
+  }
+
+  /** Id of the active model without loading its artifact. */
+  public Optional<Long> findActiveId() {
+    List<Long> ids = jdbcTemplate.queryForList(
+        "SELECT id FROM model_registry WHERE active=true ORDER BY id DESC LIMIT 1",
+        Long.class
+    );
+    return ids.stream().findFirst();
+  }
+
   public Optional<ModelRecord> findById(long id) {
     List<ModelRecord> rows = jdbcTemplate.query(
         BASE_SELECT + "WHERE id=?",
@@ -76,12 +136,21 @@ public class ModelRegistryRepository {
     return rows.stream().findFirst();
   }
 
-  public List<ModelRecord> listRecent(String kind, String scopeType, String scopeKey, int limit) {
+  /** Just the artifact of one model; empty when the row does not exist. */
+  public Optional<byte[]> findBytes(long id) {
+    List<byte[]> rows = jdbcTemplate.query(
+        "SELECT bytes FROM model_registry WHERE id=?",
+        (rs, rowNum) -> rs.getBytes(1), id
+    );
+    return rows.stream().findFirst();
+  }
+
+  public List<ModelMeta> listRecent(String kind, String scopeType, String scopeKey, int limit) {
     return jdbcTemplate.query(
-        BASE_SELECT +
+        META_SELECT +
             "WHERE COALESCE(kind,'risk-model')=? AND COALESCE(scope_type,'GLOBAL')=? AND COALESCE(scope_key,'*')=? " +
             "ORDER BY id DESC LIMIT ?",
-        rowMapper,
+        metaMapper,
         kind, scopeType, scopeKey, Math.min(limit, 500)
     );
   }
@@ -0,0 +1,97 @@
+package com.poc.api.ml.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * model_shadow_candidate / model_shadow_score (V125).
+ */
+@Repository
+public class ModelShadowRepository {
+
+  public record Candidate(long modelId, int samplePercent, boolean enabled, OffsetDateTime updatedAt) {}
+
+  /** One candidate's output for one request, next to what the live model produced. */
+  public record ShadowScore(String requestId,
+                            long liveModelId,
+                            long shadowModelId,
+                            double livePLegit,
+                            double shadowPLegit,
+                            double shadowAnomaly,
+                            String liveDecision,
+                            String shadowDecision) {}
+
+  /** Agreement of one candidate with the live model since some point in time. */
+  public record Summary(long shadowModelId,
+                        long scored,
+                        long disagreements,
+                        double meanAbsDelta,
+                        double liveAllowRate,
+                        double shadowAllowRate) {}
+
+  private final JdbcTemplate jdbc;
+
+  public ModelShadowRepository(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  public List<Candidate> listCandidates() {
+    return jdbc.query(
+        "SELECT model_id, sample_percent, enabled, updated_at FROM model_shadow_candidate ORDER BY model_id",
+        (rs, rowNum) -> new Candidate(
+            rs.getLong("model_id"),
+            rs.getInt("sample_percent"),
+            rs.getBoolean("enabled"),
+            rs.getObject("updated_at", OffsetDateTime.class)));
+  }
+
+  public void upsertCandidate(long modelId, int samplePercent, boolean enabled) {
+    jdbc.update(
+        "INSERT INTO model_shadow_candidate(model_id, sample_percent, enabled) VALUES (?,?,?) " +
+            "ON CONFLICT (model_id) DO UPDATE SET sample_percent=EXCLUDED.sample_percent, enabled=EXCLUDED.enabled, updated_at=now()",
+        modelId, samplePercent, enabled
+    );
+  }
+
+  public void disableCandidate(long modelId) {
+    jdbc.update("UPDATE model_shadow_candidate SET enabled=false, updated_at=now() WHERE model_id=?", modelId);
+  }
+
+  public void insertBatch(List<ShadowScore> rows) {
+    if (rows.isEmpty()) return;
+    jdbc.batchUpdate(
+        "INSERT INTO model_shadow_score(request_id, live_model_id, shadow_model_id, live_p_legit, shadow_p_legit, " +
+            "shadow_anomaly, live_decision, shadow_decision) VALUES (?,?,?,?,?,?,?,?)",
+        rows, rows.size(), (ps, r) -> {
+          ps.setString(1, r.requestId());
+          ps.setLong(2, r.liveModelId());
+          ps.setLong(3, r.shadowModelId());
+          ps.setFloat(4, (float) r.livePLegit());
+          ps.setFloat(5, (float) r.shadowPLegit());
+          ps.setFloat(6, (float) r.shadowAnomaly());
+          ps.setString(7, r.liveDecision());
+          ps.setString(8, r.shadowDecision());
+        });
+  }
+
+  public List<Summary> summarize(OffsetDateTime since) {
+    return jdbc.query(
+        "SELECT shadow_model_id, COUNT(*) AS scored, " +
+            "COUNT(*) FILTER (WHERE live_decision <> shadow_decision) AS disagreements, " +
+            "COALESCE(AVG(ABS(shadow_p_legit - live_p_legit)), 0) AS mean_abs_delta, " +
+            "COALESCE(AVG(CASE WHEN live_decision = 'ALLOW' THEN 1.0 ELSE 0.0 END), 0) AS live_allow_rate, " +
+            "COALESCE(AVG(CASE WHEN shadow_decision = 'ALLOW' THEN 1.0 ELSE 0.0 END), 0) AS shadow_allow_rate " +
+            "FROM model_shadow_score WHERE created_at >= ? GROUP BY shadow_model_id ORDER BY shadow_model_id",
+        (rs, rowNum) -> new Summary(
+            rs.getLong("shadow_model_id"),
+            rs.getLong("scored"),
+            rs.getLong("disagreements"),
+            rs.getDouble("mean_abs_delta"),
+            rs.getDouble("live_allow_rate"),
+            rs.getDouble("shadow_allow_rate")),
+        since);
+  }
+}
@@ -1,12 +1,10 @@
 package com.poc.api.ml.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.poc.api.ml.FeatureVectorSchema;
 import com.poc.api.ml.ModelProvider;
 import com.poc.api.ml.persistence.ModelRegistryRepository;
-import com.poc.api.risk.persistence.SessionFeatureRepository;
-import com.poc.api.risk.persistence.SessionFeatureRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.security.MessageDigest;
@@ -18,50 +16,53 @@ public class MlTrainingService {
 
   public record TrainResult(long modelId, String version, Map<String,Object> metrics) {}
 
-  private final SessionFeatureRepository sessionFeatureRepository;
   private final ModelRegistryRepository modelRegistryRepository;
   private final ModelProvider modelProvider;
+  private final ApplicationEventPublisher events;
+  private final TrainingDataLoader loader;
+  private final int maxRows;
   private final ObjectMapper om = new ObjectMapper();
 
-  public MlTrainingService(SessionFeatureRepository sessionFeatureRepository,
-                           ModelRegistryRepository modelRegistryRepository,
-                           ModelProvider modelProvider) {
-    this.sessionFeatureRepository = sessionFeatureRepository;
+  public MlTrainingService(ModelRegistryRepository modelRegistryRepository,
+                           ModelProvider modelProvider,
+                           ApplicationEventPublisher events,
+                           TrainingDataLoader loader,
+                           @Value("${poc.ml.training.max-rows:1000000}") int maxRows) {
     this.modelRegistryRepository = modelRegistryRepository;
     this.modelProvider = modelProvider;
+    this.events = events;
+    this.loader = loader;
+    this.maxRows = Math.max(1, maxRows);
   }
 
   public void retrainFromRecent(int limit) {
     retrainFromRecentWithResult(limit);
   }
 
+  /**
+   * Trains on the {@code limit} most recent labelled sessions (capped by poc.ml.training.max-rows),
+   * registers the artifact as the active model and reports load/train throughput in the metrics.
+   */
   public TrainResult retrainFromRecentWithResult(int limit) {
-    List<SessionFeatureRow> rows = sessionFeatureRepository.findRecentWithLabel(Math.min(limit, 2000));
-    if (rows.isEmpty()) {
+    TrainingDataLoader.Loaded data = loader.load(Math.max(1, Math.min(limit, maxRows)));
+    List<ModelProvider.TrainingExample> examples = data.examples();
+    if (examples.isEmpty()) {
       return new TrainResult(0L, "none", Map.of("trained_examples", 0));
     }
 
-    List<ModelProvider.TrainingExample> examples = new ArrayList<>();
-    List<double[]> vectors = new ArrayList<>();
-
-    for (SessionFeatureRow r : rows) {
-      double[] v = extractBase4(r.featureVector);
-      vectors.add(v);
-
-      boolean legit = "ALLOW".equalsIgnoreCase(r.decision);
-      examples.add(new ModelProvider.TrainingExample(v, legit));
-    }
-
-    modelProvider.train(examples, vectors);
+    long trainStarted = System.nanoTime();
+    modelProvider.train(examples, data.anomalySample());
+    long trainMillis = (System.nanoTime() - trainStarted) / 1_000_000;
     String version = modelProvider.getModelVersion();
 
-    byte[] bytes = modelProvider.exportArtifactBytes();
+    ModelProvider.ExportedArtifact artifact = modelProvider.exportArtifact();
+    byte[] bytes = artifact.bytes();
     String sha256 = sha256(bytes);
 
     modelRegistryRepository.deactivateAll();
     long modelId = modelRegistryRepository.insertReturningId(
         "behavior-risk-model",
-        "JAVA_SERIALIZED_TRIBUO_LOGREG_IFOREST",
+        artifact.format(),
         version,
         bytes,
         sha256,
@@ -73,31 +74,19 @@ public class MlTrainingService {
     );
 
     modelProvider.setActiveFromRegistry(modelId, bytes);
-
-    return new TrainResult(modelId, version, Map.of("trained_examples", examples.size(), "sha256", sha256));
-  }
-
-  private double[] extractBase4(String featureVectorJson) {
-    // Default zeros
-    double device = 0, behavior = 0, tls = 0, context = 0;
-    if (featureVectorJson != null && !featureVectorJson.isBlank()) {
-      try {
-        JsonNode n = om.readTree(featureVectorJson);
-        // Accept either object {device_score:..} or array [..]
-        if (n.isObject()) {
-          device = n.path("device_score").asDouble(0);
-          behavior = n.path("behavior_score").asDouble(0);
-          tls = n.path("tls_score").asDouble(0);
-          context = n.path("context_score").asDouble(0);
-        } else if (n.isArray() && n.size() >= 4) {
-          device = n.get(0).asDouble(0);
-          behavior = n.get(1).asDouble(0);
-          tls = n.get(2).asDouble(0);
-          context = n.get(3).asDouble(0);
-        }
-      } catch (Exception ignore) {}
-    }
-    return FeatureVectorSchema.fromScores(device, behavior, tls, context);
+    events.publishEvent(new ModelRoutingChangedEvent("RETRAIN", modelId));
+
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("trained_examples", examples.size());
+    metrics.put("sha256", sha256);
+    metrics.put("artifact_format", artifact.format());
+    metrics.put("artifact_bytes", bytes.length);
+    metrics.put("load_pages", data.pages());
+    metrics.put("load_ms", data.loadMillis());
+    metrics.put("load_rows_per_sec", Math.round(data.rowsPerSecond()));
+    metrics.put("train_ms", trainMillis);
+    metrics.put("train_rows_per_sec", trainMillis > 0 ? Math.round(examples.size() * 1000.0 / trainMillis) : examples.size());
+    return new TrainResult(modelId, version, metrics);
   }
 
   private String json(Map<String,Object> m) {
@@ -3,6 +3,8 @@ package com.poc.api.ml.service;
 import com.poc.api.ml.persistence.ModelCanaryPolicyRepository;
 import com.poc.api.ml.persistence.ModelChangeEventRepository;
 import com.poc.api.ml.persistence.ModelRegistryRepository;
+import com.poc.api.ml.persistence.ModelShadowRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -11,22 +13,29 @@ public class ModelRolloutService {
   private final ModelRegistryRepository registry;
   private final ModelCanaryPolicyRepository canary;
   private final ModelChangeEventRepository changes;
+  private final ModelShadowRepository shadow;
+  private final ApplicationEventPublisher events;
 
   public ModelRolloutService(ModelRegistryRepository registry,
                              ModelCanaryPolicyRepository canary,
-                             ModelChangeEventRepository changes) {
+                             ModelChangeEventRepository changes,
+                             ModelShadowRepository shadow,
+                             ApplicationEventPublisher events) {
     this.registry = registry;
     this.canary = canary;
     this.changes = changes;
+    this.shadow = shadow;
+    this.events = events;
   }
 
   public void activate(String actor, long modelId, String reason) {
-    Long fromId = registry.findActive().map(ModelRegistryRepository.ModelRecord::id).orElse(null);
+    Long fromId = registry.findActiveId().orElse(null);
     registry.activateById(modelId);
     changes.insert(new ModelChangeEventRepository.ChangeEvent(
         0, null, actor, "ACTIVATE", "risk-model", "GLOBAL", "*",
         fromId, modelId, reason, "{}"
     ));
+    events.publishEvent(new ModelRoutingChangedEvent("ACTIVATE", modelId));
   }
 
   public void startCanary(String actor, String scopeType, String scopeKey, long modelId, int percent, String reason) {
@@ -35,6 +44,7 @@ public class ModelRolloutService {
         0, null, actor, "CANARY_START", "risk-model", scopeType, scopeKey,
         null, modelId, reason, "{}"
     ));
+    events.publishEvent(new ModelRoutingChangedEvent("CANARY_START", modelId));
   }
 
   public void stepCanary(String actor, String scopeType, String scopeKey, int percent, String reason) {
@@ -44,6 +54,7 @@ public class ModelRolloutService {
         0, null, actor, "CANARY_STEP", "risk-model", scopeType, scopeKey,
         null, c.modelId(), reason, "{}"
     ));
+    events.publishEvent(new ModelRoutingChangedEvent("CANARY_STEP", c.modelId()));
   }
 
   public void stopCanary(String actor, String scopeType, String scopeKey, String reason) {
@@ -54,10 +65,30 @@ public class ModelRolloutService {
         0, null, actor, "CANARY_STOP", "risk-model", scopeType, scopeKey,
         from, null, reason, "{}"
     ));
+    events.publishEvent(new ModelRoutingChangedEvent("CANARY_STOP", from));
+  }
+
+  /** Scores {@code modelId} in shadow on {@code percent}% of requests; it never decides anything. */
+  public void startShadow(String actor, long modelId, int percent, String reason) {
+    shadow.upsertCandidate(modelId, clamp(percent), true);
+    changes.insert(new ModelChangeEventRepository.ChangeEvent(
+        0, null, actor, "SHADOW_START", "risk-model", "GLOBAL", "*",
+        null, modelId, reason, "{}"
+    ));
+    events.publishEvent(new ModelRoutingChangedEvent("SHADOW_START", modelId));
+  }
+
+  public void stopShadow(String actor, long modelId, String reason) {
+    shadow.disableCandidate(modelId);
+    changes.insert(new ModelChangeEventRepository.ChangeEvent(
+        0, null, actor, "SHADOW_STOP", "risk-model", "GLOBAL", "*",
+        modelId, null, reason, "{}"
+    ));
+    events.publishEvent(new ModelRoutingChangedEvent("SHADOW_STOP", modelId));
   }
 
   public void rollback(String actor, String scopeType, String scopeKey, Long toModelId, String reason, String evidenceJson) {
-    Long current = registry.findActive().map(ModelRegistryRepository.ModelRecord::id).orElse(null);
+    Long current = registry.findActiveId().orElse(null);
     Long target = toModelId;
 
     if (target == null) {
@@ -71,6 +102,7 @@ public class ModelRolloutService {
         0, null, actor, "ROLLBACK", "risk-model", scopeType, scopeKey,
         current, target, reason, evidenceJson == null ? "{}" : evidenceJson
     ));
+    events.publishEvent(new ModelRoutingChangedEvent("ROLLBACK", target));
   }
 
   private int clamp(int p) { return Math.max(0, Math.min(100, p)); }
@@ -0,0 +1,134 @@
+package com.poc.api.ml.service;
+
+import com.poc.api.ml.ModelProvider;
+import com.poc.api.ml.persistence.ModelCanaryPolicyRepository;
+import com.poc.api.ml.persistence.ModelRegistryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory model routing for the scoring path: which model id is active and whether a canary
+ * takes a slice of traffic.
+ *
+ * The snapshot is rebuilt when a {@link ModelRoutingChangedEvent} arrives (published by
+ * {@link ModelRolloutService} and {@link MlTrainingService}) plus a slow periodic refresh for
+ * changes made by other instances, so {@link #select} does no DB reads. Only the active model's
+ * id is read, never its artifact. {@code poc.ml.routing.snapshot.enabled=false} reloads on every call.
+ *
+ * Each loaded snapshot pins its active and canary models in {@link ModelProvider}'s artifact cache.
+ */
+@Component
+public class ModelRouting {
+
+  private static final Logger log = LoggerFactory.getLogger(ModelRouting.class);
+
+  static final String KIND = "risk-model";
+  static final String SCOPE_TYPE = "GLOBAL";
+  static final String SCOPE_KEY = "*";
+
+  /** Active model plus the GLOBAL canary; {@code canaryModelId} is null when no canary is live. */
+  public record Snapshot(long activeModelId,
+                         Long canaryModelId,
+                         int rolloutPercent,
+                         String scopeType,
+                         String scopeKey) {
+
+    public boolean canaryLive() {
+      return canaryModelId != null && rolloutPercent > 0;
+    }
+  }
+
+  /** Model chosen for one request; {@code canary} mirrors the old canary_enabled breakdown flag. */
+  public record Selection(long modelId, boolean canary) {}
+
+  private final ModelRegistryRepository registry;
+  private final ModelCanaryPolicyRepository canaryPolicies;
+  private final ModelProvider modelProvider;
+  private final boolean snapshotEnabled;
+  private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+  public ModelRouting(ModelRegistryRepository registry,
+                      ModelCanaryPolicyRepository canaryPolicies,
+                      ModelProvider modelProvider,
+                      @Value("${poc.ml.routing.snapshot.enabled:true}") boolean snapshotEnabled) {
+    this.registry = registry;
+    this.canaryPolicies = canaryPolicies;
+    this.modelProvider = modelProvider;
+    this.snapshotEnabled = snapshotEnabled;
+  }
+
+  public Snapshot snapshot() {
+    if (!snapshotEnabled) return load();
+    Snapshot s = current.get();
+    return s != null ? s : refresh();
+  }
+
+  /**
+   * Canary bucketing is stable per request id (falling back to the user id), as before.
+   */
+  public Selection select(String userId, String requestId) {
+    Snapshot s = snapshot();
+    if (!s.canaryLive()) return new Selection(s.activeModelId(), false);
+
+    String key = (requestId != null && !requestId.isBlank()) ? requestId : userId;
+    long modelId = stableBucket(key) < s.rolloutPercent() ? s.canaryModelId() : s.activeModelId();
+    return new Selection(modelId, modelId == s.canaryModelId());
+  }
+
+  public synchronized Snapshot refresh() {
+    Snapshot next = load();
+    current.set(next);
+    return next;
+  }
+
+  private Snapshot load() {
+    long activeId = registry.findActiveId().orElse(0L);
+    var c = canaryPolicies.get(KIND, SCOPE_TYPE, SCOPE_KEY).orElse(null);
+    Snapshot s = (c == null || !c.enabled() || c.rolloutPercent() <= 0)
+        ? new Snapshot(activeId, null, 0, SCOPE_TYPE, SCOPE_KEY)
+        : new Snapshot(activeId, c.modelId(), c.rolloutPercent(), c.scopeType(), c.scopeKey());
+    modelProvider.pinModels(pinned(s));
+    return s;
+  }
+
+  private static Set<Long> pinned(Snapshot s) {
+    Set<Long> ids = new HashSet<>(2);
+    if (s.activeModelId() > 0) ids.add(s.activeModelId());
+    if (s.canaryLive()) ids.add(s.canaryModelId());
+    return ids;
+  }
+
+  @EventListener
+  public void onRoutingChanged(ModelRoutingChangedEvent event) {
+    if (!snapshotEnabled) return;
+    Snapshot next = refresh();
+    log.debug("[model-routing] {} (model {}): active={} canary={} at {}%", event.change(), event.modelId(),
+        next.activeModelId(), next.canaryModelId(), next.rolloutPercent());
+  }
+
+  @Scheduled(fixedDelayString = "${poc.ml.routing.refresh-ms:30000}")
+  public void periodicRefresh() {
+    // Safety net for rollouts done by another instance; only once the snapshot is in use.
+    if (!snapshotEnabled || current.get() == null) return;
+    try {
+      refresh();
+    } catch (Exception e) {
+      log.warn("[model-routing] periodic refresh failed, keeping previous snapshot: {}", e.getMessage());
+    }
+  }
+
+  static int stableBucket(String key) {
+    int h = (key == null) ? 0 : key.hashCode();
+    h ^= (h >>> 16);
+    long u = h & 0xffffffffL;
+    return (int) (u % 100);
+  }
+}
@@ -0,0 +1,7 @@
+package com.poc.api.ml.service;
+
+/**
+ * Published after the active model or a canary policy changes (activate, canary start/step/stop,
+ * rollback, retrain), so {@link ModelRouting} can rebuild its snapshot.
+ */
+public record ModelRoutingChangedEvent(String change, Long modelId) {}
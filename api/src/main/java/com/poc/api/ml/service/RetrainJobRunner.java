@@ -2,6 +2,7 @@ package com.poc.api.ml.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.poc.api.ml.persistence.RetrainJobRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -13,14 +14,17 @@ public class RetrainJobRunner {
   private final RetrainJobRepository jobs;
   private final MlTrainingService training;
   private final ScorecardService scorecards;
+  private final int maxRows;
   private final ObjectMapper om = new ObjectMapper();
 
   public RetrainJobRunner(RetrainJobRepository jobs,
                           MlTrainingService training,
-                          ScorecardService scorecards) {
+                          ScorecardService scorecards,
+                          @Value("${poc.retrain.runner.max-rows:200000}") int maxRows) {
     this.jobs = jobs;
     this.training = training;
     this.scorecards = scorecards;
+    this.maxRows = maxRows;
   }
 
   @Scheduled(fixedDelayString = "${poc.retrain.runner.delay-ms:30000}")
@@ -29,7 +33,7 @@ public class RetrainJobRunner {
       jobs.markRunning(job.id());
       OffsetDateTime pivot = OffsetDateTime.now();
       try {
-        MlTrainingService.TrainResult result = training.retrainFromRecentWithResult(500);
+        MlTrainingService.TrainResult result = training.retrainFromRecentWithResult(maxRows);
         jobs.markSucceeded(job.id(), result.modelId(), om.writeValueAsString(result.metrics()));
         scorecards.generateGlobalScorecard("retrain", pivot, 200, result.modelId(), result.version());
       } catch (Exception e) {
@@ -0,0 +1,198 @@
+package com.poc.api.ml.service;
+
+import com.poc.api.ml.ModelProvider;
+import com.poc.api.ml.persistence.ModelShadowRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleFunction;
+
+/**
+ * Scores enabled shadow candidates (model_shadow_candidate) next to the live model without
+ * affecting the decision.
+ *
+ * {@link #submit} only hands the request's core scores to a small pool of low-priority threads with
+ * a bounded queue; when the queue is full the work is dropped and counted, never run on the caller.
+ * Each candidate's P(legit) goes through the same rules as the live one (via
+ * {@link ShadowInput#decisionFor}), and the pair is buffered for a batched insert into
+ * model_shadow_score every {@code flush-interval-ms}. The buffer is bounded too.
+ *
+ * Decisions are compared before policy overrides: a policy would override both the same way.
+ */
+@Service
+public class ShadowScoringService {
+
+  private static final Logger log = LoggerFactory.getLogger(ShadowScoringService.class);
+
+  /** What the live path saw for one request. */
+  public record ShadowInput(String requestId,
+                            long liveModelId,
+                            double livePLegit,
+                            String liveDecision,
+                            double deviceScore,
+                            double behaviorScore,
+                            double tlsScore,
+                            double contextScore,
+                            DoubleFunction<String> decisionFor) {}
+
+  private final ModelShadowRepository repository;
+  private final ModelProvider modelProvider;
+  private final boolean enabled;
+  private final int maxCandidates;
+  private final int flushSize;
+  private final ThreadPoolExecutor executor;
+  private final BlockingQueue<ModelShadowRepository.ShadowScore> buffer;
+
+  private volatile List<ModelShadowRepository.Candidate> candidates = List.of();
+  // Candidates whose artifact could not be loaded; skipped until the next refresh.
+  private final Set<Long> unavailable = ConcurrentHashMap.newKeySet();
+
+  private final Counter submitted;
+  private final Counter droppedQueue;
+  private final Counter droppedBuffer;
+  private final Counter scored;
+  private final Counter disagreements;
+  private final Counter flushErrors;
+
+  public ShadowScoringService(ModelShadowRepository repository,
+                              ModelProvider modelProvider,
+                              MeterRegistry meterRegistry,
+                              @Value("${poc.ml.shadow.enabled:true}") boolean enabled,
+                              @Value("${poc.ml.shadow.threads:2}") int threads,
+                              @Value("${poc.ml.shadow.queue-capacity:1000}") int queueCapacity,
+                              @Value("${poc.ml.shadow.buffer-capacity:20000}") int bufferCapacity,
+                              @Value("${poc.ml.shadow.flush-size:500}") int flushSize,
+                              @Value("${poc.ml.shadow.max-candidates:3}") int maxCandidates) {
+    this.repository = repository;
+    this.modelProvider = modelProvider;
+    this.enabled = enabled;
+    this.maxCandidates = Math.max(1, maxCandidates);
+    this.flushSize = Math.max(1, flushSize);
+    this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+
+    this.submitted = Counter.builder("ml.shadow.submitted").register(meterRegistry);
+    this.droppedQueue = Counter.builder("ml.shadow.dropped").tag("reason", "queue").register(meterRegistry);
+    this.droppedBuffer = Counter.builder("ml.shadow.dropped").tag("reason", "buffer").register(meterRegistry);
+    this.scored = Counter.builder("ml.shadow.scored").register(meterRegistry);
+    this.disagreements = Counter.builder("ml.shadow.disagreements").register(meterRegistry);
+    this.flushErrors = Counter.builder("ml.shadow.flush.errors").register(meterRegistry);
+
+    int n = Math.max(1, threads);
+    this.executor = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+        Thread.ofPlatform().name("shadow-scoring-", 0).daemon(true).priority(Thread.MIN_PRIORITY).factory(),
+        (task, pool) -> droppedQueue.increment());
+    this.executor.allowCoreThreadTimeOut(true);
+    Gauge.builder("ml.shadow.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+  }
+
+  /** Cheap check so the live path can skip building a {@link ShadowInput}. */
+  public boolean isActive() {
+    return enabled && !candidates.isEmpty();
+  }
+
+  public List<ModelShadowRepository.Candidate> candidates() {
+    return candidates;
+  }
+
+  public void submit(ShadowInput input) {
+    if (!isActive()) return;
+    submitted.increment();
+    executor.execute(() -> score(input));
+  }
+
+  void score(ShadowInput in) {
+    for (ModelShadowRepository.Candidate c : candidates) {
+      long modelId = c.modelId();
+      if (modelId == in.liveModelId() || unavailable.contains(modelId)) continue;
+      String bucketKey = in.requestId() != null ? in.requestId() + ":" + modelId : null;
+      if (c.samplePercent() < 100 && ModelRouting.stableBucket(bucketKey) >= c.samplePercent()) continue;
+      try {
+        double[] s = modelProvider.scoreExact(modelId, in.deviceScore(), in.behaviorScore(), in.tlsScore(), in.contextScore());
+        if (s == null) {
+          if (unavailable.add(modelId)) log.warn("[shadow] model {} could not be loaded; skipping it until the next refresh", modelId);
+          continue;
+        }
+        String decision = in.decisionFor().apply(s[0]);
+        scored.increment();
+        if (!decision.equals(in.liveDecision())) disagreements.increment();
+        if (!buffer.offer(new ModelShadowRepository.ShadowScore(in.requestId(), in.liveModelId(), modelId,
+            in.livePLegit(), s[0], s[1], in.liveDecision(), decision))) {
+          droppedBuffer.increment();
+        }
+      } catch (Exception e) {
+        log.debug("[shadow] scoring model {} failed: {}", modelId, e.getMessage());
+      }
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${poc.ml.shadow.flush-interval-ms:1000}")
+  public void flush() {
+    if (buffer.isEmpty()) return;
+    while (true) {
+      List<ModelShadowRepository.ShadowScore> batch = new ArrayList<>(flushSize);
+      if (buffer.drainTo(batch, flushSize) == 0) return;
+      try {
+        repository.insertBatch(batch);
+      } catch (Exception e) {
+        // Shadow rows are evaluation data; drop the batch rather than back up the buffer.
+        flushErrors.increment();
+        log.warn("[shadow] could not write {} shadow scores: {}", batch.size(), e.getMessage());
+      }
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onStartup() {
+    refreshCandidates();
+  }
+
+  @EventListener
+  public void onRoutingChanged(ModelRoutingChangedEvent event) {
+    refreshCandidates();
+  }
+
+  @Scheduled(fixedDelayString = "${poc.ml.shadow.refresh-ms:30000}")
+  public void refreshCandidates() {
+    if (!enabled) return;
+    try {
+      List<ModelShadowRepository.Candidate> next = repository.listCandidates().stream()
+          .filter(ModelShadowRepository.Candidate::enabled)
+          .filter(c -> c.samplePercent() > 0)
+          .limit(maxCandidates)
+          .toList();
+      unavailable.clear();
+      candidates = next;
+    } catch (Exception e) {
+      log.warn("[shadow] could not refresh shadow candidates, keeping {}: {}", candidates.size(), e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(2, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+}
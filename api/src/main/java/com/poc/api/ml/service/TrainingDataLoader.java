@@ -0,0 +1,82 @@
+package com.poc.api.ml.service;
+
+import com.poc.api.ml.FeatureVectorSchema;
+import com.poc.api.ml.ModelProvider;
+import com.poc.api.risk.persistence.SessionFeatureRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Streams labelled sessions for {@link MlTrainingService} in keyset pages (newest first).
+ *
+ * Each page is {@code poc.ml.training.page-size} rows of four doubles extracted in SQL, so memory
+ * is one page plus the examples being kept; the JSON columns never leave the database. The
+ * Isolation Forest only samples 256 rows per tree, so it gets a fixed-size reservoir sample instead
+ * of every vector.
+ */
+@Component
+public class TrainingDataLoader {
+
+  public record Loaded(List<ModelProvider.TrainingExample> examples,
+                       List<double[]> anomalySample,
+                       int pages,
+                       long loadMillis) {
+
+    public double rowsPerSecond() {
+      return loadMillis > 0 ? examples.size() * 1000.0 / loadMillis : examples.size();
+    }
+  }
+
+  private final SessionFeatureRepository sessionFeatureRepository;
+  private final int pageSize;
+  private final int anomalySampleSize;
+
+  public TrainingDataLoader(SessionFeatureRepository sessionFeatureRepository,
+                            @Value("${poc.ml.training.page-size:10000}") int pageSize,
+                            @Value("${poc.ml.training.anomaly-sample-size:4096}") int anomalySampleSize) {
+    this.sessionFeatureRepository = sessionFeatureRepository;
+    this.pageSize = Math.max(1, pageSize);
+    this.anomalySampleSize = Math.max(1, anomalySampleSize);
+  }
+
+  /** Loads up to {@code maxRows} of the most recent labelled sessions. */
+  public Loaded load(int maxRows) {
+    long started = System.nanoTime();
+    List<ModelProvider.TrainingExample> examples = new ArrayList<>(Math.min(maxRows, pageSize));
+    List<double[]> sample = new ArrayList<>(Math.min(maxRows, anomalySampleSize));
+    SplittableRandom rnd = new SplittableRandom(42L);
+
+    OffsetDateTime beforeTs = OffsetDateTime.now().plusMinutes(1);
+    long beforeId = Long.MAX_VALUE;
+    int pages = 0;
+    while (examples.size() < maxRows) {
+      int want = Math.min(pageSize, maxRows - examples.size());
+      List<SessionFeatureRepository.LabelledScores> page =
+          sessionFeatureRepository.findLabelledScoresPage(beforeTs, beforeId, want);
+      pages++;
+      for (SessionFeatureRepository.LabelledScores r : page) {
+        double[] v = FeatureVectorSchema.fromScores(r.deviceScore(), r.behaviorScore(), r.tlsScore(), r.contextScore());
+        examples.add(new ModelProvider.TrainingExample(v, "ALLOW".equalsIgnoreCase(r.decision())));
+
+        // Reservoir sample (algorithm R) for the Isolation Forest.
+        int seen = examples.size();
+        if (sample.size() < anomalySampleSize) {
+          sample.add(v);
+        } else {
+          int j = rnd.nextInt(seen);
+          if (j < anomalySampleSize) sample.set(j, v);
+        }
+      }
+      if (page.size() < want) break;
+      SessionFeatureRepository.LabelledScores last = page.get(page.size() - 1);
+      beforeTs = last.occurredAt();
+      beforeId = last.id();
+    }
+    return new Loaded(examples, sample, pages, (System.nanoTime() - started) / 1_000_000);
+  }
+}
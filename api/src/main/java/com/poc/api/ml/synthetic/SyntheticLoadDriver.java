@@ -0,0 +1,190 @@
+package com.poc.api.ml.synthetic;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.risk.service.RiskService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load driver for {@link SyntheticSessionGenerator} traffic.
+ *
+ * {@code threads} workers share one schedule: session {@code n} is due at {@code start + n / rate}.
+ * Latency is measured from that due time, not from when the worker got round to sending, so a
+ * target that falls behind shows up as queueing delay in the histogram instead of silently lowering
+ * the offered rate (no coordinated omission). A target rate of 0 runs closed-loop, as fast as the
+ * workers can go.
+ *
+ * The target is either {@link RiskService} in-process ({@link #direct}) or a running instance over
+ * HTTP ({@link #http}); both see exactly the same sessions for a given seed, whatever the thread
+ * count, since session {@code n} is generated from (seed, n) by whichever worker takes ticket n.
+ */
+public class SyntheticLoadDriver {
+
+  private static final Logger log = LoggerFactory.getLogger(SyntheticLoadDriver.class);
+
+  /** Highest latency the histograms track; slower calls are clamped. */
+  private static final long MAX_TRACKED_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  /** Scores one session and returns the decision. */
+  @FunctionalInterface
+  public interface Target {
+    String score(SyntheticSessionGenerator.Session session) throws Exception;
+  }
+
+  public static Target direct(RiskService riskService) {
+    return s -> riskService.score(s.tlsFp(), s.tlsMeta(), s.telemetry(), null, s.requestId()).decision();
+  }
+
+  /** POSTs to {@code baseUrl}/api/risk/profile-check with the same headers the gateway sets. */
+  public static Target http(HttpClient client, ObjectMapper objectMapper, URI baseUrl, Duration timeout) {
+    URI uri = baseUrl.resolve("/api/risk/profile-check");
+    return s -> {
+      HttpRequest.Builder req = HttpRequest.newBuilder(uri)
+          .timeout(timeout)
+          .header("Content-Type", "application/json")
+          .header("X-Request-Id", s.requestId())
+          .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(s.telemetry())));
+      if (s.tlsFp() != null) req.header("X-TLS-FP", s.tlsFp());
+      if (s.tlsMeta() != null) req.header("X-TLS-Meta", s.tlsMeta());
+      HttpResponse<byte[]> resp = client.send(req.build(), HttpResponse.BodyHandlers.ofByteArray());
+      if (resp.statusCode() / 100 != 2) {
+        throw new IllegalStateException("HTTP " + resp.statusCode());
+      }
+      JsonNode decision = objectMapper.readTree(resp.body()).get("decision");
+      return decision == null ? null : decision.asText();
+    };
+  }
+
+  /**
+   * @param threads     concurrent workers
+   * @param targetRate  sessions per second across all workers; 0 = closed-loop
+   * @param duration    run length
+   * @param maxSessions stop after this many sessions (0 = no limit)
+   */
+  public record Options(int threads, double targetRate, Duration duration, long maxSessions) {
+    public Options {
+      threads = Math.max(1, threads);
+      targetRate = Math.max(0.0, targetRate);
+      if (duration == null || duration.isNegative()) duration = Duration.ZERO;
+      maxSessions = Math.max(0, maxSessions);
+    }
+  }
+
+  /** Latency summary in milliseconds. */
+  public record Latency(long count, double mean, double p50, double p90, double p99, double p999, double max) {
+    static Latency of(Histogram h) {
+      double ms = 1_000_000.0;
+      return new Latency(h.getTotalCount(), h.getMean() / ms,
+          h.getValueAtPercentile(50) / ms, h.getValueAtPercentile(90) / ms,
+          h.getValueAtPercentile(99) / ms, h.getValueAtPercentile(99.9) / ms, h.getMaxValue() / ms);
+    }
+  }
+
+  public record Report(
+      long sent,
+      long errors,
+      double elapsedSeconds,
+      double targetRate,
+      double achievedRate,
+      Latency latency,
+      Map<String, Long> decisions,
+      Map<SyntheticSessionGenerator.FraudPattern, Long> patterns,
+      Map<SyntheticSessionGenerator.FraudPattern, Latency> latencyByPattern
+  ) {}
+
+  private final SyntheticSessionGenerator generator;
+  private final Target target;
+
+  public SyntheticLoadDriver(SyntheticSessionGenerator generator, Target target) {
+    this.generator = generator;
+    this.target = target;
+  }
+
+  public Report run(Options options) throws InterruptedException {
+    long start = System.nanoTime();
+    long deadline = start + options.duration().toNanos();
+    double intervalNanos = options.targetRate() > 0 ? 1e9 / options.targetRate() : 0;
+    long limit = options.maxSessions() > 0 ? options.maxSessions() : Long.MAX_VALUE;
+
+    AtomicLong ticket = new AtomicLong();
+    LongAdder errors = new LongAdder();
+    Recorder all = new Recorder(MAX_TRACKED_NANOS, 3);
+    Map<SyntheticSessionGenerator.FraudPattern, Recorder> byPattern = new EnumMap<>(SyntheticSessionGenerator.FraudPattern.class);
+    for (SyntheticSessionGenerator.FraudPattern p : SyntheticSessionGenerator.FraudPattern.values()) {
+      byPattern.put(p, new Recorder(MAX_TRACKED_NANOS, 3));
+    }
+    ConcurrentHashMap<String, LongAdder> decisions = new ConcurrentHashMap<>();
+    List<Thread> workers = new ArrayList<>(options.threads());
+    for (int i = 0; i < options.threads(); i++) {
+      workers.add(Thread.ofPlatform().name("synthetic-load-" + i).daemon(true).start(() -> {
+        while (!Thread.currentThread().isInterrupted()) {
+          long n = ticket.getAndIncrement();
+          if (n >= limit) return;
+          long due = intervalNanos > 0 ? start + (long) (n * intervalNanos) : System.nanoTime();
+          if (due - deadline >= 0) return;
+          long wait = due - System.nanoTime();
+          if (wait > 0) LockSupport.parkNanos(wait);
+
+          SyntheticSessionGenerator.Session s = generator.next(n);
+          String decision;
+          try {
+            decision = target.score(s);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          } catch (Exception e) {
+            errors.increment();
+            decision = "ERROR";
+            log.debug("[synthetic] {} failed: {}", s.requestId(), e.getMessage());
+          }
+          long latency = Math.min(MAX_TRACKED_NANOS, Math.max(0, System.nanoTime() - due));
+          all.recordValue(latency);
+          byPattern.get(s.pattern()).recordValue(latency);
+          decisions.computeIfAbsent(decision == null ? "UNKNOWN" : decision, k -> new LongAdder()).increment();
+        }
+      }));
+    }
+    for (Thread t : workers) {
+      t.join();
+    }
+
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    Histogram total = all.getIntervalHistogram();
+    Map<String, Long> decisionCounts = new LinkedHashMap<>();
+    decisions.forEach((k, v) -> decisionCounts.put(k, v.sum()));
+    Map<SyntheticSessionGenerator.FraudPattern, Long> patternCounts = new EnumMap<>(SyntheticSessionGenerator.FraudPattern.class);
+    Map<SyntheticSessionGenerator.FraudPattern, Latency> patternLatency = new EnumMap<>(SyntheticSessionGenerator.FraudPattern.class);
+    byPattern.forEach((p, r) -> {
+      Histogram h = r.getIntervalHistogram();
+      patternCounts.put(p, h.getTotalCount());
+      if (h.getTotalCount() > 0) patternLatency.put(p, Latency.of(h));
+    });
+
+    Report report = new Report(total.getTotalCount(), errors.sum(), elapsed, options.targetRate(),
+        elapsed > 0 ? total.getTotalCount() / elapsed : 0, Latency.of(total), decisionCounts,
+        patternCounts, patternLatency);
+    log.info("[synthetic] sent={} errors={} rate={}/s (target {}/s) p50={}ms p99={}ms max={}ms",
+        report.sent(), report.errors(), Math.round(report.achievedRate()), Math.round(options.targetRate()),
+        report.latency().p50(), report.latency().p99(), report.latency().max());
+    return report;
+  }
+}
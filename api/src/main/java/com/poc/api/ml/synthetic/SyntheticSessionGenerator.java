@@ -1,6 +1,270 @@
-
 package com.poc.api.ml.synthetic;
 
+import com.poc.api.telemetry.dto.Telemetry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic profile-check traffic for load tests and capacity planning.
+ *
+ * The population is derived from {@link Config#seed()}: user {@code i} always owns the same 1..N
+ * devices (UA, screen, canvas/WebGL hashes, client certificate subject/issuer, TLS fingerprint), home
+ * country, tenant and behavioural baseline, so repeat sessions look like returning users and the
+ * scoring path exercises its warm caches. Nothing is materialised up front; each session rebuilds
+ * its user from the seed, so a population of millions costs no memory.
+ *
+ * A configurable share of sessions is turned into one of the {@link FraudPattern}s instead of a
+ * legitimate login. {@link #next(long)} derives each session's randomness from (seed, seq) alone, so
+ * session {@code seq} is the same whichever thread generates it, and in whatever order.
+ */
 public class SyntheticSessionGenerator {
-    public void generate(int users, int sessionsPerUser) {}
+
+  public enum FraudPattern {
+    NONE,
+    /** The user's account used from another user's device, country and typing rhythm. */
+    ACCOUNT_SHARING,
+    /** One of a small pool of farm devices rotating through many accounts, with scripted input. */
+    DEVICE_FARM,
+    /** The user's own device presenting a new client certificate (new TLS family). */
+    TLS_CHANGE
+  }
+
+  /**
+   * @param users            population size
+   * @param maxDevicesPerUser each user owns between 1 and this many devices
+   * @param farmDevices      size of the shared device-farm pool
+   * @param accountSharingRate share of sessions turned into {@link FraudPattern#ACCOUNT_SHARING}
+   * @param deviceFarmRate   share of sessions turned into {@link FraudPattern#DEVICE_FARM}
+   * @param tlsChangeRate    share of sessions turned into {@link FraudPattern#TLS_CHANGE}
+   * @param runId            prefix for request ids, so repeated runs do not reuse session ids
+   */
+  public record Config(
+      int users,
+      int maxDevicesPerUser,
+      int farmDevices,
+      double accountSharingRate,
+      double deviceFarmRate,
+      double tlsChangeRate,
+      long seed,
+      String runId
+  ) {
+    public Config {
+      if (users < 1) throw new IllegalArgumentException("users must be >= 1");
+      maxDevicesPerUser = Math.max(1, maxDevicesPerUser);
+      farmDevices = Math.max(1, farmDevices);
+      accountSharingRate = clampRate(accountSharingRate);
+      deviceFarmRate = clampRate(deviceFarmRate);
+      tlsChangeRate = clampRate(tlsChangeRate);
+      if (accountSharingRate + deviceFarmRate + tlsChangeRate > 1.0) {
+        throw new IllegalArgumentException("fraud rates must add up to at most 1");
+      }
+      if (runId == null || runId.isBlank()) runId = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    /** Mostly legitimate traffic: 2% sharing, 1% farm, 2% TLS change. */
+    public static Config defaults(int users) {
+      return new Config(users, 3, 20, 0.02, 0.01, 0.02, 0x5EEDL, null);
+    }
+  }
+
+  /** One profile-check request as the controller receives it. */
+  public record Session(String tlsFp, String tlsMeta, String requestId, Telemetry telemetry, FraudPattern pattern) {}
+
+  private record Device(Telemetry.Device telemetry, String tlsFp, String tlsMeta) {}
+
+  private record Baseline(double keyMean, double keyStd, double velocity, int mouseMoves, double scrollRate) {}
+
+  private static final String[] COUNTRIES = {"GB", "US", "DE", "FR", "NL", "IE", "ES", "PL", "SE", "IT"};
+  private static final String[] FOREIGN = {"RU", "NG", "BR", "VN", "IN", "CN"};
+  private static final String[] ISSUERS = {
+      "CN=Example Root CA,O=Example", "CN=Corp Issuing CA 2,O=Corp,OU=PKI", "CN=R3,O=Let's Encrypt"
+  };
+  private static final String[][] PLATFORMS = {
+      {"Win32", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36"},
+      {"MacIntel", "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_2) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Safari/605.1.15"},
+      {"Linux x86_64", "Mozilla/5.0 (X11; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0"},
+      {"iPhone", "Mozilla/5.0 (iPhone; CPU iPhone OS 17_2 like Mac OS X) AppleWebKit/605.1.15 Mobile/15E148"},
+      {"Linux armv8l", "Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 Chrome/120.0 Mobile Safari/537.36"}
+  };
+  private static final int[][] SCREENS = {{1920, 1080}, {2560, 1440}, {1440, 900}, {1366, 768}, {390, 844}, {412, 915}};
+
+  private final Config config;
+
+  public SyntheticSessionGenerator(Config config) {
+    this.config = config;
+  }
+
+  public SyntheticSessionGenerator() {
+    this(Config.defaults(1000));
+  }
+
+  public Config config() {
+    return config;
+  }
+
+  /**
+   * {@code sessionsPerUser} sessions for each of {@code users} users, interleaved round-robin so
+   * consecutive sessions belong to different users. Uses this generator's fraud rates and seed.
+   */
+  public List<Session> generate(int users, int sessionsPerUser) {
+    Config c = new Config(users, config.maxDevicesPerUser(), config.farmDevices(), config.accountSharingRate(),
+        config.deviceFarmRate(), config.tlsChangeRate(), config.seed(), config.runId());
+    SyntheticSessionGenerator g = new SyntheticSessionGenerator(c);
+    SplittableRandom rnd = new SplittableRandom(config.seed() ^ 0x5E55L);
+    List<Session> out = new ArrayList<>(Math.max(0, users * sessionsPerUser));
+    long seq = 0;
+    for (int s = 0; s < sessionsPerUser; s++) {
+      for (int u = 0; u < users; u++) {
+        out.add(g.session(u, rnd, seq++));
+      }
+    }
+    return out;
+  }
+
+  /** Session number {@code seq} for a uniformly chosen user; a pure function of (seed, seq). */
+  public Session next(long seq) {
+    SplittableRandom rnd = new SplittableRandom(mix(config.seed(), seq));
+    return session(rnd.nextInt(config.users()), rnd, seq);
+  }
+
+  /** Stafford variant 13 finaliser, so neighbouring seqs get unrelated streams. */
+  static long mix(long seed, long seq) {
+    long z = seed + (seq + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  Session session(int user, SplittableRandom rnd, long seq) {
+    FraudPattern pattern = pickPattern(rnd);
+    String userId = "syn-user-" + user;
+    SplittableRandom userRnd = userRandom(user);
+    int devices = 1 + userRnd.nextInt(config.maxDevicesPerUser());
+    String home = COUNTRIES[userRnd.nextInt(COUNTRIES.length)];
+    Baseline baseline = baseline(userRnd);
+
+    Device device;
+    String country = home;
+    boolean vpn = rnd.nextInt(25) == 0;
+    Telemetry.Behavior behavior;
+    switch (pattern) {
+      case ACCOUNT_SHARING -> {
+        int other = (user + 1 + rnd.nextInt(Math.max(1, config.users() - 1))) % config.users();
+        SplittableRandom otherRnd = userRandom(other);
+        int otherDevices = 1 + otherRnd.nextInt(config.maxDevicesPerUser());
+        String otherHome = COUNTRIES[otherRnd.nextInt(COUNTRIES.length)];
+        device = device(other, rnd.nextInt(otherDevices));
+        country = otherHome.equals(home) ? FOREIGN[rnd.nextInt(FOREIGN.length)] : otherHome;
+        behavior = behavior(baseline(otherRnd), rnd);
+      }
+      case DEVICE_FARM -> {
+        device = farmDevice(rnd.nextInt(config.farmDevices()));
+        country = FOREIGN[rnd.nextInt(FOREIGN.length)];
+        vpn = rnd.nextInt(3) != 0;
+        behavior = scripted(rnd);
+      }
+      case TLS_CHANGE -> {
+        Device own = device(user, rnd.nextInt(devices));
+        String cn = userId + "-rotated-" + Long.toHexString(rnd.nextLong());
+        String meta = "sub=CN=" + cn + ",O=Unknown Org;iss=CN=Unknown Issuing CA,O=Unknown Org";
+        device = new Device(own.telemetry(), "fp-" + Long.toHexString(rnd.nextLong()), meta);
+        behavior = behavior(baseline, rnd);
+      }
+      default -> {
+        device = device(user, rnd.nextInt(devices));
+        behavior = behavior(baseline, rnd);
+      }
+    }
+
+    Map<String, Object> ctx = new LinkedHashMap<>();
+    ctx.put("tenant_id", "tenant-" + (user % 10));
+    ctx.put("country", country);
+    ctx.put("vpn", vpn);
+    ctx.put("high_risk_action", rnd.nextInt(10) == 0);
+    ctx.put("synthetic_pattern", pattern.name());
+
+    return new Session(device.tlsFp(), device.tlsMeta(), "syn-" + config.runId() + "-" + seq,
+        new Telemetry(userId, device.telemetry(), behavior, ctx), pattern);
+  }
+
+  private FraudPattern pickPattern(SplittableRandom rnd) {
+    double r = rnd.nextDouble();
+    if ((r -= config.accountSharingRate()) < 0) return FraudPattern.ACCOUNT_SHARING;
+    if ((r -= config.deviceFarmRate()) < 0) return FraudPattern.DEVICE_FARM;
+    if (r - config.tlsChangeRate() < 0) return FraudPattern.TLS_CHANGE;
+    return FraudPattern.NONE;
+  }
+
+  private SplittableRandom userRandom(int user) {
+    return new SplittableRandom(config.seed() * 0x9E3779B97F4A7C15L + user);
+  }
+
+  private static Baseline baseline(SplittableRandom userRnd) {
+    return new Baseline(
+        90 + userRnd.nextDouble() * 120,
+        15 + userRnd.nextDouble() * 35,
+        0.3 + userRnd.nextDouble() * 1.2,
+        80 + userRnd.nextInt(300),
+        0.2 + userRnd.nextDouble() * 2.0);
+  }
+
+  private Device device(int user, int index) {
+    SplittableRandom devRnd = new SplittableRandom(config.seed() * 31 + user * 0x1F1FL + index);
+    String cn = "syn-user-" + user + "-dev-" + index;
+    String meta = "sub=CN=" + cn + ",O=Example Customers;iss=" + ISSUERS[devRnd.nextInt(ISSUERS.length)];
+    return new Device(browser(devRnd), "fp-" + Long.toHexString(devRnd.nextLong()), meta);
+  }
+
+  private Device farmDevice(int index) {
+    SplittableRandom devRnd = new SplittableRandom(config.seed() * 131 + 0xFA4AL + index);
+    String meta = "sub=CN=farm-node-" + index + ",O=Hosting Ltd;iss=CN=Hosting Ltd CA,O=Hosting Ltd";
+    return new Device(browser(devRnd), "fp-farm-" + Long.toHexString(devRnd.nextLong()), meta);
+  }
+
+  private static Telemetry.Device browser(SplittableRandom devRnd) {
+    String[] platform = PLATFORMS[devRnd.nextInt(PLATFORMS.length)];
+    boolean mobile = platform[0].startsWith("iPhone") || platform[0].endsWith("armv8l");
+    int[] screen = mobile ? SCREENS[4 + devRnd.nextInt(2)] : SCREENS[devRnd.nextInt(4)];
+    return new Telemetry.Device(
+        platform[1],
+        Map.of("mobile", mobile, "platform", platform[0]),
+        platform[0],
+        mobile ? 6 + devRnd.nextInt(3) : 4 + 2 * devRnd.nextInt(7),
+        mobile ? 6.0 : 8.0 * (1 + devRnd.nextInt(4)),
+        new Telemetry.Device.Screen(screen[0], screen[1], mobile ? 3.0 : devRnd.nextInt(3) == 0 ? 2.0 : 1.0),
+        -60 * (devRnd.nextInt(4) - 1),
+        devRnd.nextBoolean() ? List.of("en-GB", "en") : List.of("en-US", "en"),
+        "canvas-" + Long.toHexString(devRnd.nextLong()),
+        "webgl-" + Long.toHexString(devRnd.nextLong()));
+  }
+
+  private static Telemetry.Behavior behavior(Baseline b, SplittableRandom rnd) {
+    double velocity = Math.max(0.05, b.velocity() + rnd.nextGaussian() * 0.1);
+    return new Telemetry.Behavior(
+        Math.max(0, b.mouseMoves() + (int) (rnd.nextGaussian() * 40)),
+        Math.max(0.0, b.mouseMoves() * 12 + rnd.nextGaussian() * 300),
+        10 + rnd.nextInt(80),
+        Math.max(20.0, b.keyMean() + rnd.nextGaussian() * b.keyStd() * 0.3),
+        rnd.nextInt(40),
+        Math.max(1.0, b.keyStd() + rnd.nextGaussian() * 5),
+        Math.max(0.0, b.scrollRate() + rnd.nextGaussian() * 0.3),
+        velocity,
+        velocity * (2.5 + rnd.nextDouble()));
+  }
+
+  /** Bot-like input: fast, metronomic typing and straight-line pointer movement. */
+  private static Telemetry.Behavior scripted(SplittableRandom rnd) {
+    double velocity = 4.0 + rnd.nextDouble();
+    return new Telemetry.Behavior(
+        rnd.nextInt(5), rnd.nextDouble() * 50, 10 + rnd.nextInt(10),
+        25 + rnd.nextDouble() * 5, 0, 0.5 + rnd.nextDouble(), 0.0, velocity, velocity * 1.05);
+  }
+
+  private static double clampRate(double r) {
+    return Double.isNaN(r) ? 0.0 : Math.max(0.0, Math.min(1.0, r));
+  }
 }
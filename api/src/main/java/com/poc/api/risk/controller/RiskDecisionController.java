@@ -1,31 +1,54 @@
 package com.poc.api.risk.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.risk.dto.BatchScoreItem;
 import com.poc.api.risk.dto.DecisionResponse;
 import com.poc.api.risk.service.RiskService;
 import com.poc.api.telemetry.dto.Telemetry;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 /**
  * Risk decision endpoints.
  *
  * Backward compatible route kept at /api/auth/profile-check.
  * Canonical route is additionally exposed under /api/risk/profile-check.
+ * Bulk/replay traffic uses /api/risk/profile-check/batch, which streams one NDJSON line per item.
  */
 @RestController
 @RequestMapping({"/api","/api/v1"})
 public class RiskDecisionController {
 
+  private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+  private static final int STREAM_FLUSH_EVERY = 32;
+
   private final RiskService riskService;
+  private final ObjectMapper objectMapper;
+  private final int batchMaxItems;
 
-  public RiskDecisionController(RiskService riskService) {
+  public RiskDecisionController(RiskService riskService,
+                                ObjectMapper objectMapper,
+                                @Value("${poc.scoring.batch.max-items:10000}") int batchMaxItems) {
     this.riskService = riskService;
+    this.objectMapper = objectMapper;
+    this.batchMaxItems = batchMaxItems;
   }
 
   // Backward compatible
@@ -53,4 +76,39 @@ public class RiskDecisionController {
   ) {
     return profileCheck(tlsFp, tlsMeta, requestId, telemetry, request);
   }
+
+  // Bulk / replay: results are written as they are produced, in request order.
+  @PostMapping("/risk/profile-check/batch")
+  public ResponseEntity<StreamingResponseBody> riskProfileCheckBatch(
+      @Valid @RequestBody List<@Valid BatchScoreItem> items
+  ) {
+    if (items.size() > batchMaxItems) {
+      throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+          "Batch of " + items.size() + " exceeds the limit of " + batchMaxItems + " items");
+    }
+    StreamingResponseBody body = raw -> {
+      OutputStream out = new BufferedOutputStream(raw);
+      int[] pending = {0};
+      try {
+        riskService.scoreBatch(items, result -> {
+          try {
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write('\n');
+            if (++pending[0] >= STREAM_FLUSH_EVERY) {
+              out.flush();
+              pending[0] = 0;
+            }
+          } catch (IOException e) {
+            // Client went away: stop scoring the rest of the batch.
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      out.flush();
+    };
+    return ResponseEntity.ok().contentType(NDJSON).body(body);
+  }
+
 }
@@ -0,0 +1,16 @@
+package com.poc.api.risk.dto;
+
+import com.poc.api.telemetry.dto.Telemetry;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * One session in a bulk scoring request: the values the single endpoint takes from the
+ * X-TLS-FP / X-TLS-Meta / X-Request-Id headers, plus the telemetry body.
+ */
+public record BatchScoreItem(
+    String tls_fp,
+    String tls_meta,
+    String request_id,
+    @Valid @NotNull Telemetry telemetry
+) {}
@@ -0,0 +1,24 @@
+package com.poc.api.risk.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One NDJSON line of a bulk scoring response. {@code index} is the item's position in the request;
+ * exactly one of {@code decision} / {@code error} is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchScoreResult(
+    int index,
+    String request_id,
+    DecisionResponse decision,
+    String error
+) {
+
+  public static BatchScoreResult ok(int index, String requestId, DecisionResponse decision) {
+    return new BatchScoreResult(index, requestId, decision, null);
+  }
+
+  public static BatchScoreResult failed(int index, String requestId, String error) {
+    return new BatchScoreResult(index, requestId, null, error);
+  }
+}
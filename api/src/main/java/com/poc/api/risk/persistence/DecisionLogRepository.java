@@ -11,6 +11,22 @@ import java.util.List;
 @Repository
 public class DecisionLogRepository {
 
+  /** A decision_log row waiting to be written (used by the write-behind batch path). */
+  public record NewDecisionLog(
+      String sessionId,
+      String userId,
+      String tlsFp,
+      double behaviorScore,
+      double deviceScore,
+      double contextScore,
+      double confidence,
+      String decision
+  ) {}
+
+  private static final String INSERT_SQL =
+      "INSERT INTO decision_log(session_id, user_id, tls_fp, behavior_score, device_score, tls_score, context_score, confidence, decision) " +
+          "VALUES (?,?,?,?,?,?,?,?,?)";
+
   private final JdbcTemplate jdbcTemplate;
 
   public DecisionLogRepository(JdbcTemplate jdbcTemplate) {
@@ -27,8 +43,7 @@ public class DecisionLogRepository {
                      double confidence,
                      String decision) {
     jdbcTemplate.update(
-        "INSERT INTO decision_log(session_id, user_id, tls_fp, behavior_score, device_score, tls_score, context_score, confidence, decision) " +
-            "VALUES (?,?,?,?,?,?,?,?,?)",
+        INSERT_SQL,
         sessionId,
         userId,
         tlsFp,
@@ -41,6 +56,27 @@ public class DecisionLogRepository {
     );
   }
 
+  public void insert(NewDecisionLog row) {
+    insert(row.sessionId(), row.userId(), row.tlsFp(), row.behaviorScore(), row.deviceScore(),
+        row.contextScore(), row.confidence(), row.decision());
+  }
+
+  /** Writes all rows in a single JDBC batch. */
+  public void insertBatch(List<NewDecisionLog> rows) {
+    if (rows == null || rows.isEmpty()) return;
+    jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+      ps.setString(1, row.sessionId());
+      ps.setString(2, row.userId());
+      ps.setString(3, row.tlsFp());
+      ps.setDouble(4, row.behaviorScore());
+      ps.setDouble(5, row.deviceScore());
+      ps.setDouble(6, 0.0);
+      ps.setDouble(7, row.contextScore());
+      ps.setDouble(8, row.confidence());
+      ps.setString(9, row.decision());
+    });
+  }
+
   public List<DecisionLogRow> findRecentByUser(String userId, int limit) {
     return jdbcTemplate.query(
         "SELECT id, created_at, session_id, user_id, tls_fp, behavior_score, device_score, tls_score, context_score, confidence, decision " +
@@ -65,6 +101,24 @@ public class DecisionLogRepository {
     );
   }
 
+  /**
+   * Newest-first (confidence, created_at) pairs for a user; the reputation summary's cold-start load.
+   */
+  public List<DecisionLogRow> findRecentConfidenceByUser(String userId, int limit) {
+    return jdbcTemplate.query(
+        "SELECT confidence, created_at FROM decision_log WHERE user_id = ? ORDER BY created_at DESC LIMIT ?",
+        (rs, rowNum) -> {
+          DecisionLogRow r = new DecisionLogRow();
+          r.userId = userId;
+          r.confidence = rs.getDouble("confidence");
+          r.createdAt = rs.getObject("created_at", OffsetDateTime.class);
+          return r;
+        },
+        userId,
+        Math.min(limit, 5000)
+    );
+  }
+
   public List<DecisionLogRow> findLastNBefore(OffsetDateTime before, int n) {
     return jdbcTemplate.query(
         "SELECT id, created_at, session_id, user_id, tls_fp, behavior_score, device_score, tls_score, context_score, confidence, decision " +
@@ -113,15 +167,12 @@ public class DecisionLogRepository {
     );
   }
 
+  /** Most recently seen users, from the per-user rollup (see AnalyticsRollupService). */
   public List<UserSummaryRow> findUserSummaries(int limit) {
     String sql =
-        "SELECT COALESCE(user_id, 'anonymous') AS user_id, " +
-            "COUNT(DISTINCT session_id) AS sessions, " +
-            "COUNT(DISTINCT tls_fp) AS devices, " +
-            "MAX(created_at) AS last_seen, " +
-            "AVG(confidence) AS avg_confidence " +
-            "FROM decision_log " +
-            "GROUP BY COALESCE(user_id, 'anonymous') " +
+        "SELECT user_id, sessions, devices, last_seen, " +
+            "confidence_sum / NULLIF(sessions, 0) AS avg_confidence " +
+            "FROM rollup_user_summary " +
             "ORDER BY last_seen DESC " +
             "LIMIT ?";
 
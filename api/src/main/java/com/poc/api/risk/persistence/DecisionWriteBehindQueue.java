@@ -0,0 +1,279 @@
+package com.poc.api.risk.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional write-behind path for the per-request session_feature / decision_log inserts.
+ *
+ * Disabled by default: {@link #submit} then writes through on the caller thread exactly like before.
+ * When enabled via {@code poc.persistence.write-behind.enabled=true}, rows go onto a bounded queue and
+ * a single background writer drains them in JDBC batches of up to {@code flush-size} rows, or whatever
+ * has accumulated after {@code flush-interval-ms}.
+ *
+ * Backpressure: if the queue stays full for {@code offer-timeout-ms} the caller writes its own rows
+ * synchronously, so a slow database slows requests down instead of dropping audit rows.
+ * On shutdown the writer drains everything still queued before the datasource goes away.
+ *
+ * A batch is written in one transaction, so session_feature and decision_log rows land together.
+ * If it fails, its writes are retried one scoring call (feature + decision pair) per transaction;
+ * only pairs that still fail are dropped, and counted in {@code risk.writebehind.dropped}.
+ */
+@Component
+public class DecisionWriteBehindQueue {
+
+  private static final Logger log = LoggerFactory.getLogger(DecisionWriteBehindQueue.class);
+
+  /** Rows produced by one scoring call; either side may be null. */
+  public record PendingWrite(SessionFeatureRepository.NewSessionFeature sessionFeature,
+                             DecisionLogRepository.NewDecisionLog decisionLog) {}
+
+  private final SessionFeatureRepository sessionFeatureRepository;
+  private final DecisionLogRepository decisionLogRepository;
+  private final TransactionOperations tx;
+  private final boolean enabled;
+  private final int flushSize;
+  private final long flushIntervalMs;
+  private final long offerTimeoutMs;
+  private final long shutdownTimeoutMs;
+  private final BlockingQueue<PendingWrite> queue;
+
+  private final Timer flushTimer;
+  private final Counter flushedRows;
+  private final Counter flushErrors;
+  private final Counter droppedRows;
+  private final Counter syncFallbacks;
+  private final Timer sessionFeatureInsert;
+  private final Timer decisionLogInsert;
+
+  private volatile boolean running;
+  private Thread writer;
+
+  public DecisionWriteBehindQueue(SessionFeatureRepository sessionFeatureRepository,
+                                  DecisionLogRepository decisionLogRepository,
+                                  TransactionOperations tx,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${poc.persistence.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${poc.persistence.write-behind.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${poc.persistence.write-behind.flush-size:500}") int flushSize,
+                                  @Value("${poc.persistence.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                  @Value("${poc.persistence.write-behind.offer-timeout-ms:50}") long offerTimeoutMs,
+                                  @Value("${poc.persistence.write-behind.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+    this.sessionFeatureRepository = sessionFeatureRepository;
+    this.decisionLogRepository = decisionLogRepository;
+    this.tx = tx;
+    this.enabled = enabled;
+    this.flushSize = Math.max(1, flushSize);
+    this.flushIntervalMs = Math.max(1, flushIntervalMs);
+    this.offerTimeoutMs = Math.max(0, offerTimeoutMs);
+    this.shutdownTimeoutMs = Math.max(0, shutdownTimeoutMs);
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+    Gauge.builder("risk.writebehind.queue.depth", queue, BlockingQueue::size)
+        .description("Pending decision/session-feature writes")
+        .register(meterRegistry);
+    this.flushTimer = Timer.builder("risk.writebehind.flush")
+        .description("Time to write one write-behind batch")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.flushedRows = Counter.builder("risk.writebehind.rows").register(meterRegistry);
+    this.flushErrors = Counter.builder("risk.writebehind.flush.errors").register(meterRegistry);
+    this.droppedRows = Counter.builder("risk.writebehind.dropped")
+        .description("Rows that could not be written even one scoring call at a time")
+        .register(meterRegistry);
+    this.syncFallbacks = Counter.builder("risk.writebehind.sync.fallback")
+        .description("Writes done on the request thread because the queue was full")
+        .register(meterRegistry);
+    this.sessionFeatureInsert = insertTimer(meterRegistry, "session_feature");
+    this.decisionLogInsert = insertTimer(meterRegistry, "decision_log");
+  }
+
+  /** Synchronous (request-thread) inserts, per table. */
+  private static Timer insertTimer(MeterRegistry meterRegistry, String table) {
+    return Timer.builder("risk.persist.insert")
+        .description("Time to insert scoring rows on the request thread")
+        .tag("table", table)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!enabled) return;
+    running = true;
+    writer = Thread.ofPlatform().name("decision-write-behind").daemon(true).start(this::runWriter);
+    log.info("[write-behind] enabled (flushSize={}, flushIntervalMs={}, capacity={})",
+        flushSize, flushIntervalMs, queue.remainingCapacity());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int depth() {
+    return queue.size();
+  }
+
+  /**
+   * Persist the rows of one scoring call, either directly or via the queue.
+   */
+  public void submit(SessionFeatureRepository.NewSessionFeature sessionFeature,
+                     DecisionLogRepository.NewDecisionLog decisionLog) {
+    if (sessionFeature == null && decisionLog == null) return;
+    PendingWrite w = new PendingWrite(sessionFeature, decisionLog);
+    if (enabled && running) {
+      try {
+        if (queue.offer(w, offerTimeoutMs, TimeUnit.MILLISECONDS)) return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      syncFallbacks.increment();
+    }
+    writeThrough(w);
+  }
+
+  /**
+   * Persist the rows of several scoring calls (bulk scoring). Queued like {@link #submit} when
+   * write-behind is enabled; otherwise written through as one JDBC batch per table.
+   */
+  public void submitAll(List<PendingWrite> writes) {
+    if (writes == null || writes.isEmpty()) return;
+    List<PendingWrite> direct = writes;
+    if (enabled && running) {
+      direct = new ArrayList<>();
+      for (PendingWrite w : writes) {
+        try {
+          if (queue.offer(w, offerTimeoutMs, TimeUnit.MILLISECONDS)) continue;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        syncFallbacks.increment();
+        direct.add(w);
+      }
+      if (direct.isEmpty()) return;
+    }
+    List<SessionFeatureRepository.NewSessionFeature> features = new ArrayList<>(direct.size());
+    List<DecisionLogRepository.NewDecisionLog> decisions = new ArrayList<>(direct.size());
+    for (PendingWrite w : direct) {
+      if (w.sessionFeature() != null) features.add(w.sessionFeature());
+      if (w.decisionLog() != null) decisions.add(w.decisionLog());
+    }
+    if (!features.isEmpty()) sessionFeatureInsert.record(() -> sessionFeatureRepository.insertBatch(features));
+    if (!decisions.isEmpty()) decisionLogInsert.record(() -> decisionLogRepository.insertBatch(decisions));
+  }
+
+  private void writeThrough(PendingWrite w) {
+    if (w.sessionFeature() != null) sessionFeatureInsert.record(() -> sessionFeatureRepository.insert(w.sessionFeature()));
+    if (w.decisionLog() != null) decisionLogInsert.record(() -> decisionLogRepository.insert(w.decisionLog()));
+  }
+
+  private void runWriter() {
+    List<PendingWrite> batch = new ArrayList<>(flushSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingWrite first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < flushSize && running) {
+          queue.drainTo(batch, flushSize - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= flushSize || remaining <= 0) break;
+          PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) break;
+          batch.add(next);
+        }
+        queue.drainTo(batch, flushSize - batch.size());
+      } catch (InterruptedException e) {
+        // We own this thread: treat an interrupt as a stop request and keep draining.
+        running = false;
+      }
+      flush(batch);
+      batch.clear();
+    }
+  }
+
+  void flush(List<PendingWrite> batch) {
+    if (batch.isEmpty()) return;
+    List<SessionFeatureRepository.NewSessionFeature> features = new ArrayList<>(batch.size());
+    List<DecisionLogRepository.NewDecisionLog> decisions = new ArrayList<>(batch.size());
+    for (PendingWrite w : batch) {
+      if (w.sessionFeature() != null) features.add(w.sessionFeature());
+      if (w.decisionLog() != null) decisions.add(w.decisionLog());
+    }
+    long t0 = System.nanoTime();
+    try {
+      tx.executeWithoutResult(status -> {
+        sessionFeatureRepository.insertBatch(features);
+        decisionLogRepository.insertBatch(decisions);
+      });
+      flushedRows.increment(features.size() + decisions.size());
+    } catch (Exception e) {
+      flushErrors.increment();
+      log.warn("[write-behind] failed to flush {} session_feature / {} decision_log rows, retrying per call: {}",
+          features.size(), decisions.size(), e.getMessage());
+      flushOneByOne(batch);
+    } finally {
+      flushTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** Fallback after a failed batch: one transaction per scoring call, so one bad row only loses its own pair. */
+  private void flushOneByOne(List<PendingWrite> batch) {
+    long dropped = 0;
+    Exception last = null;
+    for (PendingWrite w : batch) {
+      int rows = (w.sessionFeature() != null ? 1 : 0) + (w.decisionLog() != null ? 1 : 0);
+      try {
+        tx.executeWithoutResult(status -> {
+          if (w.sessionFeature() != null) sessionFeatureRepository.insert(w.sessionFeature());
+          if (w.decisionLog() != null) decisionLogRepository.insert(w.decisionLog());
+        });
+        flushedRows.increment(rows);
+      } catch (Exception e) {
+        // As on the synchronous path, logging failures must not take down scoring.
+        dropped += rows;
+        last = e;
+      }
+    }
+    if (dropped > 0) {
+      droppedRows.increment(dropped);
+      log.warn("[write-behind] dropped {} rows that could not be written: {}", dropped, last.getMessage());
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    if (writer == null) return;
+    running = false;
+    try {
+      writer.join(shutdownTimeoutMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writer.isAlive()) {
+      log.warn("[write-behind] writer did not drain within {} ms, {} writes still queued", shutdownTimeoutMs, queue.size());
+      return;
+    }
+    // Anything offered while the writer was exiting.
+    List<PendingWrite> rest = new ArrayList<>();
+    queue.drainTo(rest);
+    flush(rest);
+    log.info("[write-behind] drained on shutdown");
+  }
+}
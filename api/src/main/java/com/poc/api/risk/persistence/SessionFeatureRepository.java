@@ -1,9 +1,14 @@
 package com.poc.api.risk.persistence;
 
+import com.poc.api.ml.FeatureVectorSchema;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.Optional;
 import org.springframework.stereotype.Repository;
 import com.poc.api.admin.persistence.PolicyMatchRow;
@@ -24,12 +29,57 @@ public class SessionFeatureRepository {
         row.behaviorJson = rs.getString("behavior_json");
         row.contextJson = rs.getString("context_json");
         row.featureVector = rs.getString("feature_vector");
+        int version = rs.getInt("feature_schema_version");
+        row.featureSchemaVersion = rs.wasNull() ? null : version;
+        row.features = doubles(rs.getArray("features"));
+        long policyId = rs.getLong("policy_id");
+        row.policyId = rs.wasNull() ? null : policyId;
+        row.tlsFamilyId = rs.getString("tls_family_id");
         row.decision = rs.getString("decision");
         row.confidence = rs.getDouble("confidence");
         row.label = rs.getString("label");
         return row;
     };
 
+    private static final String COLUMNS = """
+            id, occurred_at, user_id, request_id, tls_fp,
+                   device_json::text AS device_json,
+                   behavior_json::text AS behavior_json,
+                   context_json::text AS context_json,
+                   feature_vector::text AS feature_vector,
+                   feature_schema_version, features, policy_id, tls_family_id,
+                   decision, confidence, label""";
+
+    /**
+     * A session_feature row waiting to be written (used by the write-behind batch path).
+     *
+     * {@code features} is in {@link com.poc.api.ml.FeatureVectorSchema#storedNames()} order;
+     * {@code featureVectorJson} is the optional debug copy and may be null.
+     */
+    public record NewSessionFeature(
+            String userId,
+            String requestId,
+            String tlsFp,
+            String deviceJson,
+            String behaviorJson,
+            String contextJson,
+            String featureVectorJson,
+            double[] features,
+            Long policyId,
+            String policyExplainJson,
+            String tlsFamilyId,
+            String decision,
+            double confidence,
+            String label
+    ) {}
+
+    private static final String INSERT_SQL = """
+            INSERT INTO session_feature
+            (user_id, request_id, tls_fp, device_json, behavior_json, context_json, feature_vector,
+             feature_schema_version, features, policy_id, policy_explain, tls_family_id, decision, confidence, label)
+            VALUES (?, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, ?::jsonb, ?, ?, ?, ?::jsonb, ?, ?, ?, ?)
+            """;
+
     public SessionFeatureRepository(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
@@ -45,111 +95,141 @@ public class SessionFeatureRepository {
                        double confidence,
                        String label) {
 
-        jdbcTemplate.update(
-                """
-                INSERT INTO session_feature
-                (user_id, request_id, tls_fp, device_json, behavior_json, context_json, feature_vector, decision, confidence, label)
-                VALUES (?, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, ?::jsonb, ?, ?, ?)
-                """,
-                userId,
-                requestId,
-                tlsFp,
-                deviceJson,
-                behaviorJson,
-                contextJson,
-                featureVectorJson,
-                decision,
-                confidence,
-                label
-        );
+        insert(new NewSessionFeature(userId, requestId, tlsFp, deviceJson, behaviorJson, contextJson,
+                featureVectorJson, null, null, null, null, decision, confidence, label));
+    }
+
+    public void insert(NewSessionFeature row) {
+        jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row));
+    }
+
+    /** Writes all rows in a single JDBC batch. */
+    public void insertBatch(java.util.List<NewSessionFeature> rows) {
+        if (rows == null || rows.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), SessionFeatureRepository::bind);
+    }
+
+    private static void bind(PreparedStatement ps, NewSessionFeature row) throws SQLException {
+        ps.setString(1, row.userId());
+        ps.setString(2, row.requestId());
+        ps.setString(3, row.tlsFp());
+        ps.setString(4, row.deviceJson());
+        ps.setString(5, row.behaviorJson());
+        ps.setString(6, row.contextJson());
+        ps.setString(7, row.featureVectorJson());
+        if (row.features() != null) {
+            Double[] boxed = new Double[row.features().length];
+            for (int i = 0; i < boxed.length; i++) boxed[i] = row.features()[i];
+            ps.setShort(8, FeatureVectorSchema.STORED_VERSION);
+            ps.setArray(9, ps.getConnection().createArrayOf("float8", boxed));
+        } else {
+            ps.setNull(8, Types.SMALLINT);
+            ps.setNull(9, Types.ARRAY);
+        }
+        ps.setObject(10, row.policyId(), Types.BIGINT);
+        ps.setString(11, row.policyExplainJson());
+        ps.setString(12, row.tlsFamilyId());
+        ps.setString(13, row.decision());
+        ps.setDouble(14, row.confidence());
+        ps.setString(15, row.label());
+    }
+
+    private static double[] doubles(Array array) throws SQLException {
+        if (array == null) return null;
+        try {
+            Object[] values = (Object[]) array.getArray();
+            double[] out = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                out[i] = values[i] != null ? ((Number) values[i]).doubleValue() : Double.NaN;
+            }
+            return out;
+        } finally {
+            array.free();
+        }
     }
 
     public java.util.List<SessionFeatureRow> findRecentWithLabel(int limit) {
         String sql = """
-            SELECT id,
-                   occurred_at,
-                   user_id,
-                   request_id,
-                   tls_fp,
-                   device_json::text AS device_json,
-                   behavior_json::text AS behavior_json,
-                   context_json::text AS context_json,
-                   feature_vector::text AS feature_vector,
-                   decision,
-                   confidence,
-                   label
+            SELECT %s
               FROM session_feature
              WHERE label IS NOT NULL
              ORDER BY occurred_at DESC
              LIMIT ?
-            """;
+            """.formatted(COLUMNS);
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            SessionFeatureRow row = new SessionFeatureRow();
-            row.id = rs.getLong("id");
-            row.occurredAt = rs.getObject("occurred_at", java.time.OffsetDateTime.class);
-            row.userId = rs.getString("user_id");
-            row.requestId = rs.getString("request_id");
-            row.tlsFp = rs.getString("tls_fp");
-            row.deviceJson = rs.getString("device_json");
-            row.behaviorJson = rs.getString("behavior_json");
-            row.contextJson = rs.getString("context_json");
-            row.featureVector = rs.getString("feature_vector");
-            row.decision = rs.getString("decision");
-            row.confidence = rs.getDouble("confidence");
-            row.label = rs.getString("label");
-            return row;
-        }, limit);
+        return jdbcTemplate.query(sql, mapper, limit);
     }
 
 
+    /** The four core scores of one labelled session, as used for training. */
+    public record LabelledScores(long id, java.time.OffsetDateTime occurredAt, String decision,
+                                 double deviceScore, double behaviorScore, double tlsScore, double contextScore) {}
+
+    private static final String LABELLED_SCORES_SQL = """
+            SELECT id, occurred_at, decision,
+                   CASE WHEN features IS NOT NULL THEN features[1]
+                        WHEN jsonb_typeof(feature_vector) = 'array' THEN (feature_vector->>0)::double precision
+                        ELSE (feature_vector->>'device_score')::double precision END AS device_score,
+                   CASE WHEN features IS NOT NULL THEN features[2]
+                        WHEN jsonb_typeof(feature_vector) = 'array' THEN (feature_vector->>1)::double precision
+                        ELSE (feature_vector->>'behavior_score')::double precision END AS behavior_score,
+                   CASE WHEN features IS NOT NULL THEN features[3]
+                        WHEN jsonb_typeof(feature_vector) = 'array' THEN (feature_vector->>2)::double precision
+                        ELSE (feature_vector->>'tls_score')::double precision END AS tls_score,
+                   CASE WHEN features IS NOT NULL THEN features[4]
+                        WHEN jsonb_typeof(feature_vector) = 'array' THEN (feature_vector->>3)::double precision
+                        ELSE (feature_vector->>'context_score')::double precision END AS context_score
+              FROM session_feature
+             WHERE label IS NOT NULL
+               AND (occurred_at, id) < (?, ?)
+             ORDER BY occurred_at DESC, id DESC
+             LIMIT ?
+            """;
+
+    /**
+     * One keyset page of labelled sessions, newest first, strictly before {@code (beforeTs, beforeId)}.
+     *
+     * Only the four core scores are read, extracted in SQL from the typed array (or the JSON copy
+     * on older rows), so no JSON text is transferred or parsed. Missing scores read as 0.
+     */
+    public java.util.List<LabelledScores> findLabelledScoresPage(java.time.OffsetDateTime beforeTs, long beforeId, int limit) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LABELLED_SCORES_SQL);
+            ps.setFetchSize(limit);
+            ps.setObject(1, beforeTs);
+            ps.setLong(2, beforeId);
+            ps.setInt(3, limit);
+            return ps;
+        }, (rs, rowNum) -> new LabelledScores(
+                rs.getLong("id"),
+                rs.getObject("occurred_at", java.time.OffsetDateTime.class),
+                rs.getString("decision"),
+                rs.getDouble("device_score"),
+                rs.getDouble("behavior_score"),
+                rs.getDouble("tls_score"),
+                rs.getDouble("context_score")));
+    }
+
     public java.util.List<SessionFeatureRow> findRecentForUser(String userId, int limit) {
         String sql = """
-            SELECT id,
-                   occurred_at,
-                   user_id,
-                   request_id,
-                   tls_fp,
-                   device_json::text AS device_json,
-                   behavior_json::text AS behavior_json,
-                   context_json::text AS context_json,
-                   feature_vector::text AS feature_vector,
-                   decision,
-                   confidence,
-                   label
+            SELECT %s
             FROM session_feature
             WHERE user_id = ?
             ORDER BY occurred_at DESC
             LIMIT ?
-            """;
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            SessionFeatureRow row = new SessionFeatureRow();
-            row.id = rs.getLong("id");
-            row.occurredAt = rs.getObject("occurred_at", java.time.OffsetDateTime.class);
-            row.userId = rs.getString("user_id");
-            row.requestId = rs.getString("request_id");
-            row.tlsFp = rs.getString("tls_fp");
-            row.deviceJson = rs.getString("device_json");
-            row.behaviorJson = rs.getString("behavior_json");
-            row.contextJson = rs.getString("context_json");
-            row.featureVector = rs.getString("feature_vector");
-            row.decision = rs.getString("decision");
-            row.confidence = rs.getDouble("confidence");
-            row.label = rs.getString("label");
-            return row;
-        }, userId, limit);
+            """.formatted(COLUMNS);
+        return jdbcTemplate.query(sql, mapper, userId, limit);
     }
 public Optional<SessionFeatureRow> findByRequestId(String requestId) {
     try {
         return Optional.ofNullable(jdbcTemplate.queryForObject(
                 """
-                SELECT id, occurred_at, user_id, request_id, tls_fp, device_json, behavior_json, context_json,
-                       feature_vector, decision, confidence, label
+                SELECT %s
                 FROM session_feature
                 WHERE request_id = ?
                 ORDER BY occurred_at DESC
                 LIMIT 1
-                """,
+                """.formatted(COLUMNS),
                 mapper,
                 requestId
         ));
@@ -169,12 +249,7 @@ public Optional<SessionFeatureRow> findByRequestId(String requestId) {
         try {
             return Optional.ofNullable(jdbcTemplate.queryForObject(
                     """
-                    SELECT id, occurred_at, user_id, request_id, tls_fp,
-                           device_json::text AS device_json,
-                           behavior_json::text AS behavior_json,
-                           context_json::text AS context_json,
-                           feature_vector::text AS feature_vector,
-                           decision, confidence, label
+                    SELECT %s
                     FROM session_feature
                     WHERE user_id = ?
                       AND occurred_at < ?
@@ -182,7 +257,7 @@ public Optional<SessionFeatureRow> findByRequestId(String requestId) {
                       AND confidence >= ?
                     ORDER BY occurred_at DESC
                     LIMIT 1
-                    """,
+                    """.formatted(COLUMNS),
                     mapper,
                     userId,
                     before,
@@ -201,12 +276,7 @@ public Optional<SessionFeatureRow> findByRequestId(String requestId) {
         try {
             return Optional.ofNullable(jdbcTemplate.queryForObject(
                     """
-                    SELECT id, occurred_at, user_id, request_id, tls_fp,
-                           device_json::text AS device_json,
-                           behavior_json::text AS behavior_json,
-                           context_json::text AS context_json,
-                           feature_vector::text AS feature_vector,
-                           decision, confidence, label
+                    SELECT %s
                     FROM session_feature
                     WHERE user_id = ?
                       AND occurred_at < ?
@@ -215,7 +285,7 @@ public Optional<SessionFeatureRow> findByRequestId(String requestId) {
                       AND confidence >= ?
                     ORDER BY occurred_at DESC
                     LIMIT 1
-                    """,
+                    """.formatted(COLUMNS),
                     mapper,
                     userId,
                     before,
@@ -231,9 +301,9 @@ public Optional<SessionFeatureRow> findByRequestId(String requestId) {
     public java.util.List<PolicyMatchRow> findRecentPolicyMatches(int limit) {
         String sql = """
           SELECT occurred_at, request_id, user_id, decision, confidence,
-                 feature_vector->'policy'::text AS policy_json
+                 policy_explain::text AS policy_json
           FROM session_feature
-          WHERE (feature_vector->>'policy_matched')::double precision = 1
+          WHERE policy_id IS NOT NULL
           ORDER BY occurred_at DESC
           LIMIT ?
         """;
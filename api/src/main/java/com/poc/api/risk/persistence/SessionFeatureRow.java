@@ -1,6 +1,13 @@
 package com.poc.api.risk.persistence;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.ml.FeatureVectorSchema;
+
 import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class SessionFeatureRow {
   public Long id;
@@ -11,8 +18,38 @@ public class SessionFeatureRow {
   public String deviceJson;
   public String behaviorJson;
   public String contextJson;
+  /** Optional JSON debug copy of the breakdown; null unless debug-json was on when the row was written. */
   public String featureVector;
+  /** Breakdown in {@link FeatureVectorSchema#storedNames()} order; null on rows written before V121. */
+  public double[] features;
+  public Integer featureSchemaVersion;
+  public Long policyId;
+  public String tlsFamilyId;
   public String decision;
   public double confidence;
   public String label;
+
+  public boolean hasTypedFeatures() {
+    return features != null && featureSchemaVersion != null
+        && featureSchemaVersion == FeatureVectorSchema.STORED_VERSION;
+  }
+
+  /**
+   * The persisted breakdown as a name -> value map: read from the typed columns when present,
+   * otherwise parsed from the JSON copy (older rows). Empty when neither is available.
+   */
+  public Map<String, Object> featureMap(ObjectMapper objectMapper) {
+    if (hasTypedFeatures()) {
+      Map<String, Object> m = new LinkedHashMap<>(FeatureVectorSchema.storedToMap(features));
+      if (policyId != null) m.put("policy_id", policyId.doubleValue());
+      if (tlsFamilyId != null) m.put("tls_family_id", tlsFamilyId);
+      return m;
+    }
+    if (featureVector == null || featureVector.isBlank()) return Collections.emptyMap();
+    try {
+      return objectMapper.readValue(featureVector, new TypeReference<Map<String, Object>>() {});
+    } catch (Exception e) {
+      return Collections.emptyMap();
+    }
+  }
 }
@@ -0,0 +1,357 @@
+package com.poc.api.risk.policy;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.admin.dto.PolicyRule;
+import com.poc.api.admin.dto.PolicyScope;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable, pre-parsed snapshot of all enabled policy rules.
+ *
+ * Rules are parsed once into predicate arrays and bucketed by scope (USER and TENANT by scope_ref,
+ * GLOBAL as one list), each bucket already in priority order. Within a bucket, rules are also indexed
+ * by the context keys they require: a rule whose condition cannot match a missing key is skipped
+ * without evaluating it when that key is absent from the context.
+ *
+ * Matching semantics are the same as {@link PolicyMatcher}; rules with unparseable JSON or no usable
+ * action never match, exactly as on the interpreted path.
+ */
+public final class CompiledPolicySet {
+
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+
+    /** One compiled rule: AND of predicates plus the pre-parsed action. */
+    public record CompiledRule(long id, String description, Predicate[] predicates, PolicyAction action) {
+        boolean matches(Map<String, Object> ctx) {
+            for (Predicate p : predicates) {
+                if (!p.test(ctx.get(p.key()))) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final CompiledPolicySet EMPTY =
+            new CompiledPolicySet(Map.of(), Map.of(), RuleList.EMPTY, 0);
+
+    private final Map<String, RuleList> user;
+    private final Map<String, RuleList> tenant;
+    private final RuleList global;
+    private final int ruleCount;
+
+    private CompiledPolicySet(Map<String, RuleList> user, Map<String, RuleList> tenant, RuleList global, int ruleCount) {
+        this.user = user;
+        this.tenant = tenant;
+        this.global = global;
+        this.ruleCount = ruleCount;
+    }
+
+    public static CompiledPolicySet empty() {
+        return EMPTY;
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * Compiles rules in the same precedence as {@code PolicyRuleService.resolveEffectivePolicies}:
+     * enabled only, USER then TENANT then GLOBAL, each by priority descending (ties keep input order).
+     */
+    public static CompiledPolicySet compile(List<PolicyRule> rules, ObjectMapper objectMapper) {
+        if (rules == null || rules.isEmpty()) return EMPTY;
+
+        List<PolicyRule> sorted = new ArrayList<>();
+        for (PolicyRule r : rules) {
+            if (r != null && r.isEnabled() && r.getScope() != null) sorted.add(r);
+        }
+        sorted.sort(Comparator.comparingInt(PolicyRule::getPriority).reversed());
+
+        Map<String, List<CompiledRule>> userRules = new HashMap<>();
+        Map<String, List<CompiledRule>> tenantRules = new HashMap<>();
+        List<CompiledRule> globalRules = new ArrayList<>();
+        int count = 0;
+
+        for (PolicyRule r : sorted) {
+            CompiledRule compiled = compileRule(r, objectMapper);
+            if (compiled == null) continue;
+            if (r.getScope() == PolicyScope.USER) {
+                if (r.getScopeRef() == null) continue;
+                userRules.computeIfAbsent(r.getScopeRef(), k -> new ArrayList<>()).add(compiled);
+            } else if (r.getScope() == PolicyScope.TENANT) {
+                if (r.getScopeRef() == null) continue;
+                tenantRules.computeIfAbsent(r.getScopeRef(), k -> new ArrayList<>()).add(compiled);
+            } else {
+                globalRules.add(compiled);
+            }
+            count++;
+        }
+
+        return new CompiledPolicySet(index(userRules), index(tenantRules), RuleList.of(globalRules), count);
+    }
+
+    /**
+     * First matching rule in USER -> TENANT -> GLOBAL order, or null.
+     */
+    public CompiledRule firstMatch(String tenantId, String userId, Map<String, Object> ctx) {
+        CompiledRule hit = null;
+        if (userId != null) {
+            RuleList l = user.get(userId);
+            if (l != null) hit = l.firstMatch(ctx);
+        }
+        if (hit == null && tenantId != null) {
+            RuleList l = tenant.get(tenantId);
+            if (l != null) hit = l.firstMatch(ctx);
+        }
+        if (hit == null) hit = global.firstMatch(ctx);
+        return hit;
+    }
+
+    private static Map<String, RuleList> index(Map<String, List<CompiledRule>> byRef) {
+        Map<String, RuleList> out = new HashMap<>();
+        byRef.forEach((ref, list) -> out.put(ref, RuleList.of(list)));
+        return Map.copyOf(out);
+    }
+
+    private static CompiledRule compileRule(PolicyRule r, ObjectMapper om) {
+        Map<String, Object> cond = parse(r.getConditionJson(), om);
+        if (cond == null || cond.isEmpty()) return null;
+        Map<String, Object> act = parse(r.getActionJson(), om);
+        PolicyAction action = PolicyAction.from(act);
+        if (action == null) return null;
+
+        Predicate[] predicates = new Predicate[cond.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> e : cond.entrySet()) {
+            predicates[i++] = Predicate.compile(e.getKey(), e.getValue());
+        }
+        return new CompiledRule(r.getId(), r.getDescription(), predicates, action);
+    }
+
+    private static Map<String, Object> parse(String json, ObjectMapper om) {
+        if (!StringUtils.hasText(json)) return null;
+        try {
+            return om.readValue(json, MAP);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Priority-ordered rules of one bucket plus a "rules needing key K" index. */
+    static final class RuleList {
+        static final RuleList EMPTY = new RuleList(new CompiledRule[0], Map.of());
+
+        private final CompiledRule[] rules;
+        private final Map<String, BitSet> requiredBy;
+
+        private RuleList(CompiledRule[] rules, Map<String, BitSet> requiredBy) {
+            this.rules = rules;
+            this.requiredBy = requiredBy;
+        }
+
+        static RuleList of(List<CompiledRule> list) {
+            if (list.isEmpty()) return EMPTY;
+            CompiledRule[] arr = list.toArray(new CompiledRule[0]);
+            Map<String, BitSet> req = new LinkedHashMap<>();
+            for (int i = 0; i < arr.length; i++) {
+                for (Predicate p : arr[i].predicates()) {
+                    if (p.requiresValue()) req.computeIfAbsent(p.key(), k -> new BitSet(arr.length)).set(i);
+                }
+            }
+            return new RuleList(arr, req);
+        }
+
+        CompiledRule firstMatch(Map<String, Object> ctx) {
+            if (rules.length == 0) return null;
+            BitSet skip = null;
+            for (Map.Entry<String, BitSet> e : requiredBy.entrySet()) {
+                if (ctx.get(e.getKey()) != null) continue;
+                if (skip == null) skip = new BitSet(rules.length);
+                skip.or(e.getValue());
+            }
+            for (int i = 0; i < rules.length; i++) {
+                if (skip != null) {
+                    i = skip.nextClearBit(i);
+                    if (i >= rules.length) break;
+                }
+                if (rules[i].matches(ctx)) return rules[i];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One compiled "key op value" test. Mirrors {@link PolicyMatcher} operator precedence:
+     * gt/gte/lt/lte, then eq, neq, in, contains.
+     */
+    public abstract static sealed class Predicate {
+        private final String key;
+
+        Predicate(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        abstract boolean test(Object actual);
+
+        /** True when a missing/null context value can never satisfy this predicate. */
+        abstract boolean requiresValue();
+
+        static Predicate compile(String key, Object expected) {
+            if (!(expected instanceof Map<?, ?> ops)) return new Eq(key, expected, false);
+            if (ops.isEmpty()) return new Never(key);
+
+            String[] numericOps = {"gt", "gte", "lt", "lte"};
+            for (String op : numericOps) {
+                if (ops.containsKey(op)) {
+                    Double threshold = PolicyMatcher.toDouble(ops.get(op));
+                    return threshold == null ? new Never(key) : new Compare(key, op, threshold);
+                }
+            }
+            if (ops.containsKey("eq")) return new Eq(key, ops.get("eq"), false);
+            if (ops.containsKey("neq")) return new Eq(key, ops.get("neq"), true);
+            if (ops.containsKey("in") && ops.get("in") instanceof Collection<?> col) return new In(key, col);
+            if (ops.containsKey("contains")) return new Contains(key, ops.get("contains"));
+            return new Never(key);
+        }
+    }
+
+    static final class Never extends Predicate {
+        Never(String key) { super(key); }
+        @Override boolean test(Object actual) { return false; }
+        @Override boolean requiresValue() { return true; }
+    }
+
+    static final class Eq extends Predicate {
+        private final Object expected;
+        private final boolean negate;
+
+        Eq(String key, Object expected, boolean negate) {
+            super(key);
+            this.expected = PolicyMatcher.normaliseScalar(expected);
+            this.negate = negate;
+        }
+
+        @Override boolean test(Object actual) {
+            return Objects.equals(PolicyMatcher.normaliseScalar(actual), expected) != negate;
+        }
+
+        @Override boolean requiresValue() { return !negate && expected != null; }
+    }
+
+    static final class Compare extends Predicate {
+        private final int op;
+        private final double threshold;
+
+        Compare(String key, String op, double threshold) {
+            super(key);
+            this.op = switch (op) {
+                case "gt" -> 0;
+                case "gte" -> 1;
+                case "lt" -> 2;
+                default -> 3;
+            };
+            this.threshold = threshold;
+        }
+
+        @Override boolean test(Object actual) {
+            double a;
+            if (actual instanceof Number n) {
+                a = n.doubleValue();
+            } else {
+                Double d = PolicyMatcher.toDouble(actual);
+                if (d == null) return false;
+                a = d;
+            }
+            return switch (op) {
+                case 0 -> a > threshold;
+                case 1 -> a >= threshold;
+                case 2 -> a < threshold;
+                default -> a <= threshold;
+            };
+        }
+
+        @Override boolean requiresValue() { return true; }
+    }
+
+    static final class In extends Predicate {
+        private final Set<Object> values;
+        private final boolean containsNull;
+
+        In(String key, Collection<?> col) {
+            super(key);
+            Set<Object> s = new HashSet<>();
+            boolean nul = false;
+            for (Object o : col) {
+                Object n = PolicyMatcher.normaliseScalar(o);
+                if (n == null) nul = true;
+                else s.add(n);
+            }
+            this.values = Set.copyOf(s);
+            this.containsNull = nul;
+        }
+
+        @Override boolean test(Object actual) {
+            Object n = PolicyMatcher.normaliseScalar(actual);
+            return n == null ? containsNull : values.contains(n);
+        }
+
+        @Override boolean requiresValue() { return !containsNull; }
+    }
+
+    static final class Contains extends Predicate {
+        private final String needleText;
+        private final Object needle;
+
+        Contains(String key, Object needle) {
+            super(key);
+            this.needleText = needle == null ? "" : needle.toString();
+            this.needle = PolicyMatcher.normaliseScalar(needle);
+        }
+
+        @Override boolean test(Object actual) {
+            if (actual instanceof String s) {
+                return StringUtils.hasText(needleText) && s.contains(needleText);
+            }
+            if (actual instanceof Collection<?> col) {
+                for (Object o : col) {
+                    if (Objects.equals(PolicyMatcher.normaliseScalar(o), needle)) return true;
+                }
+            }
+            return false;
+        }
+
+        @Override boolean requiresValue() { return true; }
+    }
+
+    /** Context keys referenced by any compiled rule (diagnostics). */
+    public Set<String> referencedKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (RuleList l : user.values()) collectKeys(l, keys);
+        for (RuleList l : tenant.values()) collectKeys(l, keys);
+        collectKeys(global, keys);
+        return keys;
+    }
+
+    private static void collectKeys(RuleList l, Set<String> out) {
+        for (CompiledRule r : l.rules) {
+            for (Predicate p : r.predicates()) out.add(p.key());
+        }
+    }
+}
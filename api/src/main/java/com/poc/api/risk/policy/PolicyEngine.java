@@ -4,6 +4,12 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.poc.api.admin.dto.PolicyRule;
 import com.poc.api.admin.service.PolicyRuleService;
+import com.poc.api.admin.service.PolicyRulesChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -11,6 +17,7 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * EPIC 13.2: Evaluates stored policy rules to optionally override/adjust the final decision.
@@ -18,24 +25,95 @@ import java.util.Map;
  * - Deterministic, rule-based evaluation (no ML).
  * - Policies are resolved by scope precedence: USER -> TENANT -> GLOBAL (already handled by PolicyRuleService).
  * - First matching policy wins (in the resolved order).
+ *
+ * By default rules are evaluated from a {@link CompiledPolicySet} snapshot that is rebuilt when a
+ * {@link PolicyRulesChangedEvent} arrives (plus a slow periodic refresh for changes made by other
+ * instances), so the scoring path does no DB reads or JSON parsing. The original per-request path is
+ * kept as {@link #evaluateInterpreted} and is used when {@code poc.policy.compiled.enabled=false}.
  */
 @Service
 public class PolicyEngine {
 
+    private static final Logger log = LoggerFactory.getLogger(PolicyEngine.class);
     private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
     private final PolicyRuleService policyRuleService;
     private final ObjectMapper objectMapper;
+    private final boolean compiledEnabled;
+    private final AtomicReference<CompiledPolicySet> compiled = new AtomicReference<>();
 
     // EPIC 13.7 guardrails
     private static final double BLOCK_MIN_RISK = 0.85;
     private static final double ALLOW_MAX_RISK = 0.55;
 
-    public PolicyEngine(PolicyRuleService policyRuleService, ObjectMapper objectMapper) {
+    public PolicyEngine(PolicyRuleService policyRuleService,
+                        ObjectMapper objectMapper,
+                        @Value("${poc.policy.compiled.enabled:true}") boolean compiledEnabled) {
         this.policyRuleService = policyRuleService;
         this.objectMapper = objectMapper;
+        this.compiledEnabled = compiledEnabled;
     }
 
     public PolicyOutcome evaluate(String tenantId, String userId, PolicyContext ctx) {
+        return evaluate(snapshot(), tenantId, userId, ctx);
+    }
+
+    /**
+     * The compiled rules currently in use, so a bulk request can evaluate every item against the
+     * same rule set. Null when the compiled path is disabled.
+     */
+    public CompiledPolicySet snapshot() {
+        if (!compiledEnabled) return null;
+        CompiledPolicySet set = compiled.get();
+        return set != null ? set : refresh();
+    }
+
+    /**
+     * Evaluates against a snapshot from {@link #snapshot()}; a null snapshot uses the interpreted path.
+     */
+    public PolicyOutcome evaluate(CompiledPolicySet set, String tenantId, String userId, PolicyContext ctx) {
+        if (set == null) return evaluateInterpreted(tenantId, userId, ctx);
+
+        Map<String, Object> values = ctx.values();
+        CompiledPolicySet.CompiledRule rule = set.firstMatch(
+                StringUtils.hasText(tenantId) ? tenantId : null,
+                StringUtils.hasText(userId) ? userId : null,
+                values
+        );
+        if (rule == null) return PolicyOutcome.noMatch();
+        return PolicyOutcome.matched(rule.id(), rule.description(), applyGuardrails(rule.action(), values));
+    }
+
+    /**
+     * Rebuilds the compiled snapshot from the current rules and swaps it in atomically.
+     */
+    public synchronized CompiledPolicySet refresh() {
+        CompiledPolicySet next = CompiledPolicySet.compile(policyRuleService.listAll(), objectMapper);
+        compiled.set(next);
+        return next;
+    }
+
+    @EventListener
+    public void onPolicyRulesChanged(PolicyRulesChangedEvent event) {
+        if (!compiledEnabled) return;
+        CompiledPolicySet next = refresh();
+        log.debug("[policy] recompiled after policy {} {} ({} rules)", event.policyId(), event.change(), next.ruleCount());
+    }
+
+    @Scheduled(fixedDelayString = "${poc.policy.compiled.refresh-ms:60000}")
+    public void periodicRefresh() {
+        // Safety net for rules changed by another instance; only once the snapshot is in use.
+        if (!compiledEnabled || compiled.get() == null) return;
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("[policy] periodic recompile failed, keeping previous snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Original path: resolves rules from the repository and parses their JSON on every call.
+     */
+    public PolicyOutcome evaluateInterpreted(String tenantId, String userId, PolicyContext ctx) {
         List<PolicyRule> policies = policyRuleService.resolveEffectivePolicies(
                 StringUtils.hasText(tenantId) ? tenantId : null,
                 StringUtils.hasText(userId) ? userId : null
@@ -86,14 +86,14 @@ public final class PolicyMatcher {
         return false;
     }
 
-    private static Object normaliseScalar(Object v) {
+    static Object normaliseScalar(Object v) {
         if (v == null) return null;
         if (v instanceof Number n) return n.doubleValue();
         if (v instanceof Boolean b) return b;
         return v.toString();
     }
 
-    private static Double toDouble(Object v) {
+    static Double toDouble(Object v) {
         if (v == null) return null;
         if (v instanceof Number n) return n.doubleValue();
         if (v instanceof String s) {
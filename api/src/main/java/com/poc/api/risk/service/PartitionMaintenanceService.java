@@ -0,0 +1,136 @@
+package com.poc.api.risk.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Daily range partitions of session_feature, decision_log and drift_event (V122) and
+ * model_shadow_score (V125).
+ *
+ * {@link #ensurePartitions()} runs at startup and then hourly, and makes sure every UTC day from
+ * today up to {@code poc.partitions.days-ahead} has a partition named {@code <table>_pYYYYMMDD}.
+ * Creation starts at the current upper bound, so a restart after downtime does not try to overlap
+ * the existing partitions.
+ *
+ * {@link #dropExpired(int)} is what retention does now: a partition whose upper bound is older
+ * than the cutoff is detached and dropped, which is a catalog change rather than a DELETE. Rows are
+ * therefore kept for up to one day longer than the retention window.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+  private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+  private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+  static final List<String> TABLES = List.of(
+      "session_feature", "decision_log", "drift_event", "model_shadow_score");
+
+  /** One partition and its exclusive upper bound. */
+  record Partition(String name, OffsetDateTime upperBound) {}
+
+  private static final String PARTITIONS_SQL = """
+      SELECT c.relname AS name,
+             substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \\(''([^'']+)''\\)')::timestamptz AS upper_bound
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        JOIN pg_class p ON p.oid = i.inhparent
+       WHERE p.relname = ?
+         AND p.relnamespace = current_schema()::regnamespace
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final boolean enabled;
+  private final int daysAhead;
+
+  public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                     @Value("${poc.partitions.enabled:true}") boolean enabled,
+                                     @Value("${poc.partitions.days-ahead:7}") int daysAhead) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.enabled = enabled;
+    this.daysAhead = Math.max(1, daysAhead);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onStartup() {
+    ensurePartitions();
+  }
+
+  @Scheduled(fixedDelayString = "${poc.partitions.maintenance-interval-ms:3600000}")
+  public void ensurePartitions() {
+    if (!enabled) return;
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    for (String table : TABLES) {
+      try {
+        int created = ensure(table, today);
+        if (created > 0) log.info("[partitions] created {} daily partitions for {}", created, table);
+      } catch (Exception e) {
+        log.warn("[partitions] could not create partitions for {}: {}", table, e.getMessage());
+      }
+    }
+  }
+
+  private int ensure(String table, LocalDate today) {
+    LocalDate from = today;
+    for (Partition p : partitions(table)) {
+      if (p.upperBound() == null) continue;
+      LocalDate covered = p.upperBound().atZoneSameInstant(ZoneOffset.UTC).toLocalDate();
+      if (covered.isAfter(from)) from = covered;
+    }
+    LocalDate until = today.plusDays(daysAhead);
+    int created = 0;
+    for (LocalDate day = from; !day.isAfter(until); day = day.plusDays(1)) {
+      jdbcTemplate.execute(String.format(
+          "CREATE TABLE IF NOT EXISTS %s_p%s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+          table, SUFFIX.format(day), table, utcMidnight(day), utcMidnight(day.plusDays(1))));
+      created++;
+    }
+    return created;
+  }
+
+  /**
+   * Detaches and drops every partition that ends at or before {@code now - days}.
+   *
+   * @return the number of partitions dropped
+   */
+  public int dropExpired(int days) {
+    OffsetDateTime cutoff = OffsetDateTime.now(ZoneOffset.UTC).minusDays(days);
+    int dropped = 0;
+    for (String table : TABLES) {
+      for (Partition p : partitions(table)) {
+        if (p.upperBound() == null || p.upperBound().isAfter(cutoff)) continue;
+        try {
+          jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + p.name());
+          jdbcTemplate.execute("DROP TABLE " + p.name());
+          dropped++;
+          log.info("[partitions] dropped {} (rows before {})", p.name(), p.upperBound());
+        } catch (Exception e) {
+          log.warn("[partitions] could not drop {}: {}", p.name(), e.getMessage());
+        }
+      }
+    }
+    return dropped;
+  }
+
+  List<Partition> partitions(String table) {
+    return jdbcTemplate.query(PARTITIONS_SQL, (rs, rowNum) -> new Partition(
+        rs.getString("name"),
+        rs.getObject("upper_bound", OffsetDateTime.class)), table);
+  }
+
+  private static String utcMidnight(LocalDate day) {
+    return day.atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+  }
+}
@@ -3,7 +3,6 @@ package com.poc.api.risk.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -12,20 +11,21 @@ public class RetentionService {
 
   private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
 
-  private final JdbcTemplate jdbcTemplate;
+  private final PartitionMaintenanceService partitions;
   private final boolean retentionEnabled;
   private final int retentionDays;
 
-  public RetentionService(JdbcTemplate jdbcTemplate,
+  public RetentionService(PartitionMaintenanceService partitions,
                           @Value("${retention.enabled:true}") boolean retentionEnabled,
                           @Value("${retention.days:30}") int retentionDays) {
-    this.jdbcTemplate = jdbcTemplate;
+    this.partitions = partitions;
     this.retentionEnabled = retentionEnabled;
     this.retentionDays = retentionDays;
   }
 
   /**
-   * Purge old session and decision records once a day at 03:00.
+   * Purge old session, decision and drift records once a day at 03:00 by dropping the daily
+   * partitions that are entirely older than the retention window.
    */
   @Scheduled(cron = "0 0 3 * * *")
   public void purgeOldData() {
@@ -36,20 +36,12 @@ public class RetentionService {
       return;
     }
 
-    int days = retentionDays;
+    long started = System.nanoTime();
+    int dropped = partitions.dropExpired(retentionDays);
 
-    int deletedSessions = jdbcTemplate.update(
-        "DELETE FROM session_feature WHERE occurred_at < now() - (? * INTERVAL '1 day')",
-        days
-    );
-    int deletedDecisions = jdbcTemplate.update(
-        "DELETE FROM decision_log WHERE created_at < now() - (? * INTERVAL '1 day')",
-        days
-    );
-
-    if (deletedSessions > 0 || deletedDecisions > 0) {
-      log.info("Retention job purged {} session_feature rows and {} decision_log rows older than {} days",
-          deletedSessions, deletedDecisions, days);
+    if (dropped > 0) {
+      log.info("Retention job dropped {} daily partitions older than {} days in {} ms",
+          dropped, retentionDays, (System.nanoTime() - started) / 1_000_000);
     }
   }
 }
@@ -2,78 +2,150 @@ package com.poc.api.risk.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.ml.FeatureVectorSchema;
 import com.poc.api.ml.ModelProvider;
 import com.poc.api.showcase.service.TlsFamilyService;
+import com.poc.api.risk.dto.BatchScoreItem;
+import com.poc.api.risk.dto.BatchScoreResult;
 import com.poc.api.risk.dto.DecisionResponse;
 import com.poc.api.telemetry.dto.Telemetry;
 import com.poc.api.telemetry.service.BehaviorStatsService;
 import com.poc.api.telemetry.service.DeviceProfileService;
 import com.poc.api.risk.persistence.DecisionLogRepository;
+import com.poc.api.risk.persistence.DecisionWriteBehindQueue;
 import com.poc.api.telemetry.persistence.DeviceProfile;
 import com.poc.api.telemetry.service.BehaviorStatsService;
 import com.poc.api.telemetry.service.DeviceProfileService;
 import com.poc.api.risk.persistence.SessionFeatureRepository;
-import com.poc.api.ml.persistence.ModelCanaryPolicyRepository;
-import com.poc.api.ml.persistence.ModelRegistryRepository;
+import com.poc.api.ml.service.ModelRouting;
+import com.poc.api.ml.service.ShadowScoringService;
+import com.poc.api.risk.policy.CompiledPolicySet;
 import com.poc.api.risk.policy.PolicyEngine;
 import com.poc.api.risk.policy.PolicyOutcome;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.LinkedHashMap;
 import java.util.UUID;
+import java.util.function.Consumer;
 
-import com.poc.api.risk.service.AccountSharingHeuristics;
 import com.poc.api.risk.service.UserReputationService;
 
 @Service
 public class RiskService {
 
+  private final ScoringStages scoringStages;
   private final DeviceProfileService deviceProfileService;
-  private final BehaviorStatsService behaviorStatsService;
   private final FeatureBuilder featureBuilder;
   private final RulesEngine rulesEngine;
   private final ModelProvider modelProvider;
-  private final ModelCanaryPolicyRepository canaryPolicyRepository;
-  private final ModelRegistryRepository modelRegistryRepository;
+  private final ModelRouting modelRouting;
+  private final ShadowScoringService shadowScoring;
   private final PolicyEngine policyEngine;
-  private final SessionFeatureRepository sessionFeatureRepository;
-  private final DecisionLogRepository decisionLogRepository;
-  private final AccountSharingHeuristics accountSharingHeuristics;
-  private final UserReputationService userReputationService;
-  private final TlsFamilyService tlsFamilyService;
+  private final DecisionWriteBehindQueue decisionWriteBehind;
+  private final UserActivitySummaryCache userActivitySummaries;
+  private final ScoringMetrics scoringMetrics;
+  private final int batchFlushSize;
+  private final boolean featureDebugJson;
   private final ObjectMapper objectMapper = new ObjectMapper();
 
-  public RiskService(DeviceProfileService deviceProfileService,
-                     BehaviorStatsService behaviorStatsService,
+  public RiskService(ScoringStages scoringStages,
+                     DeviceProfileService deviceProfileService,
                      FeatureBuilder featureBuilder,
                      RulesEngine rulesEngine,
                      ModelProvider modelProvider,
-                     ModelCanaryPolicyRepository canaryPolicyRepository,
-                     ModelRegistryRepository modelRegistryRepository,
-                     SessionFeatureRepository sessionFeatureRepository,
-                     DecisionLogRepository decisionLogRepository,
-                     AccountSharingHeuristics accountSharingHeuristics,
-                     UserReputationService userReputationService,
-                     TlsFamilyService tlsFamilyService,
-                     PolicyEngine policyEngine) {
+                     ModelRouting modelRouting,
+                     ShadowScoringService shadowScoring,
+                     DecisionWriteBehindQueue decisionWriteBehind,
+                     UserActivitySummaryCache userActivitySummaries,
+                     PolicyEngine policyEngine,
+                     ScoringMetrics scoringMetrics,
+                     @Value("${poc.scoring.batch.flush-size:500}") int batchFlushSize,
+                     @Value("${poc.persistence.session-feature.debug-json:false}") boolean featureDebugJson) {
+    this.scoringStages = scoringStages;
     this.deviceProfileService = deviceProfileService;
-    this.behaviorStatsService = behaviorStatsService;
     this.featureBuilder = featureBuilder;
     this.rulesEngine = rulesEngine;
     this.modelProvider = modelProvider;
-    this.canaryPolicyRepository = canaryPolicyRepository;
-    this.modelRegistryRepository = modelRegistryRepository;
-    this.sessionFeatureRepository = sessionFeatureRepository;
-    this.decisionLogRepository = decisionLogRepository;
-    this.accountSharingHeuristics = accountSharingHeuristics;
-    this.userReputationService = userReputationService;
-    this.tlsFamilyService = tlsFamilyService;
+    this.modelRouting = modelRouting;
+    this.shadowScoring = shadowScoring;
+    this.decisionWriteBehind = decisionWriteBehind;
+    this.userActivitySummaries = userActivitySummaries;
     this.policyEngine = policyEngine;
+    this.scoringMetrics = scoringMetrics;
+    this.batchFlushSize = Math.max(1, batchFlushSize);
+    this.featureDebugJson = featureDebugJson;
   }
 
+  /** Request-level context pulled out of the telemetry envelope. */
+  private record Envelope(String userId, String sessionId, String country, String tenantId,
+                          boolean vpn, boolean highRiskAction) {}
+
   public DecisionResponse score(String tlsFp, String tlsMeta, Telemetry telemetry, String ip, String reqId) {
+    ScoringMetrics.Sample sample = scoringMetrics.start();
+    Envelope env = envelope(telemetry, reqId);
+
+    // EPIC 9 TLS family, device profile upsert, behaviour similarity and EPIC 6 reputation are
+    // independent of each other; run them concurrently.
+    ScoringStages.Results stages = scoringStages.run(env.userId(), tlsFp, tlsMeta, env.country(), telemetry, sample);
+    return decide(env, tlsFp, tlsMeta, telemetry, stages, policySnapshot(),
+        w -> decisionWriteBehind.submit(w.sessionFeature(), w.decisionLog()), sample);
+  }
+
+  /**
+   * Bulk scoring for replay/import traffic. Items are scored in order against one policy snapshot,
+   * device profiles and reputation are looked up once per user, and each result is handed to
+   * {@code sink} as soon as it is ready. Decision rows and repeat device sightings are written in
+   * batches of {@code poc.scoring.batch.flush-size} items. A failing item is reported through the
+   * sink and does not stop the batch.
+   */
+  public void scoreBatch(List<BatchScoreItem> items, Consumer<BatchScoreResult> sink) {
+    if (items == null || items.isEmpty()) return;
+    CompiledPolicySet policies = policySnapshot();
+    Map<String, UserReputationService.Reputation> reputations = new HashMap<>();
+    List<DecisionWriteBehindQueue.PendingWrite> writes = new ArrayList<>(Math.min(items.size(), batchFlushSize));
+    try (DeviceProfileService.Batch devices = deviceProfileService.openBatch()) {
+      try {
+        for (int i = 0; i < items.size(); i++) {
+          BatchScoreItem item = items.get(i);
+          BatchScoreResult result;
+          try {
+            ScoringMetrics.Sample sample = scoringMetrics.start();
+            Envelope env = envelope(item.telemetry(), item.request_id());
+            ScoringStages.Results stages = scoringStages.runInBatch(env.userId(),
+                item.tls_fp(), item.tls_meta(), env.country(), item.telemetry(), devices, reputations, sample);
+            result = BatchScoreResult.ok(i, item.request_id(),
+                decide(env, item.tls_fp(), item.tls_meta(), item.telemetry(), stages, policies, writes::add, sample));
+          } catch (RuntimeException e) {
+            result = BatchScoreResult.failed(i, item.request_id(), e.getMessage() != null ? e.getMessage() : e.toString());
+          }
+          if (writes.size() >= batchFlushSize) {
+            decisionWriteBehind.submitAll(writes);
+            writes.clear();
+            devices.flush();
+          }
+          sink.accept(result);
+        }
+      } finally {
+        decisionWriteBehind.submitAll(writes);
+      }
+    }
+  }
+
+  /** Policy errors must not fail scoring; without a snapshot the interpreted path is tried per item. */
+  private CompiledPolicySet policySnapshot() {
+    try {
+      return policyEngine.snapshot();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static Envelope envelope(Telemetry telemetry, String reqId) {
     String userId = telemetry.user_id_hint() != null ? telemetry.user_id_hint() : "anonymous";
     String sessionId = (reqId != null && !reqId.isBlank()) ? reqId : UUID.randomUUID().toString();
 
@@ -91,22 +163,35 @@ public class RiskService {
       Object h = telemetry.context().get("high_risk_action");
       if (h instanceof Boolean b) highRiskAction = b;
     }
+    return new Envelope(userId, sessionId, country, tenantId, vpn, highRiskAction);
+  }
 
-    // EPIC 9: normalise TLS and assign to a family.
-    TlsFamilyService.Observation tlsObs = tlsFamilyService.observe(userId, tlsFp, tlsMeta);
-
-    // Upsert device profile (raw TLS FP is still stored for traceability)
-    DeviceProfile profile = deviceProfileService.upsert(userId, tlsFp, country, telemetry.device());
-
-    // Behavior similarity + stats update
-    BehaviorStatsService.BehaviorSimilarityResult behaviorRes =
-        behaviorStatsService.updateAndComputeSimilarity(userId, telemetry.behavior());
-
-    // Build feature vector
-    FeatureBuilder.Features features = featureBuilder.build(profile, behaviorRes.score(), tlsFp, telemetry, tlsObs.tlsScore());
+  private DecisionResponse decide(Envelope env, String tlsFp, String tlsMeta, Telemetry telemetry,
+                                  ScoringStages.Results stages, CompiledPolicySet policies,
+                                  Consumer<DecisionWriteBehindQueue.PendingWrite> writes,
+                                  ScoringMetrics.Sample sample) {
+    String userId = env.userId();
+    String sessionId = env.sessionId();
+    String country = env.country();
+    String tenantId = env.tenantId();
+    boolean vpn = env.vpn();
+    boolean highRiskAction = env.highRiskAction();
+
+    TlsFamilyService.Observation tlsObs = stages.tls();
+    DeviceProfile profile = stages.profile();
+    BehaviorStatsService.BehaviorSimilarityResult behaviorRes = stages.behavior();
+    var reputation = stages.reputation();
+
+    // Build feature vector (a timed-out device upsert scores as a neutral, unknown device)
+    long mark = sample.mark();
+    FeatureBuilder.Features features = featureBuilder.build(
+        stages.profileFallback() ? null : profile, behaviorRes.score(), tlsFp, telemetry, tlsObs.tlsScore());
+
+    mark = sample.lap(ScoringMetrics.Stage.FEATURES, mark);
 
     // ML prediction via Tribuo (probability of being legit)
-long selectedModelId = selectModelIdForCanary(userId, sessionId);
+ModelRouting.Selection route = modelRouting.select(userId, sessionId);
+long selectedModelId = route.modelId();
 double pLegit = modelProvider.predictWithModelId(
     selectedModelId,
     features.deviceScore(),
@@ -123,6 +208,8 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
     features.tlsScore(),
     features.contextScore()
 );
+boolean rulesOnly = modelProvider.isRulesOnly(selectedModelId);
+mark = sample.lap(ScoringMetrics.Stage.MODEL, mark);
 
 // Rules
 
@@ -137,9 +224,14 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
     );
     RulesEngine.Decision decisionEnum = rulesEngine.apply(fctx, pLegit);
     String decision = decisionEnum.name();
+    mark = sample.lap(ScoringMetrics.Stage.RULES, mark);
 
-    // EPIC 6: user-level intelligence & reputation (used both for breakdown and policy context)
-    var reputation = userReputationService.evaluate(userId);
+    // Candidate models see the same core scores off the request thread; dropped when that pool is busy.
+    if (shadowScoring.isActive()) {
+      shadowScoring.submit(new ShadowScoringService.ShadowInput(sessionId, selectedModelId, pLegit, decision,
+          features.deviceScore(), features.behaviorScore(), features.tlsScore(), features.contextScore(),
+          p -> rulesEngine.apply(fctx, p).name()));
+    }
 
 
     // EPIC 13.2: evaluate governable policy rules (after ML inference + rules engine, before final response).
@@ -173,7 +265,7 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
       pctx.put("user.country_count", reputation.countryCount());
       pctx.put("user.sessions_30d", reputation.sessionsLast30d());
 
-      policyOutcome = policyEngine.evaluate(tenantId, userId, PolicyEngine.context(pctx));
+      policyOutcome = policyEngine.evaluate(policies, tenantId, userId, PolicyEngine.context(pctx));
       if (policyOutcome.matched() && policyOutcome.action() != null) {
         var act = policyOutcome.action();
         if (act.confidenceCap() != null) {
@@ -194,6 +286,7 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
     } catch (Exception ignored) {
       // Policy errors must not fail the PoC scoring path.
     }
+    mark = sample.lap(ScoringMetrics.Stage.POLICY, mark);
 
 
     Map<String, Double> breakdown = Map.of(
@@ -208,7 +301,7 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
     // EPIC 5: add anomaly score and selected behavioural z-scores + device/TLS rarity.
     enrichedBreakdown.put("ml_anomaly_score", anomalyScore);
     enrichedBreakdown.put("model_id_used", (double) selectedModelId);
-    enrichedBreakdown.put("canary_enabled", isCanarySelected(userId, sessionId, selectedModelId) ? 1.0 : 0.0);
+    enrichedBreakdown.put("canary_enabled", route.canary() ? 1.0 : 0.0);
 
     if (policyOutcome != null && policyOutcome.matched()) {
       enrichedBreakdown.put("policy_matched", 1.0);
@@ -240,8 +333,6 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
     enrichedBreakdown.put("tls_family_meta_present", tlsObs.metaPresent() ? 1.0 : 0.0);
 
     // EPIC 6: user-level intelligence & reputation
-    var sharing = accountSharingHeuristics.evaluate(userId);
-    
     enrichedBreakdown.put("user_trust_score", reputation.trustScore());
     enrichedBreakdown.put("user_account_sharing_risk", reputation.accountSharingRisk());
     enrichedBreakdown.put("user_device_count", (double) reputation.deviceCount());
@@ -249,27 +340,41 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
     enrichedBreakdown.put("user_country_count", (double) reputation.countryCount());
     enrichedBreakdown.put("user_sessions_30d", (double) reputation.sessionsLast30d());
 
-    // Persist session features
+    // Persist session features + decision log (write-through, or queued when write-behind is enabled)
+    mark = sample.mark();
+    SessionFeatureRepository.NewSessionFeature sessionFeatureRow = null;
     try {
       String deviceJson = objectMapper.writeValueAsString(telemetry.device());
       String behaviorJson = objectMapper.writeValueAsString(telemetry.behavior());
       String contextJson = objectMapper.writeValueAsString(telemetry.context());
-      // Persist numeric feature_vector plus a few string fields for explainability.
-      Map<String, Object> fv = new LinkedHashMap<>();
-      fv.putAll(enrichedBreakdown);
-      if (policyOutcome != null && policyOutcome.matched()) fv.put("policy", policyOutcome.asExplainMap());
-      fv.put("tls_family_id", tlsObs.familyId());
-      fv.put("tls_family_key", tlsObs.familyKey());
-      String featureVectorJson = objectMapper.writeValueAsString(fv);
-      sessionFeatureRepository.insert(userId, sessionId, tlsFp != null ? tlsFp : "none",
-          deviceJson, behaviorJson, contextJson, featureVectorJson, decision, pLegit, null);
+      // Numeric breakdown as a typed array; policy and TLS family as columns. The full JSON map
+      // (including tls_family_key and extra z-scores) is only written as a debug copy.
+      boolean policyMatched = policyOutcome != null && policyOutcome.matched();
+      Long policyId = policyMatched ? (policyOutcome.policyId() != null ? policyOutcome.policyId() : 0L) : null;
+      String policyExplainJson = policyMatched ? objectMapper.writeValueAsString(policyOutcome.asExplainMap()) : null;
+      String featureVectorJson = null;
+      if (featureDebugJson) {
+        Map<String, Object> fv = new LinkedHashMap<>();
+        fv.putAll(enrichedBreakdown);
+        if (policyMatched) fv.put("policy", policyOutcome.asExplainMap());
+        fv.put("tls_family_id", tlsObs.familyId());
+        fv.put("tls_family_key", tlsObs.familyKey());
+        featureVectorJson = objectMapper.writeValueAsString(fv);
+      }
+      sessionFeatureRow = new SessionFeatureRepository.NewSessionFeature(userId, sessionId, tlsFp != null ? tlsFp : "none",
+          deviceJson, behaviorJson, contextJson, featureVectorJson, FeatureVectorSchema.toStored(enrichedBreakdown),
+          policyId, policyExplainJson, tlsObs.familyId(), decision, pLegit, null);
     } catch (JsonProcessingException e) {
       // In PoC we don't fail the request on logging errors.
     }
 
-    // Persist decision log
-    decisionLogRepository.insert(sessionId, userId, tlsFp != null ? tlsFp : "none",
-        features.behaviorScore(), features.deviceScore(), features.contextScore(), pLegit, decision);
+    writes.accept(new DecisionWriteBehindQueue.PendingWrite(sessionFeatureRow, new DecisionLogRepository.NewDecisionLog(
+        sessionId, userId, tlsFp != null ? tlsFp : "none",
+        features.behaviorScore(), features.deviceScore(), features.contextScore(), pLegit, decision)));
+    userActivitySummaries.onDecision(userId, pLegit);
+    sample.lap(ScoringMetrics.Stage.PERSIST, mark);
+    scoringMetrics.finish(sample, selectedModelId, decision,
+        policyOutcome != null && policyOutcome.matched(), route.canary(), rulesOnly);
 
 	    var reasons = new java.util.ArrayList<String>(List.of(
 	        String.format("Rules decision: %s", decision),
@@ -300,30 +405,4 @@ double anomalyScore = modelProvider.anomalyScoreWithModelId(
         policyExplain
     );
   }
-
-  private long selectModelIdForCanary(String userId, String requestId) {
-    var active = modelRegistryRepository.findActive().orElse(null);
-    long activeId = active == null ? 0L : active.id();
-
-    var c = canaryPolicyRepository.get("risk-model", "GLOBAL", "*").orElse(null);
-    if (c == null || !c.enabled() || c.rolloutPercent() <= 0) return activeId;
-
-    String key = (requestId != null && !requestId.isBlank()) ? requestId : userId;
-    int bucket = stableBucket(key);
-    if (bucket < c.rolloutPercent()) return c.modelId();
-    return activeId;
-  }
-
-  private boolean isCanarySelected(String userId, String requestId, long selectedModelId) {
-    var c = canaryPolicyRepository.get("risk-model", "GLOBAL", "*").orElse(null);
-    if (c == null || !c.enabled() || c.rolloutPercent() <= 0) return false;
-    return selectedModelId == c.modelId();
-  }
-
-  private int stableBucket(String key) {
-    int h = (key == null) ? 0 : key.hashCode();
-    h ^= (h >>> 16);
-    long u = h & 0xffffffffL;
-    return (int) (u % 100);
-  }
 }
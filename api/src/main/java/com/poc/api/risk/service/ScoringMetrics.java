@@ -0,0 +1,216 @@
+package com.poc.api.risk.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stage-level latency of {@link RiskService#score}.
+ *
+ * A {@link Sample} collects the duration of every stage of one request; once the decision is known
+ * {@link #finish} records them as {@code risk.score.stage} timers tagged by stage, model id,
+ * decision and outcome, plus the end-to-end {@code risk.score} timer. A fan-out stage that missed
+ * its deadline ({@link #fallback}) is recorded with {@code outcome=fallback} and the time waited for
+ * it; everything else is {@code outcome=ok}.
+ *
+ * Counters: {@code risk.score.policy.matches}, {@code risk.score.canary},
+ * {@code risk.score.rules_only} (no model loaded for the selected id, heuristic score used), and per
+ * stage {@code risk.score.stage.fallback} and {@code risk.score.stage.errors} (the stage threw, so
+ * the request failed before a decision).
+ *
+ * Timers publish percentile histograms unless {@code poc.scoring.metrics.percentile-histogram=false};
+ * with {@code poc.scoring.metrics.enabled=false} samples are a shared no-op and nothing is timed.
+ */
+@Component
+public class ScoringMetrics {
+
+  public enum Stage {
+    TLS("tls"),
+    DEVICE("device"),
+    BEHAVIOR("behavior"),
+    REPUTATION("reputation"),
+    FEATURES("features"),
+    MODEL("model"),
+    RULES("rules"),
+    POLICY("policy"),
+    PERSIST("persist");
+
+    final String tag;
+
+    Stage(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  /** Per-request stage durations. Stages may be recorded from the fan-out threads. */
+  public static final class Sample {
+    private final long startNanos;
+    private final AtomicLongArray nanos;
+    // Bit per stage that was replaced by its fallback result.
+    private final AtomicInteger fallbacks = new AtomicInteger();
+
+    private Sample(long startNanos, AtomicLongArray nanos) {
+      this.startNanos = startNanos;
+      this.nanos = nanos;
+    }
+
+    public boolean isActive() {
+      return nanos != null;
+    }
+
+    public void record(Stage stage, long durationNanos) {
+      if (nanos == null) return;
+      // A stage that completes after its deadline keeps the fallback timing.
+      if ((fallbacks.get() & (1 << stage.ordinal())) != 0) return;
+      nanos.set(stage.ordinal(), durationNanos + 1);
+    }
+
+    /** Current time for {@link #lap}; 0 when disabled, so no clock is read. */
+    public long mark() {
+      return nanos != null ? System.nanoTime() : 0L;
+    }
+
+    /** Records the time since {@code since} against {@code stage} and returns the new mark. */
+    public long lap(Stage stage, long since) {
+      if (nanos == null) return 0L;
+      long now = System.nanoTime();
+      nanos.set(stage.ordinal(), now - since + 1);
+      return now;
+    }
+  }
+
+  private static final Sample DISABLED = new Sample(0L, null);
+
+  private record TimerKey(Stage stage, String model, String decision, boolean fallback) {}
+
+  private record TotalKey(String model, String decision) {}
+
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final boolean percentileHistogram;
+  private final ConcurrentHashMap<TimerKey, Timer> stageTimers = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<TotalKey, Timer> totalTimers = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Counter> policyMatches = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Counter> canary = new ConcurrentHashMap<>();
+  private final Counter rulesOnly;
+  private final Map<Stage, Counter> stageFallbacks = new EnumMap<>(Stage.class);
+  private final Map<Stage, Counter> stageErrors = new EnumMap<>(Stage.class);
+
+  public ScoringMetrics(MeterRegistry meterRegistry,
+                        @Value("${poc.scoring.metrics.enabled:true}") boolean enabled,
+                        @Value("${poc.scoring.metrics.percentile-histogram:true}") boolean percentileHistogram) {
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.percentileHistogram = percentileHistogram;
+    this.rulesOnly = Counter.builder("risk.score.rules_only")
+        .description("Requests scored by the heuristic fallback because no model was loaded")
+        .register(meterRegistry);
+    if (enabled) {
+      for (Stage stage : Stage.values()) {
+        stageFallbacks.put(stage, Counter.builder("risk.score.stage.fallback")
+            .description("Fan-out stages replaced by a neutral result after missing their deadline")
+            .tag("stage", stage.tag)
+            .register(meterRegistry));
+        stageErrors.put(stage, Counter.builder("risk.score.stage.errors")
+            .description("Stages that threw")
+            .tag("stage", stage.tag)
+            .register(meterRegistry));
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** A sample that records nothing, for callers outside {@link RiskService}. */
+  public static Sample disabledSample() {
+    return DISABLED;
+  }
+
+  public Sample start() {
+    if (!enabled) return DISABLED;
+    return new Sample(System.nanoTime(), new AtomicLongArray(Stage.values().length));
+  }
+
+  /** {@code stage} missed its deadline after {@code waitedNanos} and was replaced by its fallback. */
+  public void fallback(Sample sample, Stage stage, long waitedNanos) {
+    if (!enabled) return;
+    stageFallbacks.get(stage).increment();
+    if (!sample.isActive()) return;
+    sample.fallbacks.updateAndGet(bits -> bits | (1 << stage.ordinal()));
+    sample.nanos.set(stage.ordinal(), waitedNanos + 1);
+  }
+
+  public void stageError(Stage stage) {
+    if (enabled) stageErrors.get(stage).increment();
+  }
+
+  /**
+   * Records the sample's stages and the request total, tagged with the final model and decision.
+   */
+  public void finish(Sample sample, long modelId, String decision, boolean policyMatched,
+                     boolean canaryRoute, boolean rulesOnlyFallback) {
+    if (!sample.isActive()) return;
+    long total = System.nanoTime() - sample.startNanos;
+    String model = modelId > 0 ? Long.toString(modelId) : "none";
+    String d = decision != null ? decision : "UNKNOWN";
+
+    Stage[] stages = Stage.values();
+    int fallbacks = sample.fallbacks.get();
+    for (int i = 0; i < stages.length; i++) {
+      long n = sample.nanos.get(i);
+      if (n == 0) continue;
+      stageTimers.computeIfAbsent(new TimerKey(stages[i], model, d, (fallbacks & (1 << i)) != 0), this::stageTimer)
+          .record(n - 1, TimeUnit.NANOSECONDS);
+    }
+    totalTimers.computeIfAbsent(new TotalKey(model, d), this::totalTimer).record(total, TimeUnit.NANOSECONDS);
+
+    if (policyMatched) {
+      policyMatches.computeIfAbsent(d, k -> Counter.builder("risk.score.policy.matches")
+          .tag("decision", k)
+          .register(meterRegistry)).increment();
+    }
+    if (canaryRoute) {
+      canary.computeIfAbsent(model, k -> Counter.builder("risk.score.canary")
+          .tag("model", k)
+          .register(meterRegistry)).increment();
+    }
+    if (rulesOnlyFallback) rulesOnly.increment();
+  }
+
+  private Timer stageTimer(TimerKey key) {
+    return histogram(Timer.builder("risk.score.stage"))
+        .description("Duration of one RiskService.score stage")
+        .tag("stage", key.stage().tag)
+        .tag("model", key.model())
+        .tag("decision", key.decision())
+        .tag("outcome", key.fallback() ? "fallback" : "ok")
+        .register(meterRegistry);
+  }
+
+  private Timer totalTimer(TotalKey key) {
+    return histogram(Timer.builder("risk.score"))
+        .description("End-to-end RiskService.score duration")
+        .tag("model", key.model())
+        .tag("decision", key.decision())
+        .register(meterRegistry);
+  }
+
+  private Timer.Builder histogram(Timer.Builder b) {
+    if (!percentileHistogram) return b;
+    return b.publishPercentileHistogram()
+        .minimumExpectedValue(Duration.ofNanos(10_000))
+        .maximumExpectedValue(Duration.ofSeconds(5));
+  }
+}
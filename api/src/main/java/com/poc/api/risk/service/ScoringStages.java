@@ -0,0 +1,210 @@
+package com.poc.api.risk.service;
+
+import com.poc.api.showcase.service.TlsFamilyService;
+import com.poc.api.telemetry.dto.Telemetry;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.service.BehaviorStatsService;
+import com.poc.api.telemetry.service.DeviceProfileService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the independent, JDBC-bound stages at the start of {@link RiskService#score}: TLS family
+ * observation, device profile upsert, behaviour similarity update and user reputation.
+ *
+ * With fan-out enabled (default) each stage gets its own virtual thread and the caller waits for
+ * each up to its {@code poc.scoring.fan-out.timeout-ms.*} deadline, measured from the fan-out start,
+ * so latency tracks the slowest stage rather than the sum. A stage that misses its deadline is
+ * replaced by a neutral result and left to finish in the background (its writes still land).
+ * Exceptions propagate as they did on the sequential path.
+ *
+ * Reputation no longer waits for this request's device upsert, so a brand-new device may only be
+ * counted from the user's next request.
+ *
+ * Stage durations, fallbacks and errors are reported through {@link ScoringMetrics}.
+ */
+@Component
+public class ScoringStages {
+
+  private static final Logger log = LoggerFactory.getLogger(ScoringStages.class);
+
+  public record Results(
+      TlsFamilyService.Observation tls,
+      DeviceProfile profile,
+      boolean profileFallback,
+      BehaviorStatsService.BehaviorSimilarityResult behavior,
+      UserReputationService.Reputation reputation
+  ) {}
+
+  private final TlsFamilyService tlsFamilyService;
+  private final DeviceProfileService deviceProfileService;
+  private final BehaviorStatsService behaviorStatsService;
+  private final UserReputationService userReputationService;
+  private final ScoringMetrics scoringMetrics;
+  private final boolean enabled;
+  private final long tlsTimeoutMs;
+  private final long deviceTimeoutMs;
+  private final long behaviorTimeoutMs;
+  private final long reputationTimeoutMs;
+  private final ExecutorService executor;
+
+  public ScoringStages(TlsFamilyService tlsFamilyService,
+                       DeviceProfileService deviceProfileService,
+                       BehaviorStatsService behaviorStatsService,
+                       UserReputationService userReputationService,
+                       ScoringMetrics scoringMetrics,
+                       @Value("${poc.scoring.fan-out.enabled:true}") boolean enabled,
+                       @Value("${poc.scoring.fan-out.timeout-ms.tls:500}") long tlsTimeoutMs,
+                       @Value("${poc.scoring.fan-out.timeout-ms.device:500}") long deviceTimeoutMs,
+                       @Value("${poc.scoring.fan-out.timeout-ms.behavior:500}") long behaviorTimeoutMs,
+                       @Value("${poc.scoring.fan-out.timeout-ms.reputation:500}") long reputationTimeoutMs) {
+    this.tlsFamilyService = tlsFamilyService;
+    this.deviceProfileService = deviceProfileService;
+    this.behaviorStatsService = behaviorStatsService;
+    this.userReputationService = userReputationService;
+    this.scoringMetrics = scoringMetrics;
+    this.enabled = enabled;
+    this.tlsTimeoutMs = tlsTimeoutMs;
+    this.deviceTimeoutMs = deviceTimeoutMs;
+    this.behaviorTimeoutMs = behaviorTimeoutMs;
+    this.reputationTimeoutMs = reputationTimeoutMs;
+    this.executor = enabled ? Executors.newVirtualThreadPerTaskExecutor() : null;
+  }
+
+  public Results run(String userId, String tlsFp, String tlsMeta, String country, Telemetry telemetry) {
+    return run(userId, tlsFp, tlsMeta, country, telemetry, ScoringMetrics.disabledSample());
+  }
+
+  /** As {@link #run(String, String, String, String, Telemetry)}, recording stage durations into {@code sample}. */
+  public Results run(String userId, String tlsFp, String tlsMeta, String country, Telemetry telemetry,
+                     ScoringMetrics.Sample sample) {
+    Callable<TlsFamilyService.Observation> tls =
+        timed(ScoringMetrics.Stage.TLS, sample, () -> tlsFamilyService.observe(userId, tlsFp, tlsMeta));
+    Callable<DeviceProfile> device =
+        timed(ScoringMetrics.Stage.DEVICE, sample, () -> deviceProfileService.upsert(userId, tlsFp, country, telemetry.device()));
+    Callable<BehaviorStatsService.BehaviorSimilarityResult> behavior =
+        timed(ScoringMetrics.Stage.BEHAVIOR, sample, () -> behaviorStatsService.updateAndComputeSimilarity(userId, telemetry.behavior()));
+    Callable<UserReputationService.Reputation> reputation =
+        timed(ScoringMetrics.Stage.REPUTATION, sample, () -> userReputationService.evaluate(userId));
+
+    if (!enabled) {
+      return new Results(call(tls), call(device), false, call(behavior), call(reputation));
+    }
+
+    long start = System.nanoTime();
+    Future<TlsFamilyService.Observation> tlsF = executor.submit(tls);
+    Future<DeviceProfile> deviceF = executor.submit(device);
+    Future<BehaviorStatsService.BehaviorSimilarityResult> behaviorF = executor.submit(behavior);
+    Future<UserReputationService.Reputation> reputationF = executor.submit(reputation);
+
+    DeviceProfile profile = join(ScoringMetrics.Stage.DEVICE, sample, deviceF, start, deviceTimeoutMs, () -> null);
+    boolean profileFallback = profile == null;
+    if (profileFallback) {
+      // Unknown device: seen_count 0 so the rules treat it as new rather than trusted.
+      profile = deviceProfileService.describe(userId, tlsFp, country, telemetry.device());
+    }
+    return new Results(
+        join(ScoringMetrics.Stage.TLS, sample, tlsF, start, tlsTimeoutMs, () -> neutralTls(tlsFp)),
+        profile,
+        profileFallback,
+        join(ScoringMetrics.Stage.BEHAVIOR, sample, behaviorF, start, behaviorTimeoutMs,
+            () -> new BehaviorStatsService.BehaviorSimilarityResult(0.5, Map.of())),
+        join(ScoringMetrics.Stage.REPUTATION, sample, reputationF, start, reputationTimeoutMs,
+            () -> new UserReputationService.Reputation(0.5, 0.5, 0, 0, 0, 0.5, 0))
+    );
+  }
+
+  /**
+   * Bulk variant: stages run inline on the caller thread (items of one user must see each other's
+   * updates), the device upsert goes through the batch's per-user profile set and reputation is
+   * evaluated once per user per batch.
+   */
+  public Results runInBatch(String userId, String tlsFp, String tlsMeta, String country,
+                            Telemetry telemetry, DeviceProfileService.Batch devices,
+                            Map<String, UserReputationService.Reputation> reputations,
+                            ScoringMetrics.Sample sample) {
+    return new Results(
+        call(timed(ScoringMetrics.Stage.TLS, sample, () -> tlsFamilyService.observe(userId, tlsFp, tlsMeta))),
+        call(timed(ScoringMetrics.Stage.DEVICE, sample, () -> devices.upsert(userId, tlsFp, country, telemetry.device()))),
+        false,
+        call(timed(ScoringMetrics.Stage.BEHAVIOR, sample, () -> behaviorStatsService.updateAndComputeSimilarity(userId, telemetry.behavior()))),
+        call(timed(ScoringMetrics.Stage.REPUTATION, sample, () -> {
+          UserReputationService.Reputation r = reputations.get(userId);
+          if (r == null) {
+            r = userReputationService.evaluate(userId);
+            reputations.put(userId, r);
+          }
+          return r;
+        }))
+    );
+  }
+
+  /** Same values TlsFamilyService returns when it cannot family-cluster (no TLS meta). */
+  private static TlsFamilyService.Observation neutralTls(String tlsFp) {
+    double tlsScore = (tlsFp != null && !tlsFp.isBlank()) ? 0.7 : 0.5;
+    return new TlsFamilyService.Observation(null, null, tlsScore, 0.25, false);
+  }
+
+  private <T> Callable<T> timed(ScoringMetrics.Stage stage, ScoringMetrics.Sample sample, Callable<T> body) {
+    return () -> {
+      long t0 = sample.mark();
+      try {
+        T result = body.call();
+        if (sample.isActive()) sample.record(stage, System.nanoTime() - t0);
+        return result;
+      } catch (Exception e) {
+        scoringMetrics.stageError(stage);
+        throw e;
+      }
+    };
+  }
+
+  private <T> T join(ScoringMetrics.Stage stage, ScoringMetrics.Sample sample, Future<T> f, long startNanos,
+                     long timeoutMs, Supplier<T> fallback) {
+    long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - startNanos);
+    try {
+      return f.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      scoringMetrics.fallback(sample, stage, System.nanoTime() - startNanos);
+      log.debug("[scoring] stage {} missed its {} ms deadline; using neutral result", stage.tag, timeoutMs);
+      return fallback.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      scoringMetrics.fallback(sample, stage, System.nanoTime() - startNanos);
+      return fallback.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException re) throw re;
+      if (cause instanceof Error err) throw err;
+      throw new IllegalStateException("scoring stage " + stage.tag + " failed", cause);
+    }
+  }
+
+  private static <T> T call(Callable<T> c) {
+    try {
+      return c.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    if (executor != null) executor.shutdown();
+  }
+}
@@ -0,0 +1,281 @@
+package com.poc.api.risk.service;
+
+import com.poc.api.risk.persistence.DecisionLogRepository;
+import com.poc.api.risk.persistence.DecisionLogRow;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * EPIC 6: incrementally maintained per-user aggregate behind {@link UserReputationService} and
+ * {@link AccountSharingHeuristics}.
+ *
+ * Per user it keeps distinct TLS fingerprints and countries (reference-counted per device, so a
+ * device moving country is handled), the device count, and the last {@link #RECENT} decision
+ * confidences with their timestamps (rolling sum + 30-day count). Reads are O(1) apart from a
+ * binary search over that window; writes touch one device or one decision, so a user with
+ * thousands of devices costs the same per request as a user with one.
+ *
+ * Cold start (or {@code ttl-ms} expiry, which also picks up writes made by other instances) loads
+ * the user from device_profile / decision_log once. Updates for users not in the cache are
+ * ignored; the next read loads them from the DB, which already contains the write. Updates that
+ * arrive while a user is being loaded are recorded and replayed onto the loaded summary before it
+ * is installed, since the rows may not be in the DB yet (write-behind) or may have been read before
+ * the write landed; a decision caught by both the load and the replay is counted twice, which the
+ * next reload corrects.
+ *
+ * {@code poc.reputation.cache.enabled=false} computes every snapshot straight from the DB.
+ */
+@Component
+public class UserActivitySummaryCache {
+
+  /** Same window as the original "last 100 decisions" query. */
+  static final int RECENT = 100;
+
+  private static final long THIRTY_DAYS_MS = TimeUnit.DAYS.toMillis(30);
+
+  public record Snapshot(
+      int deviceCount,
+      int tlsFingerprintCount,
+      int countryCount,
+      double avgConfidenceRecent,
+      long sessionsLast30d
+  ) {}
+
+  static final class Summary {
+    final long loadedAtMs;
+    final Map<Long, String> deviceCountry = new HashMap<>();
+    final Map<String, Integer> tlsRefs = new HashMap<>();
+    final Map<String, Integer> countryRefs = new HashMap<>();
+
+    // Ring of the newest RECENT decisions, oldest at index start.
+    final double[] confidence = new double[RECENT];
+    final long[] atMs = new long[RECENT];
+    int start;
+    int size;
+    double confidenceSum;
+
+    Summary(long loadedAtMs) {
+      this.loadedAtMs = loadedAtMs;
+    }
+
+    void putDevice(long deviceId, String tlsFp, String country) {
+      String c = blankToNull(country);
+      if (deviceCountry.containsKey(deviceId)) {
+        String previous = deviceCountry.put(deviceId, c);
+        if (previous != null && !previous.equals(c)) release(countryRefs, previous);
+        if (c != null && !c.equals(previous)) retain(countryRefs, c);
+        return;
+      }
+      deviceCountry.put(deviceId, c);
+      if (c != null) retain(countryRefs, c);
+      String fp = blankToNull(tlsFp);
+      if (fp != null) retain(tlsRefs, fp);
+    }
+
+    void addDecision(double conf, long at) {
+      int slot;
+      if (size == RECENT) {
+        slot = start;
+        confidenceSum -= confidence[slot];
+        start = (start + 1) % RECENT;
+      } else {
+        slot = (start + size) % RECENT;
+        size++;
+      }
+      confidence[slot] = conf;
+      atMs[slot] = at;
+      confidenceSum += conf;
+    }
+
+    /** Decisions in the window at or after {@code cutoffMs}; timestamps are non-decreasing. */
+    long countSince(long cutoffMs) {
+      int lo = 0;
+      int hi = size;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (atMs[(start + mid) % RECENT] < cutoffMs) lo = mid + 1;
+        else hi = mid;
+      }
+      return size - lo;
+    }
+
+    Snapshot snapshot(long nowMs) {
+      double avg = size == 0 ? 0.5 : confidenceSum / size;
+      return new Snapshot(deviceCountry.size(), tlsRefs.size(), countryRefs.size(), avg,
+          countSince(nowMs - THIRTY_DAYS_MS));
+    }
+
+    private static void retain(Map<String, Integer> refs, String key) {
+      refs.merge(key, 1, Integer::sum);
+    }
+
+    private static void release(Map<String, Integer> refs, String key) {
+      refs.computeIfPresent(key, (k, n) -> n <= 1 ? null : n - 1);
+    }
+
+    private static String blankToNull(String s) {
+      return (s == null || s.isBlank()) ? null : s;
+    }
+  }
+
+  private static final class Stripe extends LinkedHashMap<String, Summary> {
+    private final int capacity;
+    // Users being loaded outside the lock, with the updates that arrived meanwhile.
+    final Map<String, List<Consumer<Summary>>> loading = new HashMap<>();
+
+    Stripe(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Summary> eldest) {
+      return size() > capacity;
+    }
+  }
+
+  private final DeviceProfileRepository deviceProfileRepository;
+  private final DecisionLogRepository decisionLogRepository;
+  private final boolean enabled;
+  private final long ttlMs;
+  private final Stripe[] stripes;
+
+  private final Counter hits;
+  private final Counter misses;
+
+  public UserActivitySummaryCache(DeviceProfileRepository deviceProfileRepository,
+                                  DecisionLogRepository decisionLogRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${poc.reputation.cache.enabled:true}") boolean enabled,
+                                  @Value("${poc.reputation.cache.max-users:100000}") int maxUsers,
+                                  @Value("${poc.reputation.cache.stripes:16}") int stripeCount,
+                                  @Value("${poc.reputation.cache.ttl-ms:300000}") long ttlMs) {
+    this.deviceProfileRepository = deviceProfileRepository;
+    this.decisionLogRepository = decisionLogRepository;
+    this.enabled = enabled;
+    this.ttlMs = ttlMs;
+
+    int n = Integer.highestOneBit(Math.max(1, stripeCount));
+    int perStripe = Math.max(1, maxUsers / n);
+    this.stripes = new Stripe[n];
+    for (int i = 0; i < n; i++) stripes[i] = new Stripe(perStripe);
+
+    this.hits = Counter.builder("reputation.cache.hits").register(meterRegistry);
+    this.misses = Counter.builder("reputation.cache.misses").register(meterRegistry);
+    Gauge.builder("reputation.cache.size", this, UserActivitySummaryCache::size).register(meterRegistry);
+  }
+
+  public Snapshot get(String userId) {
+    long now = System.currentTimeMillis();
+    if (!enabled) return load(userId, now).snapshot(now);
+    Summary s = lookup(userId, now);
+    synchronized (s) {
+      return s.snapshot(now);
+    }
+  }
+
+  /** Called after a device_profile upsert with the saved row. */
+  public void onDeviceProfile(DeviceProfile saved) {
+    if (!enabled || saved == null || saved.userId == null || saved.id == null) return;
+    long deviceId = saved.id;
+    String tlsFp = saved.tlsFp;
+    String country = saved.lastCountry;
+    apply(saved.userId, s -> s.putDevice(deviceId, tlsFp, country));
+  }
+
+  /** Called when a decision_log row is submitted for writing. */
+  public void onDecision(String userId, double confidence) {
+    if (!enabled || userId == null) return;
+    long at = System.currentTimeMillis();
+    apply(userId, s -> s.addDecision(confidence, at));
+  }
+
+  public int size() {
+    int n = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        n += s.size();
+      }
+    }
+    return n;
+  }
+
+  private Stripe stripeFor(String userId) {
+    return stripes[(userId.hashCode() ^ (userId.hashCode() >>> 16)) & (stripes.length - 1)];
+  }
+
+  private void apply(String userId, Consumer<Summary> update) {
+    Stripe stripe = stripeFor(userId);
+    Summary s;
+    synchronized (stripe) {
+      s = stripe.get(userId);
+      List<Consumer<Summary>> pending = stripe.loading.get(userId);
+      if (pending != null) pending.add(update);
+    }
+    if (s == null) return;
+    synchronized (s) {
+      update.accept(s);
+    }
+  }
+
+  private Summary lookup(String userId, long now) {
+    Stripe stripe = stripeFor(userId);
+    synchronized (stripe) {
+      Summary s = stripe.get(userId);
+      if (s != null && now - s.loadedAtMs < ttlMs) {
+        hits.increment();
+        return s;
+      }
+    }
+    misses.increment();
+    synchronized (stripe) {
+      stripe.loading.computeIfAbsent(userId, k -> new ArrayList<>());
+    }
+    Summary loaded;
+    try {
+      loaded = load(userId, now);
+    } catch (RuntimeException e) {
+      synchronized (stripe) {
+        stripe.loading.remove(userId);
+      }
+      throw e;
+    }
+    synchronized (stripe) {
+      List<Consumer<Summary>> missed = stripe.loading.remove(userId);
+      Summary existing = stripe.get(userId);
+      if (existing != null && now - existing.loadedAtMs < ttlMs) return existing;
+      if (missed != null) missed.forEach(u -> u.accept(loaded));
+      stripe.put(userId, loaded);
+      return loaded;
+    }
+  }
+
+  private Summary load(String userId, long now) {
+    Summary s = new Summary(now);
+    for (DeviceProfile p : deviceProfileRepository.findSummaryByUser(userId)) {
+      if (p.id != null) s.putDevice(p.id, p.tlsFp, p.lastCountry);
+    }
+    List<DecisionLogRow> recent = decisionLogRepository.findRecentConfidenceByUser(userId, RECENT);
+    // Newest first from the DB; replay oldest first so the ring stays chronological.
+    for (int i = recent.size() - 1; i >= 0; i--) {
+      DecisionLogRow row = recent.get(i);
+      OffsetDateTime at = row.createdAt;
+      s.addDecision(row.confidence, at != null ? at.toInstant().toEpochMilli() : Long.MIN_VALUE);
+    }
+    return s;
+  }
+}
@@ -1,16 +1,7 @@
 package com.poc.api.risk.service;
 
-import com.poc.api.telemetry.persistence.DeviceProfile;
-import com.poc.api.telemetry.persistence.DeviceProfileRepository;
-import com.poc.api.risk.persistence.DecisionLogRepository;
-import com.poc.api.risk.persistence.DecisionLogRow;
 import org.springframework.stereotype.Service;
 
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
-
 /**
  * EPIC 6: User-level intelligence.
  *
@@ -20,19 +11,19 @@ import java.util.List;
  *  - account sharing heuristics (many TLS fingerprints / countries for one user)
  *
  * This is deliberately heuristic and explainable rather than ML-based.
+ *
+ * All inputs come from one {@link UserActivitySummaryCache} snapshot, so an evaluation costs no
+ * queries once the user is cached, however many devices they have.
  */
 @Service
 public class UserReputationService {
 
-  private final DeviceProfileRepository deviceProfileRepository;
-  private final DecisionLogRepository decisionLogRepository;
+  private final UserActivitySummaryCache summaries;
   private final AccountSharingHeuristics accountSharingHeuristics;
 
-  public UserReputationService(DeviceProfileRepository deviceProfileRepository,
-                               DecisionLogRepository decisionLogRepository,
+  public UserReputationService(UserActivitySummaryCache summaries,
                                AccountSharingHeuristics accountSharingHeuristics) {
-    this.deviceProfileRepository = deviceProfileRepository;
-    this.decisionLogRepository = decisionLogRepository;
+    this.summaries = summaries;
     this.accountSharingHeuristics = accountSharingHeuristics;
   }
 
@@ -51,43 +42,18 @@ public class UserReputationService {
       return new Reputation(0.5, 0.5, 0, 0, 0, 0.5, 0);
     }
 
-    List<DeviceProfile> profiles = deviceProfileRepository.findByUser(userId);
-    int deviceCount = profiles.size();
+    UserActivitySummaryCache.Snapshot summary = summaries.get(userId);
+    int deviceCount = summary.deviceCount();
 
     // Basic cross-device correlation: how many distinct TLS fingerprints & countries?
-    java.util.Set<String> tlsFps = new java.util.HashSet<>();
-    java.util.Set<String> countries = new java.util.HashSet<>();
-    for (DeviceProfile p : profiles) {
-      if (p.tlsFp != null && !p.tlsFp.isBlank()) {
-        tlsFps.add(p.tlsFp);
-      }
-      if (p.lastCountry != null && !p.lastCountry.isBlank()) {
-        countries.add(p.lastCountry);
-      }
-    }
-    int tlsCount = tlsFps.size();
-    int countryCount = countries.size();
+    int tlsCount = summary.tlsFingerprintCount();
+    int countryCount = summary.countryCount();
 
-    AccountSharingHeuristics.Result sharing = accountSharingHeuristics.evaluate(userId);
+    AccountSharingHeuristics.Result sharing = accountSharingHeuristics.evaluate(summary);
 
-    // Recent decisions for confidence & volume
-    List<DecisionLogRow> recent = decisionLogRepository.findRecentByUser(userId, 100);
-    double avgConfidence = 0.5;
-    long sessions30d = 0;
-    if (!recent.isEmpty()) {
-      double sum = 0.0;
-      for (DecisionLogRow row : recent) {
-        sum += row.confidence;
-      }
-      avgConfidence = sum / recent.size();
-
-      OffsetDateTime cutoff = OffsetDateTime.now(ZoneOffset.UTC).minus(30, ChronoUnit.DAYS);
-      for (DecisionLogRow row : recent) {
-        if (row.createdAt != null && !row.createdAt.isBefore(cutoff)) {
-          sessions30d++;
-        }
-      }
-    }
+    // Recent decisions (last 100) for confidence & volume
+    double avgConfidence = summary.avgConfidenceRecent();
+    long sessions30d = summary.sessionsLast30d();
 
     // Compute account sharing risk in [0,1]
     double sharingRisk = 0.0;
@@ -1,6 +1,9 @@
 package com.poc.api.showcase.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.poc.api.risk.persistence.SessionFeatureRepository;
+import com.poc.api.risk.persistence.SessionFeatureRow;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -15,6 +18,7 @@ import java.util.List;
 public class ShowcaseBehaviorController {
 
   private final SessionFeatureRepository sessionFeatureRepository;
+  private final ObjectMapper objectMapper = new ObjectMapper();
 
   public ShowcaseBehaviorController(SessionFeatureRepository sessionFeatureRepository) {
     this.sessionFeatureRepository = sessionFeatureRepository;
@@ -45,10 +49,20 @@ public class ShowcaseBehaviorController {
             r.decision,
             r.confidence,
             r.behaviorJson,
-            r.featureVector,
+            featureVectorJson(r),
             r.label
         ))
         .toList();
     return ResponseEntity.ok(result);
   }
+
+  /** The JSON debug copy when it was written, otherwise the typed breakdown rendered as JSON. */
+  private String featureVectorJson(SessionFeatureRow r) {
+    if (r.featureVector != null || !r.hasTypedFeatures()) return r.featureVector;
+    try {
+      return objectMapper.writeValueAsString(r.featureMap(objectMapper));
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+  }
 }
@@ -5,5 +5,8 @@ public record TlsFamilyBackfillResponse(
     long classified,
     int batches,
     boolean complete,
-    String lastFp
+    String lastFp,
+    long queued,
+    long elapsedMs,
+    double fpsPerSecond
 ) {}
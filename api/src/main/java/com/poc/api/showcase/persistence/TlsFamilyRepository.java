@@ -6,7 +6,13 @@ import org.springframework.stereotype.Repository;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -52,21 +58,75 @@ public class TlsFamilyRepository {
 
   /** @return true if it was newly created for this user. */
   public boolean upsertUserFamily(String userId, String familyId) {
+    // xmax is 0 only for a freshly inserted row, so one statement tells insert from update.
     String sql = """
         INSERT INTO user_tls_family (user_id, family_id, first_seen, last_seen, seen_count)
         VALUES (?, ?, now(), now(), 1)
         ON CONFLICT (user_id, family_id) DO UPDATE SET
           last_seen = now(),
           seen_count = user_tls_family.seen_count + 1
+        RETURNING (xmax = 0) AS inserted
         """;
-    // JdbcTemplate doesn't expose insert-vs-update easily; do a lightweight existence check.
-    boolean existed = jdbc.queryForObject(
-        "SELECT EXISTS(SELECT 1 FROM user_tls_family WHERE user_id=? AND family_id=?)",
-        Boolean.class,
-        userId, familyId
-    );
-    jdbc.update(sql, userId, familyId);
-    return !existed;
+    Boolean inserted = jdbc.queryForObject(sql, Boolean.class, userId, familyId);
+    return Boolean.TRUE.equals(inserted);
+  }
+
+  /** Coalesced observations of a known family / member / user-family, applied by a batch flush. */
+  public record FamilyTouch(String familyId, long count, OffsetDateTime lastSeen) {}
+
+  public record MemberTouch(String rawTlsFp, long count, OffsetDateTime lastSeen, String lastMeta) {}
+
+  public record UserFamilyTouch(String userId, String familyId, long count, OffsetDateTime lastSeen) {}
+
+  /** @return rows updated per touch (0 means the row no longer exists). */
+  public int[] touchFamilies(List<FamilyTouch> touches) {
+    if (touches.isEmpty()) return new int[0];
+    String sql = """
+        UPDATE tls_family SET
+          last_seen = GREATEST(last_seen, ?),
+          seen_count = seen_count + ?,
+          observation_count = COALESCE(observation_count, seen_count, 0) + ?
+        WHERE family_id = ?
+        """;
+    return jdbc.batchUpdate(sql, touches, touches.size(), (ps, t) -> {
+      ps.setObject(1, t.lastSeen());
+      ps.setLong(2, t.count());
+      ps.setLong(3, t.count());
+      ps.setString(4, t.familyId());
+    })[0];
+  }
+
+  public int[] touchMembers(List<MemberTouch> touches) {
+    if (touches.isEmpty()) return new int[0];
+    String sql = """
+        UPDATE tls_family_member SET
+          last_seen = GREATEST(last_seen, ?),
+          seen_count = seen_count + ?,
+          last_meta = COALESCE(?, last_meta)
+        WHERE raw_tls_fp = ?
+        """;
+    return jdbc.batchUpdate(sql, touches, touches.size(), (ps, t) -> {
+      ps.setObject(1, t.lastSeen());
+      ps.setLong(2, t.count());
+      ps.setString(3, t.lastMeta());
+      ps.setString(4, t.rawTlsFp());
+    })[0];
+  }
+
+  public int[] touchUserFamilies(List<UserFamilyTouch> touches) {
+    if (touches.isEmpty()) return new int[0];
+    String sql = """
+        UPDATE user_tls_family SET
+          last_seen = GREATEST(last_seen, ?),
+          seen_count = seen_count + ?
+        WHERE user_id = ? AND family_id = ?
+        """;
+    return jdbc.batchUpdate(sql, touches, touches.size(), (ps, t) -> {
+      ps.setObject(1, t.lastSeen());
+      ps.setLong(2, t.count());
+      ps.setString(3, t.userId());
+      ps.setString(4, t.familyId());
+    })[0];
   }
 
   public Optional<FamilyLookup> findFamilyByRawFp(String rawTlsFp) {
@@ -83,6 +143,26 @@ public class TlsFamilyRepository {
     return rows.stream().findFirst();
   }
 
+  /** {@link #findFamilyByRawFp} for many fingerprints in one query; unmapped ones are absent. */
+  public Map<String, FamilyLookup> findFamiliesByRawFps(Collection<String> rawTlsFps) {
+    if (rawTlsFps == null || rawTlsFps.isEmpty()) return Map.of();
+    String sql = """
+        SELECT m.raw_tls_fp, f.family_id, f.family_key, f.sample_tls_fp, f.sample_meta,
+               f.created_at, f.first_seen, f.last_seen,
+               f.seen_count, f.observation_count, f.variant_count,
+               f.confidence_score, f.stability_score
+        FROM tls_family_member m
+        JOIN tls_family f ON f.family_id = m.family_id
+        WHERE m.raw_tls_fp = ANY(?)
+        """;
+    Map<String, FamilyLookup> out = new HashMap<>();
+    jdbc.query(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", rawTlsFps.toArray())),
+        (ResultSet rs) -> {
+          out.putIfAbsent(rs.getString("raw_tls_fp"), mapFamilyLookup(rs));
+        });
+    return out;
+  }
+
   public List<TlsFamilySummaryRow> listFamilies(int limit) {
     String sql = """
         SELECT family_id, family_key, sample_tls_fp, created_at, first_seen, last_seen,
@@ -173,52 +253,142 @@ public class TlsFamilyRepository {
   }
 
   /**
-   * EPIC 9.1.4: Lists raw TLS fingerprints observed in historical tables which
-   * are not yet present in {@code tls_family_member}.
+   * Queues observed fingerprints that have no tls_family_member row into tls_backfill_work (V128),
+   * after dropping queued ones that got classified in the meantime. One pass over the observation
+   * tables per backfill run; {@link #listBackfillWork} then pages the (small) work table.
    *
-   * Paging is lexicographic on tls_fp using {@code afterFp} as an exclusive cursor.
+   * @return fingerprints queued, including ones left over from an interrupted run.
    */
-  public List<String> listUnclassifiedObservedTlsFps(String afterFp, int limit) {
-    String cursor = (afterFp == null) ? "" : afterFp;
-    String sql = """
-        WITH observed AS (
+  public long queueUnclassifiedTlsFps() {
+    jdbc.update("DELETE FROM tls_backfill_work w USING tls_family_member m WHERE m.raw_tls_fp = w.tls_fp");
+    jdbc.update("""
+        INSERT INTO tls_backfill_work (tls_fp)
+        SELECT o.tls_fp
+        FROM (
           SELECT tls_fp FROM session_feature
           UNION
           SELECT tls_fp FROM device_profile
           UNION
           SELECT tls_fp FROM decision_log
-        )
-        SELECT o.tls_fp
-        FROM observed o
+        ) o
         WHERE o.tls_fp IS NOT NULL
           AND o.tls_fp <> ''
-          AND o.tls_fp > ?
           AND NOT EXISTS (SELECT 1 FROM tls_family_member m WHERE m.raw_tls_fp = o.tls_fp)
-        ORDER BY o.tls_fp
-        LIMIT ?
-        """;
-    return jdbc.query(sql, (rs, rowNum) -> rs.getString("tls_fp"), cursor, limit);
+        ON CONFLICT (tls_fp) DO NOTHING
+        """);
+    Long queued = jdbc.queryForObject("SELECT COUNT(*) FROM tls_backfill_work", Long.class);
+    return queued == null ? 0 : queued;
+  }
+
+  /** Queued fingerprints after {@code afterFp} (exclusive), in order. */
+  public List<String> listBackfillWork(String afterFp, int limit) {
+    return jdbc.query("SELECT tls_fp FROM tls_backfill_work WHERE tls_fp > ? ORDER BY tls_fp LIMIT ?",
+        (rs, rowNum) -> rs.getString("tls_fp"), afterFp == null ? "" : afterFp, limit);
+  }
+
+  public void deleteBackfillWork(Collection<String> tlsFps) {
+    if (tlsFps.isEmpty()) return;
+    jdbc.update("DELETE FROM tls_backfill_work WHERE tls_fp = ANY(?)",
+        ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", tlsFps.toArray())));
   }
 
   /**
-   * EPIC 9.1.4: Fetches the most recent tls_meta string we have observed for a TLS FP.
-   * This is best-effort (may be null), and is used to improve family normalisation.
+   * EPIC 9.1.4: Most recent tls_meta observed for each fingerprint, in one {@code DISTINCT ON}
+   * query. Best-effort, used to improve family normalisation; fingerprints without a tls_meta are
+   * absent.
    */
-  public String findLatestTlsMetaForFp(String tlsFp) {
+  public Map<String, String> findLatestTlsMetaForFps(Collection<String> tlsFps) {
+    if (tlsFps == null || tlsFps.isEmpty()) return Map.of();
     String sql = """
-        SELECT context_json->>'tls_meta' AS tls_meta
+        SELECT DISTINCT ON (tls_fp) tls_fp, context_json->>'tls_meta' AS tls_meta
         FROM session_feature
-        WHERE tls_fp = ?
+        WHERE tls_fp = ANY(?)
           -- NOTE: avoid the Postgres JSONB "?" operator here because JDBC treats "?"
           -- as a positional parameter placeholder in PreparedStatements.
           AND jsonb_exists(context_json, 'tls_meta')
           AND (context_json->>'tls_meta') IS NOT NULL
           AND (context_json->>'tls_meta') <> ''
-        ORDER BY occurred_at DESC
-        LIMIT 1
+        ORDER BY tls_fp, occurred_at DESC
         """;
-    List<String> rows = jdbc.query(sql, (rs, rowNum) -> rs.getString("tls_meta"), tlsFp);
-    return rows.isEmpty() ? null : rows.get(0);
+    Map<String, String> out = new HashMap<>();
+    jdbc.query(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", tlsFps.toArray())),
+        (ResultSet rs) -> {
+          out.put(rs.getString("tls_fp"), rs.getString("tls_meta"));
+        });
+    return out;
+  }
+
+  /** One family write for {@link #upsertFamilies}; {@code count} is the number of observations it stands for. */
+  public record FamilyUpsert(String familyId, String familyKey, String sampleFp, String sampleMeta, long count) {}
+
+  /** One member write for {@link #upsertMembers}. */
+  public record MemberUpsert(String rawTlsFp, String familyId, String lastMeta) {}
+
+  private static final int UPSERT_CHUNK = 1000;
+
+  /**
+   * Multi-row {@link #upsertFamily}, where each row counts {@code count} observations. Rows must be
+   * unique by family id; they are written in id order so concurrent writers lock in the same order.
+   */
+  public void upsertFamilies(List<FamilyUpsert> rows) {
+    List<FamilyUpsert> sorted = new ArrayList<>(rows);
+    sorted.sort(Comparator.comparing(FamilyUpsert::familyId));
+    for (int from = 0; from < sorted.size(); from += UPSERT_CHUNK) {
+      List<FamilyUpsert> chunk = sorted.subList(from, Math.min(sorted.size(), from + UPSERT_CHUNK));
+      String sql = """
+          INSERT INTO tls_family (
+            family_id, family_key, sample_tls_fp, sample_meta,
+            created_at, first_seen, last_seen,
+            seen_count, observation_count,
+            variant_count, confidence_score, stability_score
+          )"""
+          + " VALUES " + String.join(",", Collections.nCopies(chunk.size(), "(?, ?, ?, ?, now(), now(), now(), ?, ?, 1, NULL, NULL)"))
+          + """
+           ON CONFLICT (family_id) DO UPDATE SET
+            last_seen = now(),
+            seen_count = tls_family.seen_count + EXCLUDED.seen_count,
+            observation_count = COALESCE(tls_family.observation_count, tls_family.seen_count, 0) + EXCLUDED.observation_count,
+            sample_tls_fp = COALESCE(tls_family.sample_tls_fp, EXCLUDED.sample_tls_fp),
+            sample_meta = COALESCE(tls_family.sample_meta, EXCLUDED.sample_meta)
+          """;
+      jdbc.update(sql, ps -> {
+        int i = 1;
+        for (FamilyUpsert f : chunk) {
+          ps.setString(i++, f.familyId());
+          ps.setString(i++, f.familyKey());
+          ps.setString(i++, f.sampleFp());
+          ps.setString(i++, f.sampleMeta());
+          ps.setLong(i++, f.count());
+          ps.setLong(i++, f.count());
+        }
+      });
+    }
+  }
+
+  /** Multi-row {@link #upsertMember}; rows must be unique by fingerprint and are written in that order. */
+  public void upsertMembers(List<MemberUpsert> rows) {
+    List<MemberUpsert> sorted = new ArrayList<>(rows);
+    sorted.sort(Comparator.comparing(MemberUpsert::rawTlsFp));
+    for (int from = 0; from < sorted.size(); from += UPSERT_CHUNK) {
+      List<MemberUpsert> chunk = sorted.subList(from, Math.min(sorted.size(), from + UPSERT_CHUNK));
+      String sql = "INSERT INTO tls_family_member (raw_tls_fp, family_id, first_seen, last_seen, seen_count, last_meta) VALUES "
+          + String.join(",", Collections.nCopies(chunk.size(), "(?, ?, now(), now(), 1, ?)"))
+          + """
+           ON CONFLICT (raw_tls_fp) DO UPDATE SET
+            family_id = EXCLUDED.family_id,
+            last_seen = now(),
+            seen_count = tls_family_member.seen_count + 1,
+            last_meta = COALESCE(EXCLUDED.last_meta, tls_family_member.last_meta)
+          """;
+      jdbc.update(sql, ps -> {
+        int i = 1;
+        for (MemberUpsert m : chunk) {
+          ps.setString(i++, m.rawTlsFp());
+          ps.setString(i++, m.familyId());
+          ps.setString(i++, m.lastMeta());
+        }
+      });
+    }
   }
 
   private static FamilyLookup mapFamilyLookup(ResultSet rs) throws SQLException {
@@ -3,11 +3,22 @@ package com.poc.api.showcase.service;
 import com.poc.api.showcase.persistence.TlsFamilyRepository;
 import com.poc.api.telemetry.tls.TlsNormalizationResult;
 import com.poc.api.telemetry.tls.TlsNormalizer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * EPIC 9.1.4: Backfill TLS families for historical TLS fingerprints.
@@ -17,10 +28,12 @@ import java.util.List;
  *  - Be safe, resumable and idempotent.
  *
  * Approach:
- *  - We only process TLS FPs that are NOT yet present in tls_family_member.
- *  - We page lexicographically using a cursor (afterFp).
- *  - For each FP we best-effort fetch the latest tls_meta from session_feature to
- *    improve normalisation.
+ *  - The unclassified FPs (not yet present in tls_family_member) are queued into
+ *    tls_backfill_work once per run; batches are read from there lexicographically.
+ *  - The latest tls_meta of a whole batch is fetched in one query (best-effort, improves
+ *    normalisation), and the batch is normalised on {@code poc.tls.backfill.threads} workers.
+ *  - Families and members are written with multi-row upserts, then the batch leaves the work
+ *    table; an interrupted run resumes from what is left.
  */
 @Service
 public class TlsFamilyBackfillService {
@@ -28,39 +41,55 @@ public class TlsFamilyBackfillService {
   private static final Logger log = LoggerFactory.getLogger(TlsFamilyBackfillService.class);
 
   private final TlsFamilyRepository repo;
+  private final int threads;
+  private final ExecutorService workers;
 
-  public TlsFamilyBackfillService(TlsFamilyRepository repo) {
+  public TlsFamilyBackfillService(TlsFamilyRepository repo,
+                                  @Value("${poc.tls.backfill.threads:4}") int threads) {
     this.repo = repo;
+    this.threads = Math.max(1, threads);
+    this.workers = Executors.newFixedThreadPool(this.threads,
+        Thread.ofPlatform().name("tls-backfill-", 0).daemon(true).factory());
   }
 
-  public BackfillResult backfill(int batchSize, int maxBatches) {
+  /** Runs one backfill; calls are serialised since they share the work table. */
+  public synchronized BackfillResult backfill(int batchSize, int maxBatches) {
+    long started = System.nanoTime();
     int batchesRun = 0;
     long processed = 0;
     long classified = 0;
     String cursor = "";
 
-    java.util.Set<String> touchedFamilies = new java.util.HashSet<>();
+    long queued = repo.queueUnclassifiedTlsFps();
+    Set<String> touchedFamilies = new HashSet<>();
 
     while (batchesRun < maxBatches) {
-      List<String> fps = repo.listUnclassifiedObservedTlsFps(cursor, batchSize);
+      List<String> fps = repo.listBackfillWork(cursor, batchSize);
       if (fps.isEmpty()) {
         break;
       }
 
-      for (String fp : fps) {
-        processed++;
-        cursor = fp;
-
-        String tlsMeta = repo.findLatestTlsMetaForFp(fp);
-        TlsNormalizationResult n = TlsNormalizer.normalize(fp, tlsMeta);
-
-        // Persist family and membership (idempotent via upserts + we only process missing members).
-        repo.upsertFamily(n.familyId(), n.familyKey(), n.rawTlsFp(), n.rawMeta());
-        repo.upsertMember(n.rawTlsFp(), n.familyId(), n.rawMeta());
-        touchedFamilies.add(n.familyId());
-        classified++;
+      Map<String, String> metas = repo.findLatestTlsMetaForFps(fps);
+      List<TlsNormalizationResult> normalized = normalize(fps, metas);
+
+      // Persist families (one row per family, counting each member) before their members.
+      Map<String, TlsFamilyRepository.FamilyUpsert> families = new LinkedHashMap<>();
+      List<TlsFamilyRepository.MemberUpsert> members = new ArrayList<>(normalized.size());
+      for (TlsNormalizationResult n : normalized) {
+        families.merge(n.familyId(),
+            new TlsFamilyRepository.FamilyUpsert(n.familyId(), n.familyKey(), n.rawTlsFp(), n.rawMeta(), 1),
+            (a, b) -> new TlsFamilyRepository.FamilyUpsert(a.familyId(), a.familyKey(), a.sampleFp(), a.sampleMeta(),
+                a.count() + b.count()));
+        members.add(new TlsFamilyRepository.MemberUpsert(n.rawTlsFp(), n.familyId(), n.rawMeta()));
       }
-
+      repo.upsertFamilies(new ArrayList<>(families.values()));
+      repo.upsertMembers(members);
+      repo.deleteBackfillWork(fps);
+      touchedFamilies.addAll(families.keySet());
+
+      processed += fps.size();
+      classified += normalized.size();
+      cursor = fps.get(fps.size() - 1);
       batchesRun++;
       log.info("[tls-backfill] batch {} complete: processed={}, lastFp='{}'", batchesRun, processed, cursor);
     }
@@ -75,7 +104,45 @@ public class TlsFamilyBackfillService {
     }
 
     boolean complete = batchesRun < maxBatches;
-    return new BackfillResult(processed, classified, batchesRun, complete, cursor);
+    long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+    double fpsPerSecond = processed / Math.max(0.001, elapsedMs / 1000.0);
+    log.info("[tls-backfill] run finished: queued={}, processed={}, families={}, {} ms ({} fp/s)",
+        queued, processed, touchedFamilies.size(), elapsedMs, Math.round(fpsPerSecond));
+    return new BackfillResult(processed, classified, batchesRun, complete, cursor, queued, elapsedMs, fpsPerSecond);
+  }
+
+  /** Normalises a batch on the worker pool; results keep the order of {@code fps}. */
+  private List<TlsNormalizationResult> normalize(List<String> fps, Map<String, String> metas) {
+    int chunk = Math.max(1, (fps.size() + threads - 1) / threads);
+    List<Future<List<TlsNormalizationResult>>> parts = new ArrayList<>();
+    for (int from = 0; from < fps.size(); from += chunk) {
+      List<String> slice = fps.subList(from, Math.min(fps.size(), from + chunk));
+      parts.add(workers.submit(() -> {
+        List<TlsNormalizationResult> out = new ArrayList<>(slice.size());
+        for (String fp : slice) {
+          out.add(TlsNormalizer.normalize(fp, metas.get(fp)));
+        }
+        return out;
+      }));
+    }
+    List<TlsNormalizationResult> out = new ArrayList<>(fps.size());
+    try {
+      for (Future<List<TlsNormalizationResult>> part : parts) {
+        out.addAll(part.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("TLS backfill interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      throw new IllegalStateException("TLS normalisation failed", e.getCause());
+    }
+    return out;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    workers.shutdownNow();
   }
 
   public record BackfillResult(
@@ -83,6 +150,9 @@ public class TlsFamilyBackfillService {
       long classified,
       int batches,
       boolean complete,
-      String lastFp
+      String lastFp,
+      long queued,
+      long elapsedMs,
+      double fpsPerSecond
   ) {}
 }
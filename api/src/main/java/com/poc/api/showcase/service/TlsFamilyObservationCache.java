@@ -0,0 +1,257 @@
+package com.poc.api.showcase.service;
+
+import com.poc.api.showcase.persistence.TlsFamilyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * EPIC 9: in-memory view of which TLS families, members and user/family pairs already exist,
+ * plus coalesced counters for them.
+ *
+ * Once a member (raw FP -> family) and a user/family pair are known, observing them again only
+ * bumps in-memory counters; {@link #flush()} applies them as three batched UPDATEs. A touch whose
+ * row has gone (0 rows updated) is forgotten, so the next observation recreates it via the normal
+ * upsert path.
+ *
+ * Families touched since the last run are remembered and their confidence/stability scores are
+ * recomputed by {@link #recomputeStats()}, off the request path.
+ */
+@Component
+public class TlsFamilyObservationCache {
+
+  private static final Logger log = LoggerFactory.getLogger(TlsFamilyObservationCache.class);
+
+  private static final class Pending {
+    long count;
+    OffsetDateTime lastSeen;
+    String lastMeta;
+  }
+
+  /** Access-ordered LRU used as a bounded "known to exist" set/map. */
+  private static final class Lru<V> extends LinkedHashMap<String, V> {
+    private final int capacity;
+
+    Lru(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+      return size() > capacity;
+    }
+  }
+
+  private final TlsFamilyRepository repo;
+  private final boolean enabled;
+
+  private final Lru<String> memberFamily;     // raw FP -> family id
+  private final Lru<Boolean> userFamilies;    // userId \0 familyId
+
+  private final ConcurrentHashMap<String, Pending> familyTouches = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Pending> memberTouches = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Pending> userFamilyTouches = new ConcurrentHashMap<>();
+  private final Set<String> staleStats = ConcurrentHashMap.newKeySet();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter flushErrors;
+
+  public TlsFamilyObservationCache(TlsFamilyRepository repo,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${poc.tls.family.cache.enabled:true}") boolean enabled,
+                                   @Value("${poc.tls.family.cache.max-members:100000}") int maxMembers,
+                                   @Value("${poc.tls.family.cache.max-user-families:200000}") int maxUserFamilies) {
+    this.repo = repo;
+    this.enabled = enabled;
+    this.memberFamily = new Lru<>(Math.max(1, maxMembers));
+    this.userFamilies = new Lru<>(Math.max(1, maxUserFamilies));
+    this.hits = Counter.builder("tls.family.cache.hits").register(meterRegistry);
+    this.misses = Counter.builder("tls.family.cache.misses").register(meterRegistry);
+    this.flushErrors = Counter.builder("tls.family.cache.flush.errors").register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Records an observation of a family member if it is already known.
+   *
+   * @return false when the caller has to go through the upsert path instead
+   */
+  boolean touchMember(String rawTlsFp, String familyId, String meta) {
+    String known;
+    synchronized (memberFamily) {
+      known = memberFamily.get(rawTlsFp);
+    }
+    if (!familyId.equals(known)) {
+      misses.increment();
+      return false;
+    }
+    hits.increment();
+    OffsetDateTime now = OffsetDateTime.now();
+    add(familyTouches, familyId, now, null);
+    add(memberTouches, rawTlsFp, now, meta);
+    staleStats.add(familyId);
+    return true;
+  }
+
+  /**
+   * Records a user/family observation if the pair is already known.
+   *
+   * @return false when the pair is unknown and must be upserted (it may be new for the user)
+   */
+  boolean touchUserFamily(String userId, String familyId) {
+    String key = userId + '\0' + familyId;
+    Boolean known;
+    synchronized (userFamilies) {
+      known = userFamilies.get(key);
+    }
+    if (known == null) return false;
+    add(userFamilyTouches, key, OffsetDateTime.now(), null);
+    return true;
+  }
+
+  /** Called after the member row has been upserted synchronously. */
+  void rememberMember(String rawTlsFp, String familyId) {
+    synchronized (memberFamily) {
+      memberFamily.put(rawTlsFp, familyId);
+    }
+    staleStats.add(familyId);
+  }
+
+  /** Called after the user/family row has been upserted synchronously. */
+  void rememberUserFamily(String userId, String familyId) {
+    synchronized (userFamilies) {
+      userFamilies.put(userId + '\0' + familyId, Boolean.TRUE);
+    }
+  }
+
+  private static void add(ConcurrentHashMap<String, Pending> map, String key, OffsetDateTime at, String meta) {
+    map.compute(key, (k, p) -> {
+      if (p == null) p = new Pending();
+      p.count++;
+      p.lastSeen = at;
+      if (meta != null) p.lastMeta = meta;
+      return p;
+    });
+  }
+
+  /**
+   * Applies coalesced counters with one batched UPDATE per table.
+   */
+  @Scheduled(fixedDelayString = "${poc.tls.family.cache.flush-interval-ms:2000}")
+  public void flush() {
+    if (!enabled) return;
+    List<TlsFamilyRepository.FamilyTouch> families = new ArrayList<>();
+    for (String id : familyTouches.keySet()) {
+      Pending p = familyTouches.remove(id);
+      if (p != null) families.add(new TlsFamilyRepository.FamilyTouch(id, p.count, p.lastSeen));
+    }
+    List<TlsFamilyRepository.MemberTouch> members = new ArrayList<>();
+    for (String fp : memberTouches.keySet()) {
+      Pending p = memberTouches.remove(fp);
+      if (p != null) members.add(new TlsFamilyRepository.MemberTouch(fp, p.count, p.lastSeen, p.lastMeta));
+    }
+    List<TlsFamilyRepository.UserFamilyTouch> userFams = new ArrayList<>();
+    for (String key : userFamilyTouches.keySet()) {
+      Pending p = userFamilyTouches.remove(key);
+      if (p == null) continue;
+      int sep = key.indexOf('\0');
+      userFams.add(new TlsFamilyRepository.UserFamilyTouch(key.substring(0, sep), key.substring(sep + 1), p.count, p.lastSeen));
+    }
+    if (families.isEmpty() && members.isEmpty() && userFams.isEmpty()) return;
+
+    try {
+      int[] fr = repo.touchFamilies(families);
+      int[] mr = repo.touchMembers(members);
+      int[] ur = repo.touchUserFamilies(userFams);
+      // Rows deleted underneath us: forget them so the next observation re-inserts.
+      for (int i = 0; i < mr.length; i++) {
+        if (mr[i] == 0) forgetMember(members.get(i).rawTlsFp());
+      }
+      for (int i = 0; i < fr.length; i++) {
+        if (fr[i] == 0) forgetFamily(families.get(i).familyId());
+      }
+      for (int i = 0; i < ur.length; i++) {
+        if (ur[i] == 0) forgetUserFamily(userFams.get(i).userId(), userFams.get(i).familyId());
+      }
+    } catch (Exception e) {
+      // Observation counters are best-effort UI stats; drop this batch rather than retry forever.
+      flushErrors.increment();
+      log.warn("[tls-family] flush of {} family / {} member / {} user-family touches failed: {}",
+          families.size(), members.size(), userFams.size(), e.getMessage());
+    }
+  }
+
+  /**
+   * EPIC 9.1.5: recomputes derived family stats & scores for families observed since the last run.
+   */
+  @Scheduled(fixedDelayString = "${poc.tls.family.cache.stats-interval-ms:30000}")
+  public void recomputeStats() {
+    if (!enabled || staleStats.isEmpty()) return;
+    flush();
+    OffsetDateTime now = OffsetDateTime.now();
+    for (String familyId : List.copyOf(staleStats)) {
+      staleStats.remove(familyId);
+      try {
+        recomputeFamilyStats(repo, familyId, now);
+      } catch (Exception e) {
+        log.warn("[tls-family] stats recompute failed for {}: {}", familyId, e.getMessage());
+      }
+    }
+  }
+
+  static void recomputeFamilyStats(TlsFamilyRepository repo, String familyId, OffsetDateTime now) {
+    repo.getFamilyStats(familyId).ifPresent(stats -> {
+      var scores = TlsFamilyScoring.compute(
+          stats.observationCount,
+          stats.variantCount,
+          stats.lastSeen,
+          now
+      );
+      repo.recomputeFamilyStats(familyId, scores.confidence(), scores.stability());
+    });
+  }
+
+  private void forgetMember(String rawTlsFp) {
+    synchronized (memberFamily) {
+      memberFamily.remove(rawTlsFp);
+    }
+  }
+
+  private void forgetFamily(String familyId) {
+    synchronized (memberFamily) {
+      memberFamily.values().removeIf(familyId::equals);
+    }
+    synchronized (userFamilies) {
+      userFamilies.keySet().removeIf(k -> k.endsWith('\0' + familyId));
+    }
+  }
+
+  private void forgetUserFamily(String userId, String familyId) {
+    synchronized (userFamilies) {
+      userFamilies.remove(userId + '\0' + familyId);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    flush();
+  }
+}
@@ -5,33 +5,50 @@ import com.poc.api.telemetry.tls.TlsNormalizationResult;
 import com.poc.api.telemetry.tls.TlsNormalizer;
 import org.springframework.stereotype.Service;
 
+/**
+ * EPIC 9: TLS family observation.
+ *
+ * Known members and user/family pairs are served from {@link TlsFamilyObservationCache} without
+ * touching the DB; only first sightings go through the upserts. Family stats are recomputed by the
+ * cache's batch job instead of on every call.
+ */
 @Service
 public class TlsFamilyService {
 
   private final TlsFamilyRepository repo;
+  private final TlsFamilyObservationCache cache;
 
-  public TlsFamilyService(TlsFamilyRepository repo) {
+  public TlsFamilyService(TlsFamilyRepository repo, TlsFamilyObservationCache cache) {
     this.repo = repo;
+    this.cache = cache;
   }
 
   public Observation observe(String userId, String tlsFp, String tlsMeta) {
     TlsNormalizationResult n = TlsNormalizer.normalize(tlsFp, tlsMeta);
 
-    // Persist families & membership.
-    repo.upsertFamily(n.familyId(), n.familyKey(), n.rawTlsFp(), n.rawMeta());
-    repo.upsertMember(n.rawTlsFp(), n.familyId(), n.rawMeta());
-    boolean newForUser = repo.upsertUserFamily(userId, n.familyId());
+    boolean newForUser;
+    if (cache.isEnabled()) {
+      // Persist families & membership (first sighting only; repeats are coalesced counters).
+      if (!cache.touchMember(n.rawTlsFp(), n.familyId(), n.rawMeta())) {
+        repo.upsertFamily(n.familyId(), n.familyKey(), n.rawTlsFp(), n.rawMeta());
+        repo.upsertMember(n.rawTlsFp(), n.familyId(), n.rawMeta());
+        cache.rememberMember(n.rawTlsFp(), n.familyId());
+      }
+      if (cache.touchUserFamily(userId, n.familyId())) {
+        newForUser = false;
+      } else {
+        newForUser = repo.upsertUserFamily(userId, n.familyId());
+        cache.rememberUserFamily(userId, n.familyId());
+      }
+    } else {
+      // Persist families & membership.
+      repo.upsertFamily(n.familyId(), n.familyKey(), n.rawTlsFp(), n.rawMeta());
+      repo.upsertMember(n.rawTlsFp(), n.familyId(), n.rawMeta());
+      newForUser = repo.upsertUserFamily(userId, n.familyId());
 
-    // EPIC 9.1.5: Recompute derived family stats & scores for UI.
-    repo.getFamilyStats(n.familyId()).ifPresent(stats -> {
-      var scores = TlsFamilyScoring.compute(
-          stats.observationCount,
-          stats.variantCount,
-          stats.lastSeen,
-          java.time.OffsetDateTime.now()
-      );
-      repo.recomputeFamilyStats(n.familyId(), scores.confidence(), scores.stability());
-    });
+      // EPIC 9.1.5: Recompute derived family stats & scores for UI.
+      TlsFamilyObservationCache.recomputeFamilyStats(repo, n.familyId(), java.time.OffsetDateTime.now());
+    }
 
     // Score heuristic:
     // - if meta present and family seen for user: strong
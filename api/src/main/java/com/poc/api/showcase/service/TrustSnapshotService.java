@@ -1,6 +1,5 @@
 package com.poc.api.showcase.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.poc.api.showcase.dto.TrustSnapshot;
 import com.poc.api.risk.persistence.SessionFeatureRepository;
@@ -8,7 +7,6 @@ import com.poc.api.showcase.persistence.TrustUserSettingsRepository;
 import com.poc.api.risk.persistence.SessionFeatureRow;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 
@@ -40,7 +38,7 @@ public class TrustSnapshotService {
         SessionFeatureRow row = rowOpt.get();
 
                 var settingsOpt = trustUserSettingsRepository.findByUserId(row.userId);
-Map<String, Object> fv = safeParseJsonMap(row.featureVector);
+        Map<String, Object> fv = row.featureMap(objectMapper);
 
         TrustExplanationService.Explanation exp = trustExplanationService.explain(row.decision, row.confidence, fv);
 
@@ -81,15 +79,5 @@ if (baselineOpt.isPresent()) {
         return Optional.of(snap);
     }
 
-    private Map<String, Object> safeParseJsonMap(String json) {
-        if (json == null || json.isBlank()) return Collections.emptyMap();
-        try {
-            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
-        } catch (Exception e) {
-            return Collections.emptyMap();
-        }
-    }
-
-
-    // JSON parsing only; explanation logic lives in TrustExplanationService.
+    // Explanation logic lives in TrustExplanationService.
 }
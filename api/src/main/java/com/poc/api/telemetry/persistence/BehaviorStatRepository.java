@@ -53,6 +53,44 @@ public class BehaviorStatRepository {
     }, limit);
   }
 
+  /** All feature baselines for one user in a single round-trip. */
+  public java.util.List<BehaviorStat> findByUser(String userId) {
+    String sql = "SELECT id, user_id, feature, mean, variance, decay, updated_at FROM behavior_profile_stats WHERE user_id = ?";
+    return jdbc.query(sql, (rs, rowNum) -> {
+      BehaviorStat s = new BehaviorStat();
+      s.id = rs.getLong("id");
+      s.userId = rs.getString("user_id");
+      s.feature = rs.getString("feature");
+      s.mean = rs.getDouble("mean");
+      s.variance = rs.getDouble("variance");
+      s.decay = rs.getDouble("decay");
+      s.updatedAt = rs.getObject("updated_at", OffsetDateTime.class);
+      return s;
+    }, userId);
+  }
+
+  /** Batched upsert keyed by (user_id, feature); ids on the passed objects are ignored. */
+  public void upsertBatch(java.util.List<BehaviorStat> stats) {
+    if (stats == null || stats.isEmpty()) return;
+    String sql = """
+        INSERT INTO behavior_profile_stats (user_id, feature, mean, variance, decay, updated_at)
+        VALUES (?,?,?,?,?,?)
+        ON CONFLICT (user_id, feature) DO UPDATE
+           SET mean = EXCLUDED.mean,
+               variance = EXCLUDED.variance,
+               decay = EXCLUDED.decay,
+               updated_at = EXCLUDED.updated_at
+        """;
+    jdbc.batchUpdate(sql, stats, stats.size(), (ps, s) -> {
+      ps.setString(1, s.userId);
+      ps.setString(2, s.feature);
+      ps.setDouble(3, s.mean);
+      ps.setDouble(4, s.variance);
+      ps.setDouble(5, s.decay);
+      ps.setObject(6, s.updatedAt != null ? s.updatedAt : OffsetDateTime.now());
+    });
+  }
+
   public BehaviorStat save(BehaviorStat s) {
     if (s.id == null) {
       String sql = "INSERT INTO behavior_profile_stats (user_id, feature, mean, variance, decay, updated_at) VALUES (?,?,?,?,?,?)";
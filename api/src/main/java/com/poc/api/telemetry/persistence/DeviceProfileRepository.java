@@ -1,12 +1,10 @@
 package com.poc.api.telemetry.persistence;
 
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
-import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.OffsetDateTime;
 import java.util.Optional;
 import java.util.List;
@@ -71,52 +69,95 @@ public class DeviceProfileRepository {
     return Optional.of(list.get(0));
   }
 
+  /**
+   * Records one sighting in a single statement: inserts a first sighting (seen_count 1), or bumps
+   * seen_count/last_seen of the existing (user_id, tls_fp, canvas_hash) row, and returns the row as
+   * stored. Concurrent requests from the same device cannot race between lookup and insert.
+   */
   public DeviceProfile upsert(DeviceProfile p) {
-    Optional<DeviceProfile> existingOpt = findByUserAndTlsAndCanvas(p.userId, p.tlsFp, p.canvasHash);
-    if (existingOpt.isPresent()) {
-      DeviceProfile existing = existingOpt.get();
-      existing.lastSeen = OffsetDateTime.now();
-      existing.seenCount = existing.seenCount + 1;
-      existing.lastCountry = p.lastCountry != null ? p.lastCountry : existing.lastCountry;
-      String sql = "UPDATE device_profile SET last_seen = ?, seen_count = ?, last_country = ? WHERE id = ?";
-      jdbc.update(sql, existing.lastSeen, existing.seenCount, existing.lastCountry, existing.id);
-      return existing;
-    } else {
-      String sql = "INSERT INTO device_profile " +
-          "(user_id, tls_fp, ua_family, ua_version, screen_w, screen_h, pixel_ratio, tz_offset, canvas_hash, webgl_hash, first_seen, last_seen, seen_count, last_country) " +
-          "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
-      KeyHolder kh = new GeneratedKeyHolder();
-      OffsetDateTime now = OffsetDateTime.now();
-      jdbc.update(con -> {
-        PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-        ps.setString(1, p.userId);
-        ps.setString(2, p.tlsFp);
-        ps.setString(3, p.uaFamily);
-        ps.setString(4, p.uaVersion);
-        ps.setInt(5, p.screenW);
-        ps.setInt(6, p.screenH);
-        ps.setDouble(7, p.pixelRatio);
-        ps.setShort(8, p.tzOffset);
-        ps.setString(9, p.canvasHash);
-        ps.setString(10, p.webglHash);
-        ps.setObject(11, now);
-        ps.setObject(12, now);
-        ps.setLong(13, 1L);
-        ps.setString(14, p.lastCountry);
-        return ps;
-      }, kh);
-      java.util.Map<String,Object> keys = kh.getKeys();
-      if (keys != null) {
-        Object idVal = keys.get("id");
-        if (idVal instanceof Number n) {
-          p.id = n.longValue();
-        }
-      }
-      p.firstSeen = now;
-      p.lastSeen = now;
-      p.seenCount = 1L;
+    String sql = """
+        INSERT INTO device_profile
+          (user_id, tls_fp, ua_family, ua_version, screen_w, screen_h, pixel_ratio, tz_offset,
+           canvas_hash, webgl_hash, first_seen, last_seen, seen_count, last_country)
+        VALUES (?,?,?,?,?,?,?,?,?,?,?,?,1,?)
+        ON CONFLICT (user_id, tls_fp, canvas_hash) DO UPDATE
+           SET last_seen = GREATEST(device_profile.last_seen, EXCLUDED.last_seen),
+               seen_count = device_profile.seen_count + 1,
+               last_country = COALESCE(EXCLUDED.last_country, device_profile.last_country)
+        RETURNING *
+        """;
+    OffsetDateTime now = OffsetDateTime.now();
+    return jdbc.queryForObject(sql, DeviceProfileRepository::mapRow,
+        p.userId, p.tlsFp, p.uaFamily, p.uaVersion, p.screenW, p.screenH, p.pixelRatio, p.tzOffset,
+        p.canvasHash, p.webglHash, now, now, p.lastCountry);
+  }
+
+  /**
+   * Inserts a first sighting (seen_count 1) and fills in id/first/last seen. Goes through
+   * {@link #upsert}, so a row created concurrently is counted as a repeat sighting instead of failing.
+   */
+  public DeviceProfile insert(DeviceProfile p) {
+    DeviceProfile saved = upsert(p);
+    p.id = saved.id;
+    p.firstSeen = saved.firstSeen;
+    p.lastSeen = saved.lastSeen;
+    p.seenCount = saved.seenCount;
+    p.lastCountry = saved.lastCountry;
+    return p;
+  }
+
+  private static DeviceProfile mapRow(ResultSet rs, int rowNum) throws SQLException {
+    DeviceProfile d = new DeviceProfile();
+    d.id = rs.getLong("id");
+    d.userId = rs.getString("user_id");
+    d.tlsFp = rs.getString("tls_fp");
+    d.uaFamily = rs.getString("ua_family");
+    d.uaVersion = rs.getString("ua_version");
+    d.screenW = rs.getInt("screen_w");
+    d.screenH = rs.getInt("screen_h");
+    d.pixelRatio = rs.getDouble("pixel_ratio");
+    d.tzOffset = rs.getShort("tz_offset");
+    d.canvasHash = rs.getString("canvas_hash");
+    d.webglHash = rs.getString("webgl_hash");
+    d.firstSeen = rs.getObject("first_seen", OffsetDateTime.class);
+    d.lastSeen = rs.getObject("last_seen", OffsetDateTime.class);
+    d.seenCount = rs.getLong("seen_count");
+    d.lastCountry = rs.getString("last_country");
+    return d;
+  }
+
+  /** Coalesced repeat sightings of one known profile (see {@link #touchBatch}). */
+  public record DeviceTouch(long id, long count, OffsetDateTime lastSeen, String lastCountry) {}
+
+  /**
+   * Applies repeat sightings in one JDBC batch. seen_count is incremented rather than overwritten
+   * so concurrent single-request upserts are not lost.
+   */
+  public int[] touchBatch(List<DeviceTouch> touches) {
+    if (touches == null || touches.isEmpty()) return new int[0];
+    String sql = "UPDATE device_profile SET last_seen = GREATEST(last_seen, ?), seen_count = seen_count + ?, " +
+        "last_country = COALESCE(?, last_country) WHERE id = ?";
+    return jdbc.batchUpdate(sql, touches, touches.size(), (ps, t) -> {
+      ps.setObject(1, t.lastSeen());
+      ps.setLong(2, t.count());
+      ps.setString(3, t.lastCountry());
+      ps.setLong(4, t.id());
+    })[0];
+  }
+
+  /**
+   * Only the columns the per-user reputation summary needs (id, tls_fp, last_country).
+   */
+  public java.util.List<DeviceProfile> findSummaryByUser(String userId) {
+    String sql = "SELECT id, tls_fp, last_country FROM device_profile WHERE user_id = ?";
+    return jdbc.query(sql, (rs, rowNum) -> {
+      DeviceProfile p = new DeviceProfile();
+      p.id = rs.getLong("id");
+      p.userId = userId;
+      p.tlsFp = rs.getString("tls_fp");
+      p.lastCountry = rs.getString("last_country");
       return p;
-    }
+    }, userId);
   }
 
   public java.util.List<DeviceProfile> findByUser(String userId) {
@@ -239,6 +280,30 @@ public class DeviceProfileRepository {
 
 
 
+/** {@link #listAfterId} bounded above: ids in (afterId, toId]. */
+public List<DeviceProfile> listIdRange(long afterId, long toId, int limit) {
+  String sql = "SELECT * FROM device_profile WHERE id > ? AND id <= ? ORDER BY id ASC LIMIT ?";
+  return jdbc.query(sql, DeviceProfileRepository::mapRow, afterId, toId, limit);
+}
+
+/** {min(id), max(id)} of device_profile, or empty when the table is empty. */
+public Optional<long[]> findIdBounds() {
+  return jdbc.query("SELECT MIN(id) AS lo, MAX(id) AS hi FROM device_profile", rs -> {
+    if (!rs.next()) return Optional.<long[]>empty();
+    long lo = rs.getLong("lo");
+    return rs.wasNull() ? Optional.<long[]>empty() : Optional.of(new long[] {lo, rs.getLong("hi")});
+  });
+}
+
+/**
+ * Keyset page (by id) of profiles last seen at or after {@code since}. Walks the primary key and
+ * filters, so a full pass reads the table once without an index on the hot last_seen column.
+ */
+public List<DeviceProfile> listSeenSince(OffsetDateTime since, long afterId, int limit) {
+  String sql = "SELECT * FROM device_profile WHERE id > ? AND last_seen >= ? ORDER BY id ASC LIMIT ?";
+  return jdbc.query(sql, DeviceProfileRepository::mapRow, afterId, since, limit);
+}
+
 public List<DeviceProfile> listAfterId(long afterId, int limit) {
   String sql = "SELECT * FROM device_profile WHERE id > ? ORDER BY id ASC LIMIT ?";
   return jdbc.query(sql, (rs, rowNum) -> {
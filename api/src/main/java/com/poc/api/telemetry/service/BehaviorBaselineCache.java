@@ -0,0 +1,244 @@
+package com.poc.api.telemetry.service;
+
+import com.poc.api.telemetry.persistence.BehaviorStat;
+import com.poc.api.telemetry.persistence.BehaviorStatRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded, striped in-memory cache of per-user behaviour baselines.
+ *
+ * Each user is one {@code double[]} holding {@code [mean, variance, decay]} for every feature in
+ * {@link BehaviorStatsService#FEATURES} order; a NaN mean marks a feature with no baseline yet.
+ * Updates mutate the array in memory and mark the entry dirty; {@link #flush()} writes dirty entries
+ * back to behavior_profile_stats with batched upserts. A dirty entry that falls out of the LRU is
+ * kept aside until it has been flushed, so eviction never loses an update.
+ *
+ * Enabled by default; {@code poc.behavior.cache.enabled=false} restores per-request DB reads/writes.
+ */
+@Component
+public class BehaviorBaselineCache {
+
+  private static final Logger log = LoggerFactory.getLogger(BehaviorBaselineCache.class);
+
+  public static final int SLOTS = 3;
+  public static final int MEAN = 0;
+  public static final int VARIANCE = 1;
+  public static final int DECAY = 2;
+
+  static final class Entry {
+    final String userId;
+    final double[] stats;
+    boolean dirty;
+
+    Entry(String userId, double[] stats) {
+      this.userId = userId;
+      this.stats = stats;
+    }
+  }
+
+  private final class Stripe extends LinkedHashMap<String, Entry> {
+    private final int capacity;
+
+    Stripe(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      if (size() <= capacity) return false;
+      Entry victim = eldest.getValue();
+      synchronized (victim) {
+        if (victim.dirty) evictedDirty.put(victim.userId, victim);
+      }
+      evictions.increment();
+      return true;
+    }
+  }
+
+  private final BehaviorStatRepository repo;
+  private final boolean enabled;
+  private final int flushBatchRows;
+  private final Stripe[] stripes;
+  private final ConcurrentLinkedQueue<Entry> dirtyQueue = new ConcurrentLinkedQueue<>();
+  private final ConcurrentHashMap<String, Entry> evictedDirty = new ConcurrentHashMap<>();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+  private final Counter flushErrors;
+  private final Timer flushTimer;
+
+  public BehaviorBaselineCache(BehaviorStatRepository repo,
+                               MeterRegistry meterRegistry,
+                               @Value("${poc.behavior.cache.enabled:true}") boolean enabled,
+                               @Value("${poc.behavior.cache.max-users:100000}") int maxUsers,
+                               @Value("${poc.behavior.cache.stripes:16}") int stripeCount,
+                               @Value("${poc.behavior.cache.flush-batch-rows:1000}") int flushBatchRows) {
+    this.repo = repo;
+    this.enabled = enabled;
+    this.flushBatchRows = Math.max(BehaviorStatsService.FEATURES.length, flushBatchRows);
+
+    int n = Integer.highestOneBit(Math.max(1, stripeCount));
+    int perStripe = Math.max(1, maxUsers / n);
+    this.stripes = new Stripe[n];
+    for (int i = 0; i < n; i++) stripes[i] = new Stripe(perStripe);
+
+    this.hits = Counter.builder("behavior.cache.hits").register(meterRegistry);
+    this.misses = Counter.builder("behavior.cache.misses").register(meterRegistry);
+    this.evictions = Counter.builder("behavior.cache.evictions").register(meterRegistry);
+    this.flushErrors = Counter.builder("behavior.cache.flush.errors").register(meterRegistry);
+    this.flushTimer = Timer.builder("behavior.cache.flush").register(meterRegistry);
+    Gauge.builder("behavior.cache.size", this, BehaviorBaselineCache::size).register(meterRegistry);
+    Gauge.builder("behavior.cache.dirty", dirtyQueue, ConcurrentLinkedQueue::size).register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Runs {@code mutator} against the user's stats array while holding the entry lock and marks it dirty.
+   */
+  public <T> T update(String userId, Function<double[], T> mutator) {
+    Entry e = lookup(userId);
+    T out;
+    boolean enqueue;
+    synchronized (e) {
+      out = mutator.apply(e.stats);
+      enqueue = !e.dirty;
+      e.dirty = true;
+    }
+    if (enqueue) dirtyQueue.add(e);
+    return out;
+  }
+
+  public int size() {
+    int n = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        n += s.size();
+      }
+    }
+    return n;
+  }
+
+  private Entry lookup(String userId) {
+    Stripe stripe = stripes[(userId.hashCode() ^ (userId.hashCode() >>> 16)) & (stripes.length - 1)];
+    synchronized (stripe) {
+      Entry e = stripe.get(userId);
+      if (e != null) {
+        hits.increment();
+        return e;
+      }
+    }
+    misses.increment();
+    // An evicted entry that has not been flushed yet is newer than the DB copy.
+    Entry loaded = evictedDirty.get(userId);
+    if (loaded == null) loaded = load(userId);
+    synchronized (stripe) {
+      Entry existing = stripe.get(userId);
+      if (existing != null) return existing;
+      stripe.put(userId, loaded);
+      return loaded;
+    }
+  }
+
+  private Entry load(String userId) {
+    String[] features = BehaviorStatsService.FEATURES;
+    double[] stats = new double[features.length * SLOTS];
+    for (int i = 0; i < features.length; i++) stats[i * SLOTS + MEAN] = Double.NaN;
+    for (BehaviorStat s : repo.findByUser(userId)) {
+      int i = Arrays.asList(features).indexOf(s.feature);
+      if (i < 0) continue;
+      stats[i * SLOTS + MEAN] = s.mean;
+      stats[i * SLOTS + VARIANCE] = s.variance;
+      stats[i * SLOTS + DECAY] = s.decay;
+    }
+    return new Entry(userId, stats);
+  }
+
+  /**
+   * Writes dirty baselines back in batches of at most {@code flush-batch-rows} rows.
+   */
+  @Scheduled(fixedDelayString = "${poc.behavior.cache.flush-interval-ms:5000}")
+  public void flush() {
+    if (!enabled) return;
+    String[] features = BehaviorStatsService.FEATURES;
+    while (true) {
+      List<BehaviorStat> rows = new ArrayList<>();
+      List<Entry> flushed = new ArrayList<>();
+      OffsetDateTime now = OffsetDateTime.now();
+      Entry e;
+      while (rows.size() + features.length <= flushBatchRows && (e = dirtyQueue.poll()) != null) {
+        synchronized (e) {
+          if (!e.dirty) continue;
+          e.dirty = false;
+          for (int i = 0; i < features.length; i++) {
+            double mean = e.stats[i * SLOTS + MEAN];
+            if (Double.isNaN(mean)) continue;
+            BehaviorStat s = new BehaviorStat();
+            s.userId = e.userId;
+            s.feature = features[i];
+            s.mean = mean;
+            s.variance = e.stats[i * SLOTS + VARIANCE];
+            s.decay = e.stats[i * SLOTS + DECAY];
+            s.updatedAt = now;
+            rows.add(s);
+          }
+        }
+        flushed.add(e);
+      }
+      if (flushed.isEmpty()) return;
+
+      long t0 = System.nanoTime();
+      try {
+        repo.upsertBatch(rows);
+      } catch (Exception ex) {
+        flushErrors.increment();
+        log.warn("[behavior-cache] flush of {} rows failed, will retry: {}", rows.size(), ex.getMessage());
+        for (Entry f : flushed) {
+          boolean enqueue;
+          synchronized (f) {
+            enqueue = !f.dirty;
+            f.dirty = true;
+          }
+          if (enqueue) dirtyQueue.add(f);
+        }
+        return;
+      } finally {
+        flushTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+      }
+      for (Entry f : flushed) {
+        synchronized (f) {
+          if (!f.dirty) evictedDirty.remove(f.userId, f);
+        }
+      }
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    flush();
+  }
+}
@@ -11,10 +11,29 @@ import java.util.Map;
 @Service
 public class BehaviorStatsService {
 
+  /** Canonical feature order; also the slot layout used by {@link BehaviorBaselineCache}. */
+  public static final String[] FEATURES = {
+      "avg_key_interval_ms",
+      "key_interval_std_ms",
+      "scroll_events_per_sec",
+      "pointer_avg_velocity",
+      "pointer_max_velocity",
+      "mouse_distance"
+  };
+  private static final double[] DEFAULT_VARIANCE = {250.0, 80.0, 1.0, 0.3, 1.0, 800.0};
+  private static final double DEFAULT_DECAY = 0.9;
+
+  private static final int SLOTS = BehaviorBaselineCache.SLOTS;
+  private static final int MEAN = BehaviorBaselineCache.MEAN;
+  private static final int VARIANCE = BehaviorBaselineCache.VARIANCE;
+  private static final int DECAY = BehaviorBaselineCache.DECAY;
+
   private final BehaviorStatRepository repo;
+  private final BehaviorBaselineCache cache;
 
-  public BehaviorStatsService(BehaviorStatRepository repo) {
+  public BehaviorStatsService(BehaviorStatRepository repo, BehaviorBaselineCache cache) {
     this.repo = repo;
+    this.cache = cache;
   }
 
   public record BehaviorSimilarityResult(double score, Map<String, Double> zScores) {}
@@ -30,70 +49,99 @@ public class BehaviorStatsService {
       return new BehaviorSimilarityResult(0.5, Map.of());
     }
 
-    double scoreSum = 0.0;
-    int count = 0;
-    Map<String, Double> zScores = new HashMap<>();
-
-    // Keystroke dynamics
-    scoreSum += updateFeature(userId, "avg_key_interval_ms", behavior.avg_key_interval_ms(), 250.0, 0.9, zScores);
-    count++;
-    scoreSum += updateFeature(userId, "key_interval_std_ms", behavior.key_interval_std_ms(), 80.0, 0.9, zScores);
-    count++;
-
-    // Scroll cadence (events per second)
-    scoreSum += updateFeature(userId, "scroll_events_per_sec", behavior.scroll_events_per_sec(), 1.0, 0.9, zScores);
-    count++;
-
-    // Pointer velocity profile
-    scoreSum += updateFeature(userId, "pointer_avg_velocity", behavior.pointer_avg_velocity(), 0.3, 0.9, zScores);
-    count++;
-    scoreSum += updateFeature(userId, "pointer_max_velocity", behavior.pointer_max_velocity(), 1.0, 0.9, zScores);
-    count++;
+    double[] values = {
+        // Keystroke dynamics
+        orZero(behavior.avg_key_interval_ms()),
+        orZero(behavior.key_interval_std_ms()),
+        // Scroll cadence (events per second)
+        orZero(behavior.scroll_events_per_sec()),
+        // Pointer velocity profile
+        orZero(behavior.pointer_avg_velocity()),
+        orZero(behavior.pointer_max_velocity()),
+        // Overall mouse activity / distance
+        orZero(behavior.mouse_distance())
+    };
+    double[] z = new double[FEATURES.length];
+
+    double scoreSum;
+    if (cache.isEnabled()) {
+      // Hot path: EWMA runs against the cached primitive layout, DB writes are batched by the cache.
+      scoreSum = cache.update(userId, stats -> {
+        double sum = 0.0;
+        for (int i = 0; i < FEATURES.length; i++) {
+          sum += applyEwma(stats, i * SLOTS, values[i], DEFAULT_VARIANCE[i], z, i);
+        }
+        return sum;
+      });
+    } else {
+      scoreSum = 0.0;
+      for (int i = 0; i < FEATURES.length; i++) {
+        scoreSum += updateFeature(userId, i, values[i], z);
+      }
+    }
 
-    // Overall mouse activity / distance
-    scoreSum += updateFeature(userId, "mouse_distance", behavior.mouse_distance(), 800.0, 0.9, zScores);
-    count++;
+    Map<String, Double> zScores = new HashMap<>();
+    for (int i = 0; i < FEATURES.length; i++) zScores.put(FEATURES[i], z[i]);
 
-    double avgScore = count > 0 ? scoreSum / count : 0.5;
+    double avgScore = scoreSum / FEATURES.length;
     if (avgScore < 0.0) avgScore = 0.0;
     if (avgScore > 1.0) avgScore = 1.0;
 
     return new BehaviorSimilarityResult(avgScore, zScores);
   }
 
-  private double updateFeature(String userId, String feature, Double value,
-                               double defaultVariance, double defaultDecay, Map<String, Double> zScores) {
-    double v = value != null ? value : 0.0;
-
+  private double updateFeature(String userId, int idx, double v, double[] z) {
+    String feature = FEATURES[idx];
     BehaviorStat stat = repo.findByUserAndFeature(userId, feature)
         .orElseGet(() -> {
           BehaviorStat s = new BehaviorStat();
           s.userId = userId;
           s.feature = feature;
-          s.mean = v;
-          s.variance = defaultVariance;
-          s.decay = defaultDecay;
+          s.mean = Double.NaN;
           return s;
         });
 
-    double decay = stat.decay;
-    double meanNew = decay * stat.mean + (1.0 - decay) * v;
-    double varNew = decay * stat.variance + (1.0 - decay) * Math.pow(v - meanNew, 2);
-    stat.mean = meanNew;
-    stat.variance = varNew <= 1e-6 ? 1e-6 : varNew; // avoid zero variance
+    double[] stats = {stat.mean, stat.variance, stat.decay};
+    double sim = applyEwma(stats, 0, v, DEFAULT_VARIANCE[idx], z, idx);
+    stat.mean = stats[MEAN];
+    stat.variance = stats[VARIANCE];
+    stat.decay = stats[DECAY];
 
     repo.save(stat);
+    return sim;
+  }
 
-    double std = Math.sqrt(stat.variance);
+  /**
+   * EWMA mean/variance update of one feature stored at {@code stats[off..off+2]}.
+   * A NaN mean seeds the baseline from the first observation. Returns the similarity in [0,1].
+   */
+  static double applyEwma(double[] stats, int off, double v, double defaultVariance, double[] zOut, int zIdx) {
+    if (Double.isNaN(stats[off + MEAN])) {
+      stats[off + MEAN] = v;
+      stats[off + VARIANCE] = defaultVariance;
+      stats[off + DECAY] = DEFAULT_DECAY;
+    }
+
+    double decay = stats[off + DECAY];
+    double meanNew = decay * stats[off + MEAN] + (1.0 - decay) * v;
+    double varNew = decay * stats[off + VARIANCE] + (1.0 - decay) * Math.pow(v - meanNew, 2);
+    stats[off + MEAN] = meanNew;
+    stats[off + VARIANCE] = varNew <= 1e-6 ? 1e-6 : varNew; // avoid zero variance
+
+    double std = Math.sqrt(stats[off + VARIANCE]);
     double z = 0.0;
     double sim;
     if (std <= 0.0) {
       sim = 1.0;
     } else {
-      z = (v - stat.mean) / std;
+      z = (v - meanNew) / std;
       sim = Math.exp(-0.5 * z * z);
     }
-    zScores.put(feature, z);
+    zOut[zIdx] = z;
     return sim;
   }
+
+  private static double orZero(Double value) {
+    return value != null ? value : 0.0;
+  }
 }
@@ -0,0 +1,226 @@
+package com.poc.api.telemetry.service;
+
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recently seen device profiles keyed by (user_id, tls_fp, canvas_hash), so a repeat visit from a
+ * known device is one in-memory lookup instead of an upsert.
+ *
+ * A hit bumps the cached profile's seen_count/last_seen/last_country and records the sighting as a
+ * pending touch; {@link #flush()} applies pending touches as one batched, additive UPDATE
+ * (seen_count + n), so sightings recorded by other instances or by the upsert path are not lost.
+ * A touch whose row has gone (0 rows updated) evicts the entry and the next sighting upserts again.
+ *
+ * Until the flush, device_profile lags the cache by up to {@code flush-interval-ms}. Entries are
+ * re-read through the upsert after {@code ttl-ms}, which also picks up sightings counted by other
+ * instances.
+ */
+@Component
+public class DeviceProfileCache {
+
+  private static final Logger log = LoggerFactory.getLogger(DeviceProfileCache.class);
+
+  private record Key(String userId, String tlsFp, String canvasHash) {}
+
+  private static final class Entry {
+    final DeviceProfile profile;
+    final long loadedAtMs;
+
+    Entry(DeviceProfile profile, long loadedAtMs) {
+      this.profile = profile;
+      this.loadedAtMs = loadedAtMs;
+    }
+  }
+
+  private static final class Pending {
+    long count;
+    OffsetDateTime lastSeen;
+    String lastCountry;
+  }
+
+  private static final class Stripe extends LinkedHashMap<Key, Entry> {
+    private final int capacity;
+
+    Stripe(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > capacity;
+    }
+  }
+
+  private final DeviceProfileRepository repo;
+  private final boolean enabled;
+  private final long ttlMs;
+  private final Stripe[] stripes;
+  private final ConcurrentHashMap<Long, Pending> touches = new ConcurrentHashMap<>();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter flushErrors;
+
+  public DeviceProfileCache(DeviceProfileRepository repo,
+                            MeterRegistry meterRegistry,
+                            @Value("${poc.device.cache.enabled:true}") boolean enabled,
+                            @Value("${poc.device.cache.max-profiles:200000}") int maxProfiles,
+                            @Value("${poc.device.cache.stripes:16}") int stripeCount,
+                            @Value("${poc.device.cache.ttl-ms:300000}") long ttlMs) {
+    this.repo = repo;
+    this.enabled = enabled;
+    this.ttlMs = ttlMs;
+
+    int n = Integer.highestOneBit(Math.max(1, stripeCount));
+    int perStripe = Math.max(1, maxProfiles / n);
+    this.stripes = new Stripe[n];
+    for (int i = 0; i < n; i++) stripes[i] = new Stripe(perStripe);
+
+    this.hits = Counter.builder("device.cache.hits").register(meterRegistry);
+    this.misses = Counter.builder("device.cache.misses").register(meterRegistry);
+    this.flushErrors = Counter.builder("device.cache.flush.errors").register(meterRegistry);
+    Gauge.builder("device.cache.size", this, DeviceProfileCache::size).register(meterRegistry);
+    Gauge.builder("device.cache.pending", touches, Map::size).register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Counts a sighting of a cached device.
+   *
+   * @return a snapshot of the updated profile, or null when the caller has to upsert
+   */
+  DeviceProfile touch(DeviceProfile sighting) {
+    Key key = keyOf(sighting);
+    Stripe stripe = stripeFor(key);
+    long nowMs = System.currentTimeMillis();
+    DeviceProfile current;
+    synchronized (stripe) {
+      Entry e = stripe.get(key);
+      if (e == null || nowMs - e.loadedAtMs >= ttlMs) {
+        if (e != null) stripe.remove(key);
+        current = null;
+      } else {
+        current = e.profile;
+      }
+    }
+    if (current == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+
+    OffsetDateTime now = OffsetDateTime.now();
+    DeviceProfile snapshot;
+    synchronized (current) {
+      current.lastSeen = now;
+      current.seenCount = current.seenCount + 1;
+      if (sighting.lastCountry != null) current.lastCountry = sighting.lastCountry;
+      snapshot = DeviceProfileService.copy(current);
+    }
+    touches.compute(current.id, (id, p) -> {
+      if (p == null) p = new Pending();
+      p.count++;
+      p.lastSeen = now;
+      if (sighting.lastCountry != null) p.lastCountry = sighting.lastCountry;
+      return p;
+    });
+    return snapshot;
+  }
+
+  /** Called with the row returned by the upsert. */
+  void remember(DeviceProfile saved) {
+    if (saved == null || saved.id == null) return;
+    Key key = keyOf(saved);
+    Stripe stripe = stripeFor(key);
+    synchronized (stripe) {
+      stripe.put(key, new Entry(DeviceProfileService.copy(saved), System.currentTimeMillis()));
+    }
+  }
+
+  /** Drops a profile whose row was changed outside this cache (e.g. by bulk scoring). */
+  void invalidate(DeviceProfile p) {
+    if (p == null) return;
+    Key key = keyOf(p);
+    Stripe stripe = stripeFor(key);
+    synchronized (stripe) {
+      stripe.remove(key);
+    }
+  }
+
+  public int size() {
+    int n = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        n += s.size();
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Applies coalesced sightings with one batched UPDATE.
+   */
+  @Scheduled(fixedDelayString = "${poc.device.cache.flush-interval-ms:2000}")
+  public void flush() {
+    if (!enabled || touches.isEmpty()) return;
+    List<DeviceProfileRepository.DeviceTouch> batch = new ArrayList<>(touches.size());
+    for (Long id : touches.keySet()) {
+      Pending p = touches.remove(id);
+      if (p != null) batch.add(new DeviceProfileRepository.DeviceTouch(id, p.count, p.lastSeen, p.lastCountry));
+    }
+    if (batch.isEmpty()) return;
+    try {
+      int[] updated = repo.touchBatch(batch);
+      for (int i = 0; i < updated.length; i++) {
+        if (updated[i] == 0) forget(batch.get(i).id());
+      }
+    } catch (Exception e) {
+      // seen_count/last_seen are best-effort counters; drop this batch rather than retry forever.
+      flushErrors.increment();
+      log.warn("[device-cache] flush of {} device touches failed: {}", batch.size(), e.getMessage());
+    }
+  }
+
+  private void forget(long id) {
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        s.values().removeIf(e -> e.profile.id != null && e.profile.id == id);
+      }
+    }
+  }
+
+  private static Key keyOf(DeviceProfile p) {
+    return new Key(p.userId, p.tlsFp, p.canvasHash);
+  }
+
+  private Stripe stripeFor(Key key) {
+    int h = key.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+  }
+
+  @PreDestroy
+  void shutdown() {
+    flush();
+  }
+}
@@ -3,21 +3,62 @@ package com.poc.api.telemetry.service;
 import com.poc.api.telemetry.dto.Telemetry;
 import com.poc.api.telemetry.persistence.DeviceProfile;
 import com.poc.api.telemetry.persistence.DeviceProfileRepository;
-import com.poc.api.identity.service.IdentityGraphService;
+import com.poc.api.identity.service.IdentityGraphWriter;
+import com.poc.api.risk.service.UserActivitySummaryCache;
 import org.springframework.stereotype.Service;
 
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class DeviceProfileService {
 
   private final DeviceProfileRepository repo;
-  private final IdentityGraphService identityGraph;
+  private final IdentityGraphWriter identityGraph;
+  private final UserActivitySummaryCache userActivitySummaries;
+  private final DeviceProfileCache cache;
 
-  public DeviceProfileService(DeviceProfileRepository repo, IdentityGraphService identityGraph) {
+  public DeviceProfileService(DeviceProfileRepository repo,
+                              IdentityGraphWriter identityGraph,
+                              UserActivitySummaryCache userActivitySummaries,
+                              DeviceProfileCache cache) {
     this.repo = repo;
     this.identityGraph = identityGraph;
+    this.userActivitySummaries = userActivitySummaries;
+    this.cache = cache;
   }
 
+  /**
+   * Records a sighting: known devices are counted in {@link DeviceProfileCache}, anything else goes
+   * through the single-statement upsert and is cached.
+   */
   public DeviceProfile upsert(String userId, String tlsFp, String country, Telemetry.Device d) {
+    DeviceProfile sighting = describe(userId, tlsFp, country, d);
+    DeviceProfile saved = null;
+    if (cache != null && cache.isEnabled()) saved = cache.touch(sighting);
+    if (saved == null) {
+      saved = repo.upsert(sighting);
+      if (cache != null && cache.isEnabled()) cache.remember(saved);
+    }
+    userActivitySummaries.onDeviceProfile(saved);
+
+    // EPIC 10.2: best-effort identity graph observation, written asynchronously
+    if (identityGraph != null) {
+      try { identityGraph.submit(copy(saved)); } catch (Exception ignored) {}
+    }
+
+    return saved;
+  }
+
+  /**
+   * The profile this request describes, without touching the DB (id, first/last seen and
+   * seen_count are left unset).
+   */
+  public DeviceProfile describe(String userId, String tlsFp, String country, Telemetry.Device d) {
     DeviceProfile p = new DeviceProfile();
     p.userId = userId != null ? userId : "anonymous";
     p.tlsFp = tlsFp != null ? tlsFp : "none";
@@ -45,14 +86,112 @@ public class DeviceProfileService {
     p.canvasHash = d.canvas_hash() != null ? d.canvas_hash() : "none";
     p.webglHash = d.webgl_hash();
     p.lastCountry = country;
+    return p;
+  }
 
-    DeviceProfile saved = repo.upsert(p);
+  /**
+   * Device profile resolution for one bulk scoring request: each user's profiles are fetched once,
+   * repeat sightings are counted in memory and written by {@link Batch#flush()} as one batched
+   * UPDATE. First sightings are still inserted immediately so they get an id.
+   */
+  public Batch openBatch() {
+    return new Batch();
+  }
 
-    // EPIC 10.2: best-effort identity graph observation
-    if (identityGraph != null) {
-      try { identityGraph.observeDeviceProfile(saved); } catch (Exception ignored) {}
+  public final class Batch implements AutoCloseable {
+
+    private record Key(String tlsFp, String canvasHash) {}
+
+    private static final class Touch {
+      long count;
+      OffsetDateTime lastSeen;
+      String lastCountry;
     }
 
-    return saved;
+    private final Map<String, Map<Key, DeviceProfile>> byUser = new HashMap<>();
+    private final Map<Long, Touch> touches = new LinkedHashMap<>();
+    private final Map<Long, DeviceProfile> observed = new LinkedHashMap<>();
+
+    private Batch() {}
+
+    /**
+     * Same result {@link #upsert} would give for this sighting, as a snapshot that later items in
+     * the batch do not modify.
+     */
+    public DeviceProfile upsert(String userId, String tlsFp, String country, Telemetry.Device d) {
+      DeviceProfile p = describe(userId, tlsFp, country, d);
+      Map<Key, DeviceProfile> known = byUser.computeIfAbsent(p.userId, this::load);
+      Key key = new Key(p.tlsFp, p.canvasHash);
+      DeviceProfile current = known.get(key);
+      if (current == null) {
+        current = repo.insert(p);
+        known.put(key, current);
+      } else {
+        OffsetDateTime now = OffsetDateTime.now();
+        current.lastSeen = now;
+        current.seenCount = current.seenCount + 1;
+        current.lastCountry = p.lastCountry != null ? p.lastCountry : current.lastCountry;
+        Touch t = touches.computeIfAbsent(current.id, id -> new Touch());
+        t.count++;
+        t.lastSeen = now;
+        if (p.lastCountry != null) t.lastCountry = p.lastCountry;
+      }
+      observed.put(current.id, current);
+      return copy(current);
+    }
+
+    private Map<Key, DeviceProfile> load(String userId) {
+      Map<Key, DeviceProfile> known = new HashMap<>();
+      // Most recently seen first, so duplicates resolve the same way as a single lookup would.
+      for (DeviceProfile existing : repo.findByUser(userId)) {
+        known.putIfAbsent(new Key(existing.tlsFp, existing.canvasHash), existing);
+      }
+      return known;
+    }
+
+    /** Writes coalesced sightings and notifies the reputation cache / identity graph. */
+    public void flush() {
+      if (!touches.isEmpty()) {
+        List<DeviceProfileRepository.DeviceTouch> batch = new ArrayList<>(touches.size());
+        touches.forEach((id, t) -> batch.add(new DeviceProfileRepository.DeviceTouch(id, t.count, t.lastSeen, t.lastCountry)));
+        repo.touchBatch(batch);
+        touches.clear();
+      }
+      for (DeviceProfile saved : observed.values()) {
+        // The batch wrote seen_count directly; let the next single request re-read the row.
+        if (cache != null) cache.invalidate(saved);
+        userActivitySummaries.onDeviceProfile(saved);
+        // EPIC 10.2: best-effort identity graph observation, written asynchronously
+        if (identityGraph != null) {
+          try { identityGraph.submit(copy(saved)); } catch (Exception ignored) {}
+        }
+      }
+      observed.clear();
+    }
+
+    @Override
+    public void close() {
+      flush();
+    }
+  }
+
+  static DeviceProfile copy(DeviceProfile src) {
+    DeviceProfile p = new DeviceProfile();
+    p.id = src.id;
+    p.userId = src.userId;
+    p.tlsFp = src.tlsFp;
+    p.uaFamily = src.uaFamily;
+    p.uaVersion = src.uaVersion;
+    p.screenW = src.screenW;
+    p.screenH = src.screenH;
+    p.pixelRatio = src.pixelRatio;
+    p.tzOffset = src.tzOffset;
+    p.canvasHash = src.canvasHash;
+    p.webglHash = src.webglHash;
+    p.firstSeen = src.firstSeen;
+    p.lastSeen = src.lastSeen;
+    p.seenCount = src.seenCount;
+    p.lastCountry = src.lastCountry;
+    return p;
   }
 }
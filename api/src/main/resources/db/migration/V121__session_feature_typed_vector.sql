@@ -0,0 +1,23 @@
+-- Typed session feature storage: the numeric breakdown as a float8 array in FeatureVectorSchema's
+-- stored layout (feature_schema_version), policy/TLS family as plain columns. feature_vector JSONB
+-- becomes an optional debug copy (poc.persistence.session-feature.debug-json).
+ALTER TABLE session_feature
+  ADD COLUMN IF NOT EXISTS feature_schema_version SMALLINT,
+  ADD COLUMN IF NOT EXISTS features DOUBLE PRECISION[],
+  ADD COLUMN IF NOT EXISTS policy_id BIGINT,
+  ADD COLUMN IF NOT EXISTS policy_explain JSONB,
+  ADD COLUMN IF NOT EXISTS tls_family_id TEXT;
+
+ALTER TABLE session_feature ALTER COLUMN feature_vector DROP NOT NULL;
+
+-- Policy matches are listed by policy_id now; carry over the rows that only have it in the JSON.
+-- Older rows keep features NULL and are read from feature_vector.
+UPDATE session_feature
+SET policy_id = COALESCE((feature_vector->>'policy_id')::double precision::bigint, 0),
+    policy_explain = feature_vector->'policy',
+    tls_family_id = feature_vector->>'tls_family_id'
+WHERE policy_id IS NULL
+  AND (feature_vector->>'policy_matched')::double precision = 1;
+
+CREATE INDEX IF NOT EXISTS idx_session_feature_policy_match
+  ON session_feature(occurred_at DESC) WHERE policy_id IS NOT NULL;
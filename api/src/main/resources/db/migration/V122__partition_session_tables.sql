@@ -0,0 +1,94 @@
+-- Daily range partitioning for session_feature (occurred_at), decision_log (created_at) and
+-- drift_event (created_at), so retention drops whole partitions instead of running a DELETE.
+--
+-- Existing rows are not copied: each table is renamed to <table>_legacy and attached as a single
+-- partition covering everything up to tomorrow (UTC). PartitionMaintenanceService creates the daily
+-- partitions from there on and drops the legacy one once all of it is past retention.
+-- The id sequences are re-owned by the new parents so dropping a partition never drops them.
+DO $$
+DECLARE
+  t RECORD;
+  upper_bound TIMESTAMPTZ := date_trunc('day', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + INTERVAL '1 day';
+  max_ts TIMESTAMPTZ;
+  seq TEXT;
+BEGIN
+  FOR t IN SELECT * FROM (VALUES
+      ('session_feature', 'occurred_at'),
+      ('decision_log', 'created_at'),
+      ('drift_event', 'created_at')) AS v(tbl, col)
+  LOOP
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid
+               WHERE c.relname = t.tbl AND c.relnamespace = current_schema()::regnamespace) THEN
+      CONTINUE;
+    END IF;
+
+    seq := pg_get_serial_sequence(t.tbl, 'id');
+    EXECUTE format('ALTER TABLE %I RENAME TO %I', t.tbl, t.tbl || '_legacy');
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT IF EXISTS %I', t.tbl || '_legacy', t.tbl || '_pkey');
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS) PARTITION BY RANGE (%I)',
+                   t.tbl, t.tbl || '_legacy', t.col);
+    EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, %I)', t.tbl, t.col);
+    IF seq IS NOT NULL THEN
+      EXECUTE format('ALTER SEQUENCE %s OWNED BY %I.id', seq, t.tbl);
+    END IF;
+
+    EXECUTE format('SELECT max(%I) FROM %I', t.col, t.tbl || '_legacy') INTO max_ts;
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                   t.tbl, t.tbl || '_legacy',
+                   GREATEST(upper_bound, date_trunc('day', max_ts AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + INTERVAL '1 day'));
+  END LOOP;
+END $$;
+
+-- Indexes on the parents; the matching legacy indexes are attached rather than rebuilt.
+CREATE INDEX IF NOT EXISTS idx_session_feature_user_p ON session_feature(user_id);
+CREATE INDEX IF NOT EXISTS idx_session_feature_tls_p ON session_feature(tls_fp);
+CREATE INDEX IF NOT EXISTS idx_session_feature_occurred_at_p ON session_feature(occurred_at);
+CREATE INDEX IF NOT EXISTS idx_session_feature_request_p ON session_feature(request_id);
+CREATE INDEX IF NOT EXISTS idx_session_feature_policy_match_p
+  ON session_feature(occurred_at DESC) WHERE policy_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_decision_log_user_time_p ON decision_log(user_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_decision_log_created_at_p ON decision_log(created_at);
+CREATE INDEX IF NOT EXISTS idx_drift_event_user_time_p ON drift_event(user_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_drift_event_req_p ON drift_event(request_id);
+
+-- Views bind to the table they were created against (now the legacy partition); rebind them.
+CREATE OR REPLACE VIEW v_user_summary AS
+SELECT
+  COALESCE(user_id, 'anonymous') AS user_id,
+  COUNT(*) AS sessions,
+  COUNT(DISTINCT tls_fp) AS devices,
+  MAX(created_at) AS last_seen,
+  AVG(confidence) AS avg_confidence
+FROM decision_log
+GROUP BY COALESCE(user_id, 'anonymous');
+
+CREATE OR REPLACE VIEW v_session_daily_stats AS
+SELECT
+  date_trunc('day', occurred_at)::date AS day,
+  COUNT(*) AS sessions,
+  SUM(CASE WHEN decision = 'AUTO_LOGIN' THEN 1 ELSE 0 END) AS auto_login,
+  SUM(CASE WHEN decision = 'STEP_UP' THEN 1 ELSE 0 END) AS step_up,
+  SUM(CASE WHEN decision = 'DENY' THEN 1 ELSE 0 END) AS deny,
+  AVG(confidence) AS avg_confidence
+FROM session_feature
+GROUP BY date_trunc('day', occurred_at)::date
+ORDER BY day DESC;
+
+CREATE OR REPLACE VIEW v_risk_decision_stats AS
+SELECT
+  decision,
+  COUNT(*) AS total,
+  AVG(confidence) AS avg_confidence,
+  COUNT(*) FILTER (WHERE occurred_at >= now() - interval '24 hours') AS last_24h,
+  COUNT(*) FILTER (WHERE occurred_at >= now() - interval '7 days') AS last_7d
+FROM session_feature
+GROUP BY decision;
+
+CREATE OR REPLACE VIEW v_model_confusion AS
+SELECT
+  decision,
+  label,
+  COUNT(*) AS sessions
+FROM session_feature
+WHERE label IS NOT NULL
+GROUP BY decision, label;
@@ -0,0 +1,85 @@
+-- Rollups behind the analytics views, maintained by AnalyticsRollupService from an id high-water
+-- mark instead of aggregating session_feature / decision_log on every read.
+
+CREATE TABLE IF NOT EXISTS rollup_state (
+  name TEXT PRIMARY KEY,
+  last_id BIGINT NOT NULL DEFAULT 0,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+INSERT INTO rollup_state(name) VALUES ('session_feature'), ('decision_log')
+ON CONFLICT (name) DO NOTHING;
+
+-- session_feature per hour and decision (hourly so last_24h stays meaningful).
+CREATE TABLE IF NOT EXISTS rollup_session_hourly (
+  bucket TIMESTAMPTZ NOT NULL,
+  decision TEXT NOT NULL,
+  sessions BIGINT NOT NULL DEFAULT 0,
+  confidence_sum DOUBLE PRECISION NOT NULL DEFAULT 0,
+  PRIMARY KEY (bucket, decision)
+);
+
+-- Labelled session_feature rows per (decision, label).
+CREATE TABLE IF NOT EXISTS rollup_model_confusion (
+  decision TEXT NOT NULL,
+  label TEXT NOT NULL,
+  sessions BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (decision, label)
+);
+
+-- decision_log per user; devices counts the distinct tls_fp rows in rollup_user_device.
+CREATE TABLE IF NOT EXISTS rollup_user_summary (
+  user_id TEXT PRIMARY KEY,
+  sessions BIGINT NOT NULL DEFAULT 0,
+  devices BIGINT NOT NULL DEFAULT 0,
+  confidence_sum DOUBLE PRECISION NOT NULL DEFAULT 0,
+  last_seen TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_rollup_user_summary_last_seen ON rollup_user_summary(last_seen DESC);
+
+CREATE TABLE IF NOT EXISTS rollup_user_device (
+  user_id TEXT NOT NULL,
+  tls_fp TEXT NOT NULL,
+  PRIMARY KEY (user_id, tls_fp)
+);
+
+-- Same columns as V4, now over the rollups.
+DROP VIEW IF EXISTS v_user_summary;
+CREATE VIEW v_user_summary AS
+SELECT
+  user_id,
+  sessions,
+  devices,
+  last_seen,
+  confidence_sum / NULLIF(sessions, 0) AS avg_confidence
+FROM rollup_user_summary;
+
+DROP VIEW IF EXISTS v_session_daily_stats;
+CREATE VIEW v_session_daily_stats AS
+SELECT
+  date_trunc('day', bucket)::date AS day,
+  SUM(sessions) AS sessions,
+  SUM(sessions) FILTER (WHERE decision = 'AUTO_LOGIN') AS auto_login,
+  SUM(sessions) FILTER (WHERE decision = 'STEP_UP') AS step_up,
+  SUM(sessions) FILTER (WHERE decision = 'DENY') AS deny,
+  SUM(confidence_sum) / NULLIF(SUM(sessions), 0) AS avg_confidence
+FROM rollup_session_hourly
+GROUP BY date_trunc('day', bucket)::date
+ORDER BY day DESC;
+
+DROP VIEW IF EXISTS v_risk_decision_stats;
+CREATE VIEW v_risk_decision_stats AS
+SELECT
+  decision,
+  SUM(sessions) AS total,
+  SUM(confidence_sum) / NULLIF(SUM(sessions), 0) AS avg_confidence,
+  COALESCE(SUM(sessions) FILTER (WHERE bucket >= date_trunc('hour', now() - interval '24 hours')), 0) AS last_24h,
+  COALESCE(SUM(sessions) FILTER (WHERE bucket >= date_trunc('hour', now() - interval '7 days')), 0) AS last_7d
+FROM rollup_session_hourly
+GROUP BY decision;
+
+DROP VIEW IF EXISTS v_model_confusion;
+CREATE VIEW v_model_confusion AS
+SELECT decision, label, sessions
+FROM rollup_model_confusion;
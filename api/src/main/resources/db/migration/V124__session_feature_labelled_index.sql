@@ -0,0 +1,3 @@
+-- Keyset pages of labelled sessions for TrainingDataLoader (newest first).
+CREATE INDEX IF NOT EXISTS idx_session_feature_labelled
+  ON session_feature(occurred_at DESC, id DESC) WHERE label IS NOT NULL;
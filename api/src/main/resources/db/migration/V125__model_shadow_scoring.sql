@@ -0,0 +1,39 @@
+-- Shadow scoring: candidate models scored off the request thread next to the live model.
+
+CREATE TABLE IF NOT EXISTS model_shadow_candidate (
+  model_id BIGINT PRIMARY KEY,
+  sample_percent INT NOT NULL DEFAULT 100,
+  enabled BOOLEAN NOT NULL DEFAULT true,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- One row per (request, candidate). Kept narrow: scores as real, decisions as the rules enum name.
+-- Daily partitions like session_feature, maintained and expired by PartitionMaintenanceService.
+CREATE TABLE IF NOT EXISTS model_shadow_score (
+  id BIGSERIAL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  request_id TEXT,
+  live_model_id BIGINT NOT NULL,
+  shadow_model_id BIGINT NOT NULL,
+  live_p_legit REAL NOT NULL,
+  shadow_p_legit REAL NOT NULL,
+  shadow_anomaly REAL NOT NULL,
+  live_decision TEXT NOT NULL,
+  shadow_decision TEXT NOT NULL,
+  PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX IF NOT EXISTS idx_model_shadow_score_model_time
+  ON model_shadow_score(shadow_model_id, created_at DESC);
+
+-- Today's partition, so rows written before the first maintenance run have somewhere to go.
+DO $$
+DECLARE
+  today DATE := (now() AT TIME ZONE 'UTC')::date;
+BEGIN
+  EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF model_shadow_score FOR VALUES FROM (%L) TO (%L)',
+                 'model_shadow_score_p' || to_char(today, 'YYYYMMDD'),
+                 today::timestamp AT TIME ZONE 'UTC',
+                 (today + 1)::timestamp AT TIME ZONE 'UTC');
+END $$;
@@ -0,0 +1,9 @@
+-- Watermark for the asynchronous identity graph writer: device_profile observations last seen
+-- before applied_through are known to be in identity_node / identity_link. On startup (or after
+-- dropped observations) IdentityGraphWriter replays device_profile rows seen since then.
+
+CREATE TABLE IF NOT EXISTS identity_graph_state (
+  name TEXT PRIMARY KEY,
+  applied_through TIMESTAMPTZ,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,62 @@
+-- Parallel identity graph rebuild (IdentityRebuildService): the device_profile id range is split into
+-- partitions that are rebuilt independently; a partition is DONE only once its merge has committed.
+
+CREATE TABLE IF NOT EXISTS identity_rebuild_job (
+  id BIGSERIAL PRIMARY KEY,
+  status TEXT NOT NULL DEFAULT 'RUNNING',
+  min_id BIGINT NOT NULL,
+  max_id BIGINT NOT NULL,
+  partitions INT NOT NULL,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  finished_at TIMESTAMPTZ
+);
+
+CREATE TABLE IF NOT EXISTS identity_rebuild_partition (
+  job_id BIGINT NOT NULL REFERENCES identity_rebuild_job(id) ON DELETE CASCADE,
+  partition_no INT NOT NULL,
+  -- device_profile ids in (from_id, to_id]
+  from_id BIGINT NOT NULL,
+  to_id BIGINT NOT NULL,
+  status TEXT NOT NULL DEFAULT 'PENDING',
+  attempts INT NOT NULL DEFAULT 0,
+  cursor_id BIGINT,
+  processed BIGINT NOT NULL DEFAULT 0,
+  nodes BIGINT NOT NULL DEFAULT 0,
+  links BIGINT NOT NULL DEFAULT 0,
+  error TEXT,
+  started_at TIMESTAMPTZ,
+  finished_at TIMESTAMPTZ,
+  PRIMARY KEY (job_id, partition_no)
+);
+
+-- Staging for COPY; rows are keyed by natural key because node ids only exist after the merge.
+-- Unlogged: a crash loses them, and an interrupted partition starts over anyway.
+CREATE UNLOGGED TABLE IF NOT EXISTS identity_node_stage (
+  job_id BIGINT NOT NULL,
+  partition_no INT NOT NULL,
+  seq BIGINT NOT NULL,
+  node_type TEXT NOT NULL,
+  natural_key TEXT NOT NULL,
+  display_label TEXT,
+  meta_json TEXT
+);
+
+CREATE INDEX IF NOT EXISTS idx_identity_node_stage_partition
+  ON identity_node_stage(job_id, partition_no);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS identity_link_stage (
+  job_id BIGINT NOT NULL,
+  partition_no INT NOT NULL,
+  seq BIGINT NOT NULL,
+  from_type TEXT NOT NULL,
+  from_key TEXT NOT NULL,
+  to_type TEXT NOT NULL,
+  to_key TEXT NOT NULL,
+  link_type TEXT NOT NULL,
+  confidence DOUBLE PRECISION NOT NULL,
+  reason TEXT,
+  evidence_json TEXT
+);
+
+CREATE INDEX IF NOT EXISTS idx_identity_link_stage_partition
+  ON identity_link_stage(job_id, partition_no);
@@ -0,0 +1,9 @@
+-- Work set for TlsFamilyBackfillService: observed TLS fingerprints with no tls_family_member row.
+-- Filled once per backfill run instead of re-scanning session_feature / device_profile /
+-- decision_log for every page; rows are removed as their batch is written, so an interrupted run
+-- leaves only the unfinished fingerprints behind. Derived data, hence unlogged.
+
+CREATE UNLOGGED TABLE IF NOT EXISTS tls_backfill_work (
+  tls_fp TEXT PRIMARY KEY,
+  queued_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,58 @@
+package com.poc.api.admin.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class AnalyticsRollupServiceTest {
+
+  @Test
+  void markOnlyPassesIdsWhoseTransactionsHaveAllEnded() throws Exception {
+    JdbcTemplate jdbc = Mockito.mock(JdbcTemplate.class);
+    AnalyticsRollupService service = new AnalyticsRollupService(jdbc, true, 100, 5);
+
+    // Run 1: ids up to 50 are visible, but xid 103 (xmax 105) still holds id 40, stamped with its
+    // start time, i.e. older than ids 41..50 that already committed.
+    // Run 2: xid 103 is still running, so nothing has settled.
+    // Run 3: the oldest running xid is past 105, so 40 is committed and everything up to 50 folds.
+    stubHorizons(jdbc, "session_feature", new long[][] {{103, 105, 50}, {103, 112, 70}, {110, 115, 80}});
+    stubHorizons(jdbc, "decision_log", new long[][] {{103, 105, 50}, {103, 112, 70}, {110, 115, 80}});
+    when(jdbc.queryForObject(contains("rollup_session_hourly"), eq(Long.class), anyLong(), anyInt())).thenReturn(10L);
+    when(jdbc.queryForObject(contains("rollup_user_summary"), eq(Long.class), anyLong(), anyInt())).thenReturn(10L);
+
+    service.rollUp();
+    service.rollUp();
+    verify(jdbc, never()).queryForObject(contains("rollup_session_hourly"), eq(Long.class), anyLong(), anyInt());
+    verify(jdbc, never()).queryForObject(contains("rollup_user_summary"), eq(Long.class), anyLong(), anyInt());
+
+    service.rollUp();
+    verify(jdbc).queryForObject(contains("rollup_session_hourly"), eq(Long.class), eq(50L), eq(100));
+    verify(jdbc).queryForObject(contains("rollup_user_summary"), eq(Long.class), eq(50L), eq(100));
+  }
+
+  private static void stubHorizons(JdbcTemplate jdbc, String table, long[][] runs) throws Exception {
+    var stub = when(jdbc.queryForObject(contains("FROM " + table + ")"), any(RowMapper.class)));
+    for (long[] run : runs) {
+      stub = stub.thenAnswer(inv -> {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        when(rs.getLong("xmin")).thenReturn(run[0]);
+        when(rs.getLong("xmax")).thenReturn(run[1]);
+        when(rs.getLong("max_id")).thenReturn(run[2]);
+        return ((RowMapper<Object>) inv.getArgument(1)).mapRow(rs, 0);
+      });
+    }
+  }
+}
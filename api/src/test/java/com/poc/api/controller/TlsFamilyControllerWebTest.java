@@ -56,7 +56,7 @@ class TlsFamilyControllerWebTest {
   @Test
   void admin_backfill_withToken_returnsOk() throws Exception {
     Mockito.when(backfillService.backfill(10, 1))
-        .thenReturn(new TlsFamilyBackfillService.BackfillResult(3, 3, 1, true, "zzz"));
+        .thenReturn(new TlsFamilyBackfillService.BackfillResult(3, 3, 1, true, "zzz", 3, 12, 250.0));
 
     mvc.perform(post("/api/admin/tls-families/backfill")
             .header("X-Admin-Token", "test-admin-token")
@@ -68,7 +68,8 @@ class TlsFamilyControllerWebTest {
         .andExpect(jsonPath("$.classified").value(3))
         .andExpect(jsonPath("$.batches").value(1))
         .andExpect(jsonPath("$.complete").value(true))
-        .andExpect(jsonPath("$.lastFp").value("zzz"));
+        .andExpect(jsonPath("$.lastFp").value("zzz"))
+        .andExpect(jsonPath("$.fpsPerSecond").value(250.0));
   }
 
   @Test
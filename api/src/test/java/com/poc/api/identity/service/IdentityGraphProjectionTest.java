@@ -0,0 +1,79 @@
+package com.poc.api.identity.service;
+
+import com.poc.api.identity.persistence.IdentityGraphRepository;
+import com.poc.api.identity.persistence.IdentityLinkRow;
+import com.poc.api.identity.persistence.IdentityLinkType;
+import com.poc.api.identity.persistence.IdentityNodeRow;
+import com.poc.api.identity.persistence.IdentityNodeType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+class IdentityGraphProjectionTest {
+
+  private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+  @Test
+  void clusterFollowsLoadedAndObservedLinksMostRecentFirst() {
+    IdentityGraphRepository repo = Mockito.mock(IdentityGraphRepository.class);
+    when(repo.listNodesAfterId(anyLong(), anyInt())).thenReturn(List.of(
+        node(1, IdentityNodeType.USER, "u1"),
+        node(2, IdentityNodeType.DEVICE, "d1"),
+        node(3, IdentityNodeType.BEHAVIOR_CLUSTER, "b1")));
+    when(repo.listLinksAfterId(anyLong(), anyInt())).thenReturn(List.of(
+        link(10, 1, 2, IdentityLinkType.USER_DEVICE, 1.0, T0),
+        link(11, 1, 3, IdentityLinkType.USER_BEHAVIOR_CLUSTER, 0.85, T0.plusHours(1))));
+
+    IdentityGraphProjection projection = new IdentityGraphProjection(repo, new SimpleMeterRegistry(), true, 100, 100);
+    projection.reload();
+
+    var top = projection.cluster(IdentityNodeType.USER, "u1", 1, 1);
+    assertEquals(1L, top.root().id);
+    assertEquals(List.of(11L), top.links().stream().map(l -> l.id).toList());
+
+    // A new device with its link, and a confidence update on an existing link.
+    projection.applyNow(
+        List.of(node(1, IdentityNodeType.USER, "u1"), node(4, IdentityNodeType.DEVICE, "d2")),
+        List.of(link(12, 1, 4, IdentityLinkType.USER_DEVICE, 1.0, T0.plusHours(2)),
+            link(10, 1, 2, IdentityLinkType.USER_DEVICE, 0.3, T0.plusHours(3))));
+
+    var all = projection.cluster(IdentityNodeType.DEVICE, "d2", 2, 10);
+    assertEquals(List.of(4L, 1L, 2L, 3L), all.nodes().stream().map(n -> n.id).toList());
+    assertEquals(3, all.links().size());
+    IdentityLinkRow updated = all.links().stream().filter(l -> l.id == 10).findFirst().orElseThrow();
+    assertEquals(0.3, updated.confidence, 1e-6);
+    assertEquals(T0.plusHours(3).toInstant(), updated.lastSeen.toInstant());
+    assertEquals(3, projection.stats().links());
+
+    assertNull(projection.cluster(IdentityNodeType.USER, "nobody", 2, 10).root());
+  }
+
+  private static IdentityNodeRow node(long id, IdentityNodeType type, String key) {
+    IdentityNodeRow r = new IdentityNodeRow();
+    r.id = id;
+    r.nodeType = type;
+    r.naturalKey = key;
+    r.displayLabel = key;
+    return r;
+  }
+
+  private static IdentityLinkRow link(long id, long from, long to, IdentityLinkType type, double conf, OffsetDateTime seen) {
+    IdentityLinkRow r = new IdentityLinkRow();
+    r.id = id;
+    r.fromNodeId = from;
+    r.toNodeId = to;
+    r.linkType = type;
+    r.confidence = conf;
+    r.lastSeen = seen;
+    return r;
+  }
+}
@@ -0,0 +1,75 @@
+package com.poc.api.identity.service;
+
+import com.poc.api.identity.persistence.IdentityGraphRepository;
+import com.poc.api.identity.persistence.IdentityLinkRow;
+import com.poc.api.identity.persistence.IdentityLinkType;
+import com.poc.api.identity.persistence.IdentityNodeRow;
+import com.poc.api.identity.persistence.IdentityNodeType;
+import com.poc.api.showcase.persistence.TlsFamilyRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdentityGraphServiceTest {
+
+  private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+  @Test
+  void projectionServedClusterHasTheSameRowShapeAsSql() {
+    IdentityGraphRepository repo = Mockito.mock(IdentityGraphRepository.class);
+    IdentityGraphProjection projection = Mockito.mock(IdentityGraphProjection.class);
+    IdentityGraphService service = new IdentityGraphService(repo, Mockito.mock(TlsFamilyRepository.class), projection);
+
+    IdentityNodeRow user = node(1, IdentityNodeType.USER, "u1");
+    IdentityNodeRow device = node(2, IdentityNodeType.DEVICE, "d1");
+    IdentityLinkRow link = new IdentityLinkRow();
+    link.id = 10;
+    link.fromNodeId = 1;
+    link.toNodeId = 2;
+    link.linkType = IdentityLinkType.USER_DEVICE;
+    when(projection.isReady()).thenReturn(true);
+    when(projection.cluster(IdentityNodeType.USER, "u1", 2, 200))
+        .thenReturn(new IdentityGraphService.ClusterResult(user, List.of(user, device), List.of(link), null));
+
+    IdentityNodeRow fullUser = full(node(1, IdentityNodeType.USER, "u1"));
+    IdentityNodeRow fullDevice = full(node(2, IdentityNodeType.DEVICE, "d1"));
+    IdentityLinkRow fullLink = new IdentityLinkRow();
+    fullLink.id = 10;
+    fullLink.reason = "seen together";
+    fullLink.evidenceJson = "{}";
+    fullLink.firstSeen = T0;
+    when(repo.listNodesByIds(List.of(1L, 2L))).thenReturn(List.of(fullDevice, fullUser));
+    when(repo.listLinksByIds(List.of(10L))).thenReturn(List.of(fullLink));
+
+    IdentityGraphService.ClusterResult r = service.cluster(IdentityNodeType.USER, "u1", 2, 200);
+
+    // Traversal order is kept, the rows are the full ones.
+    assertSame(fullUser, r.root());
+    assertEquals(List.of(fullUser, fullDevice), r.nodes());
+    assertEquals(List.of(fullLink), r.links());
+    verify(repo, never()).listLinksForNode(Mockito.anyLong(), Mockito.anyInt());
+  }
+
+  private static IdentityNodeRow node(long id, IdentityNodeType type, String key) {
+    IdentityNodeRow r = new IdentityNodeRow();
+    r.id = id;
+    r.nodeType = type;
+    r.naturalKey = key;
+    return r;
+  }
+
+  private static IdentityNodeRow full(IdentityNodeRow r) {
+    r.metaJson = "{}";
+    r.createdAt = T0;
+    r.lastSeen = T0;
+    return r;
+  }
+}
@@ -0,0 +1,69 @@
+package com.poc.api.identity.service;
+
+import com.poc.api.identity.persistence.IdentityGraphRepository;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class IdentityGraphWriterTest {
+
+  private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+  @Test
+  void repeatSightingsCollapseAndFailedFlushIsReplayed() {
+    IdentityGraphService graph = Mockito.mock(IdentityGraphService.class);
+    DeviceProfileRepository profiles = Mockito.mock(DeviceProfileRepository.class);
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    IdentityGraphWriter writer = new IdentityGraphWriter(graph, Mockito.mock(IdentityGraphRepository.class), profiles,
+        meters, true, 10, 100, 1000, 100, 0, 1000);
+
+    when(graph.observeDeviceProfiles(anyList())).thenReturn(2);
+    DeviceProfile latest = profile(1, T0.plusSeconds(1));
+    writer.submit(profile(1, T0));
+    writer.submit(latest);
+    writer.submit(profile(2, T0));
+    writer.flushPending();
+
+    ArgumentCaptor<List<DeviceProfile>> batch = ArgumentCaptor.forClass(List.class);
+    verify(graph).observeDeviceProfiles(batch.capture());
+    assertEquals(2, batch.getValue().size());
+    assertSame(latest, batch.getValue().stream().filter(p -> p.id == 1L).findFirst().orElseThrow());
+    assertEquals(1.0, meters.get("identity.writer.collapsed").counter().count());
+
+    // The write fails: the same cycle replays device_profile rows seen since the lost observation.
+    DeviceProfile lost = profile(3, T0.plusSeconds(60));
+    when(graph.observeDeviceProfiles(anyList())).thenReturn(0).thenReturn(1);
+    when(profiles.listSeenSince(T0.plusSeconds(60), 0L, 100)).thenReturn(List.of(lost));
+    writer.submit(lost);
+    writer.cycle();
+
+    verify(profiles).listSeenSince(T0.plusSeconds(60), 0L, 100);
+    assertEquals(1.0, meters.get("identity.writer.flush.errors").counter().count());
+    assertEquals(1.0, meters.get("identity.writer.catchup.rows").counter().count());
+    assertFalse(writer.stats().catchingUp());
+    assertEquals(0, writer.stats().pending());
+  }
+
+  private static DeviceProfile profile(long id, OffsetDateTime lastSeen) {
+    DeviceProfile p = new DeviceProfile();
+    p.id = id;
+    p.userId = "u" + id;
+    p.tlsFp = "fp";
+    p.lastSeen = lastSeen;
+    return p;
+  }
+}
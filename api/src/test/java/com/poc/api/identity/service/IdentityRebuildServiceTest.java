@@ -0,0 +1,70 @@
+package com.poc.api.identity.service;
+
+import com.poc.api.identity.persistence.IdentityRebuildRepository;
+import com.poc.api.showcase.persistence.TlsFamilyRepository;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class IdentityRebuildServiceTest {
+
+  @Test
+  void partitionIsStagedPerPageAndMergedOnce() {
+    IdentityRebuildRepository repo = Mockito.mock(IdentityRebuildRepository.class);
+    DeviceProfileRepository profiles = Mockito.mock(DeviceProfileRepository.class);
+    TlsFamilyRepository families = Mockito.mock(TlsFamilyRepository.class);
+    IdentityRebuildRepository.Job job = new IdentityRebuildRepository.Job(7L, "RUNNING", 1, 3, 1, OffsetDateTime.now(), null);
+
+    when(repo.findLatestJob()).thenReturn(Optional.empty(), Optional.of(job));
+    when(profiles.findIdBounds()).thenReturn(Optional.of(new long[] {1, 3}));
+    when(repo.createJob(1, 3, 1)).thenReturn(job);
+    when(repo.listRunnablePartitions(7L, 3)).thenReturn(List.of(0));
+    when(repo.claimPartition(7L, 0, 3)).thenReturn(Optional.of(new long[] {0, 3}));
+    when(repo.totals(anyLong())).thenReturn(new IdentityRebuildRepository.Totals(1, 0, 0, 0, 3, 7, 8));
+    when(families.findFamiliesByRawFps(any())).thenReturn(Map.of());
+    when(profiles.listIdRange(0, 3, 2)).thenReturn(List.of(profile(1, "u1"), profile(2, "u1")));
+    when(profiles.listIdRange(2, 3, 2)).thenReturn(List.of(profile(3, "u2")));
+    when(repo.mergePartition(anyLong(), anyInt(), anyLong())).thenReturn(new IdentityRebuildRepository.MergeResult(7, 8));
+
+    IdentityRebuildService rebuilds = new IdentityRebuildService(repo, profiles, families, null, new SimpleMeterRegistry(),
+        2, 1_000_000, 16, 2, 3);
+    rebuilds.start(false);
+
+    verify(repo, timeout(5000)).finishJob(7L, "DONE");
+    verify(repo).mergePartition(7L, 0, 3);
+    ArgumentCaptor<List<IdentityRebuildRepository.StageNode>> nodes = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<List<IdentityRebuildRepository.StageLink>> links = ArgumentCaptor.forClass(List.class);
+    verify(repo, Mockito.times(2)).copyStage(eq(7L), eq(0), nodes.capture(), links.capture());
+    // Page 1: one user, two devices, one behaviour cluster; the user->cluster link is staged once.
+    assertEquals(4, nodes.getAllValues().get(0).size());
+    assertEquals(5, links.getAllValues().get(0).size());
+    assertEquals(3, nodes.getAllValues().get(1).size());
+    assertEquals(3, links.getAllValues().get(1).size());
+  }
+
+  private static DeviceProfile profile(long id, String user) {
+    DeviceProfile p = new DeviceProfile();
+    p.id = id;
+    p.userId = user;
+    p.tlsFp = "fp-" + id;
+    return p;
+  }
+}
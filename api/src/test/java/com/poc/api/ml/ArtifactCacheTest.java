@@ -0,0 +1,41 @@
+package com.poc.api.ml;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ArtifactCacheTest {
+
+  @Test
+  void evictsLeastRecentlyUsedUnpinnedEntriesOverBudget() throws InterruptedException {
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    ArtifactCache<String> cache = new ArtifactCache<>(meters, 100);
+    cache.pin(Set.of(1L));
+    cache.put(1L, "active", 40);
+    cache.put(2L, "touched", 20);
+    Thread.sleep(1);
+    cache.put(3L, "idle", 20);
+    Thread.sleep(1);
+    cache.get(2L);
+
+    cache.put(4L, "new", 30);
+
+    assertNotNull(cache.peek(1L));
+    assertNotNull(cache.peek(2L));
+    assertNull(cache.peek(3L));
+    assertNotNull(cache.peek(4L));
+    assertEquals(90, cache.bytes());
+    assertEquals(1.0, meters.get("ml.artifact.cache.evictions").counter().count());
+
+    cache.pin(Set.of());
+    cache.put(5L, "next", 20);
+    assertNull(cache.peek(1L));
+    assertEquals(70, cache.bytes());
+    assertEquals(1.0, meters.get("ml.artifact.cache.hits").counter().count());
+  }
+}
@@ -0,0 +1,41 @@
+package com.poc.api.ml;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectLinearScorerTest {
+
+  @Test
+  void directScoresMatchTribuoWithinTolerance() {
+    Random rnd = new Random(7);
+    int dim = FeatureVectorSchema.size();
+    List<ModelProvider.TrainingExample> examples = new ArrayList<>();
+    for (int n = 0; n < 500; n++) {
+      boolean legit = rnd.nextInt(4) != 0;
+      double[] v = new double[dim];
+      for (int d = 0; d < dim; d++) v[d] = (d < 4 ? (legit ? 0.7 : 0.3) : 0.1) + (rnd.nextDouble() - 0.5) * 0.5;
+      examples.add(new ModelProvider.TrainingExample(v, legit));
+    }
+
+    ModelProvider tribuo = new ModelProvider(null, new SimpleMeterRegistry(), false, 64L << 20);
+    tribuo.train(examples, null);
+    ModelProvider direct = new ModelProvider(null, new SimpleMeterRegistry(), true, 64L << 20);
+    direct.train(examples, null);
+
+    boolean varied = false;
+    for (int n = 0; n < 1000; n++) {
+      double d = rnd.nextDouble(), b = rnd.nextDouble(), t = rnd.nextDouble(), c = rnd.nextDouble();
+      double expected = tribuo.predictWithModelId(0L, d, b, t, c);
+      assertEquals(expected, direct.predictWithModelId(0L, d, b, t, c), DirectLinearScorer.TOLERANCE);
+      varied |= Math.abs(expected - 0.5) > 0.01;
+    }
+    assertTrue(varied, "model should produce non-constant scores");
+  }
+}
@@ -0,0 +1,37 @@
+package com.poc.api.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class FeatureVectorSchemaTest {
+
+  @Test
+  void storedLayoutRoundTripsTheBreakdownItKnows() {
+    Map<String, Double> breakdown = new LinkedHashMap<>();
+    breakdown.put(FeatureVectorSchema.DEVICE_SCORE, 0.9);
+    breakdown.put(FeatureVectorSchema.TLS_SCORE, 0.4);
+    breakdown.put("policy_matched", 1.0);
+    breakdown.put("user_sessions_30d", 12.0);
+    breakdown.put("behavior_z_mouse_distance", -1.5);
+    breakdown.put("not_in_layout", 3.0);
+
+    double[] stored = FeatureVectorSchema.toStored(breakdown);
+    assertEquals(FeatureVectorSchema.storedNames().size(), stored.length);
+
+    Map<String, Double> back = FeatureVectorSchema.storedToMap(stored);
+    assertEquals(5, back.size());
+    assertEquals(0.4, back.get(FeatureVectorSchema.TLS_SCORE));
+    assertEquals(-1.5, back.get("behavior_z_mouse_distance"));
+    assertFalse(back.containsKey(FeatureVectorSchema.BEHAVIOR_SCORE));
+    assertFalse(back.containsKey("not_in_layout"));
+
+    double[] model = FeatureVectorSchema.fromStored(stored);
+    assertArrayEquals(FeatureVectorSchema.fromBreakdown(breakdown), model);
+  }
+}
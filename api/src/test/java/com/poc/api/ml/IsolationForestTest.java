@@ -0,0 +1,68 @@
+package com.poc.api.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IsolationForestTest {
+
+  @Test
+  void legacyArtifactLoadsAndScoresAsBefore() throws Exception {
+    // Written by the linked-TreeNode implementation: 20 trees, subsample 64, seed 42.
+    IsolationForest forest;
+    try (InputStream in = getClass().getResourceAsStream("/ml/legacy-isolation-forest.ser")) {
+      assertNotNull(in);
+      forest = (IsolationForest) new ObjectInputStream(in).readObject();
+    }
+    double[] expected = {
+        0.49521508502974887, 0.5755118378617167, 0.5601583710826173, 0.5540539087972293, 0.5703521001215338
+    };
+    Random q = new Random(9);
+    for (double e : expected) {
+      assertEquals(e, forest.score(randomPoint(q)), 1e-12);
+    }
+  }
+
+  @Test
+  void fitIsDeterministicAndSurvivesSerialization() throws Exception {
+    Random r = new Random(1);
+    List<double[]> data = new ArrayList<>();
+    for (int i = 0; i < 500; i++) data.add(randomPoint(r));
+
+    IsolationForest a = new IsolationForest(50, 256, 42L);
+    a.fit(data);
+    IsolationForest b = new IsolationForest(50, 256, 42L);
+    b.fit(data);
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(a);
+    }
+    IsolationForest c = (IsolationForest) new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+
+    double[] outlier = new double[10];
+    java.util.Arrays.fill(outlier, 5.0);
+    for (double[] p : List.of(data.get(0), data.get(1), outlier)) {
+      assertEquals(a.score(p), b.score(p), 0.0);
+      assertEquals(a.score(p), c.score(p), 0.0);
+    }
+    assertTrue(a.score(outlier) > a.score(data.get(0)));
+  }
+
+  private static double[] randomPoint(Random r) {
+    double[] v = new double[10];
+    for (int d = 0; d < v.length; d++) v[d] = r.nextDouble();
+    return v;
+  }
+}
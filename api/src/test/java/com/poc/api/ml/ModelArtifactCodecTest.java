@@ -0,0 +1,66 @@
+package com.poc.api.ml;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelArtifactCodecTest {
+
+  @Test
+  void binaryArtifactScoresLikeTheTrainedModel() {
+    Random rnd = new Random(11);
+    int dim = FeatureVectorSchema.size();
+    List<ModelProvider.TrainingExample> examples = new ArrayList<>();
+    for (int n = 0; n < 500; n++) {
+      boolean legit = rnd.nextInt(4) != 0;
+      double[] v = new double[dim];
+      for (int d = 0; d < dim; d++) v[d] = (d < 4 ? (legit ? 0.7 : 0.3) : 0.1) + (rnd.nextDouble() - 0.5) * 0.5;
+      examples.add(new ModelProvider.TrainingExample(v, legit));
+    }
+
+    ModelProvider trained = new ModelProvider(null, new SimpleMeterRegistry(), false, 64L << 20);
+    trained.train(examples, null);
+    ModelProvider.ExportedArtifact exported = trained.exportArtifact();
+    assertEquals(ModelArtifactCodec.FORMAT, exported.format());
+    assertTrue(ModelArtifactCodec.isBinary(exported.bytes()));
+
+    ModelProvider loaded = new ModelProvider(null, new SimpleMeterRegistry(), false, 64L << 20);
+    loaded.setActiveFromRegistry(7L, exported.bytes());
+    assertFalse(loaded.isRulesOnly(7L));
+    assertEquals(trained.getModelVersion(), loaded.getModelVersion());
+    for (int n = 0; n < 200; n++) {
+      double d = rnd.nextDouble(), b = rnd.nextDouble(), t = rnd.nextDouble(), c = rnd.nextDouble();
+      assertEquals(trained.predictWithModelId(0L, d, b, t, c), loaded.predictWithModelId(0L, d, b, t, c),
+          DirectLinearScorer.TOLERANCE);
+      assertEquals(trained.anomalyScore(d, b, t, c), loaded.anomalyScore(d, b, t, c), 0.0);
+    }
+  }
+
+  @Test
+  void corruptArtifactIsRejected() {
+    ModelProvider trained = new ModelProvider(null, new SimpleMeterRegistry(), true, 64L << 20);
+    trained.train(List.of(
+        new ModelProvider.TrainingExample(new double[FeatureVectorSchema.size()], true),
+        new ModelProvider.TrainingExample(filled(1.0), false)), null);
+    byte[] bytes = trained.exportArtifact().bytes();
+    bytes[bytes.length / 2] ^= 0x5a;
+
+    ModelProvider loaded = new ModelProvider(null, new SimpleMeterRegistry(), true, 64L << 20);
+    loaded.setActiveFromRegistry(3L, bytes);
+    assertTrue(loaded.isRulesOnly(3L));
+  }
+
+  private static double[] filled(double value) {
+    double[] v = new double[FeatureVectorSchema.size()];
+    Arrays.fill(v, value);
+    return v;
+  }
+}
@@ -0,0 +1,51 @@
+package com.poc.api.ml.service;
+
+import com.poc.api.ml.ModelProvider;
+import com.poc.api.ml.persistence.ModelCanaryPolicyRepository;
+import com.poc.api.ml.persistence.ModelRegistryRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ModelRoutingTest {
+
+  @Test
+  void selectionIsServedFromSnapshotUntilRoutingChanges() {
+    ModelRegistryRepository registry = Mockito.mock(ModelRegistryRepository.class);
+    ModelCanaryPolicyRepository canaries = Mockito.mock(ModelCanaryPolicyRepository.class);
+    when(registry.findActiveId()).thenReturn(Optional.of(3L));
+    when(canaries.get(anyString(), anyString(), anyString())).thenReturn(Optional.empty());
+    ModelProvider models = Mockito.mock(ModelProvider.class);
+    ModelRouting routing = new ModelRouting(registry, canaries, models, true);
+
+    for (int i = 0; i < 10; i++) {
+      ModelRouting.Selection s = routing.select("u1", "req-" + i);
+      assertEquals(3L, s.modelId());
+      assertFalse(s.canary());
+    }
+    verify(registry, times(1)).findActiveId();
+    verify(registry, never()).findActive();
+
+    when(canaries.get("risk-model", "GLOBAL", "*")).thenReturn(Optional.of(
+        new ModelCanaryPolicyRepository.CanaryPolicy(1, null, null, "risk-model", "GLOBAL", "*", 9L, 100, true)));
+    routing.onRoutingChanged(new ModelRoutingChangedEvent("CANARY_START", 9L));
+
+    ModelRouting.Selection s = routing.select("u1", "req-x");
+    assertEquals(9L, s.modelId());
+    assertTrue(s.canary());
+    verify(registry, times(2)).findActiveId();
+    verify(models).pinModels(Set.of(3L));
+    verify(models).pinModels(Set.of(3L, 9L));
+  }
+}
@@ -0,0 +1,56 @@
+package com.poc.api.ml.service;
+
+import com.poc.api.ml.FeatureVectorSchema;
+import com.poc.api.ml.ModelProvider;
+import com.poc.api.ml.persistence.ModelShadowRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class ShadowScoringServiceTest {
+
+  @Test
+  void candidateIsScoredWithTheLiveInputsAndWrittenInABatch() {
+    Random rnd = new Random(5);
+    List<ModelProvider.TrainingExample> examples = new ArrayList<>();
+    for (int n = 0; n < 300; n++) {
+      boolean legit = rnd.nextInt(4) != 0;
+      double[] v = new double[FeatureVectorSchema.size()];
+      for (int d = 0; d < v.length; d++) v[d] = (d < 4 ? (legit ? 0.7 : 0.3) : 0.1) + (rnd.nextDouble() - 0.5) * 0.5;
+      examples.add(new ModelProvider.TrainingExample(v, legit));
+    }
+    ModelProvider models = new ModelProvider(null, new SimpleMeterRegistry(), true, 64L << 20);
+    models.train(examples, null);
+    models.setActiveFromRegistry(5L, models.exportArtifact().bytes());
+
+    ModelShadowRepository repo = Mockito.mock(ModelShadowRepository.class);
+    when(repo.listCandidates()).thenReturn(List.of(new ModelShadowRepository.Candidate(5L, 100, true, null)));
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    ShadowScoringService shadow = new ShadowScoringService(repo, models, meters, true, 1, 10, 10, 100, 3);
+    shadow.refreshCandidates();
+    assertTrue(shadow.isActive());
+
+    shadow.score(new ShadowScoringService.ShadowInput("req-1", 0L, 0.5, "CHALLENGE", 0.9, 0.8, 0.9, 0.7,
+        p -> p > 0.6 ? "ALLOW" : "CHALLENGE"));
+    shadow.flush();
+
+    ArgumentCaptor<List<ModelShadowRepository.ShadowScore>> rows = ArgumentCaptor.forClass(List.class);
+    verify(repo).insertBatch(rows.capture());
+    ModelShadowRepository.ShadowScore row = rows.getValue().get(0);
+    assertEquals(5L, row.shadowModelId());
+    assertEquals(models.predictWithModelId(5L, 0.9, 0.8, 0.9, 0.7), row.shadowPLegit(), 1e-12);
+    assertEquals(row.shadowPLegit() > 0.6 ? "ALLOW" : "CHALLENGE", row.shadowDecision());
+    assertEquals(1.0, meters.get("ml.shadow.scored").counter().count());
+  }
+}
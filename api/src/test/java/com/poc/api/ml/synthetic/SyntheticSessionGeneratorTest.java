@@ -0,0 +1,86 @@
+package com.poc.api.ml.synthetic;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticSessionGeneratorTest {
+
+  @Test
+  void legitimateSessionsReuseTheUsersStableDevices() {
+    SyntheticSessionGenerator.Config config = new SyntheticSessionGenerator.Config(5, 1, 5, 0, 0, 0, 42L, "t");
+    List<SyntheticSessionGenerator.Session> sessions = new SyntheticSessionGenerator(config).generate(5, 4);
+
+    assertEquals(20, sessions.size());
+    for (int i = 5; i < sessions.size(); i++) {
+      SyntheticSessionGenerator.Session first = sessions.get(i % 5);
+      SyntheticSessionGenerator.Session again = sessions.get(i);
+      assertEquals(first.telemetry().user_id_hint(), again.telemetry().user_id_hint());
+      assertEquals(first.tlsFp(), again.tlsFp());
+      assertEquals(first.tlsMeta(), again.tlsMeta());
+      assertEquals(first.telemetry().device().canvas_hash(), again.telemetry().device().canvas_hash());
+      assertEquals(first.telemetry().context().get("country"), again.telemetry().context().get("country"));
+    }
+    assertNotEquals(sessions.get(0).tlsFp(), sessions.get(1).tlsFp());
+    assertEquals(sessions, new SyntheticSessionGenerator(config).generate(5, 4));
+  }
+
+  @Test
+  void tlsChangeKeepsTheDeviceButPresentsANewCertificate() {
+    SyntheticSessionGenerator.Config legit = new SyntheticSessionGenerator.Config(1, 1, 5, 0, 0, 0, 7L, "t");
+    SyntheticSessionGenerator.Config rotated = new SyntheticSessionGenerator.Config(1, 1, 5, 0, 0, 1.0, 7L, "t");
+    SyntheticSessionGenerator.Session own = new SyntheticSessionGenerator(legit).generate(1, 1).get(0);
+    SyntheticSessionGenerator.Session changed = new SyntheticSessionGenerator(rotated).generate(1, 1).get(0);
+
+    assertEquals(SyntheticSessionGenerator.FraudPattern.TLS_CHANGE, changed.pattern());
+    assertEquals(own.telemetry().device(), changed.telemetry().device());
+    assertNotEquals(own.tlsMeta(), changed.tlsMeta());
+    assertNotEquals(own.tlsFp(), changed.tlsFp());
+  }
+
+  @Test
+  void sameSeedReplaysTheSameSessionsWhateverTheThreadCount() throws Exception {
+    SyntheticSessionGenerator.Config config = new SyntheticSessionGenerator.Config(50, 3, 5, 0.1, 0.1, 0.1, 9L, "t");
+    Map<String, SyntheticSessionGenerator.Session> single = record(config, 1);
+    Map<String, SyntheticSessionGenerator.Session> parallel = record(config, 4);
+
+    assertEquals(500, single.size());
+    assertEquals(single, parallel);
+  }
+
+  private static Map<String, SyntheticSessionGenerator.Session> record(SyntheticSessionGenerator.Config config,
+                                                                       int threads) throws Exception {
+    Map<String, SyntheticSessionGenerator.Session> seen = new ConcurrentHashMap<>();
+    SyntheticLoadDriver driver = new SyntheticLoadDriver(new SyntheticSessionGenerator(config), s -> {
+      seen.put(s.requestId(), s);
+      return "ALLOW";
+    });
+    driver.run(new SyntheticLoadDriver.Options(threads, 0, Duration.ofSeconds(30), 500));
+    return seen;
+  }
+
+  @Test
+  void driverReportsEverySessionItSent() throws Exception {
+    SyntheticSessionGenerator.Config config = new SyntheticSessionGenerator.Config(50, 3, 5, 0.1, 0.1, 0.1, 1L, "t");
+    SyntheticLoadDriver driver = new SyntheticLoadDriver(new SyntheticSessionGenerator(config),
+        s -> s.pattern() == SyntheticSessionGenerator.FraudPattern.NONE ? "ALLOW" : "STEP_UP");
+
+    SyntheticLoadDriver.Report report = driver.run(new SyntheticLoadDriver.Options(4, 0, Duration.ofSeconds(30), 2000));
+
+    assertEquals(2000, report.sent());
+    assertEquals(0, report.errors());
+    assertEquals(2000, report.decisions().values().stream().mapToLong(Long::longValue).sum());
+    assertEquals(report.decisions().get("STEP_UP"), report.patterns().entrySet().stream()
+        .filter(e -> e.getKey() != SyntheticSessionGenerator.FraudPattern.NONE)
+        .mapToLong(e -> e.getValue()).sum());
+    assertTrue(report.patterns().get(SyntheticSessionGenerator.FraudPattern.DEVICE_FARM) > 0);
+    assertTrue(report.achievedRate() > 0);
+  }
+}
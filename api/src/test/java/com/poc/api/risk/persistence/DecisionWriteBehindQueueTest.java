@@ -0,0 +1,42 @@
+package com.poc.api.risk.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DecisionWriteBehindQueueTest {
+
+  @Test
+  void failedBatchIsRetriedPerCallAndOnlyTheBadPairIsDropped() {
+    SessionFeatureRepository features = Mockito.mock(SessionFeatureRepository.class);
+    DecisionLogRepository decisions = Mockito.mock(DecisionLogRepository.class);
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    DecisionWriteBehindQueue queue = new DecisionWriteBehindQueue(features, decisions,
+        TransactionOperations.withoutTransaction(), meters, false, 10, 10, 10, 0, 0);
+
+    DecisionLogRepository.NewDecisionLog good = new DecisionLogRepository.NewDecisionLog("s1", "u1", "fp", 0.5, 0.5, 0.5, 0.9, "ALLOW");
+    DecisionLogRepository.NewDecisionLog bad = new DecisionLogRepository.NewDecisionLog("s2", "u1", "fp", 0.5, 0.5, 0.5, 0.9, "ALLOW");
+    SessionFeatureRepository.NewSessionFeature f1 = Mockito.mock(SessionFeatureRepository.NewSessionFeature.class);
+    SessionFeatureRepository.NewSessionFeature f2 = Mockito.mock(SessionFeatureRepository.NewSessionFeature.class);
+    doThrow(new IllegalStateException("batch failed")).when(decisions).insertBatch(anyList());
+    doThrow(new IllegalStateException("bad row")).when(decisions).insert(bad);
+
+    queue.flush(List.of(new DecisionWriteBehindQueue.PendingWrite(f1, good),
+        new DecisionWriteBehindQueue.PendingWrite(f2, bad)));
+
+    verify(features, times(1)).insert(f1);
+    verify(decisions, times(1)).insert(good);
+    assertEquals(2.0, meters.counter("risk.writebehind.rows").count());
+    assertEquals(2.0, meters.counter("risk.writebehind.dropped").count());
+    assertEquals(1.0, meters.counter("risk.writebehind.flush.errors").count());
+  }
+}
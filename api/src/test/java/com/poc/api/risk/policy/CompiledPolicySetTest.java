@@ -0,0 +1,113 @@
+package com.poc.api.risk.policy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.admin.dto.PolicyRule;
+import com.poc.api.admin.dto.PolicyScope;
+import com.poc.api.admin.service.PolicyRuleService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class CompiledPolicySetTest {
+
+  private final ObjectMapper om = new ObjectMapper();
+
+  @Test
+  void compiledPathMatchesInterpretedPath() {
+    Random rnd = new Random(42);
+    List<PolicyRule> rules = new ArrayList<>();
+    String[] conditions = {
+        "{\"vpn\": true}",
+        "{\"country\": {\"in\": [\"GB\", \"US\"]}}",
+        "{\"scores.p_legit\": {\"lt\": 0.4}}",
+        "{\"scores.anomaly\": {\"gte\": 0.7}, \"device.new\": true}",
+        "{\"decision\": {\"neq\": \"ALLOW\"}}",
+        "{\"country\": {\"eq\": \"FR\"}}",
+        "{\"user.device_count\": {\"gt\": 3}}",
+        "{\"missing.key\": {\"contains\": \"x\"}}",
+        "not json",
+        "{}"
+    };
+    for (int i = 1; i <= 300; i++) {
+      PolicyScope scope = PolicyScope.values()[rnd.nextInt(3)];
+      String ref = scope == PolicyScope.GLOBAL ? null : (scope == PolicyScope.USER ? "u" : "t") + rnd.nextInt(4);
+      rules.add(new PolicyRule(i, scope, ref, rnd.nextInt(5), rnd.nextInt(10) > 0,
+          conditions[rnd.nextInt(conditions.length)],
+          "{\"confidence_cap\": 0.5, \"reason\": \"r" + i + "\"}",
+          "rule " + i, null, null));
+    }
+    rules.sort(Comparator.comparingInt(PolicyRule::getPriority).reversed()
+        .thenComparing(Comparator.comparingLong(PolicyRule::getId).reversed()));
+
+    PolicyEngine engine = engineOver(rules);
+
+    String[] countries = {"GB", "US", "FR", "DE", null};
+    for (int n = 0; n < 2000; n++) {
+      Map<String, Object> ctx = new LinkedHashMap<>();
+      ctx.put("decision", rnd.nextBoolean() ? "ALLOW" : "STEP_UP");
+      ctx.put("vpn", rnd.nextBoolean());
+      ctx.put("device.new", rnd.nextBoolean());
+      String c = countries[rnd.nextInt(countries.length)];
+      if (c != null) ctx.put("country", c);
+      ctx.put("scores.p_legit", rnd.nextDouble());
+      if (rnd.nextBoolean()) ctx.put("scores.anomaly", rnd.nextDouble());
+      ctx.put("user.device_count", rnd.nextInt(6));
+      PolicyContext pc = PolicyEngine.context(ctx);
+      String tenant = rnd.nextBoolean() ? "t" + rnd.nextInt(4) : null;
+      String user = "u" + rnd.nextInt(5);
+
+      PolicyOutcome compiled = engine.evaluate(tenant, user, pc);
+      PolicyOutcome interpreted = engine.evaluateInterpreted(tenant, user, pc);
+      assertEquals(interpreted.matched(), compiled.matched());
+      assertEquals(interpreted.policyId(), compiled.policyId());
+    }
+  }
+
+  @Test
+  void missingRequiredKeySkipsRuleButNeqStillMatches() {
+    List<PolicyRule> rules = List.of(
+        new PolicyRule(1, PolicyScope.GLOBAL, null, 10, true,
+            "{\"scores.anomaly\": {\"gt\": 0.1}}", "{\"reason\": \"anomaly\"}", "a", null, null),
+        new PolicyRule(2, PolicyScope.GLOBAL, null, 5, true,
+            "{\"country\": {\"neq\": \"GB\"}}", "{\"reason\": \"not gb\"}", "b", null, null)
+    );
+    CompiledPolicySet set = CompiledPolicySet.compile(rules, om);
+
+    var hit = set.firstMatch(null, null, Map.of("decision", "ALLOW"));
+    assertEquals(2L, hit.id());
+    assertTrue(set.referencedKeys().contains("scores.anomaly"));
+    assertFalse(set.firstMatch(null, null, Map.of("country", "GB")) != null);
+  }
+
+  private PolicyEngine engineOver(List<PolicyRule> rules) {
+    PolicyRuleService svc = Mockito.mock(PolicyRuleService.class);
+    when(svc.listAll()).thenReturn(rules);
+    when(svc.resolveEffectivePolicies(any(), any())).thenAnswer(inv -> {
+      String tenantId = inv.getArgument(0);
+      String userId = inv.getArgument(1);
+      List<PolicyRule> out = new ArrayList<>();
+      for (PolicyScope scope : List.of(PolicyScope.USER, PolicyScope.TENANT, PolicyScope.GLOBAL)) {
+        for (PolicyRule r : rules) {
+          if (!r.isEnabled() || r.getScope() != scope) continue;
+          if (scope == PolicyScope.USER && (userId == null || !userId.equals(r.getScopeRef()))) continue;
+          if (scope == PolicyScope.TENANT && (tenantId == null || !tenantId.equals(r.getScopeRef()))) continue;
+          out.add(r);
+        }
+      }
+      return out;
+    });
+    return new PolicyEngine(svc, om, true);
+  }
+}
@@ -0,0 +1,52 @@
+package com.poc.api.risk.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ScoringMetricsTest {
+
+  @Test
+  void stagesAreRecordedWithModelAndDecisionTags() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ScoringMetrics metrics = new ScoringMetrics(registry, true, false);
+
+    ScoringMetrics.Sample sample = metrics.start();
+    sample.record(ScoringMetrics.Stage.DEVICE, 1_000_000);
+    long mark = sample.mark();
+    sample.lap(ScoringMetrics.Stage.MODEL, mark);
+    metrics.finish(sample, 7L, "STEP_UP", true, true, false);
+
+    assertEquals(1, registry.get("risk.score.stage")
+        .tags("stage", "device", "model", "7", "decision", "STEP_UP").timer().count());
+    assertEquals(1, registry.get("risk.score.stage").tags("stage", "model").timer().count());
+    assertNull(registry.find("risk.score.stage").tags("stage", "policy").timer());
+    assertEquals(1, registry.get("risk.score").tags("model", "7").timer().count());
+    assertEquals(1.0, registry.get("risk.score.policy.matches").tags("decision", "STEP_UP").counter().count());
+    assertEquals(1.0, registry.get("risk.score.canary").tags("model", "7").counter().count());
+    assertEquals(0.0, registry.get("risk.score.rules_only").counter().count());
+  }
+
+  @Test
+  void disabledSamplesRecordNothing() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ScoringMetrics metrics = new ScoringMetrics(registry, false, true);
+
+    ScoringMetrics.Sample sample = metrics.start();
+    assertFalse(sample.isActive());
+    assertEquals(0L, sample.mark());
+    sample.record(ScoringMetrics.Stage.TLS, 5);
+    metrics.finish(sample, 0L, "ALLOW", true, false, true);
+
+    assertNull(registry.find("risk.score").timer());
+    assertNull(registry.find("risk.score.stage").timer());
+    metrics.fallback(sample, ScoringMetrics.Stage.DEVICE, 5);
+    metrics.stageError(ScoringMetrics.Stage.TLS);
+    assertNull(registry.find("risk.score.stage.fallback").counter());
+    assertNull(registry.find("risk.score.stage.errors").counter());
+    assertEquals(0.0, registry.get("risk.score.rules_only").counter().count());
+  }
+}
@@ -0,0 +1,90 @@
+package com.poc.api.risk.service;
+
+import com.poc.api.showcase.service.TlsFamilyService;
+import com.poc.api.telemetry.dto.Telemetry;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.service.BehaviorStatsService;
+import com.poc.api.telemetry.service.DeviceProfileService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+class ScoringStagesTest {
+
+  private static final Telemetry TELEMETRY = new Telemetry("u1",
+      new Telemetry.Device("ua", null, null, null, null, null, 0, null, null, null),
+      new Telemetry.Behavior(0, 0.0, 0, 0.0, 0, 0.0, 0.0, 0.0, 0.0),
+      Map.of());
+
+  @Test
+  void slowStageFallsBackToNeutralResultWhileOthersComplete() {
+    TlsFamilyService tls = Mockito.mock(TlsFamilyService.class);
+    DeviceProfileService devices = Mockito.mock(DeviceProfileService.class);
+    BehaviorStatsService behavior = Mockito.mock(BehaviorStatsService.class);
+    UserReputationService reputation = Mockito.mock(UserReputationService.class);
+
+    var obs = new TlsFamilyService.Observation("fam", "key", 0.9, 0.0, true);
+    when(tls.observe(anyString(), anyString(), anyString())).thenReturn(obs);
+    DeviceProfile described = new DeviceProfile();
+    when(devices.describe(anyString(), anyString(), any(), any())).thenReturn(described);
+    when(devices.upsert(anyString(), anyString(), any(), any())).thenAnswer(inv -> {
+      Thread.sleep(2_000);
+      return new DeviceProfile();
+    });
+    var sim = new BehaviorStatsService.BehaviorSimilarityResult(0.8, Map.of());
+    when(behavior.updateAndComputeSimilarity(anyString(), any())).thenReturn(sim);
+    var rep = new UserReputationService.Reputation(0.9, 0.1, 1, 1, 1, 0.9, 3);
+    when(reputation.evaluate("u1")).thenReturn(rep);
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ScoringMetrics metrics = new ScoringMetrics(registry, true, false);
+    ScoringStages stages = new ScoringStages(tls, devices, behavior, reputation, metrics,
+        true, 500, 100, 500, 500);
+    try {
+      ScoringMetrics.Sample sample = metrics.start();
+      ScoringStages.Results r = stages.run("u1", "fp", "meta", "NZ", TELEMETRY, sample);
+      metrics.finish(sample, 1L, "ALLOW", false, false, false);
+
+      assertSame(obs, r.tls());
+      assertSame(sim, r.behavior());
+      assertSame(rep, r.reputation());
+      assertTrue(r.profileFallback());
+      assertSame(described, r.profile());
+      assertEquals(1.0, registry.get("risk.score.stage.fallback").tags("stage", "device").counter().count());
+      assertEquals(1, registry.get("risk.score.stage").tags("stage", "device", "outcome", "fallback").timer().count());
+      assertEquals(1, registry.get("risk.score.stage").tags("stage", "tls", "outcome", "ok").timer().count());
+      assertNull(registry.find("risk.scoring.stage").timer());
+    } finally {
+      stages.shutdown();
+    }
+  }
+
+  @Test
+  void disabledFanOutRunsStagesInline() {
+    TlsFamilyService tls = Mockito.mock(TlsFamilyService.class);
+    DeviceProfileService devices = Mockito.mock(DeviceProfileService.class);
+    BehaviorStatsService behavior = Mockito.mock(BehaviorStatsService.class);
+    UserReputationService reputation = Mockito.mock(UserReputationService.class);
+    DeviceProfile saved = new DeviceProfile();
+    saved.seenCount = 4;
+    when(devices.upsert(anyString(), anyString(), any(), any())).thenReturn(saved);
+
+    ScoringStages stages = new ScoringStages(tls, devices, behavior, reputation,
+        new ScoringMetrics(new SimpleMeterRegistry(), true, false), false, 500, 500, 500, 500);
+    ScoringStages.Results r = stages.run("u1", "fp", "meta", "NZ", TELEMETRY);
+
+    assertSame(saved, r.profile());
+    assertFalse(r.profileFallback());
+  }
+}
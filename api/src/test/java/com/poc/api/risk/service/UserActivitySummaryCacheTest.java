@@ -0,0 +1,108 @@
+package com.poc.api.risk.service;
+
+import com.poc.api.risk.persistence.DecisionLogRepository;
+import com.poc.api.risk.persistence.DecisionLogRow;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserActivitySummaryCacheTest {
+
+  private final DeviceProfileRepository devices = Mockito.mock(DeviceProfileRepository.class);
+  private final DecisionLogRepository decisions = Mockito.mock(DecisionLogRepository.class);
+  private final UserActivitySummaryCache cache =
+      new UserActivitySummaryCache(devices, decisions, new SimpleMeterRegistry(), true, 1000, 4, 60_000);
+
+  @Test
+  void loadsOnceThenTracksWritesIncrementally() {
+    when(devices.findSummaryByUser("u1")).thenReturn(List.of(
+        device(1, "fpA", "GB"), device(2, "fpA", "FR"), device(3, "fpB", " ")));
+    OffsetDateTime now = OffsetDateTime.now();
+    when(decisions.findRecentConfidenceByUser(eq("u1"), anyInt())).thenReturn(List.of(
+        decision(0.9, now.minusDays(1)), decision(0.5, now.minusDays(40))));
+
+    UserActivitySummaryCache.Snapshot s = cache.get("u1");
+    assertEquals(3, s.deviceCount());
+    assertEquals(2, s.tlsFingerprintCount());
+    assertEquals(2, s.countryCount());
+    assertEquals(0.7, s.avgConfidenceRecent(), 1e-12);
+    assertEquals(1, s.sessionsLast30d());
+
+    // Device 2 moves FR -> GB, a new device appears, one more decision is written.
+    cache.onDeviceProfile(device(2, "fpA", "GB"));
+    cache.onDeviceProfile(device(4, "fpC", "US"));
+    cache.onDecision("u1", 0.1);
+
+    s = cache.get("u1");
+    assertEquals(4, s.deviceCount());
+    assertEquals(3, s.tlsFingerprintCount());
+    assertEquals(2, s.countryCount()); // GB, US
+    assertEquals(0.5, s.avgConfidenceRecent(), 1e-12);
+    assertEquals(2, s.sessionsLast30d());
+    verify(devices, times(1)).findSummaryByUser("u1");
+  }
+
+  @Test
+  void writesDuringALoadAreReplayedOntoTheLoadedSummary() {
+    // The rows come back from the DB without the writes that race with the load.
+    when(devices.findSummaryByUser("u3")).thenAnswer(inv -> {
+      DeviceProfile raced = device(9, "fpZ", "NZ");
+      raced.userId = "u3";
+      cache.onDeviceProfile(raced);
+      return List.of(device(1, "fpA", "GB"));
+    });
+    when(decisions.findRecentConfidenceByUser(eq("u3"), anyInt())).thenAnswer(inv -> {
+      cache.onDecision("u3", 0.2);
+      return List.of(decision(0.8, OffsetDateTime.now().minusDays(1)));
+    });
+
+    UserActivitySummaryCache.Snapshot s = cache.get("u3");
+    assertEquals(2, s.deviceCount());
+    assertEquals(2, s.countryCount());
+    assertEquals(0.5, s.avgConfidenceRecent(), 1e-12);
+    assertEquals(2, s.sessionsLast30d());
+  }
+
+  @Test
+  void keepsOnlyTheNewestHundredDecisions() {
+    when(devices.findSummaryByUser("u2")).thenReturn(List.of());
+    when(decisions.findRecentConfidenceByUser(eq("u2"), anyInt())).thenReturn(new ArrayList<>());
+    assertEquals(0.5, cache.get("u2").avgConfidenceRecent(), 0.0);
+
+    for (int i = 0; i < UserActivitySummaryCache.RECENT; i++) cache.onDecision("u2", 0.0);
+    for (int i = 0; i < 50; i++) cache.onDecision("u2", 1.0);
+
+    UserActivitySummaryCache.Snapshot s = cache.get("u2");
+    assertEquals(0.5, s.avgConfidenceRecent(), 1e-12);
+    assertEquals(UserActivitySummaryCache.RECENT, s.sessionsLast30d());
+  }
+
+  private static DeviceProfile device(long id, String tlsFp, String country) {
+    DeviceProfile p = new DeviceProfile();
+    p.id = id;
+    p.userId = "u1";
+    p.tlsFp = tlsFp;
+    p.lastCountry = country;
+    return p;
+  }
+
+  private static DecisionLogRow decision(double confidence, OffsetDateTime at) {
+    DecisionLogRow r = new DecisionLogRow();
+    r.confidence = confidence;
+    r.createdAt = at;
+    return r;
+  }
+}
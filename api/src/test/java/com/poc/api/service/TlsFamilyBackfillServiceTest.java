@@ -8,6 +8,7 @@ import org.mockito.Mockito;
 
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -17,17 +18,20 @@ import static org.mockito.Mockito.*;
 class TlsFamilyBackfillServiceTest {
 
   @Test
+  @SuppressWarnings("unchecked")
   void backfill_isIdempotentAndRecomputesScoresOncePerFamily() {
     TlsFamilyRepository repo = Mockito.mock(TlsFamilyRepository.class);
 
     // Two batches:
     // batch1 returns fpA, fpB; batch2 returns fpC; batch3 returns empty -> stop
-    when(repo.listUnclassifiedObservedTlsFps(eq(""), eq(2))).thenReturn(List.of("fpA", "fpB"));
-    when(repo.listUnclassifiedObservedTlsFps(eq("fpB"), eq(2))).thenReturn(List.of("fpC"));
-    when(repo.listUnclassifiedObservedTlsFps(eq("fpC"), eq(2))).thenReturn(List.of());
+    when(repo.queueUnclassifiedTlsFps()).thenReturn(3L);
+    when(repo.listBackfillWork(eq(""), eq(2))).thenReturn(List.of("fpA", "fpB"));
+    when(repo.listBackfillWork(eq("fpB"), eq(2))).thenReturn(List.of("fpC"));
+    when(repo.listBackfillWork(eq("fpC"), eq(2))).thenReturn(List.of());
 
-    // tls_meta best-effort
-    when(repo.findLatestTlsMetaForFp(anyString())).thenReturn("sub=CN=test;iss=CN=iss");
+    // tls_meta best-effort, one lookup per batch
+    when(repo.findLatestTlsMetaForFps(anyCollection()))
+        .thenAnswer(inv -> Map.of("fpA", "sub=CN=test;iss=CN=iss", "fpC", "sub=CN=test;iss=CN=iss"));
 
     // family stats: provide a row so scoring can run
     TlsFamilyRepository.FamilyStats stats = new TlsFamilyRepository.FamilyStats();
@@ -38,7 +42,7 @@ class TlsFamilyBackfillServiceTest {
     stats.variantCount = 2;
     when(repo.getFamilyStats(anyString())).thenReturn(Optional.of(stats));
 
-    TlsFamilyBackfillService svc = new TlsFamilyBackfillService(repo);
+    TlsFamilyBackfillService svc = new TlsFamilyBackfillService(repo, 2);
     var res = svc.backfill(2, 10);
 
     assertEquals(3, res.processed());
@@ -47,9 +51,18 @@ class TlsFamilyBackfillServiceTest {
     assertEquals(true, res.complete());
     assertEquals("fpC", res.lastFp());
 
-    // Each FP causes family+member upsert
-    verify(repo, times(3)).upsertFamily(anyString(), anyString(), anyString(), anyString());
-    verify(repo, times(3)).upsertMember(anyString(), anyString(), anyString());
+    assertEquals(3, res.queued());
+
+    // Each FP becomes one member row; families and members are written once per batch.
+    ArgumentCaptor<List<TlsFamilyRepository.MemberUpsert>> members = ArgumentCaptor.forClass(List.class);
+    verify(repo, times(2)).upsertMembers(members.capture());
+    assertEquals(List.of("fpA", "fpB"), members.getAllValues().get(0).stream().map(TlsFamilyRepository.MemberUpsert::rawTlsFp).toList());
+    assertEquals(List.of("fpC"), members.getAllValues().get(1).stream().map(TlsFamilyRepository.MemberUpsert::rawTlsFp).toList());
+    ArgumentCaptor<List<TlsFamilyRepository.FamilyUpsert>> families = ArgumentCaptor.forClass(List.class);
+    verify(repo, times(2)).upsertFamilies(families.capture());
+    assertEquals(3, families.getAllValues().stream().flatMap(List::stream).mapToLong(TlsFamilyRepository.FamilyUpsert::count).sum());
+    verify(repo).deleteBackfillWork(List.of("fpA", "fpB"));
+    verify(repo).deleteBackfillWork(List.of("fpC"));
 
     // Recompute family stats called once per touched family id.
     // We don't care which family id, only that it's not called more than number of touched families.
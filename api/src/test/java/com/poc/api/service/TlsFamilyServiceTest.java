@@ -0,0 +1,55 @@
+package com.poc.api.service;
+
+import com.poc.api.showcase.persistence.TlsFamilyRepository;
+import com.poc.api.showcase.service.TlsFamilyObservationCache;
+import com.poc.api.showcase.service.TlsFamilyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class TlsFamilyServiceTest {
+
+  private static final String META = "sub=CN=client.example;iss=CN=Example CA";
+
+  @Test
+  void knownFamilySkipsTheDatabaseUntilFlush() {
+    TlsFamilyRepository repo = Mockito.mock(TlsFamilyRepository.class);
+    when(repo.upsertUserFamily(anyString(), anyString())).thenReturn(true);
+    when(repo.touchFamilies(any())).thenReturn(new int[] {1});
+    when(repo.touchMembers(any())).thenReturn(new int[] {1});
+    when(repo.touchUserFamilies(any())).thenReturn(new int[] {1});
+    TlsFamilyObservationCache cache = new TlsFamilyObservationCache(repo, new SimpleMeterRegistry(), true, 100, 100);
+    TlsFamilyService svc = new TlsFamilyService(repo, cache);
+
+    var first = svc.observe("u1", "fp-1", META);
+    var second = svc.observe("u1", "fp-1", META);
+    var third = svc.observe("u1", "fp-1", META);
+
+    assertEquals(1.0, first.familyDrift());
+    assertEquals(0.0, second.familyDrift());
+    assertEquals(second, third);
+    verify(repo, times(1)).upsertFamily(anyString(), anyString(), anyString(), any());
+    verify(repo, times(1)).upsertMember(anyString(), anyString(), any());
+    verify(repo, times(1)).upsertUserFamily("u1", first.familyId());
+    verify(repo, never()).getFamilyStats(anyString());
+
+    cache.flush();
+    ArgumentCaptor<List<TlsFamilyRepository.FamilyTouch>> touches = ArgumentCaptor.forClass(List.class);
+    verify(repo).touchFamilies(touches.capture());
+    assertEquals(1, touches.getValue().size());
+    assertEquals(first.familyId(), touches.getValue().get(0).familyId());
+    assertEquals(2, touches.getValue().get(0).count());
+  }
+}
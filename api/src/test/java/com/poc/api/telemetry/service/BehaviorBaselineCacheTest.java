@@ -0,0 +1,99 @@
+package com.poc.api.telemetry.service;
+
+import com.poc.api.telemetry.dto.Telemetry;
+import com.poc.api.telemetry.persistence.BehaviorStat;
+import com.poc.api.telemetry.persistence.BehaviorStatRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class BehaviorBaselineCacheTest {
+
+  private static final List<Telemetry.Behavior> SESSIONS = List.of(
+      new Telemetry.Behavior(120, 900.0, 40, 180.0, 6, 35.0, 1.2, 0.8, 2.1),
+      new Telemetry.Behavior(100, 760.0, 38, 210.0, 4, 41.0, 0.9, 0.7, 1.8),
+      new Telemetry.Behavior(140, 1300.0, 52, 95.0, 9, 22.0, 2.5, 1.4, 3.9));
+
+  @Test
+  void cachedBaselinesMatchThePerRowPathAndAreFlushed() {
+    // Reference: cache disabled, every feature read and saved through the repository.
+    BehaviorStatRepository dbRepo = Mockito.mock(BehaviorStatRepository.class);
+    Map<String, BehaviorStat> db = new HashMap<>();
+    when(dbRepo.findByUserAndFeature(anyString(), anyString()))
+        .thenAnswer(inv -> Optional.ofNullable(db.get(inv.getArgument(1, String.class))));
+    when(dbRepo.save(any())).thenAnswer(inv -> {
+      BehaviorStat s = inv.getArgument(0);
+      db.put(s.feature, s);
+      return s;
+    });
+    BehaviorStatsService direct = new BehaviorStatsService(dbRepo,
+        new BehaviorBaselineCache(dbRepo, new SimpleMeterRegistry(), false, 100, 4, 1000));
+
+    BehaviorStatRepository repo = Mockito.mock(BehaviorStatRepository.class);
+    when(repo.findByUser("u1")).thenReturn(List.of());
+    BehaviorBaselineCache cache = new BehaviorBaselineCache(repo, new SimpleMeterRegistry(), true, 100, 4, 1000);
+    BehaviorStatsService cached = new BehaviorStatsService(repo, cache);
+
+    for (Telemetry.Behavior b : SESSIONS) {
+      var expected = direct.updateAndComputeSimilarity("u1", b);
+      var actual = cached.updateAndComputeSimilarity("u1", b);
+      assertEquals(expected.score(), actual.score(), 1e-12);
+      assertEquals(expected.zScores(), actual.zScores());
+    }
+    verify(repo, times(1)).findByUser("u1");
+
+    cache.flush();
+    ArgumentCaptor<List<BehaviorStat>> rows = ArgumentCaptor.forClass(List.class);
+    verify(repo).upsertBatch(rows.capture());
+    assertEquals(BehaviorStatsService.FEATURES.length, rows.getValue().size());
+    for (BehaviorStat s : rows.getValue()) {
+      BehaviorStat ref = db.get(s.feature);
+      assertEquals(ref.mean, s.mean, 1e-12);
+      assertEquals(ref.variance, s.variance, 1e-12);
+      assertEquals(ref.decay, s.decay, 1e-12);
+    }
+
+    // Nothing dirty left: a second flush writes nothing.
+    cache.flush();
+    verify(repo, times(1)).upsertBatch(any());
+  }
+
+  @Test
+  void dirtyEntryEvictedBeforeFlushIsStillWritten() {
+    BehaviorStatRepository repo = Mockito.mock(BehaviorStatRepository.class);
+    when(repo.findByUser(anyString())).thenReturn(List.of());
+    // One stripe holding one user: the second user evicts the first.
+    BehaviorBaselineCache cache = new BehaviorBaselineCache(repo, new SimpleMeterRegistry(), true, 1, 1, 1000);
+    BehaviorStatsService svc = new BehaviorStatsService(repo, cache);
+
+    svc.updateAndComputeSimilarity("u1", SESSIONS.get(0));
+    svc.updateAndComputeSimilarity("u2", SESSIONS.get(1));
+    assertEquals(1, cache.size());
+    // Coming back before the flush picks up the evicted entry, not a fresh DB read.
+    svc.updateAndComputeSimilarity("u1", SESSIONS.get(2));
+    verify(repo, times(1)).findByUser("u1");
+
+    cache.flush();
+    ArgumentCaptor<List<BehaviorStat>> rows = ArgumentCaptor.forClass(List.class);
+    verify(repo).upsertBatch(rows.capture());
+    Set<String> users = rows.getValue().stream().map(s -> s.userId).collect(Collectors.toSet());
+    assertEquals(Set.of("u1", "u2"), users);
+    assertEquals(2 * BehaviorStatsService.FEATURES.length, rows.getValue().size());
+  }
+}
@@ -0,0 +1,76 @@
+package com.poc.api.telemetry.service;
+
+import com.poc.api.risk.service.UserActivitySummaryCache;
+import com.poc.api.telemetry.dto.Telemetry;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class DeviceProfileBatchTest {
+
+  private static final Telemetry.Device DEVICE = new Telemetry.Device(
+      "Mozilla/5.0 Chrome/120", null, "Linux", 8, 16.0,
+      new Telemetry.Device.Screen(1920, 1080, 1.0), 0, List.of("en"), "canvas-1", "webgl-1");
+
+  @Test
+  void fetchesEachUserOnceAndCoalescesRepeatSightings() {
+    DeviceProfileRepository repo = Mockito.mock(DeviceProfileRepository.class);
+    DeviceProfile known = new DeviceProfile();
+    known.id = 7L;
+    known.userId = "u1";
+    known.tlsFp = "fp-1";
+    known.canvasHash = "canvas-1";
+    known.seenCount = 3;
+    when(repo.findByUser("u1")).thenReturn(List.of(known));
+    when(repo.findByUser("u2")).thenReturn(List.of());
+    when(repo.insert(any())).thenAnswer(inv -> {
+      DeviceProfile p = inv.getArgument(0);
+      p.id = 8L;
+      p.seenCount = 1;
+      return p;
+    });
+    DeviceProfileService svc = new DeviceProfileService(repo, null, Mockito.mock(UserActivitySummaryCache.class), null);
+
+    DeviceProfile a;
+    DeviceProfile b;
+    DeviceProfile c;
+    DeviceProfile d;
+    try (DeviceProfileService.Batch batch = svc.openBatch()) {
+      a = batch.upsert("u1", "fp-1", "NZ", DEVICE);
+      b = batch.upsert("u1", "fp-1", null, DEVICE);
+      c = batch.upsert("u2", "fp-1", "NZ", DEVICE);
+      d = batch.upsert("u2", "fp-1", "NZ", DEVICE);
+    }
+
+    assertEquals(4, a.seenCount);
+    assertEquals(5, b.seenCount);
+    assertEquals("NZ", b.lastCountry);
+    assertEquals(1, c.seenCount);
+    assertEquals(2, d.seenCount);
+    verify(repo, times(1)).findByUser("u1");
+    verify(repo, times(1)).findByUser("u2");
+    verify(repo, times(1)).insert(any());
+    verify(repo, never()).upsert(any());
+
+    ArgumentCaptor<List<DeviceProfileRepository.DeviceTouch>> touches = ArgumentCaptor.forClass(List.class);
+    verify(repo).touchBatch(touches.capture());
+    assertEquals(2, touches.getValue().size());
+    assertEquals(7L, touches.getValue().get(0).id());
+    assertEquals(2L, touches.getValue().get(0).count());
+    assertEquals("NZ", touches.getValue().get(0).lastCountry());
+    assertEquals(8L, touches.getValue().get(1).id());
+    assertEquals(1L, touches.getValue().get(1).count());
+  }
+}
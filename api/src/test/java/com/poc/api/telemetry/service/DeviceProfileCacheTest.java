@@ -0,0 +1,76 @@
+package com.poc.api.telemetry.service;
+
+import com.poc.api.risk.service.UserActivitySummaryCache;
+import com.poc.api.telemetry.dto.Telemetry;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class DeviceProfileCacheTest {
+
+  private static final Telemetry.Device DEVICE = new Telemetry.Device(
+      "Mozilla/5.0 Chrome/120", null, "Linux", 8, 16.0,
+      new Telemetry.Device.Screen(1920, 1080, 1.0), 0, List.of("en"), "canvas-1", "webgl-1");
+
+  @Test
+  void repeatSightingsAreCountedInMemoryAndFlushedTogether() {
+    DeviceProfileRepository repo = Mockito.mock(DeviceProfileRepository.class);
+    when(repo.upsert(any())).thenAnswer(inv -> {
+      DeviceProfile p = inv.getArgument(0);
+      p.id = 7L;
+      p.seenCount = 1;
+      return p;
+    });
+    when(repo.touchBatch(any())).thenReturn(new int[]{1});
+    DeviceProfileCache cache = new DeviceProfileCache(repo, new SimpleMeterRegistry(), true, 100, 4, 60_000);
+    DeviceProfileService svc = new DeviceProfileService(repo, null, Mockito.mock(UserActivitySummaryCache.class), cache);
+
+    assertEquals(1, svc.upsert("u1", "fp-1", "NZ", DEVICE).seenCount);
+    assertEquals(2, svc.upsert("u1", "fp-1", null, DEVICE).seenCount);
+    DeviceProfile third = svc.upsert("u1", "fp-1", "AU", DEVICE);
+    assertEquals(3, third.seenCount);
+    assertEquals("AU", third.lastCountry);
+    verify(repo, times(1)).upsert(any());
+
+    cache.flush();
+    ArgumentCaptor<List<DeviceProfileRepository.DeviceTouch>> touches = ArgumentCaptor.forClass(List.class);
+    verify(repo).touchBatch(touches.capture());
+    assertEquals(1, touches.getValue().size());
+    assertEquals(7L, touches.getValue().get(0).id());
+    assertEquals(2L, touches.getValue().get(0).count());
+    assertEquals("AU", touches.getValue().get(0).lastCountry());
+  }
+
+  @Test
+  void deletedRowIsUpsertedAgain() {
+    DeviceProfileRepository repo = Mockito.mock(DeviceProfileRepository.class);
+    when(repo.upsert(any())).thenAnswer(inv -> {
+      DeviceProfile p = inv.getArgument(0);
+      p.id = 7L;
+      p.seenCount = 1;
+      return p;
+    });
+    when(repo.touchBatch(any())).thenReturn(new int[]{0});
+    DeviceProfileCache cache = new DeviceProfileCache(repo, new SimpleMeterRegistry(), true, 100, 4, 60_000);
+    DeviceProfileService svc = new DeviceProfileService(repo, null, Mockito.mock(UserActivitySummaryCache.class), cache);
+
+    svc.upsert("u1", "fp-1", "NZ", DEVICE);
+    svc.upsert("u1", "fp-1", "NZ", DEVICE);
+    cache.flush();
+    svc.upsert("u1", "fp-1", "NZ", DEVICE);
+
+    verify(repo, times(2)).upsert(any());
+  }
+}
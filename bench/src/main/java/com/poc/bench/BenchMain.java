@@ -0,0 +1,36 @@
+package com.poc.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Set;
+
+/**
+ * Entry point of benchmarks.jar: plain JMH, except that the gc profiler (allocation rate, B/op)
+ * is on unless the command line picks profilers itself.
+ */
+public final class BenchMain {
+
+  private static final Set<String> INFO_FLAGS = Set.of("-h", "-l", "-lp", "-lprof", "-lrf");
+
+  private BenchMain() {}
+
+  public static void main(String[] args) throws Exception {
+    for (String a : args) {
+      if (INFO_FLAGS.contains(a)) {
+        Main.main(args);
+        return;
+      }
+    }
+    CommandLineOptions cli = new CommandLineOptions(args);
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(cli);
+    if (cli.getProfilers().isEmpty()) {
+      options.addProfiler(GCProfiler.class);
+    }
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,110 @@
+package com.poc.bench.identity;
+
+import com.poc.api.identity.persistence.IdentityLinkRow;
+import com.poc.api.identity.persistence.IdentityLinkType;
+import com.poc.api.identity.persistence.IdentityNodeRow;
+import com.poc.api.identity.persistence.IdentityNodeType;
+import com.poc.api.identity.service.IdentityGraphProjection;
+import com.poc.api.identity.service.IdentityGraphService;
+import com.poc.bench.support.BenchData;
+import com.poc.bench.support.InMemoryIdentityGraphRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IdentityGraphProjection#cluster} (depth 2, 200 links per node) on a generated graph shaped
+ * like observeDeviceProfile output: per user a behaviour cluster and 1-3 devices, each device and
+ * user linked to one of a few hundred shared TLS families. Memory per million links is reported by
+ * {@code GET /api/admin/identity/projection} and the {@code identity.projection.bytes} gauge.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IdentityClusterBenchmark {
+
+  private static final int INPUTS = 1024;
+  private static final int TLS_FAMILIES = 500;
+
+  @Param({"10000", "100000"})
+  public int users;
+
+  private IdentityGraphProjection projection;
+  private String[] roots;
+  private int i;
+
+  private long nodeId;
+  private long linkId;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    InMemoryIdentityGraphRepository repo = new InMemoryIdentityGraphRepository();
+    SplittableRandom rnd = new SplittableRandom(BenchData.SEED);
+    OffsetDateTime t0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+    long[] families = new long[TLS_FAMILIES];
+    for (int f = 0; f < TLS_FAMILIES; f++) families[f] = node(repo, IdentityNodeType.TLS_FAMILY, "fam-" + f);
+    for (int u = 0; u < users; u++) {
+      long user = node(repo, IdentityNodeType.USER, "user-" + u);
+      long beh = node(repo, IdentityNodeType.BEHAVIOR_CLUSTER, "behavior_cluster:user:user-" + u);
+      link(repo, user, beh, IdentityLinkType.USER_BEHAVIOR_CLUSTER, t0.plusSeconds(rnd.nextInt(86_400)));
+      int devices = 1 + rnd.nextInt(3);
+      for (int d = 0; d < devices; d++) {
+        long device = node(repo, IdentityNodeType.DEVICE, "device_profile:" + u + "-" + d);
+        long fam = families[rnd.nextInt(TLS_FAMILIES)];
+        OffsetDateTime seen = t0.plusSeconds(rnd.nextInt(86_400));
+        link(repo, user, device, IdentityLinkType.USER_DEVICE, seen);
+        link(repo, device, beh, IdentityLinkType.DEVICE_BEHAVIOR_CLUSTER, seen);
+        link(repo, device, fam, IdentityLinkType.DEVICE_TLS_FAMILY, seen);
+        link(repo, user, fam, IdentityLinkType.USER_TLS_FAMILY, seen);
+      }
+    }
+    projection = new IdentityGraphProjection(repo, new SimpleMeterRegistry(), true, 50_000, 1);
+    projection.reload();
+
+    roots = new String[INPUTS];
+    for (int n = 0; n < INPUTS; n++) roots[n] = "user-" + rnd.nextInt(users);
+  }
+
+  @Benchmark
+  public IdentityGraphService.ClusterResult clusterDepth2() {
+    return projection.cluster(IdentityNodeType.USER, roots[(i++) & (INPUTS - 1)], 2, 200);
+  }
+
+  private long node(InMemoryIdentityGraphRepository repo, IdentityNodeType type, String key) {
+    IdentityNodeRow r = new IdentityNodeRow();
+    r.id = ++nodeId;
+    r.nodeType = type;
+    r.naturalKey = key;
+    r.displayLabel = key;
+    repo.add(r);
+    return r.id;
+  }
+
+  private void link(InMemoryIdentityGraphRepository repo, long from, long to, IdentityLinkType type, OffsetDateTime seen) {
+    IdentityLinkRow r = new IdentityLinkRow();
+    r.id = ++linkId;
+    r.fromNodeId = from;
+    r.toNodeId = to;
+    r.linkType = type;
+    r.confidence = 0.8;
+    r.lastSeen = seen;
+    repo.add(r);
+  }
+}
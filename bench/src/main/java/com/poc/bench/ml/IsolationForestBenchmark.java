@@ -0,0 +1,61 @@
+package com.poc.bench.ml;
+
+import com.poc.api.ml.IsolationForest;
+import com.poc.bench.support.BenchData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolation forest scoring and training with the production parameters (50 trees, 256 subsample).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsolationForestBenchmark {
+
+  private static final int INPUTS = 1024;
+
+  private List<double[]> training;
+  private IsolationForest forest;
+  private double[][] inputs;
+  private int i;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    training = new ArrayList<>();
+    BenchData.trainingExamples(2000).forEach(e -> training.add(e.features));
+    forest = new IsolationForest(50, 256, 42L);
+    forest.fit(training);
+    inputs = new double[INPUTS][];
+    for (int n = 0; n < INPUTS; n++) inputs[n] = training.get(n);
+  }
+
+  @Benchmark
+  public double score() {
+    return forest.score(inputs[(i++) & (INPUTS - 1)]);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public IsolationForest fit() {
+    IsolationForest f = new IsolationForest(50, 256, 42L);
+    f.fit(training);
+    return f;
+  }
+}
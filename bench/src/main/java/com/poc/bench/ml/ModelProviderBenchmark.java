@@ -0,0 +1,61 @@
+package com.poc.bench.ml;
+
+import com.poc.api.ml.ModelProvider;
+import com.poc.bench.support.BenchData;
+import com.poc.bench.support.InMemoryModelRegistryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call Tribuo prediction (dataset + example per request) vs the precompiled direct scorer,
+ * both against the same logistic model trained on fixed-seed data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelProviderBenchmark {
+
+  private static final int INPUTS = 1024;
+
+  private ModelProvider tribuo;
+  private ModelProvider direct;
+  private double[][] inputs;
+  private int i;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var examples = BenchData.trainingExamples(2000);
+    tribuo = new ModelProvider(new InMemoryModelRegistryRepository(), new SimpleMeterRegistry(), false, 64L << 20);
+    tribuo.train(examples, null);
+    direct = new ModelProvider(new InMemoryModelRegistryRepository(), new SimpleMeterRegistry(), true, 64L << 20);
+    direct.setActiveFromRegistry(1L, tribuo.exportArtifactBytes());
+    inputs = BenchData.coreScores(INPUTS);
+  }
+
+  @Benchmark
+  public double tribuo() {
+    double[] s = inputs[(i++) & (INPUTS - 1)];
+    return tribuo.predictWithModelId(0L, s[0], s[1], s[2], s[3]);
+  }
+
+  @Benchmark
+  public double direct() {
+    double[] s = inputs[(i++) & (INPUTS - 1)];
+    return direct.predictWithModelId(0L, s[0], s[1], s[2], s[3]);
+  }
+}
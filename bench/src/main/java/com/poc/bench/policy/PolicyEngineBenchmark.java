@@ -0,0 +1,81 @@
+package com.poc.bench.policy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.admin.service.PolicyRuleService;
+import com.poc.api.risk.policy.PolicyContext;
+import com.poc.api.risk.policy.PolicyEngine;
+import com.poc.api.risk.policy.PolicyOutcome;
+import com.poc.bench.support.BenchData;
+import com.poc.bench.support.InMemoryPolicyRuleRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interpreted (listAll + sort + JSON parse per call) vs compiled policy evaluation.
+ *
+ * The repository stand-in returns rules from memory, so the interpreted numbers exclude the
+ * DB round-trip that production pays on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolicyEngineBenchmark {
+
+  @Param({"10", "1000", "10000"})
+  public int rules;
+
+  private static final int CONTEXTS = 1024;
+
+  private PolicyEngine engine;
+  private PolicyContext[] contexts;
+  private String[] users;
+  private String[] tenants;
+  private int i;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ObjectMapper om = new ObjectMapper();
+    PolicyRuleService service = new PolicyRuleService(
+        new InMemoryPolicyRuleRepository(BenchData.policyRules(rules)), om, event -> {});
+    engine = new PolicyEngine(service, om, true);
+    engine.refresh();
+
+    SplittableRandom rnd = new SplittableRandom(BenchData.SEED);
+    contexts = new PolicyContext[CONTEXTS];
+    users = new String[CONTEXTS];
+    tenants = new String[CONTEXTS];
+    for (int n = 0; n < CONTEXTS; n++) {
+      contexts[n] = PolicyEngine.context(BenchData.policyContext(rnd));
+      users[n] = "user-" + rnd.nextInt(200);
+      tenants[n] = "tenant-" + rnd.nextInt(20);
+    }
+  }
+
+  @Benchmark
+  public PolicyOutcome interpreted() {
+    int n = (i++) & (CONTEXTS - 1);
+    return engine.evaluateInterpreted(tenants[n], users[n], contexts[n]);
+  }
+
+  @Benchmark
+  public PolicyOutcome compiled() {
+    int n = (i++) & (CONTEXTS - 1);
+    return engine.evaluate(tenants[n], users[n], contexts[n]);
+  }
+}
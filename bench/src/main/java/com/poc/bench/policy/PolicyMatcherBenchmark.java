@@ -0,0 +1,63 @@
+package com.poc.bench.policy;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.admin.dto.PolicyRule;
+import com.poc.api.risk.policy.PolicyMatcher;
+import com.poc.bench.support.BenchData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link PolicyMatcher#matches} call on an already parsed condition (the per-rule cost inside
+ * both the interpreted and compiled policy paths).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolicyMatcherBenchmark {
+
+  private static final int INPUTS = 1024;
+
+  private Map<String, Object>[] conditions;
+  private Map<String, Object>[] contexts;
+  private int i;
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setup() throws Exception {
+    ObjectMapper om = new ObjectMapper();
+    TypeReference<Map<String, Object>> type = new TypeReference<>() {};
+    List<PolicyRule> rules = BenchData.policyRules(INPUTS);
+    conditions = new Map[INPUTS];
+    contexts = new Map[INPUTS];
+    SplittableRandom rnd = new SplittableRandom(BenchData.SEED);
+    for (int n = 0; n < INPUTS; n++) {
+      conditions[n] = om.readValue(rules.get(n).getConditionJson(), type);
+      contexts[n] = BenchData.policyContext(rnd);
+    }
+  }
+
+  @Benchmark
+  public boolean matches() {
+    int n = (i++) & (INPUTS - 1);
+    return PolicyMatcher.matches(conditions[n], contexts[n]);
+  }
+}
@@ -0,0 +1,61 @@
+package com.poc.bench.risk;
+
+import com.poc.api.risk.service.FeatureBuilder;
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.bench.support.BenchData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FeatureBuilder#build} against a stored profile that mostly matches the request's device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureBuilderBenchmark {
+
+  private static final int INPUTS = 1024;
+
+  private final FeatureBuilder builder = new FeatureBuilder();
+  private BenchData.Session[] sessions;
+  private DeviceProfile[] profiles;
+  private int i;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    sessions = BenchData.sessions(INPUTS, 200);
+    profiles = new DeviceProfile[INPUTS];
+    for (int n = 0; n < INPUTS; n++) {
+      var d = sessions[n].telemetry().device();
+      DeviceProfile p = new DeviceProfile();
+      p.screenW = d.screen().w();
+      p.screenH = d.screen().h();
+      p.pixelRatio = d.screen().pixel_ratio();
+      p.tzOffset = d.tz_offset().shortValue();
+      p.canvasHash = n % 10 == 0 ? "canvas-other" : d.canvas_hash();
+      p.webglHash = d.webgl_hash();
+      profiles[n] = p;
+    }
+  }
+
+  @Benchmark
+  public FeatureBuilder.Features build() {
+    int n = (i++) & (INPUTS - 1);
+    BenchData.Session s = sessions[n];
+    return builder.build(profiles[n], 0.8, s.tlsFp(), s.telemetry(), 0.9);
+  }
+}
@@ -0,0 +1,74 @@
+package com.poc.bench.risk;
+
+import com.poc.api.risk.dto.DecisionResponse;
+import com.poc.bench.support.BenchData;
+import com.poc.bench.support.InMemoryScoringStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@code RiskService.score} over 10k users with in-memory repositories: TLS family,
+ * device, behaviour and reputation stages, feature building, model + anomaly scoring, rules,
+ * policy evaluation and decision row construction. Users are warmed up first so this measures
+ * the steady state, not first sightings.
+ *
+ * {@code fanOut} toggles running the stages on virtual threads; with in-memory repositories the
+ * stages are CPU-only, so this shows the fan-out overhead rather than the I/O overlap it buys.
+ * {@code stageMetrics} toggles the per-stage timers ({@code poc.scoring.metrics.enabled}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RiskServiceBenchmark {
+
+  private static final int SESSIONS = 16384;
+  private static final int USERS = 10_000;
+
+  @Param({"true", "false"})
+  public boolean fanOut;
+
+  @Param({"true", "false"})
+  public boolean stageMetrics;
+
+  private InMemoryScoringStack stack;
+  private BenchData.Session[] sessions;
+  private long seq;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    stack = new InMemoryScoringStack(fanOut, 100, stageMetrics);
+    sessions = BenchData.sessions(SESSIONS, USERS);
+    for (BenchData.Session s : sessions) {
+      stack.riskService.score(s.tlsFp(), s.tlsMeta(), s.telemetry(), "127.0.0.1", s.requestId() + "-warm");
+    }
+    stack.maintenance();
+  }
+
+  @Setup(Level.Iteration)
+  public void maintenance() {
+    stack.maintenance();
+  }
+
+  @Benchmark
+  public DecisionResponse score() {
+    long n = seq++;
+    BenchData.Session s = sessions[(int) (n & (SESSIONS - 1))];
+    // Unique request id per call, as in production.
+    return stack.riskService.score(s.tlsFp(), s.tlsMeta(), s.telemetry(), "127.0.0.1", "r" + n);
+  }
+}
@@ -0,0 +1,176 @@
+package com.poc.bench.support;
+
+import com.poc.api.admin.dto.PolicyRule;
+import com.poc.api.admin.dto.PolicyScope;
+import com.poc.api.ml.FeatureVectorSchema;
+import com.poc.api.ml.ModelProvider;
+import com.poc.api.telemetry.dto.Telemetry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Fixed-seed datasets shared by the benchmarks so runs are comparable.
+ */
+public final class BenchData {
+
+  public static final long SEED = 0x5EEDL;
+
+  private BenchData() {}
+
+  /**
+   * Rule mix: ~10% USER, ~20% TENANT, rest GLOBAL, spread over 100 users / 10 tenants.
+   * Thresholds are chosen so most requests fall through to "no match" (the common production case).
+   */
+  public static List<PolicyRule> policyRules(int count) {
+    SplittableRandom rnd = new SplittableRandom(SEED);
+    List<PolicyRule> rules = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      int bucket = rnd.nextInt(10);
+      PolicyScope scope = bucket == 0 ? PolicyScope.USER : bucket <= 2 ? PolicyScope.TENANT : PolicyScope.GLOBAL;
+      String ref = switch (scope) {
+        case USER -> "user-" + rnd.nextInt(100);
+        case TENANT -> "tenant-" + rnd.nextInt(10);
+        default -> null;
+      };
+      String cond = condition(rnd);
+      rules.add(new PolicyRule(i, scope, ref, rnd.nextInt(100), rnd.nextInt(20) != 0, cond,
+          "{\"confidence_cap\": 0.5, \"reason\": \"bench rule " + i + "\"}",
+          "bench rule " + i, null, null));
+    }
+    rules.sort(Comparator.comparingInt(PolicyRule::getPriority).reversed()
+        .thenComparing(Comparator.comparingLong(PolicyRule::getId).reversed()));
+    return rules;
+  }
+
+  private static String condition(SplittableRandom rnd) {
+    double low = 0.01 + rnd.nextDouble() * 0.05;
+    double high = 0.99 + rnd.nextDouble() * 0.01;
+    int many = 50 + rnd.nextInt(50);
+    return switch (rnd.nextInt(6)) {
+      case 0 -> String.format(Locale.ROOT, "{\"vpn\": true, \"scores.p_legit\": {\"lt\": %.3f}}", low);
+      case 1 -> "{\"country\": {\"in\": [\"GB\", \"US\", \"DE\"]}, \"device.new\": true, \"user.sessions_30d\": {\"gt\": 10000}}";
+      case 2 -> String.format(Locale.ROOT, "{\"scores.anomaly\": {\"gte\": %.3f}}", high);
+      case 3 -> String.format(Locale.ROOT, "{\"user.device_count\": {\"gt\": %d}}", many);
+      case 4 -> String.format(Locale.ROOT, "{\"decision\": {\"eq\": \"STEP_UP\"}, \"tls.family_drift\": {\"gt\": %.3f}}", high);
+      default -> String.format(Locale.ROOT, "{\"user.account_sharing_risk\": {\"gte\": %.3f}, \"country\": {\"neq\": \"GB\"}}", high);
+    };
+  }
+
+  /** Policy context shaped like the one RiskService.score builds. */
+  public static Map<String, Object> policyContext(SplittableRandom rnd) {
+    Map<String, Object> ctx = new LinkedHashMap<>();
+    ctx.put("decision", rnd.nextInt(10) == 0 ? "STEP_UP" : "ALLOW");
+    ctx.put("confidence", rnd.nextDouble());
+    ctx.put("device.new", rnd.nextInt(5) == 0);
+    ctx.put("tls.new", rnd.nextInt(5) == 0);
+    ctx.put("vpn", rnd.nextInt(8) == 0);
+    ctx.put("country", new String[]{"GB", "US", "DE", "FR", "NL"}[rnd.nextInt(5)]);
+    ctx.put("scores.device", rnd.nextDouble());
+    ctx.put("scores.behaviour", rnd.nextDouble());
+    ctx.put("scores.tls", rnd.nextDouble());
+    ctx.put("scores.context", rnd.nextDouble());
+    ctx.put("scores.p_legit", 0.2 + rnd.nextDouble() * 0.8);
+    ctx.put("scores.anomaly", rnd.nextDouble() * 0.9);
+    ctx.put("tls.family_drift", rnd.nextDouble() * 0.5);
+    ctx.put("user.trust_score", rnd.nextDouble());
+    ctx.put("user.account_sharing_risk", rnd.nextDouble() * 0.5);
+    ctx.put("user.device_count", 1 + rnd.nextInt(5));
+    ctx.put("user.tls_fp_count", 1 + rnd.nextInt(3));
+    ctx.put("user.country_count", 1 + rnd.nextInt(2));
+    ctx.put("user.sessions_30d", rnd.nextInt(200));
+    return ctx;
+  }
+
+  /**
+   * Labelled schema-aligned vectors: legit sessions score high on the four core scores, fraud low,
+   * with overlap so the classifier is not trivially separable.
+   */
+  public static List<ModelProvider.TrainingExample> trainingExamples(int count) {
+    SplittableRandom rnd = new SplittableRandom(SEED);
+    int dim = FeatureVectorSchema.size();
+    List<ModelProvider.TrainingExample> out = new ArrayList<>(count);
+    for (int n = 0; n < count; n++) {
+      boolean legit = rnd.nextInt(10) != 0;
+      double[] v = new double[dim];
+      for (int d = 0; d < dim; d++) {
+        double centre = d < 4 ? (legit ? 0.75 : 0.35) : 0.0;
+        v[d] = Math.max(0.0, Math.min(1.0, centre + (rnd.nextDouble() - 0.5) * 0.6));
+      }
+      out.add(new ModelProvider.TrainingExample(v, legit));
+    }
+    return out;
+  }
+
+  /** Core score tuples [device, behavior, tls, context] in [0, 1]. */
+  public static double[][] coreScores(int count) {
+    SplittableRandom rnd = new SplittableRandom(SEED ^ 0x5C0EL);
+    double[][] out = new double[count][4];
+    for (double[] s : out) {
+      for (int d = 0; d < 4; d++) s[d] = rnd.nextDouble();
+    }
+    return out;
+  }
+
+  /** One scoring request as the controller would hand it to RiskService. */
+  public record Session(String tlsFp, String tlsMeta, String requestId, Telemetry telemetry) {}
+
+  private static final String[] COUNTRIES = {"GB", "US", "DE", "FR", "NL", "IE", "ES"};
+  private static final String[] CAS = {"Example Root CA", "Corp Issuing CA", "Let's Encrypt R3"};
+
+  /**
+   * Sessions for {@code users} users, each owning 1-3 stable devices (screen, canvas/WebGL hashes,
+   * client cert). Behaviour is drawn around a per-user baseline; ~5% of sessions come from an
+   * unseen device with skewed behaviour, the rest repeat a known one.
+   */
+  public static Session[] sessions(int count, int users) {
+    SplittableRandom rnd = new SplittableRandom(SEED ^ 0x5E55L);
+    Session[] out = new Session[count];
+    for (int n = 0; n < count; n++) {
+      int user = rnd.nextInt(users);
+      SplittableRandom userRnd = new SplittableRandom(SEED + user);
+      int devices = 1 + userRnd.nextInt(3);
+      String home = COUNTRIES[userRnd.nextInt(COUNTRIES.length)];
+      double keyMean = 90 + userRnd.nextDouble() * 120;
+      double velocity = 0.3 + userRnd.nextDouble() * 1.2;
+
+      boolean novel = rnd.nextInt(20) == 0;
+      int device = novel ? 100 + rnd.nextInt(1000) : rnd.nextInt(devices);
+      SplittableRandom devRnd = new SplittableRandom(SEED * 31 + user * 7L + device);
+      int w = new int[]{1280, 1440, 1920, 2560, 390, 412}[devRnd.nextInt(6)];
+      int h = w > 1000 ? w * 9 / 16 : 844;
+      String canvas = "canvas-" + Long.toHexString(devRnd.nextLong());
+      String webgl = "webgl-" + Long.toHexString(devRnd.nextLong());
+      String cn = "user-" + user + "-dev-" + device;
+      String meta = "sub=CN=" + cn + ",O=Example;iss=CN=" + CAS[devRnd.nextInt(CAS.length)] + ",O=Example";
+      String tlsFp = "fp-" + Long.toHexString(devRnd.nextLong()) + "-" + rnd.nextInt(4);
+
+      Telemetry.Device dev = new Telemetry.Device(
+          "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 Chrome/120.0 Safari/537.36",
+          Map.of("brands", "Chromium;120"), "Linux", 4 + devRnd.nextInt(12), 8.0,
+          new Telemetry.Device.Screen(w, h, w > 1000 ? 1.0 : 3.0), -60 * devRnd.nextInt(3),
+          List.of("en-GB", "en"), canvas, webgl);
+      double skew = novel ? 2.5 : 1.0;
+      Telemetry.Behavior behavior = new Telemetry.Behavior(
+          50 + rnd.nextInt(400), 1000 + rnd.nextDouble() * 4000 * skew, 10 + rnd.nextInt(80),
+          keyMean * skew + (rnd.nextDouble() - 0.5) * 30, rnd.nextInt(40), 20 + rnd.nextDouble() * 40,
+          rnd.nextDouble() * 3, velocity * skew + (rnd.nextDouble() - 0.5) * 0.2,
+          velocity * 3 * skew + rnd.nextDouble());
+
+      Map<String, Object> ctx = new LinkedHashMap<>();
+      ctx.put("tenant_id", "tenant-" + (user % 10));
+      ctx.put("country", novel && rnd.nextBoolean() ? COUNTRIES[rnd.nextInt(COUNTRIES.length)] : home);
+      ctx.put("vpn", rnd.nextInt(12) == 0);
+      ctx.put("high_risk_action", rnd.nextInt(8) == 0);
+
+      out[n] = new Session(tlsFp, meta, "req-" + n,
+          new Telemetry("user-" + user, dev, behavior, ctx));
+    }
+    return out;
+  }
+}
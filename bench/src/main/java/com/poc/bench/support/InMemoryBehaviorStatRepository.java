@@ -0,0 +1,50 @@
+package com.poc.bench.support;
+
+import com.poc.api.telemetry.persistence.BehaviorStat;
+import com.poc.api.telemetry.persistence.BehaviorStatRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map-backed stand-in for behavior_profile_stats.
+ */
+public class InMemoryBehaviorStatRepository extends BehaviorStatRepository {
+
+  private final Map<String, Map<String, BehaviorStat>> byUser = new ConcurrentHashMap<>();
+
+  public InMemoryBehaviorStatRepository() {
+    super(null);
+  }
+
+  @Override
+  public Optional<BehaviorStat> findByUserAndFeature(String userId, String feature) {
+    Map<String, BehaviorStat> m = byUser.get(userId);
+    return m == null ? Optional.empty() : Optional.ofNullable(m.get(feature));
+  }
+
+  @Override
+  public List<BehaviorStat> findRecent(int limit) {
+    return List.of();
+  }
+
+  @Override
+  public List<BehaviorStat> findByUser(String userId) {
+    Map<String, BehaviorStat> m = byUser.get(userId);
+    return m == null ? List.of() : new ArrayList<>(m.values());
+  }
+
+  @Override
+  public void upsertBatch(List<BehaviorStat> stats) {
+    for (BehaviorStat s : stats) save(s);
+  }
+
+  @Override
+  public BehaviorStat save(BehaviorStat s) {
+    byUser.computeIfAbsent(s.userId, u -> new ConcurrentHashMap<>()).put(s.feature, s);
+    return s;
+  }
+}
@@ -0,0 +1,96 @@
+package com.poc.bench.support;
+
+import com.poc.api.telemetry.persistence.DeviceProfile;
+import com.poc.api.telemetry.persistence.DeviceProfileRepository;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Map-backed stand-in for the device_profile queries on the scoring path.
+ */
+public class InMemoryDeviceProfileRepository extends DeviceProfileRepository {
+
+  private final Map<String, Map<String, DeviceProfile>> byUser = new ConcurrentHashMap<>();
+  private final Map<Long, DeviceProfile> byId = new ConcurrentHashMap<>();
+  private final AtomicLong ids = new AtomicLong();
+
+  public InMemoryDeviceProfileRepository() {
+    super(null);
+  }
+
+  private static String key(String tlsFp, String canvasHash) {
+    return tlsFp + '\0' + canvasHash;
+  }
+
+  @Override
+  public Optional<DeviceProfile> findById(long id) {
+    return Optional.ofNullable(byId.get(id));
+  }
+
+  @Override
+  public Optional<DeviceProfile> findByUserAndTlsAndCanvas(String userId, String tlsFp, String canvasHash) {
+    Map<String, DeviceProfile> m = byUser.get(userId);
+    return m == null ? Optional.empty() : Optional.ofNullable(m.get(key(tlsFp, canvasHash)));
+  }
+
+  @Override
+  public DeviceProfile upsert(DeviceProfile p) {
+    Optional<DeviceProfile> existing = findByUserAndTlsAndCanvas(p.userId, p.tlsFp, p.canvasHash);
+    if (existing.isPresent()) {
+      DeviceProfile e = existing.get();
+      synchronized (e) {
+        e.lastSeen = OffsetDateTime.now();
+        e.seenCount++;
+        if (p.lastCountry != null) e.lastCountry = p.lastCountry;
+      }
+      return e;
+    }
+    return insert(p);
+  }
+
+  @Override
+  public DeviceProfile insert(DeviceProfile p) {
+    OffsetDateTime now = OffsetDateTime.now();
+    p.id = ids.incrementAndGet();
+    p.firstSeen = now;
+    p.lastSeen = now;
+    p.seenCount = 1L;
+    byUser.computeIfAbsent(p.userId, u -> new ConcurrentHashMap<>()).put(key(p.tlsFp, p.canvasHash), p);
+    byId.put(p.id, p);
+    return p;
+  }
+
+  @Override
+  public int[] touchBatch(List<DeviceTouch> touches) {
+    int[] out = new int[touches.size()];
+    for (int i = 0; i < out.length; i++) {
+      DeviceTouch t = touches.get(i);
+      DeviceProfile e = byId.get(t.id());
+      if (e == null) continue;
+      synchronized (e) {
+        e.seenCount += t.count();
+        e.lastSeen = t.lastSeen();
+        if (t.lastCountry() != null) e.lastCountry = t.lastCountry();
+      }
+      out[i] = 1;
+    }
+    return out;
+  }
+
+  @Override
+  public List<DeviceProfile> findSummaryByUser(String userId) {
+    return findByUser(userId);
+  }
+
+  @Override
+  public List<DeviceProfile> findByUser(String userId) {
+    Map<String, DeviceProfile> m = byUser.get(userId);
+    return m == null ? List.of() : new ArrayList<>(m.values());
+  }
+}
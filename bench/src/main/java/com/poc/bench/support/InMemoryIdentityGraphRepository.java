@@ -0,0 +1,51 @@
+package com.poc.bench.support;
+
+import com.poc.api.identity.persistence.IdentityGraphRepository;
+import com.poc.api.identity.persistence.IdentityLinkRow;
+import com.poc.api.identity.persistence.IdentityNodeRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Stand-in for identity_node / identity_link that only serves the keyset pages the in-memory
+ * projection loads from. Rows must be added in id order.
+ */
+public class InMemoryIdentityGraphRepository extends IdentityGraphRepository {
+
+  private final List<IdentityNodeRow> nodes = new ArrayList<>();
+  private final List<IdentityLinkRow> links = new ArrayList<>();
+
+  public InMemoryIdentityGraphRepository() {
+    super(null);
+  }
+
+  public void add(IdentityNodeRow node) {
+    nodes.add(node);
+  }
+
+  public void add(IdentityLinkRow link) {
+    links.add(link);
+  }
+
+  @Override
+  public List<IdentityNodeRow> listNodesAfterId(long afterId, int limit) {
+    return page(nodes, afterId, limit, n -> n.id);
+  }
+
+  @Override
+  public List<IdentityLinkRow> listLinksAfterId(long afterId, int limit) {
+    return page(links, afterId, limit, l -> l.id);
+  }
+
+  private static <T> List<T> page(List<T> rows, long afterId, int limit, ToLongFunction<T> id) {
+    int lo = 0, hi = rows.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (id.applyAsLong(rows.get(mid)) <= afterId) lo = mid + 1;
+      else hi = mid;
+    }
+    return rows.subList(lo, Math.min(rows.size(), lo + limit));
+  }
+}
@@ -0,0 +1,113 @@
+package com.poc.bench.support;
+
+import com.poc.api.ml.persistence.ModelRegistryRepository;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Model registry stand-in: keeps records in a map instead of model_registry.
+ */
+public class InMemoryModelRegistryRepository extends ModelRegistryRepository {
+
+  private final Map<Long, ModelRecord> records = new ConcurrentHashMap<>();
+  private final AtomicLong ids = new AtomicLong();
+
+  public InMemoryModelRegistryRepository() {
+    super(null);
+  }
+
+  @Override
+  public Optional<ModelRecord> findActive() {
+    return records.values().stream()
+        .filter(ModelRecord::active)
+        .max(Comparator.comparingLong(ModelRecord::id));
+  }
+
+  @Override
+  public Optional<ModelMeta> findActiveMeta() {
+    return findActive().map(InMemoryModelRegistryRepository::meta);
+  }
+
+  @Override
+  public Optional<Long> findActiveId() {
+    return findActive().map(ModelRecord::id);
+  }
+
+  @Override
+  public Optional<ModelRecord> findById(long id) {
+    return Optional.ofNullable(records.get(id));
+  }
+
+  @Override
+  public Optional<byte[]> findBytes(long id) {
+    return findById(id).map(ModelRecord::bytes);
+  }
+
+  @Override
+  public List<ModelMeta> listRecent(String kind, String scopeType, String scopeKey, int limit) {
+    return scoped(kind, scopeType, scopeKey).stream()
+        .limit(Math.min(limit, 500))
+        .map(InMemoryModelRegistryRepository::meta)
+        .toList();
+  }
+
+  @Override
+  public Optional<ModelRecord> findActiveScoped(String kind, String scopeType, String scopeKey) {
+    return scoped(kind, scopeType, scopeKey).stream().filter(ModelRecord::active).findFirst();
+  }
+
+  private List<ModelRecord> scoped(String kind, String scopeType, String scopeKey) {
+    List<ModelRecord> out = new ArrayList<>();
+    for (ModelRecord r : records.values()) {
+      if (Objects.equals(r.kind(), kind) && Objects.equals(r.scopeType(), scopeType)
+          && Objects.equals(r.scopeKey(), scopeKey)) out.add(r);
+    }
+    out.sort(Comparator.comparingLong(ModelRecord::id).reversed());
+    return out;
+  }
+
+  @Override
+  public void deactivateAll() {
+    records.replaceAll((id, r) -> withActive(r, false));
+  }
+
+  @Override
+  public void deactivateAllScoped(String kind, String scopeType, String scopeKey) {
+    records.replaceAll((id, r) -> Objects.equals(r.kind(), kind) && Objects.equals(r.scopeType(), scopeType)
+        && Objects.equals(r.scopeKey(), scopeKey) ? withActive(r, false) : r);
+  }
+
+  @Override
+  public void activateById(long id) {
+    deactivateAll();
+    records.computeIfPresent(id, (k, r) -> withActive(r, true));
+  }
+
+  @Override
+  public long insertReturningId(String name, String format, String version, byte[] bytes, String sha256, boolean active,
+                                String kind, String scopeType, String scopeKey, String metricsJson) {
+    long id = ids.incrementAndGet();
+    records.put(id, new ModelRecord(id, name, format, version, bytes, sha256, active, OffsetDateTime.now(),
+        kind == null ? "risk-model" : kind, scopeType == null ? "GLOBAL" : scopeType,
+        scopeKey == null ? "*" : scopeKey, metricsJson == null ? "{}" : metricsJson));
+    return id;
+  }
+
+  private static ModelMeta meta(ModelRecord r) {
+    return new ModelMeta(r.id(), r.name(), r.format(), r.version(), r.bytes() == null ? 0 : r.bytes().length,
+        r.sha256(), r.active(), r.createdAt(), r.kind(), r.scopeType(), r.scopeKey(), r.metricsJson());
+  }
+
+  private static ModelRecord withActive(ModelRecord r, boolean active) {
+    return new ModelRecord(r.id(), r.name(), r.format(), r.version(), r.bytes(), r.sha256(), active,
+        r.createdAt(), r.kind(), r.scopeType(), r.scopeKey(), r.metricsJson());
+  }
+}
@@ -0,0 +1,30 @@
+package com.poc.bench.support;
+
+import com.poc.api.admin.dto.PolicyRule;
+import com.poc.api.admin.persistence.PolicyRuleRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Policy repository stand-in: serves a fixed rule list without a database.
+ */
+public class InMemoryPolicyRuleRepository extends PolicyRuleRepository {
+
+  private final List<PolicyRule> rules;
+
+  public InMemoryPolicyRuleRepository(List<PolicyRule> rules) {
+    super(null);
+    this.rules = List.copyOf(rules);
+  }
+
+  @Override
+  public List<PolicyRule> listAll() {
+    return rules;
+  }
+
+  @Override
+  public Optional<PolicyRule> findById(long id) {
+    return rules.stream().filter(r -> r.getId() == id).findFirst();
+  }
+}
@@ -0,0 +1,99 @@
+package com.poc.bench.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.api.admin.service.PolicyRuleService;
+import com.poc.api.ml.ModelProvider;
+import com.poc.api.ml.service.ModelRouting;
+import com.poc.api.ml.service.ShadowScoringService;
+import com.poc.api.risk.persistence.DecisionWriteBehindQueue;
+import com.poc.api.risk.policy.PolicyEngine;
+import com.poc.api.risk.service.AccountSharingHeuristics;
+import com.poc.api.risk.service.FeatureBuilder;
+import com.poc.api.risk.service.RiskService;
+import com.poc.api.risk.service.RulesEngine;
+import com.poc.api.risk.service.ScoringMetrics;
+import com.poc.api.risk.service.ScoringStages;
+import com.poc.api.risk.service.UserActivitySummaryCache;
+import com.poc.api.risk.service.UserReputationService;
+import com.poc.api.showcase.service.TlsFamilyObservationCache;
+import com.poc.api.showcase.service.TlsFamilyService;
+import com.poc.api.telemetry.service.BehaviorBaselineCache;
+import com.poc.api.telemetry.service.BehaviorStatsService;
+import com.poc.api.telemetry.service.DeviceProfileCache;
+import com.poc.api.telemetry.service.DeviceProfileService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * A {@link RiskService} wired by hand the way Spring wires it, with every repository replaced by an
+ * in-memory stand-in and the production cache settings. Scheduled jobs do not run; call
+ * {@link #maintenance()} between iterations instead.
+ */
+public final class InMemoryScoringStack {
+
+  public final MeterRegistry meters = new SimpleMeterRegistry();
+  public final NoOpDecisionStores.DecisionLogs decisionLogs = new NoOpDecisionStores.DecisionLogs();
+  public final NoOpDecisionStores.SessionFeatures sessionFeatures = new NoOpDecisionStores.SessionFeatures();
+  public final TlsFamilyObservationCache tlsCache;
+  public final TlsFamilyService tlsFamilyService;
+  public final BehaviorBaselineCache behaviorCache;
+  public final DeviceProfileCache deviceCache;
+  public final ScoringStages stages;
+  public final RiskService riskService;
+
+  public InMemoryScoringStack(boolean fanOut, int policyRules) {
+    this(fanOut, policyRules, true);
+  }
+
+  public InMemoryScoringStack(boolean fanOut, int policyRules, boolean stageMetrics) {
+    InMemoryDeviceProfileRepository devices = new InMemoryDeviceProfileRepository();
+    InMemoryTlsFamilyRepository tls = new InMemoryTlsFamilyRepository();
+    InMemoryBehaviorStatRepository behavior = new InMemoryBehaviorStatRepository();
+
+    tlsCache = new TlsFamilyObservationCache(tls, meters, true, 100_000, 200_000);
+    tlsFamilyService = new TlsFamilyService(tls, tlsCache);
+    UserActivitySummaryCache summaries = new UserActivitySummaryCache(devices, decisionLogs, meters,
+        true, 100_000, 16, 300_000);
+    deviceCache = new DeviceProfileCache(devices, meters, true, 200_000, 16, 300_000);
+    DeviceProfileService deviceProfileService = new DeviceProfileService(devices, null, summaries, deviceCache);
+    behaviorCache = new BehaviorBaselineCache(behavior, meters, true, 100_000, 16, 1000);
+    BehaviorStatsService behaviorStats = new BehaviorStatsService(behavior, behaviorCache);
+    UserReputationService reputation = new UserReputationService(summaries, new AccountSharingHeuristics(summaries));
+    ScoringMetrics scoringMetrics = new ScoringMetrics(meters, stageMetrics, true);
+    stages = new ScoringStages(tlsFamilyService, deviceProfileService, behaviorStats, reputation, scoringMetrics,
+        fanOut, 500, 500, 500, 500);
+
+    InMemoryModelRegistryRepository registry = new InMemoryModelRegistryRepository();
+    ModelProvider trainer = new ModelProvider(registry, new SimpleMeterRegistry(), true, 64L << 20);
+    trainer.train(BenchData.trainingExamples(2000), null);
+    ModelProvider.ExportedArtifact exported = trainer.exportArtifact();
+    byte[] artifact = exported.bytes();
+    long modelId = registry.insertReturningId("bench", exported.format(), "bench",
+        artifact, "bench", true, "risk-model", "GLOBAL", "*", "{}");
+    ModelProvider models = new ModelProvider(registry, meters, true, 64L << 20);
+    models.setActiveFromRegistry(modelId, artifact);
+    ModelRouting routing = new ModelRouting(registry, new NoOpDecisionStores.CanaryPolicies(), models, true);
+
+    // No shadow candidates in the bench: the live path only pays the isActive() check.
+    ShadowScoringService shadow = new ShadowScoringService(null, models, meters, false, 1, 1, 1, 1, 1);
+
+    ObjectMapper om = new ObjectMapper();
+    PolicyEngine policies = new PolicyEngine(
+        new PolicyRuleService(new InMemoryPolicyRuleRepository(BenchData.policyRules(policyRules)), om, event -> {}),
+        om, true);
+    DecisionWriteBehindQueue writes = new DecisionWriteBehindQueue(sessionFeatures, decisionLogs,
+        TransactionOperations.withoutTransaction(), meters,
+        false, 10_000, 500, 200, 50, 10_000);
+
+    riskService = new RiskService(stages, deviceProfileService, new FeatureBuilder(), new RulesEngine(), models,
+        routing, shadow, writes, summaries, policies, scoringMetrics, 500, false);
+  }
+
+  /** What the schedulers would do: flush coalesced counters. */
+  public void maintenance() {
+    tlsCache.flush();
+    behaviorCache.flush();
+    deviceCache.flush();
+  }
+}
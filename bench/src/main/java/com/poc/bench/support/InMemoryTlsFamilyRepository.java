@@ -0,0 +1,64 @@
+package com.poc.bench.support;
+
+import com.poc.api.showcase.persistence.TlsFamilyRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in for the TLS family tables: only tracks which user/family pairs exist, which is all the
+ * scoring path reads back. Touches and stats recomputation are no-ops.
+ */
+public class InMemoryTlsFamilyRepository extends TlsFamilyRepository {
+
+  private final Set<String> userFamilies = ConcurrentHashMap.newKeySet();
+
+  public InMemoryTlsFamilyRepository() {
+    super(null);
+  }
+
+  @Override
+  public void upsertFamily(String familyId, String familyKey, String sampleFp, String sampleMeta) {
+  }
+
+  @Override
+  public void upsertMember(String rawTlsFp, String familyId, String lastMeta) {
+  }
+
+  @Override
+  public boolean upsertUserFamily(String userId, String familyId) {
+    return userFamilies.add(userId + '\0' + familyId);
+  }
+
+  @Override
+  public int[] touchFamilies(List<FamilyTouch> touches) {
+    return ones(touches.size());
+  }
+
+  @Override
+  public int[] touchMembers(List<MemberTouch> touches) {
+    return ones(touches.size());
+  }
+
+  @Override
+  public int[] touchUserFamilies(List<UserFamilyTouch> touches) {
+    return ones(touches.size());
+  }
+
+  @Override
+  public void recomputeFamilyStats(String familyId, double confidenceScore, double stabilityScore) {
+  }
+
+  @Override
+  public Optional<FamilyStats> getFamilyStats(String familyId) {
+    return Optional.empty();
+  }
+
+  private static int[] ones(int n) {
+    int[] out = new int[n];
+    java.util.Arrays.fill(out, 1);
+    return out;
+  }
+}
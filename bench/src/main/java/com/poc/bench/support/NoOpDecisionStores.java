@@ -0,0 +1,71 @@
+package com.poc.bench.support;
+
+import com.poc.api.ml.persistence.ModelCanaryPolicyRepository;
+import com.poc.api.risk.persistence.DecisionLogRepository;
+import com.poc.api.risk.persistence.DecisionLogRow;
+import com.poc.api.risk.persistence.SessionFeatureRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write sinks for decision_log / session_feature (rows are counted, not kept) and an empty canary
+ * policy table.
+ */
+public final class NoOpDecisionStores {
+
+  private NoOpDecisionStores() {}
+
+  public static class DecisionLogs extends DecisionLogRepository {
+    public final LongAdder rows = new LongAdder();
+
+    public DecisionLogs() {
+      super(null);
+    }
+
+    @Override
+    public void insert(NewDecisionLog row) {
+      rows.increment();
+    }
+
+    @Override
+    public void insertBatch(List<NewDecisionLog> batch) {
+      rows.add(batch.size());
+    }
+
+    @Override
+    public List<DecisionLogRow> findRecentConfidenceByUser(String userId, int limit) {
+      return List.of();
+    }
+  }
+
+  public static class SessionFeatures extends SessionFeatureRepository {
+    public final LongAdder rows = new LongAdder();
+
+    public SessionFeatures() {
+      super(null);
+    }
+
+    @Override
+    public void insert(NewSessionFeature row) {
+      rows.increment();
+    }
+
+    @Override
+    public void insertBatch(List<NewSessionFeature> batch) {
+      rows.add(batch.size());
+    }
+  }
+
+  public static class CanaryPolicies extends ModelCanaryPolicyRepository {
+    public CanaryPolicies() {
+      super(null);
+    }
+
+    @Override
+    public Optional<CanaryPolicy> get(String kind, String scopeType, String scopeKey) {
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.poc.bench.telemetry;
+
+import com.poc.api.telemetry.service.BehaviorBaselineCache;
+import com.poc.api.telemetry.service.BehaviorStatsService;
+import com.poc.bench.support.BenchData;
+import com.poc.bench.support.InMemoryBehaviorStatRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EWMA baseline update + similarity for warm users: through {@link BehaviorBaselineCache}
+ * ({@code cached=true}) vs the per-feature repository read/save path ({@code cached=false}).
+ * The in-memory repository means the uncached numbers exclude the DB round-trips.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BehaviorStatsBenchmark {
+
+  private static final int INPUTS = 4096;
+  private static final int USERS = 1000;
+
+  @Param({"true", "false"})
+  public boolean cached;
+
+  private BehaviorBaselineCache cache;
+  private BehaviorStatsService service;
+  private BenchData.Session[] sessions;
+  private int i;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    InMemoryBehaviorStatRepository repo = new InMemoryBehaviorStatRepository();
+    cache = new BehaviorBaselineCache(repo, new SimpleMeterRegistry(), cached, USERS * 2, 16, 1000);
+    service = new BehaviorStatsService(repo, cache);
+    sessions = BenchData.sessions(INPUTS, USERS);
+    for (BenchData.Session s : sessions) {
+      service.updateAndComputeSimilarity(s.telemetry().user_id_hint(), s.telemetry().behavior());
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void flush() {
+    cache.flush();
+  }
+
+  @Benchmark
+  public BehaviorStatsService.BehaviorSimilarityResult updateAndComputeSimilarity() {
+    BenchData.Session s = sessions[(i++) & (INPUTS - 1)];
+    return service.updateAndComputeSimilarity(s.telemetry().user_id_hint(), s.telemetry().behavior());
+  }
+}
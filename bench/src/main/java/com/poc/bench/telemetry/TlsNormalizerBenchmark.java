@@ -0,0 +1,46 @@
+package com.poc.bench.telemetry;
+
+import com.poc.api.telemetry.tls.TlsNormalizationResult;
+import com.poc.api.telemetry.tls.TlsNormalizer;
+import com.poc.bench.support.BenchData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TlsNormalizer#normalize}: meta parsing, DN attribute extraction and the family-id hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TlsNormalizerBenchmark {
+
+  private static final int INPUTS = 1024;
+
+  private BenchData.Session[] sessions;
+  private int i;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    sessions = BenchData.sessions(INPUTS, 200);
+  }
+
+  @Benchmark
+  public TlsNormalizationResult normalize() {
+    BenchData.Session s = sessions[(i++) & (INPUTS - 1)];
+    return TlsNormalizer.normalize(s.tlsFp(), s.tlsMeta());
+  }
+}